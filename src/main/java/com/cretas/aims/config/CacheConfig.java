@@ -1,21 +1,25 @@
 package com.cretas.aims.config;
 
-import org.springframework.cache.CacheManager;
+import com.cretas.aims.service.FactorySettingsSnapshotService;
+import com.cretas.aims.service.ReferenceDataCacheService;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
-import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
-import java.util.Arrays;
 
 /**
  * 缓存配置
@@ -29,12 +33,68 @@ import java.util.Arrays;
 public class CacheConfig {
 
     /**
-     * Redis缓存管理器
-     * 用于Dashboard等高频查询数据的缓存
+     * 两级缓存管理器（@Primary）
+     * L1 为进程内有界缓存，L2 为 Redis；Dashboard 等高频查询在 L1 命中时不访问 Redis、不做反序列化
      */
     @Primary
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TieredCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                           StringRedisTemplate stringRedisTemplate,
+                                           @Value("${cretas.cache.l1.max-size:1000}") int l1MaxSize,
+                                           @Value("${cretas.cache.l1.ttl:60000}") long l1TtlMs,
+                                           @Value("${cretas.cache.invalidation-channel:cretas:cache:invalidate}")
+                                           String channel) {
+        return new TieredCacheManager(redisCacheManager(connectionFactory), stringRedisTemplate, channel,
+                l1MaxSize, l1TtlMs);
+    }
+
+    /**
+     * Hibernate 二级缓存区域工厂（实体/自然键/查询缓存存于进程内，失效经 Redis 广播）
+     */
+    @Bean
+    public InProcessRegionFactory hibernateRegionFactory(
+            StringRedisTemplate stringRedisTemplate,
+            @Value("${cretas.second-level-cache.max-entries:10000}") int maxEntries,
+            @Value("${cretas.second-level-cache.ttl:600000}") long ttlMs,
+            @Value("${cretas.second-level-cache.invalidation-channel:cretas:l2:invalidate}") String channel) {
+        return new InProcessRegionFactory(stringRedisTemplate, channel, maxEntries, ttlMs);
+    }
+
+    /**
+     * 将区域工厂实例交给 Hibernate（开关见 spring.jpa.properties.hibernate.cache）
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateRegionFactoryCustomizer(InProcessRegionFactory regionFactory) {
+        return properties -> properties.put(AvailableSettings.CACHE_REGION_FACTORY, regionFactory);
+    }
+
+    /**
+     * 订阅缓存失效频道，收到其他节点的失效消息后删除本地 L1 副本 / 基础数据快照 / 工厂设置快照 / 二级缓存条目
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            TieredCacheManager cacheManager,
+            ReferenceDataCacheService referenceDataCacheService,
+            FactorySettingsSnapshotService settingsSnapshotService,
+            InProcessRegionFactory hibernateRegionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(cacheManager.getChannel()));
+        container.addMessageListener(referenceDataCacheService,
+                new ChannelTopic(referenceDataCacheService.getChannel()));
+        container.addMessageListener(settingsSnapshotService,
+                new ChannelTopic(settingsSnapshotService.getChannel()));
+        container.addMessageListener(hibernateRegionFactory,
+                new ChannelTopic(hibernateRegionFactory.getChannel()));
+        return container;
+    }
+
+    /**
+     * Redis缓存管理器（L2）
+     * 用于Dashboard等高频查询数据的缓存
+     */
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
         // 默认缓存配置：5分钟过期
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(5))
@@ -68,24 +128,13 @@ public class CacheConfig {
                                 new GenericJackson2JsonRedisSerializer()))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withCacheConfiguration("dashboardStats", dashboardConfig)
                 .withCacheConfiguration("aiQuota", aiQuotaConfig)
                 .build();
-    }
-
-    /**
-     * 简单缓存管理器（降级方案）
-     * 当Redis不可用时使用内存缓存
-     */
-    @Bean
-    public CacheManager fallbackCacheManager() {
-        SimpleCacheManager cacheManager = new SimpleCacheManager();
-        cacheManager.setCaches(Arrays.asList(
-                new ConcurrentMapCache("dashboardStats"),
-                new ConcurrentMapCache("aiQuota")
-        ));
+        // 不是容器管理的 Bean，手动初始化各缓存的独立配置
+        cacheManager.afterPropertiesSet();
         return cacheManager;
     }
 }
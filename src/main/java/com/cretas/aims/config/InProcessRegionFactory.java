@@ -0,0 +1,132 @@
+package com.cretas.aims.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.internal.SimpleCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hibernate 二级缓存 RegionFactory：各区域存于进程内，失效通过 Redis 频道广播
+ *
+ * 1. 实体/自然键区域与查询结果区域有界并带存活时间；时间戳区域不淘汰（条目缺失会让查询缓存误判为最新）
+ * 2. 实体使用 NONSTRICT_READ_WRITE：更新/删除在本地删除条目并广播，其他节点删除各自副本；
+ *    并发加载可能在删除后写回旧值，最多保留 ttl
+ * 3. 时间戳区域的写入同样广播，各节点的查询缓存在表更新后失效（时间戳取自写入节点，节点间时钟偏差会延迟失效）
+ * 4. 使用 SimpleCacheKeysFactory，实体区域的键即主键，便于在消息中传递
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+public class InProcessRegionFactory extends RegionFactoryTemplate implements MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, InProcessRegionStorage> storages = new ConcurrentHashMap<>();
+
+    public InProcessRegionFactory(StringRedisTemplate redisTemplate, String channel, int maxEntries, long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    protected CacheKeysFactory getImplicitCacheKeysFactory() {
+        return SimpleCacheKeysFactory.INSTANCE;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return register(new InProcessRegionStorage(regionConfig.getRegionName(), maxEntries, ttlMs, false,
+                this::publish));
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        // 查询结果依赖时间戳区域判断是否过期，本身不广播
+        return register(new InProcessRegionStorage(regionName, maxEntries, ttlMs, false, null));
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return register(new InProcessRegionStorage(regionName, 0, 0, true, this::publish));
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+        log.info("Hibernate二级缓存启用: maxEntries={}, ttl={}ms, channel={}", maxEntries, ttlMs, channel);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(InProcessRegionStorage::release);
+        storages.clear();
+    }
+
+    /**
+     * 各区域的命中/未命中/淘汰计数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        storages.forEach((name, storage) -> stats.put(name, storage.getStats()));
+        return stats;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 收到失效消息：nodeId \n regionName \n 消息体
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        InProcessRegionStorage storage = storages.get(parts[1]);
+        if (storage != null) {
+            storage.applyRemote(parts[2]);
+        }
+    }
+
+    private InProcessRegionStorage register(InProcessRegionStorage storage) {
+        storages.put(storage.getRegionName(), storage);
+        return storage;
+    }
+
+    private void publish(String regionName, String body) {
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + "\n" + regionName + "\n" + body);
+        } catch (Exception e) {
+            // 其他节点的副本最多保留 ttl
+            log.warn("发布二级缓存失效消息失败: region={}, error={}", regionName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.cretas.aims.config;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Hibernate 二级缓存区域的进程内存储
+ *
+ * 1. 有界（按访问顺序淘汰）+ 条目存活时间；maxEntries/ttlMs 小于等于 0 表示不限
+ * 2. 删除/清空时通过回调广播失效消息，其他节点收到后删除本地副本；
+ *    时间戳区域（查询缓存用）额外广播写入，使其他节点的查询缓存在表更新后失效
+ * 3. 广播的键只支持 Integer/Long/String（SimpleCacheKeysFactory 下的实体主键），
+ *    其他类型的键（如自然键）在其他节点上清空整个区域
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public class InProcessRegionStorage implements DomainDataStorageAccess {
+
+    private static final char INT_KEY = 'I';
+    private static final char LONG_KEY = 'L';
+    private static final char STRING_KEY = 'S';
+    private static final char CLEAR = 'C';
+    private static final char TIMESTAMP = 'T';
+
+    private final String regionName;
+    private final long ttlMs;
+    private final boolean broadcastPuts;
+    private final BiConsumer<String, String> invalidationPublisher;
+    private final Map<Object, Entry> local;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong removals = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+
+    /**
+     * @param maxEntries            最大条数（小于等于 0 不限）
+     * @param ttlMs                 条目存活时间（毫秒，小于等于 0 不过期）
+     * @param broadcastPuts         写入是否广播（仅时间戳区域）
+     * @param invalidationPublisher 广播失效消息（区域名, 消息体）；为 null 时不广播
+     */
+    public InProcessRegionStorage(String regionName, int maxEntries, long ttlMs, boolean broadcastPuts,
+                                  BiConsumer<String, String> invalidationPublisher) {
+        this.regionName = regionName;
+        this.ttlMs = ttlMs;
+        this.broadcastPuts = broadcastPuts;
+        this.invalidationPublisher = invalidationPublisher;
+        this.local = new LinkedHashMap<Object, Entry>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (maxEntries > 0 && size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = getLocal(key);
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        putLocal(key, value);
+        puts.incrementAndGet();
+        if (broadcastPuts && key instanceof String && value instanceof Long) {
+            publish(TIMESTAMP + String.valueOf(value) + ":" + key);
+        }
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return getLocal(key) != null;
+    }
+
+    @Override
+    public void evictData() {
+        clearLocal();
+        publish(String.valueOf(CLEAR));
+    }
+
+    @Override
+    public void evictData(Object key) {
+        removals.incrementAndGet();
+        removeLocal(key);
+        publish(encodeKey(key));
+    }
+
+    @Override
+    public void release() {
+        clearLocal();
+    }
+
+    /**
+     * 收到其他节点的消息：只修改本地副本，不再广播
+     */
+    void applyRemote(String body) {
+        if (body.isEmpty()) {
+            return;
+        }
+        remoteInvalidations.incrementAndGet();
+        String payload = body.substring(1);
+        switch (body.charAt(0)) {
+            case INT_KEY:
+                removeLocal(Integer.valueOf(payload));
+                break;
+            case LONG_KEY:
+                removeLocal(Long.valueOf(payload));
+                break;
+            case STRING_KEY:
+                removeLocal(payload);
+                break;
+            case TIMESTAMP:
+                int separator = payload.indexOf(':');
+                putLocal(payload.substring(separator + 1), Long.valueOf(payload.substring(0, separator)));
+                break;
+            default:
+                clearLocal();
+        }
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getStats() {
+        long total = hits.get() + misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (local) {
+            stats.put("size", local.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? hits.get() * 100.0 / total : 0.0);
+        stats.put("puts", puts.get());
+        stats.put("removals", removals.get());
+        stats.put("evictions", evictions.get());
+        stats.put("remoteInvalidations", remoteInvalidations.get());
+        return stats;
+    }
+
+    /**
+     * 不支持的键类型编码为清空
+     */
+    private static String encodeKey(Object key) {
+        if (key instanceof Integer) {
+            return INT_KEY + key.toString();
+        }
+        if (key instanceof Long) {
+            return LONG_KEY + key.toString();
+        }
+        if (key instanceof String) {
+            return STRING_KEY + (String) key;
+        }
+        return String.valueOf(CLEAR);
+    }
+
+    private void publish(String body) {
+        if (invalidationPublisher != null) {
+            invalidationPublisher.accept(regionName, body);
+        }
+    }
+
+    private Object getLocal(Object key) {
+        synchronized (local) {
+            Entry entry = local.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt > 0 && System.currentTimeMillis() > entry.expiresAt) {
+                local.remove(key);
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void putLocal(Object key, Object value) {
+        long expiresAt = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : 0;
+        synchronized (local) {
+            local.put(key, new Entry(value, expiresAt));
+        }
+    }
+
+    private void removeLocal(Object key) {
+        synchronized (local) {
+            local.remove(key);
+        }
+    }
+
+    private void clearLocal() {
+        synchronized (local) {
+            local.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.cretas.aims.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.dao.DataAccessException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 两级缓存：进程内 L1 + Redis L2
+ *
+ * 1. 读：先查 L1（有界、按访问顺序淘汰、条目超过 ttl 失效），未命中再查 L2，L2 命中后回填 L1
+ * 2. 写/删除：同时写 L2 与 L1，并通过回调广播失效消息，其他节点收到后删除各自的 L1 副本
+ * 3. Redis 不可用时 L2 操作只记录日志，L1 继续提供服务
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+public class TieredCache implements Cache {
+
+    private final String name;
+    private final Cache redisCache;
+    private final long ttlMs;
+    private final Map<String, Entry> local;
+    private final BiConsumer<String, String> invalidationPublisher;
+
+    private final AtomicLong l1Hits = new AtomicLong();
+    private final AtomicLong l2Hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+    private final AtomicLong l2Errors = new AtomicLong();
+
+    /**
+     * @param redisCache            L2 缓存
+     * @param maxSize               L1 最大条数
+     * @param ttlMs                 L1 条目存活时间（毫秒）
+     * @param invalidationPublisher 广播失效消息（缓存名, 键；键为 null 表示清空）
+     */
+    public TieredCache(String name, Cache redisCache, int maxSize, long ttlMs,
+                       BiConsumer<String, String> invalidationPublisher) {
+        this.name = name;
+        this.redisCache = redisCache;
+        this.ttlMs = ttlMs;
+        this.invalidationPublisher = invalidationPublisher;
+        this.local = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        ValueWrapper wrapper = getLocal(localKey);
+        if (wrapper != null) {
+            l1Hits.incrementAndGet();
+            return wrapper;
+        }
+        try {
+            wrapper = redisCache.get(key);
+        } catch (DataAccessException e) {
+            l2Errors.incrementAndGet();
+            log.warn("读取Redis缓存失败，按未命中处理: cache={}, key={}, error={}", name, key, e.getMessage());
+            wrapper = null;
+        }
+        if (wrapper == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        l2Hits.incrementAndGet();
+        putLocal(localKey, wrapper.get());
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: cache=" + name + ", key=" + key
+                    + ", required=" + type.getName() + ", actual=" + value.getClass().getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        // 同一节点内同一缓存只加载一次（与 RedisCache 的 sync 语义一致）
+        synchronized (this) {
+            wrapper = getLocal(String.valueOf(key));
+            if (wrapper != null) {
+                return (T) wrapper.get();
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        try {
+            redisCache.put(key, value);
+        } catch (DataAccessException e) {
+            l2Errors.incrementAndGet();
+            log.warn("写入Redis缓存失败，仅保留本地缓存: cache={}, key={}, error={}", name, key, e.getMessage());
+        }
+        String localKey = String.valueOf(key);
+        putLocal(localKey, value);
+        puts.incrementAndGet();
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        try {
+            redisCache.evict(key);
+        } catch (DataAccessException e) {
+            l2Errors.incrementAndGet();
+            log.warn("删除Redis缓存失败: cache={}, key={}, error={}", name, key, e.getMessage());
+        }
+        String localKey = String.valueOf(key);
+        evictLocal(localKey);
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            redisCache.clear();
+        } catch (DataAccessException e) {
+            l2Errors.incrementAndGet();
+            log.warn("清空Redis缓存失败: cache={}, error={}", name, e.getMessage());
+        }
+        clearLocal();
+        invalidationPublisher.accept(name, null);
+    }
+
+    /**
+     * 收到其他节点的失效消息：只删除本地 L1（键为 null 时清空）
+     */
+    void invalidateLocal(String localKey) {
+        remoteInvalidations.incrementAndGet();
+        if (localKey == null) {
+            clearLocal();
+        } else {
+            evictLocal(localKey);
+        }
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getStats() {
+        long hits = l1Hits.get() + l2Hits.get();
+        long total = hits + misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (local) {
+            stats.put("l1Size", local.size());
+        }
+        stats.put("l1Hits", l1Hits.get());
+        stats.put("l2Hits", l2Hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? hits * 100.0 / total : 0.0);
+        stats.put("puts", puts.get());
+        stats.put("evictions", evictions.get());
+        stats.put("remoteInvalidations", remoteInvalidations.get());
+        stats.put("l2Errors", l2Errors.get());
+        return stats;
+    }
+
+    private ValueWrapper getLocal(String localKey) {
+        synchronized (local) {
+            Entry entry = local.get(localKey);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() > entry.expiresAt) {
+                local.remove(localKey);
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.wrapper;
+        }
+    }
+
+    private void putLocal(String localKey, Object value) {
+        synchronized (local) {
+            local.put(localKey, new Entry(new SimpleValueWrapper(value), System.currentTimeMillis() + ttlMs));
+        }
+    }
+
+    private void evictLocal(String localKey) {
+        synchronized (local) {
+            local.remove(localKey);
+        }
+    }
+
+    private void clearLocal() {
+        synchronized (local) {
+            local.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final ValueWrapper wrapper;
+        private final long expiresAt;
+
+        private Entry(ValueWrapper wrapper, long expiresAt) {
+            this.wrapper = wrapper;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
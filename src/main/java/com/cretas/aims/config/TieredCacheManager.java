@@ -0,0 +1,116 @@
+package com.cretas.aims.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 两级缓存管理器：为 L2（Redis）缓存管理器中的每个缓存包一层进程内 L1
+ *
+ * 写入/删除时向 invalidation channel 发布失效消息（节点ID、缓存名、键），
+ * 各节点订阅该频道并删除自己的 L1 副本，忽略本节点发出的消息。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+public class TieredCacheManager implements CacheManager, MessageListener {
+
+    /**
+     * 消息第三段：K 前缀加键表示删除单个键，C 表示清空整个缓存
+     */
+    private static final String KEY_PREFIX = "K";
+    private static final String CLEAR_MARKER = "C";
+
+    private final CacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final int l1MaxSize;
+    private final long l1TtlMs;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TieredCache> caches = new ConcurrentHashMap<>();
+
+    public TieredCacheManager(CacheManager redisCacheManager, StringRedisTemplate redisTemplate, String channel,
+                              int l1MaxSize, long l1TtlMs) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.l1MaxSize = l1MaxSize;
+        this.l1TtlMs = l1TtlMs;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TieredCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> new TieredCache(key, redisCache, l1MaxSize, l1TtlMs, this::publish));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(redisCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * 各缓存的命中/未命中/淘汰计数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.getStats()));
+        return stats;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 收到失效消息：nodeId \n cacheName \n (K键 | C)
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TieredCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            String body = parts[2];
+            cache.invalidateLocal(body.startsWith(KEY_PREFIX) ? body.substring(KEY_PREFIX.length()) : null);
+        }
+    }
+
+    private void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(channel,
+                    nodeId + "\n" + cacheName + "\n" + (key != null ? KEY_PREFIX + key : CLEAR_MARKER));
+        } catch (Exception e) {
+            // 其他节点的 L1 副本最多保留 L1 ttl
+            log.warn("发布缓存失效消息失败: cache={}, key={}, error={}", cacheName, key, e.getMessage());
+        }
+    }
+}
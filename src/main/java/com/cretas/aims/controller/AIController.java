@@ -14,8 +14,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
@@ -156,6 +158,86 @@ public class AIController {
         return ApiResponse.success(response);
     }
 
+    // ========== 流式分析接口（SSE） ==========
+
+    /**
+     * AI批次成本分析（流式）
+     *
+     * 与 /analysis/cost/batch 参数相同，以 text/event-stream 返回：
+     * - delta：AI输出的一段文本 {"delta": "..."}
+     * - done：最终结果（与非流式接口的 data 相同）
+     * - error：失败原因 {"message": "..."}
+     * 请求线程在准备好数据后立即释放，AI输出由异步线程推送。
+     */
+    @PostMapping(value = "/analysis/cost/batch/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "AI批次成本分析（流式）",
+               description = "SSE逐段返回AI分析文本，事件：delta/done/error")
+    public SseEmitter streamBatchCost(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @Valid @RequestBody @Parameter(description = "批次成本分析请求")
+            MobileDTO.AICostAnalysisRequest request,
+            HttpServletRequest httpRequest) {
+
+        String token = TokenUtils.extractToken(httpRequest.getHeader("Authorization"));
+        Long userId = (long) mobileService.getUserFromToken(token).getId();
+
+        log.info("AI批次成本分析(流式): factoryId={}, userId={}, batchId={}, question={}",
+                factoryId, userId, request.getBatchId(), request.getQuestion());
+
+        return aiEnterpriseService.streamBatchCost(factoryId, userId, request, httpRequest);
+    }
+
+    /**
+     * AI时间范围成本分析（流式）
+     */
+    @PostMapping(value = "/analysis/cost/time-range/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "AI时间范围成本分析（流式）",
+               description = "SSE逐段返回AI分析文本，事件：delta/done/error")
+    public SseEmitter streamTimeRangeCost(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @Valid @RequestBody @Parameter(description = "时间范围分析请求")
+            AIRequestDTO.TimeRangeAnalysisRequest request,
+            HttpServletRequest httpRequest) {
+
+        String token = TokenUtils.extractToken(httpRequest.getHeader("Authorization"));
+        Long userId = (long) mobileService.getUserFromToken(token).getId();
+
+        log.info("AI时间范围成本分析(流式): factoryId={}, userId={}, startDate={}, endDate={}",
+                factoryId, userId, request.getStartDate(), request.getEndDate());
+
+        return aiEnterpriseService.streamTimeRangeCost(
+                factoryId,
+                userId,
+                request.getStartDate().atStartOfDay(),
+                request.getEndDate().atTime(23, 59, 59),
+                request.getDimension(),
+                request.getQuestion(),
+                httpRequest
+        );
+    }
+
+    /**
+     * AI批次对比分析（流式）
+     */
+    @PostMapping(value = "/analysis/cost/compare/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "AI批次对比分析（流式）",
+               description = "SSE逐段返回AI分析文本，事件：delta/done/error")
+    public SseEmitter streamCompareBatchCosts(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @Valid @RequestBody @Parameter(description = "批次对比分析请求")
+            AIRequestDTO.ComparativeAnalysisRequest request,
+            HttpServletRequest httpRequest) {
+
+        String token = TokenUtils.extractToken(httpRequest.getHeader("Authorization"));
+        Long userId = (long) mobileService.getUserFromToken(token).getId();
+
+        log.info("AI批次对比分析(流式): factoryId={}, userId={}, batchIds={}",
+                factoryId, userId, request.getBatchIds());
+
+        return aiEnterpriseService.streamCompareBatchCosts(
+                factoryId, userId, request.getBatchIds(), request.getQuestion(), httpRequest);
+    }
+
     // ========== 配额管理接口 ==========
 
     /**
@@ -15,6 +15,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -308,12 +309,14 @@ public class CustomerController {
      */
     @GetMapping("/export")
     @Operation(summary = "导出客户列表")
-    public byte[] exportCustomerList(
+    public void exportCustomerList(
             @Parameter(description = "工厂ID", required = true)
-            @PathVariable @NotBlank String factoryId) {
-
-        log.info("导出客户列表: factoryId={}", factoryId);
-        return customerService.exportCustomerList(factoryId);
+            @PathVariable @NotBlank String factoryId,
+            @Parameter(description = "导出格式：xlsx（默认）/ csv")
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) {
+        log.info("导出客户列表: factoryId={}, format={}", factoryId, format);
+        customerService.exportCustomerList(factoryId, format, response);
     }
 
     /**
@@ -16,6 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -387,12 +388,14 @@ public class EquipmentController {
      */
     @GetMapping("/export")
     @Operation(summary = "导出设备列表")
-    public byte[] exportEquipmentList(
+    public void exportEquipmentList(
             @Parameter(description = "工厂ID", required = true)
-            @PathVariable @NotBlank String factoryId) {
-
-        log.info("导出设备列表: factoryId={}", factoryId);
-        return equipmentService.exportEquipmentList(factoryId);
+            @PathVariable @NotBlank String factoryId,
+            @Parameter(description = "导出格式：xlsx（默认）/ csv")
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) {
+        log.info("导出设备列表: factoryId={}, format={}", factoryId, format);
+        equipmentService.exportEquipmentList(factoryId, format, response);
     }
 
     /**
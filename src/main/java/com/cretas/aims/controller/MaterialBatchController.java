@@ -4,6 +4,7 @@ import com.cretas.aims.dto.common.ApiResponse;
 import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.material.CreateMaterialBatchRequest;
+import com.cretas.aims.dto.material.MaterialAllocationDTO;
 import com.cretas.aims.dto.material.MaterialBatchDTO;
 import com.cretas.aims.entity.enums.MaterialBatchStatus;
 import com.cretas.aims.service.MaterialBatchService;
@@ -17,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -172,6 +174,30 @@ public class MaterialBatchController {
         return ApiResponse.success(batches);
     }
 
+    /**
+     * 为生产计划分配多个批次（FIFO / FEFO）
+     */
+    @PostMapping("/allocate")
+    @Operation(summary = "为生产计划分配并预留多个批次（FIFO / FEFO）")
+    public ApiResponse<MaterialAllocationDTO> allocateBatches(
+            @Parameter(description = "工厂ID", required = true)
+            @PathVariable @NotBlank String factoryId,
+            @Parameter(description = "材料类型ID", required = true)
+            @RequestParam @NotNull Integer materialTypeId,
+            @Parameter(description = "需求数量", required = true)
+            @RequestParam @NotNull BigDecimal requiredQuantity,
+            @Parameter(description = "生产计划ID", required = true)
+            @RequestParam @NotNull Integer productionPlanId,
+            @Parameter(description = "分配策略：fifo（默认）/ fefo")
+            @RequestParam(defaultValue = "fifo") String strategy) {
+
+        log.info("分配原材料批次: factoryId={}, materialTypeId={}, quantity={}, planId={}, strategy={}",
+                factoryId, materialTypeId, requiredQuantity, productionPlanId, strategy);
+        MaterialAllocationDTO allocation = materialBatchService.allocateBatches(
+                factoryId, materialTypeId, requiredQuantity, productionPlanId, strategy);
+        return ApiResponse.success("批次分配成功", allocation);
+    }
+
     /**
      * 获取即将过期的批次
      */
@@ -408,16 +434,19 @@ public class MaterialBatchController {
      */
     @GetMapping("/export")
     @Operation(summary = "导出库存报表")
-    public byte[] exportInventoryReport(
+    public void exportInventoryReport(
             @Parameter(description = "工厂ID", required = true)
             @PathVariable @NotBlank String factoryId,
             @Parameter(description = "开始日期")
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @Parameter(description = "结束日期")
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @Parameter(description = "导出格式：xlsx（默认）/ csv")
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) {
 
-        log.info("导出库存报表: factoryId={}, startDate={}, endDate={}", factoryId, startDate, endDate);
-        return materialBatchService.exportInventoryReport(factoryId, startDate, endDate);
+        log.info("导出库存报表: factoryId={}, startDate={}, endDate={}, format={}", factoryId, startDate, endDate, format);
+        materialBatchService.exportInventoryReport(factoryId, startDate, endDate, format, response);
     }
 
     /**
@@ -7,6 +7,7 @@ import com.cretas.aims.dto.platform.FactoryDTO;
 import com.cretas.aims.dto.platform.PlatformAIUsageStatsDTO;
 import com.cretas.aims.dto.platform.UpdateAIQuotaRequest;
 import com.cretas.aims.dto.platform.UpdateFactoryRequest;
+import com.cretas.aims.service.AIReportScheduler;
 import com.cretas.aims.service.FactoryService;
 import com.cretas.aims.service.PlatformService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,11 +15,14 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +45,7 @@ public class PlatformController {
 
     private final PlatformService platformService;
     private final FactoryService factoryService;
+    private final AIReportScheduler aiReportScheduler;
 
     /**
      * 获取所有工厂的AI配额设置
@@ -89,6 +94,43 @@ public class PlatformController {
         return ApiResponse.success(stats);
     }
 
+    /**
+     * 补生成AI定时报告（异步执行，进度通过 /ai-reports/progress 查询）
+     */
+    @PostMapping("/ai-reports/resume")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "补生成AI定时报告",
+            description = "为指定周期补生成周/月报告，只处理该周期内未成功（失败、中断或新增）的工厂；" +
+                    "提交后立即返回，进度通过 /ai-reports/progress 查询（仅平台管理员）")
+    @PreAuthorize("hasAnyAuthority('super_admin', 'platform_admin')")
+    public ApiResponse<Map<String, Object>> resumeAIReports(
+            @RequestParam @Parameter(description = "报告类型: weekly / monthly") String reportType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "周期开始日期") LocalDate periodStart,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "周期结束日期") LocalDate periodEnd
+    ) {
+        log.info("API调用: 补生成AI报告 - type={}, period={} to {}", reportType, periodStart, periodEnd);
+
+        Map<String, Object> job = aiReportScheduler.resumeReports(reportType, periodStart, periodEnd);
+        return ApiResponse.success("补生成任务已提交", job);
+    }
+
+    /**
+     * 查询AI定时报告生成进度
+     */
+    @GetMapping("/ai-reports/progress")
+    @Operation(summary = "查询AI定时报告生成进度",
+            description = "按状态统计指定周期的工厂数：pending / running / success / failed（仅平台管理员）")
+    @PreAuthorize("hasAnyAuthority('super_admin', 'platform_admin')")
+    public ApiResponse<Map<String, Object>> getAIReportProgress(
+            @RequestParam @Parameter(description = "报告类型: weekly / monthly") String reportType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "周期开始日期") LocalDate periodStart
+    ) {
+        return ApiResponse.success(aiReportScheduler.getReportProgress(reportType, periodStart));
+    }
+
     // ==================== 工厂管理API ====================
 
     /**
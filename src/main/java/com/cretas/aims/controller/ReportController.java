@@ -43,6 +43,16 @@ public class ReportController {
         return ApiResponse.success(statistics);
     }
 
+    /**
+     * 获取仪表盘各统计模块耗时
+     */
+    @GetMapping("/dashboard/section-latency")
+    @Operation(summary = "获取仪表盘模块耗时", description = "获取仪表盘各统计模块的调用次数、平均/最大耗时及超时、失败次数")
+    public ApiResponse<Map<String, Map<String, Object>>> getDashboardSectionLatency(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId) {
+        return ApiResponse.success(reportService.getDashboardSectionLatency(factoryId));
+    }
+
     /**
      * 获取生产报表
      */
@@ -291,10 +301,6 @@ public class ReportController {
         log.info("导出Excel报表: factoryId={}, type={}, startDate={}, endDate={}",
                 factoryId, reportType, startDate, endDate);
 
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setHeader("Content-Disposition",
-                String.format("attachment; filename=\"report_%s_%s.xlsx\"", reportType, LocalDate.now()));
-
         reportService.exportReportAsExcel(factoryId, reportType, startDate, endDate, response);
     }
 
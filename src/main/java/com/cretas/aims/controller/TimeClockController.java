@@ -172,6 +172,25 @@ public class TimeClockController {
         return ApiResponse.success(statistics);
     }
 
+    /**
+     * 获取全部员工考勤汇总
+     */
+    @GetMapping("/statistics/employees")
+    @Operation(summary = "员工考勤汇总", description = "一次返回全部在职员工（可按部门过滤）的考勤统计")
+    public ApiResponse<Map<String, Object>> getEmployeeAttendanceStatistics(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @RequestParam(required = false) @Parameter(description = "部门") String department,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "开始日期") LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            @Parameter(description = "结束日期") LocalDate endDate) {
+        log.info("获取员工考勤汇总: factoryId={}, department={}, startDate={}, endDate={}",
+                factoryId, department, startDate, endDate);
+        Map<String, Object> statistics = timeClockService.getEmployeeAttendanceStatistics(
+                factoryId, department, startDate, endDate);
+        return ApiResponse.success(statistics);
+    }
+
     /**
      * 获取部门考勤
      */
@@ -198,19 +217,9 @@ public class TimeClockController {
             @Parameter(description = "开始日期") LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
             @Parameter(description = "结束日期") LocalDate endDate,
+            @RequestParam(defaultValue = "xlsx") @Parameter(description = "导出格式：xlsx（默认）/ csv") String format,
             HttpServletResponse response) {
-        log.info("导出考勤记录: factoryId={}, startDate={}, endDate={}", factoryId, startDate, endDate);
-
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setHeader("Content-Disposition",
-                String.format("attachment; filename=\"attendance_%s_%s.xlsx\"", startDate, endDate));
-
-        try {
-            byte[] data = timeClockService.exportAttendanceRecords(factoryId, startDate, endDate);
-            response.getOutputStream().write(data);
-            response.getOutputStream().flush();
-        } catch (Exception e) {
-            log.error("导出考勤记录失败", e);
-        }
+        log.info("导出考勤记录: factoryId={}, startDate={}, endDate={}, format={}", factoryId, startDate, endDate, format);
+        timeClockService.exportAttendanceRecords(factoryId, startDate, endDate, format, response);
     }
 }
\ No newline at end of file
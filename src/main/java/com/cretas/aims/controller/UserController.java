@@ -14,6 +14,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -230,10 +231,13 @@ public class UserController {
      */
     @GetMapping("/export")
     @Operation(summary = "导出用户列表")
-    public byte[] exportUsers(
+    public void exportUsers(
             @Parameter(description = "工厂ID", required = true)
-            @PathVariable @NotBlank String factoryId) {
-        log.info("导出用户列表: factoryId={}", factoryId);
-        return userService.exportUsers(factoryId);
+            @PathVariable @NotBlank String factoryId,
+            @Parameter(description = "导出格式：xlsx（默认）/ csv")
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) {
+        log.info("导出用户列表: factoryId={}, format={}", factoryId, format);
+        userService.exportUsers(factoryId, format, response);
     }
 }
\ No newline at end of file
@@ -12,9 +12,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.util.List;
 
@@ -225,7 +228,7 @@ public class WhitelistController {
     }
 
     @GetMapping("/export")
-    @Operation(summary = "导出白名单")
+    @Operation(summary = "导出白名单", description = "返回最新1000条CSV，全量导出请使用 /export/file")
     @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
     public ApiResponse<String> exportWhitelist(
             @PathVariable @Parameter(description = "工厂ID") String factoryId,
@@ -235,6 +238,18 @@ public class WhitelistController {
         return ApiResponse.success(csvData);
     }
 
+    @GetMapping("/export/file")
+    @Operation(summary = "导出白名单文件", description = "流式下载 xlsx / csv 文件")
+    @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
+    public void exportWhitelistFile(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @RequestParam(required = false) @Parameter(description = "状态筛选") String status,
+            @RequestParam(defaultValue = "xlsx") @Parameter(description = "导出格式：xlsx（默认）/ csv") String format,
+            HttpServletResponse response) {
+        log.info("导出白名单文件: factoryId={}, status={}, format={}", factoryId, status, format);
+        whitelistService.exportWhitelistFile(factoryId, status, format, response);
+    }
+
     @PostMapping("/import")
     @Operation(summary = "导入白名单")
     @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
@@ -246,6 +261,25 @@ public class WhitelistController {
         return ApiResponse.success(result);
     }
 
+    @PostMapping(value = "/import/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "上传CSV文件导入白名单", description = "后台分批导入，返回任务ID，通过进度接口查询结果")
+    @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
+    public ApiResponse<WhitelistDTO.ImportProgress> importWhitelistFile(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @RequestParam("file") @Parameter(description = "CSV文件") MultipartFile file) {
+        log.info("上传白名单导入文件: factoryId={}, fileName={}, size={}", factoryId, file.getOriginalFilename(), file.getSize());
+        return ApiResponse.success(whitelistService.submitImportJob(factoryId, file));
+    }
+
+    @GetMapping("/import/{jobId}")
+    @Operation(summary = "查询白名单导入进度")
+    @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
+    public ApiResponse<WhitelistDTO.ImportProgress> getImportProgress(
+            @PathVariable @Parameter(description = "工厂ID") String factoryId,
+            @PathVariable @Parameter(description = "任务ID") String jobId) {
+        return ApiResponse.success(whitelistService.getImportProgress(factoryId, jobId));
+    }
+
     @DeleteMapping("/cleanup")
     @Operation(summary = "清理已删除的记录")
     @PreAuthorize("hasAnyAuthority('super_admin', 'factory_admin', 'permission_admin')")
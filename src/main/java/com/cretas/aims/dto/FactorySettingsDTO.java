@@ -17,7 +17,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Schema(description = "工厂设置信息")
 public class FactorySettingsDTO {
 
@@ -110,7 +110,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class AISettings {
         @Schema(description = "是否启用", example = "true")
         private Boolean enabled;
@@ -140,7 +140,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class IndustryStandards {
         @Schema(description = "人工成本百分比", example = "30")
         private Integer laborCostPercentage;
@@ -158,7 +158,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class NotificationSettings {
         @Schema(description = "启用邮件通知", example = "true")
         private Boolean emailEnabled;
@@ -176,7 +176,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class WorkTimeSettings {
         @Schema(description = "开始时间", example = "08:00")
         private String startTime;
@@ -197,7 +197,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class ProductionSettings {
         @Schema(description = "默认批次大小", example = "100")
         private Integer defaultBatchSize;
@@ -215,7 +215,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class InventorySettings {
         @Schema(description = "最低库存预警", example = "100")
         private Integer minStockAlert;
@@ -233,7 +233,7 @@ public class FactorySettingsDTO {
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
-    @Builder
+    @Builder(toBuilder = true)
     public static class DataRetentionSettings {
         @Schema(description = "日志保留天数", example = "90")
         private Integer logRetentionDays;
@@ -198,6 +198,34 @@ public class WhitelistDTO {
         }
     }
 
+    /**
+     * 导入任务进度
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ImportProgress {
+        private String jobId;
+        private String factoryId;
+        /**
+         * RUNNING / COMPLETED / FAILED
+         */
+        private String status;
+        private Integer processedRows;
+        private Integer successCount;
+        private Integer failedCount;
+        private String errorMessage;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime startedAt;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime finishedAt;
+        /**
+         * 导入结果（任务完成后返回）
+         */
+        private BatchResult result;
+    }
+
     /**
      * 验证响应
      */
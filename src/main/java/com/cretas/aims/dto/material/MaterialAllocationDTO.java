@@ -0,0 +1,70 @@
+package com.cretas.aims.dto.material;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 原材料多批次分配结果
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "原材料多批次分配结果")
+public class MaterialAllocationDTO {
+
+    @Schema(description = "生产计划ID")
+    private Integer productionPlanId;
+
+    @Schema(description = "原材料类型ID")
+    private Integer materialTypeId;
+
+    @Schema(description = "分配策略：FIFO（先入先出）/ FEFO（先到期先出）")
+    private String strategy;
+
+    @Schema(description = "需求数量")
+    private BigDecimal requiredQuantity;
+
+    @Schema(description = "已分配（预留）数量")
+    private BigDecimal allocatedQuantity;
+
+    @Schema(description = "各批次分配明细，按分配顺序")
+    private List<BatchAllocation> allocations;
+
+    /**
+     * 单个批次的分配明细
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "批次分配明细")
+    public static class BatchAllocation {
+
+        @Schema(description = "批次ID")
+        private Integer batchId;
+
+        @Schema(description = "批次号")
+        private String batchNumber;
+
+        @Schema(description = "入库日期")
+        private LocalDate receiptDate;
+
+        @Schema(description = "到期日期")
+        private LocalDate expireDate;
+
+        @Schema(description = "本次预留数量")
+        private BigDecimal quantity;
+    }
+}
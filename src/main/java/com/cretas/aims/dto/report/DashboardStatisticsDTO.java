@@ -37,6 +37,8 @@ public class DashboardStatisticsDTO {
     private TrendStatistics trendStats;
     // 告警信息
     private List<AlertInfo> alerts;
+    // 超时或失败而使用降级数据的模块
+    private List<String> degradedSections;
 
     @Data
     @Builder
@@ -40,7 +40,9 @@ import javax.persistence.*;
 public class AIAuditLog extends BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "ai_audit_logs_id")
+    @TableGenerator(name = "ai_audit_logs_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "ai_audit_logs", allocationSize = 50)
     private Long id;
 
     /**
@@ -0,0 +1,102 @@
+package com.cretas.aims.entity;
+
+import com.cretas.aims.entity.enums.ReportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * AI定时报告生成任务实体 - 每个工厂每个报告周期一条
+ *
+ * 定时任务按本表状态执行：已成功的工厂跳过，失败或中断的工厂在再次运行同一周期时继续生成
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Entity
+@Table(name = "ai_report_jobs",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_report_job_period", columnNames = {"report_type", "period_start", "factory_id"})
+       },
+       indexes = {
+           @Index(name = "idx_report_job_status", columnList = "status")
+       })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AIReportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 工厂ID
+     */
+    @Column(name = "factory_id", nullable = false, length = 50)
+    private String factoryId;
+
+    /**
+     * 报告类型：weekly / monthly
+     */
+    @Column(name = "report_type", nullable = false, length = 20)
+    private String reportType;
+
+    /**
+     * 报告周期开始日期
+     */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    /**
+     * 报告周期结束日期
+     */
+    @Column(name = "period_end", nullable = false)
+    private LocalDate periodEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ReportJobStatus status;
+
+    /**
+     * 已尝试次数（累计，含之前运行的尝试）
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    /**
+     * 最近一次失败原因
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
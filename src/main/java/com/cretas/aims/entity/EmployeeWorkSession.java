@@ -24,6 +24,7 @@ import java.util.List;
            @Index(name = "idx_worksession_factory", columnList = "factory_id"),
            @Index(name = "idx_worksession_user", columnList = "user_id"),
            @Index(name = "idx_worksession_start", columnList = "start_time"),
+           @Index(name = "idx_worksession_factory_start", columnList = "factory_id, start_time"),
            @Index(name = "idx_worksession_status", columnList = "status")
        }
 )
@@ -1,6 +1,8 @@
 package com.cretas.aims.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,6 +19,8 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "entity.factory")
 @Table(name = "factories",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"name"})  // 工厂名称全局唯一
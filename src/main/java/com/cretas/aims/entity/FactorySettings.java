@@ -1,6 +1,8 @@
 package com.cretas.aims.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 /**
@@ -18,6 +20,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "entity.factorySettings")
 @Table(name = "factory_settings",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"factory_id"})
@@ -21,6 +21,7 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@org.hibernate.annotations.DynamicUpdate  // 只更新变更列，避免整行保存覆盖台账的原子数量更新
 @Table(name = "material_batches",
        indexes = {
            @Index(name = "idx_batch_factory", columnList = "factory_id"),
@@ -31,7 +32,9 @@ import java.util.List;
 )
 public class MaterialBatch extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "material_batches_id")
+    @TableGenerator(name = "material_batches_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "material_batches", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
     @Column(name = "factory_id", nullable = false)
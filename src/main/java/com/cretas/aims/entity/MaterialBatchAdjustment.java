@@ -25,7 +25,9 @@ import java.time.LocalDateTime;
 )
 public class MaterialBatchAdjustment extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "material_batch_adjustments_id")
+    @TableGenerator(name = "material_batch_adjustments_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "material_batch_adjustments", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
     @Column(name = "batch_id", nullable = false)
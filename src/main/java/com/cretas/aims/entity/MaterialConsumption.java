@@ -27,7 +27,9 @@ import java.time.LocalDateTime;
 )
 public class MaterialConsumption extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "material_consumptions_id")
+    @TableGenerator(name = "material_consumptions_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "material_consumptions", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
     @Column(name = "factory_id", nullable = false)
@@ -24,7 +24,9 @@ import java.math.BigDecimal;
 )
 public class ProductionPlanBatchUsage extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "production_plan_batch_usage_id")
+    @TableGenerator(name = "production_plan_batch_usage_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "production_plan_batch_usage", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
     @Column(name = "production_plan_id", nullable = false)
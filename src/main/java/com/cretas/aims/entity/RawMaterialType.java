@@ -1,6 +1,8 @@
 package com.cretas.aims.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -18,6 +20,8 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "entity.rawMaterialType")
 @Table(name = "raw_material_types",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"factory_id", "code"})
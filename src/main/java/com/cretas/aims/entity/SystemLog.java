@@ -27,7 +27,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class SystemLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "system_logs_id")
+    @TableGenerator(name = "system_logs_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "system_logs", allocationSize = 50)
     private Long id;
     /**
      * 工厂ID
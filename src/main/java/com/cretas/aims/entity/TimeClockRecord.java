@@ -20,6 +20,8 @@ import java.time.LocalDateTime;
        indexes = {
            @Index(name = "idx_clock_factory_user", columnList = "factory_id, user_id"),
            @Index(name = "idx_clock_date", columnList = "clock_date"),
+           @Index(name = "idx_clock_factory_date_stats",
+                  columnList = "factory_id, clock_date, user_id, attendance_status, work_duration_minutes, overtime_minutes"),
            @Index(name = "idx_clock_status", columnList = "status")
        }
 )
@@ -28,7 +30,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class TimeClockRecord {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "time_clock_records_id")
+    @TableGenerator(name = "time_clock_records_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "time_clock_records", allocationSize = 50)
     private Long id;
     /**
      * 工厂ID
@@ -3,6 +3,10 @@ package com.cretas.aims.entity;
 import com.cretas.aims.entity.enums.Department;
 import com.cretas.aims.entity.enums.FactoryUserRole;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -21,6 +25,9 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "entity.user")
+@NaturalIdCache(region = "naturalId.user")
 @Table(name = "users",
        uniqueConstraints = {
            @UniqueConstraint(columnNames = {"username"})  // 全局唯一：username不能重复
@@ -33,11 +40,15 @@ import java.util.List;
 )
 public class User extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+    @TableGenerator(name = "users_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "users", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
+    @NaturalId
     @Column(name = "factory_id", nullable = false)
     private String factoryId;
+    @NaturalId
     @Column(name = "username", nullable = false)
     private String username;
     @Column(name = "password_hash", nullable = false)
@@ -32,7 +32,9 @@ import java.time.LocalDateTime;
 )
 public class Whitelist extends BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "whitelist_id")
+    @TableGenerator(name = "whitelist_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "whitelist", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Integer id;
 
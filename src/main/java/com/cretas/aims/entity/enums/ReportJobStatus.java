@@ -0,0 +1,40 @@
+package com.cretas.aims.entity.enums;
+
+/**
+ * AI定时报告生成任务状态枚举
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public enum ReportJobStatus {
+    /**
+     * 待生成
+     */
+    PENDING("待生成"),
+
+    /**
+     * 生成中
+     */
+    RUNNING("生成中"),
+
+    /**
+     * 已生成
+     */
+    SUCCESS("已生成"),
+
+    /**
+     * 重试后仍失败，等待补生成
+     */
+    FAILED("生成失败");
+
+    private final String description;
+
+    ReportJobStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
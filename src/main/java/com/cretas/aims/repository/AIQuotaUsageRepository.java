@@ -4,13 +4,17 @@ import com.cretas.aims.entity.AIQuotaUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
 /**
  * AI配额使用数据访问接口
  *
@@ -42,6 +46,40 @@ public interface AIQuotaUsageRepository extends JpaRepository<AIQuotaUsage, Long
     List<AIQuotaUsage> findByFactoryIdAndWeekStartBetween(
             String factoryId, LocalDate startWeek, LocalDate endWeek);
 
+    /**
+     * 创建工厂本周配额记录（已存在时不做任何修改，并发创建不会产生重复记录）
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "ai_quota_usage"))
+    @Query(value = "INSERT INTO ai_quota_usage (factory_id, week_start, used_count, quota_limit, created_at, updated_at) " +
+           "VALUES (:factoryId, :weekStart, 0, :quotaLimit, NOW(), NOW()) " +
+           "ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("factoryId") String factoryId,
+                       @Param("weekStart") LocalDate weekStart,
+                       @Param("quotaLimit") Integer quotaLimit);
+
+    /**
+     * 预占配额：仅当占用后不超过上限时才累加，返回0表示配额不足
+     */
+    @Modifying
+    @Query("UPDATE AIQuotaUsage q SET q.usedCount = q.usedCount + :count " +
+           "WHERE q.factoryId = :factoryId AND q.weekStart = :weekStart " +
+           "AND q.usedCount + :count <= q.quotaLimit")
+    int reserveIfAvailable(@Param("factoryId") String factoryId,
+                           @Param("weekStart") LocalDate weekStart,
+                           @Param("count") Integer count);
+
+    /**
+     * 退还预占的配额（不会减到0以下）
+     */
+    @Modifying
+    @Query("UPDATE AIQuotaUsage q SET q.usedCount = " +
+           "CASE WHEN q.usedCount > :count THEN (q.usedCount - :count) ELSE 0 END " +
+           "WHERE q.factoryId = :factoryId AND q.weekStart = :weekStart")
+    int refundUsedCount(@Param("factoryId") String factoryId,
+                        @Param("weekStart") LocalDate weekStart,
+                        @Param("count") Integer count);
+
     /**
      * 增加配额使用次数
      */
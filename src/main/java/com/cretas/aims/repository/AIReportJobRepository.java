@@ -0,0 +1,73 @@
+package com.cretas.aims.repository;
+
+import com.cretas.aims.entity.AIReportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * AI定时报告生成任务数据访问接口
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Repository
+public interface AIReportJobRepository extends JpaRepository<AIReportJob, Long> {
+
+    /**
+     * 查找指定报告周期的全部任务
+     */
+    List<AIReportJob> findByReportTypeAndPeriodStart(String reportType, LocalDate periodStart);
+
+    /**
+     * 统计指定报告周期各状态的任务数
+     */
+    @Query("SELECT j.status, COUNT(j) FROM AIReportJob j " +
+           "WHERE j.reportType = :reportType AND j.periodStart = :periodStart " +
+           "GROUP BY j.status")
+    List<Object[]> countByStatus(@Param("reportType") String reportType,
+                                 @Param("periodStart") LocalDate periodStart);
+
+    /**
+     * 登记工厂本周期的任务（已存在时不做任何修改，多次运行或多个节点同时登记不会违反唯一约束）
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "ai_report_jobs"))
+    @Query(value = "INSERT INTO ai_report_jobs (factory_id, report_type, period_start, period_end, status, attempts, " +
+           "created_at, updated_at) " +
+           "VALUES (:factoryId, :reportType, :periodStart, :periodEnd, 'PENDING', 0, NOW(), NOW()) " +
+           "ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("factoryId") String factoryId,
+                       @Param("reportType") String reportType,
+                       @Param("periodStart") LocalDate periodStart,
+                       @Param("periodEnd") LocalDate periodEnd);
+
+    /**
+     * 领取任务：只有待生成、失败，或开始时间早于 staleBefore 的生成中任务（上次运行中断）可以领取
+     *
+     * @return 1 表示领取成功；0 表示已被其他运行领取或已生成
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE AIReportJob j SET j.status = com.cretas.aims.entity.enums.ReportJobStatus.RUNNING, " +
+           "j.startedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND (j.status IN (com.cretas.aims.entity.enums.ReportJobStatus.PENDING, " +
+           "com.cretas.aims.entity.enums.ReportJobStatus.FAILED) " +
+           "OR (j.status = com.cretas.aims.entity.enums.ReportJobStatus.RUNNING AND j.startedAt < :staleBefore))")
+    int claim(@Param("id") Long id,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -49,4 +50,15 @@ public interface BatchWorkSessionRepository extends JpaRepository<BatchWorkSessi
      */
     @Query("SELECT SUM(bws.workMinutes) FROM BatchWorkSession bws WHERE bws.batchId = :batchId")
     Integer calculateTotalWorkMinutesByBatch(@Param("batchId") Integer batchId);
+
+    /**
+     * 时间统计：按工种、批次聚合时间段内的批次工时（工种ID、批次ID、批次数量、工作分钟）
+     */
+    @Query("SELECT ws.workTypeId, bws.batchId, b.quantity, COALESCE(SUM(bws.workMinutes), 0) " +
+           "FROM BatchWorkSession bws JOIN bws.workSession ws JOIN bws.batch b " +
+           "WHERE ws.factoryId = :factoryId AND ws.startTime >= :start AND ws.startTime < :end " +
+           "GROUP BY ws.workTypeId, bws.batchId, b.quantity")
+    List<Object[]> aggregateByWorkTypeAndBatch(@Param("factoryId") String factoryId,
+                                               @Param("start") LocalDateTime start,
+                                               @Param("end") LocalDateTime end);
 }
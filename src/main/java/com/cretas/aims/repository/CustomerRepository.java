@@ -5,12 +5,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 客户数据访问接口
@@ -152,4 +157,11 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
     @Query("SELECT c.industry, COUNT(c) FROM Customer c WHERE c.factoryId = :factoryId " +
            "GROUP BY c.industry")
     List<Object[]> countByIndustry(@Param("factoryId") String factoryId);
+
+    /**
+     * 导出用：按工厂流式读取客户（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT c FROM Customer c WHERE c.factoryId = :factoryId ORDER BY c.id")
+    Stream<Customer> streamByFactoryId(@Param("factoryId") String factoryId);
 }
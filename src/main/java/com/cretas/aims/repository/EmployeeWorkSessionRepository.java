@@ -0,0 +1,39 @@
+package com.cretas.aims.repository;
+
+import com.cretas.aims.entity.EmployeeWorkSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 员工工作会话数据访问接口
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Repository
+public interface EmployeeWorkSessionRepository extends JpaRepository<EmployeeWorkSession, Integer> {
+
+    /**
+     * 时间统计：按工种聚合时间段内开始的工作会话（工种ID、员工人数、实际工作分钟）
+     */
+    @Query("SELECT s.workTypeId, COUNT(DISTINCT s.userId), COALESCE(SUM(s.actualWorkMinutes), 0) " +
+           "FROM EmployeeWorkSession s WHERE s.factoryId = :factoryId " +
+           "AND s.startTime >= :start AND s.startTime < :end GROUP BY s.workTypeId")
+    List<Object[]> aggregateByWorkType(@Param("factoryId") String factoryId,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+
+    /**
+     * 时间段内参与工作会话的员工人数
+     */
+    @Query("SELECT COUNT(DISTINCT s.userId) FROM EmployeeWorkSession s WHERE s.factoryId = :factoryId " +
+           "AND s.startTime >= :start AND s.startTime < :end")
+    long countDistinctWorkers(@Param("factoryId") String factoryId,
+                              @Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end);
+}
@@ -5,13 +5,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 设备数据访问接口
@@ -142,4 +147,11 @@ public interface EquipmentRepository extends JpaRepository<FactoryEquipment, Int
            "AND e.lastMaintenanceDate < :date")
     List<FactoryEquipment> findMaintenanceDue(@Param("factoryId") String factoryId,
                                               @Param("date") LocalDate date);
+
+    /**
+     * 导出用：按工厂流式读取设备（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT e FROM FactoryEquipment e WHERE e.factoryId = :factoryId ORDER BY e.id")
+    Stream<FactoryEquipment> streamByFactoryId(@Param("factoryId") String factoryId);
 }
@@ -4,6 +4,7 @@ import com.cretas.aims.entity.EquipmentUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 /**
  * 设备使用记录数据访问接口
@@ -22,6 +23,10 @@ public interface EquipmentUsageRepository extends JpaRepository<EquipmentUsage,
      * 根据生产批次ID查找使用记录
       */
     List<EquipmentUsage> findByProductionBatchId(Long productionBatchId);
+     /**
+     * 批量查找多个生产批次的使用记录
+      */
+    List<EquipmentUsage> findByProductionBatchIdIn(Collection<Long> productionBatchIds);
      /**
      * 根据设备ID和开始时间查找使用记录
       */
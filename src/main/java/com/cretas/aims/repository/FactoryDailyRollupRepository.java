@@ -0,0 +1,247 @@
+package com.cretas.aims.repository;
+
+import com.cretas.aims.entity.FactoryDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * 工厂每日汇总数据访问接口
+ *
+ * 增量方法使用 INSERT ... ON DUPLICATE KEY UPDATE 原子累加，
+ * 对账方法使用 INSERT ... SELECT 按原始表整体重算指定日期
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Repository
+public interface FactoryDailyRollupRepository extends JpaRepository<FactoryDailyRollup, Long> {
+
+    /**
+     * 查找工厂指定日期范围的每日汇总（按日期升序）
+     */
+    List<FactoryDailyRollup> findByFactoryIdAndRollupDateBetweenOrderByRollupDateAsc(
+            String factoryId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 汇总工厂指定日期范围
+     * 行格式：[完工批次数, 产量, 良品数, 不良数, 计划量, 原材料成本, 人工成本, 设备成本, 其他成本, 总成本,
+     *          消耗量, 消耗成本, 质检次数, 质检合格次数, 抽样数, 抽样合格数,
+     *          出勤人次, 迟到人次, 早退人次, 工作分钟, 加班分钟]
+     */
+    @Query("SELECT COALESCE(SUM(r.completedBatches), 0), COALESCE(SUM(r.outputQuantity), 0), " +
+           "COALESCE(SUM(r.goodQuantity), 0), COALESCE(SUM(r.defectQuantity), 0), COALESCE(SUM(r.plannedQuantity), 0), " +
+           "COALESCE(SUM(r.materialCost), 0), COALESCE(SUM(r.laborCost), 0), " +
+           "COALESCE(SUM(r.equipmentCost), 0), COALESCE(SUM(r.otherCost), 0), COALESCE(SUM(r.totalCost), 0), " +
+           "COALESCE(SUM(r.consumedQuantity), 0), COALESCE(SUM(r.consumedCost), 0), " +
+           "COALESCE(SUM(r.inspectionCount), 0), COALESCE(SUM(r.inspectionPassCount), 0), " +
+           "COALESCE(SUM(r.sampleSize), 0), COALESCE(SUM(r.samplePassCount), 0), " +
+           "COALESCE(SUM(r.attendanceCount), 0), COALESCE(SUM(r.lateCount), 0), COALESCE(SUM(r.earlyLeaveCount), 0), " +
+           "COALESCE(SUM(r.workMinutes), 0), COALESCE(SUM(r.overtimeMinutes), 0) " +
+           "FROM FactoryDailyRollup r WHERE r.factoryId = :factoryId " +
+           "AND r.rollupDate >= :startDate AND r.rollupDate <= :endDate")
+    List<Object[]> summarize(@Param("factoryId") String factoryId,
+                             @Param("startDate") LocalDate startDate,
+                             @Param("endDate") LocalDate endDate);
+
+    // ==================== 增量累加 ====================
+
+    /**
+     * 累加一个完工批次
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, completed_batches, output_quantity, " +
+           "good_quantity, defect_quantity, planned_quantity, material_cost, labor_cost, equipment_cost, other_cost, " +
+           "total_cost, updated_at) " +
+           "VALUES (:factoryId, :date, 1, :output, :good, :defect, :planned, :materialCost, :laborCost, " +
+           ":equipmentCost, :otherCost, :totalCost, NOW()) " +
+           "ON DUPLICATE KEY UPDATE completed_batches = completed_batches + 1, " +
+           "output_quantity = output_quantity + VALUES(output_quantity), " +
+           "good_quantity = good_quantity + VALUES(good_quantity), " +
+           "defect_quantity = defect_quantity + VALUES(defect_quantity), " +
+           "planned_quantity = planned_quantity + VALUES(planned_quantity), " +
+           "material_cost = material_cost + VALUES(material_cost), " +
+           "labor_cost = labor_cost + VALUES(labor_cost), " +
+           "equipment_cost = equipment_cost + VALUES(equipment_cost), " +
+           "other_cost = other_cost + VALUES(other_cost), " +
+           "total_cost = total_cost + VALUES(total_cost), updated_at = NOW()",
+           nativeQuery = true)
+    int addCompletedBatch(@Param("factoryId") String factoryId,
+                          @Param("date") LocalDate date,
+                          @Param("output") BigDecimal output,
+                          @Param("good") BigDecimal good,
+                          @Param("defect") BigDecimal defect,
+                          @Param("planned") BigDecimal planned,
+                          @Param("materialCost") BigDecimal materialCost,
+                          @Param("laborCost") BigDecimal laborCost,
+                          @Param("equipmentCost") BigDecimal equipmentCost,
+                          @Param("otherCost") BigDecimal otherCost,
+                          @Param("totalCost") BigDecimal totalCost);
+
+    /**
+     * 累加原材料消耗
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, consumed_quantity, consumed_cost, updated_at) " +
+           "VALUES (:factoryId, :date, :quantity, :cost, NOW()) " +
+           "ON DUPLICATE KEY UPDATE consumed_quantity = consumed_quantity + VALUES(consumed_quantity), " +
+           "consumed_cost = consumed_cost + VALUES(consumed_cost), updated_at = NOW()",
+           nativeQuery = true)
+    int addConsumption(@Param("factoryId") String factoryId,
+                       @Param("date") LocalDate date,
+                       @Param("quantity") BigDecimal quantity,
+                       @Param("cost") BigDecimal cost);
+
+    /**
+     * 累加一次质检
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, inspection_count, inspection_pass_count, " +
+           "sample_size, sample_pass_count, updated_at) " +
+           "VALUES (:factoryId, :date, 1, :passed, :sampleSize, :passCount, NOW()) " +
+           "ON DUPLICATE KEY UPDATE inspection_count = inspection_count + 1, " +
+           "inspection_pass_count = inspection_pass_count + VALUES(inspection_pass_count), " +
+           "sample_size = sample_size + VALUES(sample_size), " +
+           "sample_pass_count = sample_pass_count + VALUES(sample_pass_count), updated_at = NOW()",
+           nativeQuery = true)
+    int addInspection(@Param("factoryId") String factoryId,
+                      @Param("date") LocalDate date,
+                      @Param("passed") int passed,
+                      @Param("sampleSize") BigDecimal sampleSize,
+                      @Param("passCount") BigDecimal passCount);
+
+    /**
+     * 累加一次下班打卡
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, attendance_count, late_count, " +
+           "early_leave_count, work_minutes, overtime_minutes, updated_at) " +
+           "VALUES (:factoryId, :date, 1, :late, :earlyLeave, :workMinutes, :overtimeMinutes, NOW()) " +
+           "ON DUPLICATE KEY UPDATE attendance_count = attendance_count + 1, " +
+           "late_count = late_count + VALUES(late_count), " +
+           "early_leave_count = early_leave_count + VALUES(early_leave_count), " +
+           "work_minutes = work_minutes + VALUES(work_minutes), " +
+           "overtime_minutes = overtime_minutes + VALUES(overtime_minutes), updated_at = NOW()",
+           nativeQuery = true)
+    int addAttendance(@Param("factoryId") String factoryId,
+                      @Param("date") LocalDate date,
+                      @Param("late") int late,
+                      @Param("earlyLeave") int earlyLeave,
+                      @Param("workMinutes") long workMinutes,
+                      @Param("overtimeMinutes") long overtimeMinutes);
+
+    // ==================== 对账重算 ====================
+
+    /**
+     * 清零指定日期的所有计数器（对账第一步）
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "UPDATE factory_daily_rollup SET completed_batches = 0, output_quantity = 0, good_quantity = 0, " +
+           "defect_quantity = 0, planned_quantity = 0, material_cost = 0, labor_cost = 0, equipment_cost = 0, " +
+           "other_cost = 0, total_cost = 0, consumed_quantity = 0, consumed_cost = 0, inspection_count = 0, " +
+           "inspection_pass_count = 0, sample_size = 0, sample_pass_count = 0, attendance_count = 0, late_count = 0, " +
+           "early_leave_count = 0, work_minutes = 0, overtime_minutes = 0, reconciled_at = :now, updated_at = :now " +
+           "WHERE rollup_date = :date",
+           nativeQuery = true)
+    int resetDay(@Param("date") LocalDate date, @Param("now") LocalDateTime now);
+
+    /**
+     * 按生产批次表重算指定日期的生产与成本
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, completed_batches, output_quantity, " +
+           "good_quantity, defect_quantity, planned_quantity, material_cost, labor_cost, equipment_cost, other_cost, " +
+           "total_cost, reconciled_at, updated_at) " +
+           "SELECT b.factory_id, :date, COUNT(*), COALESCE(SUM(b.actual_quantity), 0), " +
+           "COALESCE(SUM(b.good_quantity), 0), COALESCE(SUM(b.defect_quantity), 0), " +
+           "COALESCE(SUM(b.planned_quantity), 0), COALESCE(SUM(b.material_cost), 0), " +
+           "COALESCE(SUM(b.labor_cost), 0), COALESCE(SUM(b.equipment_cost), 0), COALESCE(SUM(b.other_cost), 0), " +
+           "COALESCE(SUM(b.total_cost), 0), :now, :now " +
+           "FROM production_batches b WHERE b.status = 'COMPLETED' AND b.deleted_at IS NULL " +
+           "AND b.end_time >= :start AND b.end_time < :end GROUP BY b.factory_id " +
+           "ON DUPLICATE KEY UPDATE completed_batches = VALUES(completed_batches), " +
+           "output_quantity = VALUES(output_quantity), good_quantity = VALUES(good_quantity), " +
+           "defect_quantity = VALUES(defect_quantity), planned_quantity = VALUES(planned_quantity), " +
+           "material_cost = VALUES(material_cost), labor_cost = VALUES(labor_cost), " +
+           "equipment_cost = VALUES(equipment_cost), other_cost = VALUES(other_cost), " +
+           "total_cost = VALUES(total_cost), reconciled_at = :now, updated_at = :now",
+           nativeQuery = true)
+    int reconcileProduction(@Param("date") LocalDate date,
+                            @Param("start") LocalDateTime start,
+                            @Param("end") LocalDateTime end,
+                            @Param("now") LocalDateTime now);
+
+    /**
+     * 按原材料消耗表重算指定日期的消耗
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, consumed_quantity, consumed_cost, " +
+           "reconciled_at, updated_at) " +
+           "SELECT mb.factory_id, :date, COALESCE(SUM(mc.quantity), 0), " +
+           "COALESCE(SUM(mc.quantity * COALESCE(mb.unit_price, 0)), 0), :now, :now " +
+           "FROM material_consumptions mc JOIN material_batches mb ON mc.batch_id = mb.id " +
+           "WHERE mc.deleted_at IS NULL AND mc.consumed_at >= :start AND mc.consumed_at < :end " +
+           "GROUP BY mb.factory_id " +
+           "ON DUPLICATE KEY UPDATE consumed_quantity = VALUES(consumed_quantity), " +
+           "consumed_cost = VALUES(consumed_cost), reconciled_at = :now, updated_at = :now",
+           nativeQuery = true)
+    int reconcileConsumption(@Param("date") LocalDate date,
+                             @Param("start") LocalDateTime start,
+                             @Param("end") LocalDateTime end,
+                             @Param("now") LocalDateTime now);
+
+    /**
+     * 按质检表重算指定日期的质检
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, inspection_count, inspection_pass_count, " +
+           "sample_size, sample_pass_count, reconciled_at, updated_at) " +
+           "SELECT q.factory_id, :date, COUNT(*), SUM(CASE WHEN q.result = 'PASS' THEN 1 ELSE 0 END), " +
+           "COALESCE(SUM(q.sample_size), 0), COALESCE(SUM(q.pass_count), 0), :now, :now " +
+           "FROM quality_inspections q WHERE q.deleted_at IS NULL AND q.inspection_date = :date " +
+           "GROUP BY q.factory_id " +
+           "ON DUPLICATE KEY UPDATE inspection_count = VALUES(inspection_count), " +
+           "inspection_pass_count = VALUES(inspection_pass_count), sample_size = VALUES(sample_size), " +
+           "sample_pass_count = VALUES(sample_pass_count), reconciled_at = :now, updated_at = :now",
+           nativeQuery = true)
+    int reconcileInspections(@Param("date") LocalDate date, @Param("now") LocalDateTime now);
+
+    /**
+     * 按考勤表重算指定日期的考勤（仅统计已下班打卡的记录）
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "factory_daily_rollup"))
+    @Query(value = "INSERT INTO factory_daily_rollup (factory_id, rollup_date, attendance_count, late_count, " +
+           "early_leave_count, work_minutes, overtime_minutes, reconciled_at, updated_at) " +
+           "SELECT t.factory_id, :date, COUNT(*), " +
+           "SUM(CASE WHEN t.attendance_status IN ('LATE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendance_status IN ('EARLY_LEAVE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END), " +
+           "COALESCE(SUM(t.work_duration_minutes), 0), COALESCE(SUM(t.overtime_minutes), 0), :now, :now " +
+           "FROM time_clock_records t WHERE t.clock_date = :date AND t.clock_out_time IS NOT NULL " +
+           "GROUP BY t.factory_id " +
+           "ON DUPLICATE KEY UPDATE attendance_count = VALUES(attendance_count), late_count = VALUES(late_count), " +
+           "early_leave_count = VALUES(early_leave_count), work_minutes = VALUES(work_minutes), " +
+           "overtime_minutes = VALUES(overtime_minutes), reconciled_at = :now, updated_at = :now",
+           nativeQuery = true)
+    int reconcileAttendance(@Param("date") LocalDate date, @Param("now") LocalDateTime now);
+}
@@ -5,10 +5,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 /**
  * 工厂数据访问接口
  *
@@ -25,7 +29,13 @@ public interface FactoryRepository extends JpaRepository<Factory, String> {
      /**
      * 查找所有激活的工厂
       */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     List<Factory> findByIsActiveTrue();
+     /**
+     * 查找所有激活工厂的ID
+      */
+    @Query("SELECT f.id FROM Factory f WHERE f.isActive = true")
+    List<String> findActiveFactoryIds();
      /**
      * 根据行业代码查找工厂
       */
@@ -3,9 +3,13 @@ package com.cretas.aims.repository;
 import com.cretas.aims.entity.FactorySettings;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.QueryHint;
 import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 /**
  * 工厂设置数据访问接口
  *
@@ -18,6 +22,7 @@ public interface FactorySettingsRepository extends JpaRepository<FactorySettings
     /**
      * 根据工厂ID查找设置
      */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Optional<FactorySettings> findByFactoryId(String factoryId);
      /**
      * 检查工厂设置是否存在
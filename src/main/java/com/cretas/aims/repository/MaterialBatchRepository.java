@@ -5,14 +5,22 @@ import com.cretas.aims.entity.enums.MaterialBatchStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
 
 /**
  * 原材料批次数据访问接口
@@ -50,6 +58,23 @@ public interface MaterialBatchRepository extends JpaRepository<MaterialBatch, In
     List<MaterialBatch> findAvailableBatchesFIFO(@Param("factoryId") String factoryId,
                                                   @Param("materialTypeId") Integer materialTypeId);
 
+    /**
+     * 分配用：可分配批次的标量投影（id, 批次号, 入库日期, 到期日期, 剩余数量），按 FIFO 排序，排除已过期批次
+     * 返回标量而非实体，重复查询时总能读到最新剩余量（不受持久化上下文中旧实体影响）
+     */
+    @Query("SELECT m.id, m.batchNumber, m.receiptDate, m.expireDate, " +
+           "(m.receiptQuantity - m.usedQuantity - m.reservedQuantity) FROM MaterialBatch m " +
+           "WHERE m.factoryId = :factoryId " +
+           "AND m.materialTypeId = :materialTypeId " +
+           "AND m.status = :status " +
+           "AND (m.receiptQuantity - m.usedQuantity - m.reservedQuantity) > 0 " +
+           "AND (m.expireDate IS NULL OR m.expireDate >= :today) " +
+           "ORDER BY m.receiptDate ASC, m.id ASC")
+    List<Object[]> findAllocatableBatches(@Param("factoryId") String factoryId,
+                                          @Param("materialTypeId") Integer materialTypeId,
+                                          @Param("status") MaterialBatchStatus status,
+                                          @Param("today") LocalDate today);
+
     /**
      * 查找即将过期的批次
      */
@@ -101,6 +126,12 @@ public interface MaterialBatchRepository extends JpaRepository<MaterialBatch, In
      */
     boolean existsByBatchNumber(String batchNumber);
 
+    /**
+     * 批量检查：返回以给定前缀开头的已存在批次号（用于批量生成唯一批次号）
+     */
+    @Query("SELECT m.batchNumber FROM MaterialBatch m WHERE m.batchNumber LIKE CONCAT(:prefix, '%')")
+    List<String> findBatchNumbersStartingWith(@Param("prefix") String prefix);
+
     /**
      * 查找指定工厂即将过期的批次（带状态）
      */
@@ -181,4 +212,121 @@ public interface MaterialBatchRepository extends JpaRepository<MaterialBatch, In
            "AND m.status = 'AVAILABLE'")
     List<MaterialBatch> findExpiringSoon(@Param("factoryId") String factoryId,
                                          @Param("warningDate") LocalDate warningDate);
+
+    /**
+     * 导出用：按工厂和入库日期范围（可为空）流式读取批次，同时抓取原材料类型和供应商（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT m FROM MaterialBatch m LEFT JOIN FETCH m.materialType LEFT JOIN FETCH m.supplier " +
+           "WHERE m.factoryId = :factoryId " +
+           "AND (:startDate IS NULL OR m.receiptDate >= :startDate) " +
+           "AND (:endDate IS NULL OR m.receiptDate <= :endDate) " +
+           "ORDER BY m.receiptDate, m.id")
+    Stream<MaterialBatch> streamInventory(@Param("factoryId") String factoryId,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate);
+
+    // ==================== 库存台账原子更新（InventoryLedgerService 使用） ====================
+    // MySQL 单表 UPDATE 按从左到右的顺序赋值，后面的表达式看到的是已更新的列值，
+    // 因此 status 放在数量列之前赋值，基于更新前的数量判断
+    // HINT_NATIVE_SPACES 声明写入的表，Hibernate 只失效相关的二级缓存/查询缓存，而不是全部清空
+
+    /**
+     * 直接消耗可用库存：仅当 剩余 >= 数量 时扣减，耗尽时标记为 USED_UP
+     *
+     * @return 更新行数（0 表示批次不存在、不属于该工厂或剩余不足）
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "status = CASE WHEN receipt_quantity - used_quantity - reserved_quantity - :qty <= 0 THEN 'USED_UP' ELSE status END, " +
+           "used_quantity = used_quantity + :qty, last_used_at = :now, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL " +
+           "AND receipt_quantity - used_quantity - reserved_quantity >= :qty",
+           nativeQuery = true)
+    int consumeAvailable(@Param("factoryId") String factoryId,
+                         @Param("id") Integer id,
+                         @Param("qty") BigDecimal qty,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * 预留库存：仅当 剩余 >= 数量 时增加预留量，剩余为 0 时标记为 DEPLETED
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "status = CASE WHEN receipt_quantity - used_quantity - reserved_quantity - :qty <= 0 THEN 'DEPLETED' ELSE status END, " +
+           "reserved_quantity = reserved_quantity + :qty, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL " +
+           "AND receipt_quantity - used_quantity - reserved_quantity >= :qty",
+           nativeQuery = true)
+    int reserve(@Param("factoryId") String factoryId,
+                @Param("id") Integer id,
+                @Param("qty") BigDecimal qty,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * 释放预留：仅当 预留量 >= 数量 时扣减预留量，DEPLETED 批次恢复为 AVAILABLE
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "status = CASE WHEN status = 'DEPLETED' AND receipt_quantity - used_quantity - reserved_quantity + :qty > 0 " +
+           "THEN 'AVAILABLE' ELSE status END, " +
+           "reserved_quantity = reserved_quantity - :qty, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL " +
+           "AND reserved_quantity >= :qty",
+           nativeQuery = true)
+    int releaseReservation(@Param("factoryId") String factoryId,
+                           @Param("id") Integer id,
+                           @Param("qty") BigDecimal qty,
+                           @Param("now") LocalDateTime now);
+
+    /**
+     * 消耗预留：仅当 预留量 >= 数量 时把预留量转为已使用量，预留和剩余都为 0 时标记为 DEPLETED
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "status = CASE WHEN reserved_quantity - :qty = 0 AND receipt_quantity - used_quantity - reserved_quantity = 0 " +
+           "THEN 'DEPLETED' ELSE status END, " +
+           "reserved_quantity = reserved_quantity - :qty, used_quantity = used_quantity + :qty, " +
+           "last_used_at = :now, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL " +
+           "AND reserved_quantity >= :qty",
+           nativeQuery = true)
+    int consumeReserved(@Param("factoryId") String factoryId,
+                        @Param("id") Integer id,
+                        @Param("qty") BigDecimal qty,
+                        @Param("now") LocalDateTime now);
+
+    /**
+     * 按增量调整入库数量（delta 可为负）：仅当调整后剩余 >= 0 时生效，剩余为 0 时标记为 USED_UP
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "status = CASE WHEN receipt_quantity - used_quantity - reserved_quantity + :delta = 0 THEN 'USED_UP' ELSE status END, " +
+           "receipt_quantity = receipt_quantity + :delta, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL " +
+           "AND receipt_quantity - used_quantity - reserved_quantity + :delta >= 0",
+           nativeQuery = true)
+    int adjustReceipt(@Param("factoryId") String factoryId,
+                      @Param("id") Integer id,
+                      @Param("delta") BigDecimal delta,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * 盘点：把剩余数量设为指定值（入库数量 = 已使用 + 已预留 + 新剩余），不依赖读取时的旧值
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "material_batches"))
+    @Query(value = "UPDATE material_batches SET " +
+           "receipt_quantity = used_quantity + reserved_quantity + :remaining, updated_at = :now " +
+           "WHERE id = :id AND factory_id = :factoryId AND deleted_at IS NULL",
+           nativeQuery = true)
+    int setRemaining(@Param("factoryId") String factoryId,
+                     @Param("id") Integer id,
+                     @Param("remaining") BigDecimal remaining,
+                     @Param("now") LocalDateTime now);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 /**
  * 原材料消耗记录数据访问接口
@@ -70,4 +71,13 @@ public interface MaterialConsumptionRepository extends JpaRepository<MaterialCon
      * 根据生产批次ID查找消耗记录
      */
     List<MaterialConsumption> findByProductionBatchId(Long productionBatchId);
+
+    /**
+     * 批量查找多个生产批次的消耗记录（同时取回原材料批次、原材料类型和供应商）
+     */
+    @Query("SELECT c FROM MaterialConsumption c JOIN FETCH c.batch b " +
+           "LEFT JOIN FETCH b.materialType LEFT JOIN FETCH b.supplier " +
+           "WHERE c.productionBatchId IN :productionBatchIds")
+    List<MaterialConsumption> findWithMaterialByProductionBatchIdIn(
+            @Param("productionBatchIds") Collection<Long> productionBatchIds);
 }
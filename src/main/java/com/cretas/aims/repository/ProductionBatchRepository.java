@@ -5,12 +5,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 生产批次数据访问接口
@@ -131,4 +137,44 @@ public interface ProductionBatchRepository extends JpaRepository<ProductionBatch
     BigDecimal calculateDailyCost(@Param("factoryId") String factoryId,
                                   @Param("startDate") LocalDateTime startDate,
                                   @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * 按日汇总产量（一次查询返回整个日期范围，行格式：[日期, 产量]）
+     */
+    @Query("SELECT DATE(p.createdAt), SUM(p.actualQuantity) FROM ProductionBatch p " +
+           "WHERE p.factoryId = :factoryId AND p.createdAt >= :startDate AND p.createdAt < :endDate " +
+           "GROUP BY DATE(p.createdAt)")
+    List<Object[]> sumOutputGroupByDate(@Param("factoryId") String factoryId,
+                                        @Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * 按日汇总良品率（一次查询返回整个日期范围，行格式：[日期, 平均良品率]）
+     */
+    @Query("SELECT DATE(p.createdAt), AVG(p.yieldRate) FROM ProductionBatch p " +
+           "WHERE p.factoryId = :factoryId AND p.createdAt >= :startDate AND p.createdAt < :endDate " +
+           "AND p.status = 'COMPLETED' GROUP BY DATE(p.createdAt)")
+    List<Object[]> avgYieldRateGroupByDate(@Param("factoryId") String factoryId,
+                                           @Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * 按日汇总成本（一次查询返回整个日期范围，行格式：[日期, 成本]）
+     */
+    @Query("SELECT DATE(p.createdAt), SUM(p.totalCost) FROM ProductionBatch p " +
+           "WHERE p.factoryId = :factoryId AND p.createdAt >= :startDate AND p.createdAt < :endDate " +
+           "GROUP BY DATE(p.createdAt)")
+    List<Object[]> sumCostGroupByDate(@Param("factoryId") String factoryId,
+                                      @Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * 导出用：按工厂和创建时间范围流式读取生产批次（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT b FROM ProductionBatch b WHERE b.factoryId = :factoryId " +
+           "AND b.createdAt >= :start AND b.createdAt < :end ORDER BY b.createdAt, b.id")
+    Stream<ProductionBatch> streamByFactoryIdAndCreatedAtRange(@Param("factoryId") String factoryId,
+                                                              @Param("start") LocalDateTime start,
+                                                              @Param("end") LocalDateTime end);
 }
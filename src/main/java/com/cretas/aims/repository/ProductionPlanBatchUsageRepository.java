@@ -2,10 +2,12 @@ package com.cretas.aims.repository;
 
 import com.cretas.aims.entity.ProductionPlanBatchUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 /**
  * 生产计划批次使用关联数据访问接口
@@ -46,4 +48,18 @@ public interface ProductionPlanBatchUsageRepository extends JpaRepository<Produc
      * 根据生产计划ID和批次ID查找使用记录
       */
     java.util.Optional<ProductionPlanBatchUsage> findByProductionPlanIdAndBatchId(Integer productionPlanId, Integer batchId);
+     /**
+     * 批量查询生产计划在多个批次上的使用记录
+      */
+    List<ProductionPlanBatchUsage> findByProductionPlanIdAndBatchIdIn(Integer productionPlanId, Collection<Integer> batchIds);
+     /**
+     * 原子地把计划在某批次上的预留量转为使用量（避免并发消耗时读-改-写丢失更新）
+      */
+    @Modifying
+    @Query("UPDATE ProductionPlanBatchUsage u SET u.reservedQuantity = u.reservedQuantity - :qty, " +
+           "u.usedQuantity = u.usedQuantity + :qty " +
+           "WHERE u.productionPlanId = :planId AND u.batchId = :batchId")
+    int consumeReserved(@Param("planId") Integer planId,
+                        @Param("batchId") Integer batchId,
+                        @Param("qty") BigDecimal qty);
 }
@@ -184,4 +184,28 @@ public interface ProductionPlanRepository extends JpaRepository<ProductionPlan,
                                                @Param("status") ProductionPlanStatus status,
                                                @Param("startDate") LocalDate startDate,
                                                @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按完成日期汇总产量（一次查询返回整个日期范围，行格式：[日期, 产量]）
+     */
+    @Query("SELECT DATE(p.endTime), SUM(p.actualQuantity) FROM ProductionPlan p " +
+           "WHERE p.factoryId = :factoryId AND p.endTime >= :startDate AND p.endTime < :endDate " +
+           "GROUP BY DATE(p.endTime)")
+    List<Object[]> sumOutputGroupByDate(@Param("factoryId") String factoryId,
+                                        @Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * 按完成日期汇总总成本（一次查询返回整个日期范围，行格式：[日期, 总成本]）
+     */
+    @Query("SELECT DATE(p.endTime), SUM(COALESCE(p.actualMaterialCost, 0) + " +
+           "COALESCE(p.actualLaborCost, 0) + " +
+           "COALESCE(p.actualEquipmentCost, 0) + " +
+           "COALESCE(p.actualOtherCost, 0)) " +
+           "FROM ProductionPlan p WHERE p.factoryId = :factoryId " +
+           "AND p.endTime >= :startDate AND p.endTime < :endDate " +
+           "GROUP BY DATE(p.endTime)")
+    List<Object[]> sumTotalCostGroupByDate(@Param("factoryId") String factoryId,
+                                           @Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate);
 }
@@ -5,10 +5,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 /**
  * 质量检验数据访问接口
  *
@@ -22,16 +28,41 @@ public interface QualityInspectionRepository extends JpaRepository<QualityInspec
      * 根据工厂ID分页查找
      */
     Page<QualityInspection> findByFactoryId(String factoryId, Pageable pageable);
-     /**
+    /**
      * 根据工厂ID和生产批次ID分页查找
-      */
+     */
     Page<QualityInspection> findByFactoryIdAndProductionBatchId(String factoryId, Long productionBatchId, Pageable pageable);
-     /**
+    /**
+     * 批量查找多个生产批次的质检记录（按批次、ID排序）
+     */
+    List<QualityInspection> findByFactoryIdAndProductionBatchIdInOrderByProductionBatchIdAscIdAsc(
+            String factoryId, Collection<Long> productionBatchIds);
+    /**
      * 根据工厂ID和日期范围查找
-      */
+     */
     @Query("SELECT q FROM QualityInspection q WHERE q.factoryId = :factoryId " +
            "AND q.inspectionDate >= :startDate AND q.inspectionDate <= :endDate")
     List<QualityInspection> findByFactoryIdAndDateRange(@Param("factoryId") String factoryId,
                                                         @Param("startDate") LocalDate startDate,
                                                         @Param("endDate") LocalDate endDate);
+    /**
+     * 按检验日期汇总合格率（行格式：[日期, 平均合格率, 检验次数]）
+     */
+    @Query("SELECT q.inspectionDate, AVG(q.passRate), COUNT(q) FROM QualityInspection q " +
+           "WHERE q.factoryId = :factoryId " +
+           "AND q.inspectionDate >= :startDate AND q.inspectionDate <= :endDate " +
+           "GROUP BY q.inspectionDate")
+    List<Object[]> aggregatePassRateGroupByDate(@Param("factoryId") String factoryId,
+                                                @Param("startDate") LocalDate startDate,
+                                                @Param("endDate") LocalDate endDate);
+
+    /**
+     * 导出用：按工厂和检验日期范围流式读取质检记录（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT q FROM QualityInspection q WHERE q.factoryId = :factoryId " +
+           "AND q.inspectionDate BETWEEN :startDate AND :endDate ORDER BY q.inspectionDate, q.id")
+    Stream<QualityInspection> streamByFactoryIdAndInspectionDateBetween(@Param("factoryId") String factoryId,
+                                                                        @Param("startDate") LocalDate startDate,
+                                                                        @Param("endDate") LocalDate endDate);
 }
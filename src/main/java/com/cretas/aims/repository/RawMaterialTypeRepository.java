@@ -5,10 +5,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 /**
  * 原材料类型数据访问接口
  *
@@ -21,6 +25,7 @@ public interface RawMaterialTypeRepository extends JpaRepository<RawMaterialType
     /**
      * 根据工厂ID和代码查找
      */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Optional<RawMaterialType> findByFactoryIdAndCode(String factoryId, String code);
      /**
      * 查找工厂的所有原材料类型
@@ -29,6 +34,7 @@ public interface RawMaterialTypeRepository extends JpaRepository<RawMaterialType
      /**
      * 查找工厂的激活原材料类型
       */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     List<RawMaterialType> findByFactoryIdAndIsActive(String factoryId, Boolean isActive);
      /**
      * 分页查找工厂的原材料类型
@@ -86,6 +86,12 @@ public interface ReworkRecordRepository extends JpaRepository<ReworkRecord, Long
      */
     Long countByFactoryIdAndStatus(String factoryId, ReworkStatus status);
 
+    /**
+     * 统计指定时间范围内开始的某状态返工数量
+     */
+    long countByFactoryIdAndStatusAndStartTimeBetween(String factoryId, ReworkStatus status,
+                                                      LocalDateTime startTime, LocalDateTime endTime);
+
     // ===================================================================
     // 时间范围查询
     // ===================================================================
@@ -132,7 +138,7 @@ public interface ReworkRecordRepository extends JpaRepository<ReworkRecord, Long
      * 查询返工成功率统计
      */
     @Query("SELECT AVG(CASE WHEN r.reworkQuantity > 0 " +
-           "THEN (r.successQuantity / r.reworkQuantity) * 100 " +
+           "THEN ((r.successQuantity / r.reworkQuantity) * 100) " +
            "ELSE 0 END) " +
            "FROM ReworkRecord r WHERE r.factoryId = :factoryId AND r.status = 'COMPLETED'")
     Double calculateAverageSuccessRate(@Param("factoryId") String factoryId);
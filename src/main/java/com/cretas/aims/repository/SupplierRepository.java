@@ -5,12 +5,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 供应商数据访问接口
@@ -126,4 +131,11 @@ public interface SupplierRepository extends JpaRepository<Supplier, Integer> {
      */
     @Query("SELECT SUM(s.currentBalance) FROM Supplier s WHERE s.factoryId = :factoryId")
     BigDecimal calculateTotalOutstandingBalance(@Param("factoryId") String factoryId);
+
+    /**
+     * 导出用：按工厂流式读取供应商（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT s FROM Supplier s WHERE s.factoryId = :factoryId ORDER BY s.id")
+    Stream<Supplier> streamByFactoryId(@Param("factoryId") String factoryId);
 }
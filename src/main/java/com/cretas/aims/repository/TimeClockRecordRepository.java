@@ -5,13 +5,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 考勤打卡记录数据访问接口
@@ -93,5 +98,102 @@ public interface TimeClockRecordRepository extends JpaRepository<TimeClockRecord
             @Param("userId") Integer userId,
             Pageable pageable
     );
-}
 
+    /**
+     * 导出用：按工厂和打卡日期范围流式读取考勤记录（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT t FROM TimeClockRecord t WHERE t.factoryId = :factoryId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate ORDER BY t.clockDate, t.userId, t.id")
+    Stream<TimeClockRecord> streamByFactoryIdAndClockDateBetween(@Param("factoryId") String factoryId,
+                                                                 @Param("startDate") LocalDate startDate,
+                                                                 @Param("endDate") LocalDate endDate);
+
+    /**
+     * 时间统计：按打卡日期聚合（打卡次数、出勤人数、工作/加班分钟、迟到/早退人次）
+     */
+    @Query("SELECT t.clockDate, COUNT(t), COUNT(DISTINCT t.userId), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('LATE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('EARLY_LEAVE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END) " +
+           "FROM TimeClockRecord t WHERE t.factoryId = :factoryId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate GROUP BY t.clockDate")
+    List<Object[]> aggregateByClockDate(@Param("factoryId") String factoryId,
+                                        @Param("startDate") LocalDate startDate,
+                                        @Param("endDate") LocalDate endDate);
+
+    /**
+     * 时间统计：按员工聚合（出勤天数、工作/加班分钟、迟到/早退次数）
+     */
+    @Query("SELECT t.userId, COUNT(DISTINCT t.clockDate), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('LATE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('EARLY_LEAVE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END) " +
+           "FROM TimeClockRecord t WHERE t.factoryId = :factoryId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate GROUP BY t.userId")
+    List<Object[]> aggregateByUser(@Param("factoryId") String factoryId,
+                                   @Param("startDate") LocalDate startDate,
+                                   @Param("endDate") LocalDate endDate);
+
+    /**
+     * 时间统计：单个员工的聚合结果（列同 aggregateByUser）
+     */
+    @Query("SELECT t.userId, COUNT(DISTINCT t.clockDate), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('LATE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus IN ('EARLY_LEAVE', 'LATE_AND_EARLY_LEAVE') THEN 1 ELSE 0 END) " +
+           "FROM TimeClockRecord t WHERE t.factoryId = :factoryId AND t.userId = :userId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate GROUP BY t.userId")
+    List<Object[]> aggregateForUser(@Param("factoryId") String factoryId,
+                                    @Param("userId") Integer userId,
+                                    @Param("startDate") LocalDate startDate,
+                                    @Param("endDate") LocalDate endDate);
+
+    /**
+     * 时间统计：按部门聚合（出勤人数、出勤人次、工作/加班分钟）
+     */
+    @Query("SELECT u.department, COUNT(DISTINCT t.userId), COUNT(t), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0) " +
+           "FROM TimeClockRecord t JOIN User u ON t.userId = u.id " +
+           "WHERE t.factoryId = :factoryId AND t.clockDate BETWEEN :startDate AND :endDate " +
+           "GROUP BY u.department")
+    List<Object[]> aggregateByDepartment(@Param("factoryId") String factoryId,
+                                         @Param("startDate") LocalDate startDate,
+                                         @Param("endDate") LocalDate endDate);
+
+    /**
+     * 考勤统计：单个员工在日期范围内的打卡天数、正常/迟到/早退天数、工作/加班分钟（返回一行）
+     */
+    @Query("SELECT COUNT(t), " +
+           "SUM(CASE WHEN t.attendanceStatus = 'NORMAL' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus LIKE '%LATE%' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus LIKE '%EARLY_LEAVE%' AND t.attendanceStatus NOT LIKE '%LATE%' " +
+           "THEN 1 ELSE 0 END), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0) " +
+           "FROM TimeClockRecord t WHERE t.factoryId = :factoryId AND t.userId = :userId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate")
+    List<Object[]> summarizeAttendance(@Param("factoryId") String factoryId,
+                                       @Param("userId") Integer userId,
+                                       @Param("startDate") LocalDate startDate,
+                                       @Param("endDate") LocalDate endDate);
+
+    /**
+     * 考勤统计：工厂（可按部门过滤）全部在职员工的考勤汇总，没有打卡记录的员工也返回一行
+     * 列：用户ID、姓名、部门、打卡天数、正常、迟到、早退、工作分钟、加班分钟
+     */
+    @Query("SELECT u.id, u.fullName, u.department, COUNT(t.id), " +
+           "SUM(CASE WHEN t.attendanceStatus = 'NORMAL' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus LIKE '%LATE%' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN t.attendanceStatus LIKE '%EARLY_LEAVE%' AND t.attendanceStatus NOT LIKE '%LATE%' " +
+           "THEN 1 ELSE 0 END), " +
+           "COALESCE(SUM(t.workDurationMinutes), 0), COALESCE(SUM(t.overtimeMinutes), 0) " +
+           "FROM User u LEFT JOIN TimeClockRecord t ON t.userId = u.id AND t.factoryId = :factoryId " +
+           "AND t.clockDate BETWEEN :startDate AND :endDate " +
+           "WHERE u.factoryId = :factoryId AND u.isActive = true " +
+           "AND (:department IS NULL OR u.department = :department) " +
+           "GROUP BY u.id, u.fullName, u.department ORDER BY u.id")
+    List<Object[]> summarizeAttendanceByEmployee(@Param("factoryId") String factoryId,
+                                                 @Param("department") String department,
+                                                 @Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+}
@@ -8,11 +8,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 /**
  * 用户数据访问接口
  *
@@ -21,7 +27,7 @@ import java.util.Optional;
  * @since 2025-01-09
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Integer> {
+public interface UserRepository extends JpaRepository<User, Integer>, UserRepositoryCustom {
     /**
      * 根据用户名查找用户（统一登录）
      */
@@ -86,6 +92,12 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      */
     boolean existsByUsername(String username);
 
+    /**
+     * 批量检查：返回给定用户名中已存在的用户名
+     */
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
     /**
      * 获取有薪资信息的用户
      */
@@ -105,4 +117,11 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      */
     @Query("SELECT u.department, COUNT(u) FROM User u WHERE u.factoryId = :factoryId GROUP BY u.department")
     List<Object[]> countByDepartment(@Param("factoryId") String factoryId);
+
+    /**
+     * 导出用：按工厂流式读取用户（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT u FROM User u WHERE u.factoryId = :factoryId ORDER BY u.id")
+    Stream<User> streamByFactoryId(@Param("factoryId") String factoryId);
 }
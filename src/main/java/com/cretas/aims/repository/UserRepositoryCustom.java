@@ -0,0 +1,21 @@
+package com.cretas.aims.repository;
+
+import com.cretas.aims.entity.User;
+
+import java.util.Optional;
+
+/**
+ * 用户数据访问扩展接口
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * 按自然键（工厂ID + 用户名）查找用户
+     * 自然键 → 主键 与 主键 → 实体 均走二级缓存，命中时不访问数据库
+     */
+    Optional<User> findByNaturalId(String factoryId, String username);
+}
@@ -0,0 +1,32 @@
+package com.cretas.aims.repository;
+
+import com.cretas.aims.entity.User;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+
+/**
+ * 用户数据访问扩展实现
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByNaturalId(String factoryId, String username) {
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(User.class)
+                .using("factoryId", factoryId)
+                .using("username", username)
+                .loadOptional();
+    }
+}
@@ -7,13 +7,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * 白名单数据访问接口
@@ -60,6 +66,13 @@ public interface WhitelistRepository extends JpaRepository<Whitelist, Integer> {
      */
     boolean existsByFactoryIdAndPhoneNumber(String factoryId, String phoneNumber);
 
+    /**
+     * 批量检查：返回给定手机号中已存在的手机号
+     */
+    @Query("SELECT w.phoneNumber FROM Whitelist w WHERE w.factoryId = :factoryId AND w.phoneNumber IN :phoneNumbers")
+    List<String> findExistingPhoneNumbers(@Param("factoryId") String factoryId,
+                                          @Param("phoneNumbers") Collection<String> phoneNumbers);
+
     /**
      * 查找即将过期的白名单
      */
@@ -138,4 +151,13 @@ public interface WhitelistRepository extends JpaRepository<Whitelist, Integer> {
     @Query("SELECT COUNT(w) FROM Whitelist w WHERE w.factoryId = :factoryId " +
            "AND DATE(w.createdAt) = CURRENT_DATE")
     long countTodayAdded(@Param("factoryId") String factoryId);
+
+    /**
+     * 导出用：按工厂和状态（可为空）流式读取白名单（MySQL 逐行返回结果）
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT w FROM Whitelist w WHERE w.factoryId = :factoryId " +
+           "AND (:status IS NULL OR w.status = :status) ORDER BY w.createdAt DESC")
+    Stream<Whitelist> streamForExport(@Param("factoryId") String factoryId,
+                                      @Param("status") WhitelistStatus status);
 }
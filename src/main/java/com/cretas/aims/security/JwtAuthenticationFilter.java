@@ -1,6 +1,7 @@
 package com.cretas.aims.security;
 
 import com.cretas.aims.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -35,10 +36,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String token = getTokenFromRequest(request);
-            if (StringUtils.hasText(token) && jwtUtil.validateToken(token)) {
-                Integer userId = jwtUtil.getUserIdFromToken(token);
-                String username = jwtUtil.getUsernameFromToken(token);
-                String role = jwtUtil.getRoleFromToken(token);
+            // 每个请求只验证解析一次Token（命中缓存时无需重复校验签名）
+            Claims claims = StringUtils.hasText(token) ? jwtUtil.getValidatedClaims(token) : null;
+            if (claims != null) {
+                Integer userId = jwtUtil.getUserId(claims);
+                String username = claims.getSubject();
+                String role = claims.get("role", String.class);
 
                 if (userId != null) {
                     // 创建认证对象，从token中提取角色信息
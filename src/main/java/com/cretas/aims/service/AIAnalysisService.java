@@ -1,16 +1,18 @@
 package com.cretas.aims.service;
 
+import com.cretas.aims.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * AI成本分析服务
@@ -22,22 +24,18 @@ import java.util.Map;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class AIAnalysisService {
 
-    @Value("${cretas.ai.service.url:http://localhost:8085}")
-    private String aiServiceUrl;
+    private final AIServiceClient aiServiceClient;
 
-    @Value("${cretas.ai.service.timeout:30000}")
-    private int timeout;
-
-    private final RestTemplate restTemplate;
-
-    public AIAnalysisService() {
-        this.restTemplate = new RestTemplate();
-    }
+    /**
+     * AI 服务是否提供 /api/ai/chat/stream；首次返回 404/405 后改为调用 /api/ai/chat（直到重启）
+     */
+    private final AtomicBoolean streamSupported = new AtomicBoolean(true);
 
     /**
-     * 调用AI分析批次成本
+     * 调用AI分析批次成本（同步，等待异步调用完成）
      *
      * @param factoryId 工厂ID
      * @param batchId 批次ID
@@ -50,58 +48,172 @@ public class AIAnalysisService {
                                            Map<String, Object> costData,
                                            String sessionId,
                                            String customMessage) {
+        return analyzeCostAsync(factoryId, batchId, costData, sessionId, customMessage).join();
+    }
+
+    /**
+     * 异步调用AI分析批次成本
+     *
+     * 返回的 Future 不会异常完成：AI 服务失败时以 success=false 的结果完成
+     */
+    public CompletableFuture<Map<String, Object>> analyzeCostAsync(String factoryId, Long batchId,
+                                                                   Map<String, Object> costData,
+                                                                   String sessionId,
+                                                                   String customMessage) {
+        Map<String, Object> request;
         try {
-            // 1. 格式化成本数据为AI提示词
-            String message = customMessage != null && !customMessage.trim().isEmpty()
-                ? customMessage
-                : formatCostDataForAI(factoryId, batchId, costData);
-
-            // 2. 构建请求
-            String url = aiServiceUrl + "/api/ai/chat";
-            Map<String, Object> request = new HashMap<>();
-            request.put("message", message);
-            request.put("user_id", factoryId + "_batch_" + batchId);
-
-            if (sessionId != null && !sessionId.trim().isEmpty()) {
-                request.put("session_id", sessionId);
-            }
+            request = buildChatRequest(factoryId, batchId, costData, sessionId, customMessage);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(errorResult(factoryId, batchId, e));
+        }
 
-            // 3. 发送请求
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-
-            log.info("调用AI服务: url={}, batchId={}, factoryId={}", url, batchId, factoryId);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                url, HttpMethod.POST, entity, Map.class);
-
-            // 4. 处理响应
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> result = new HashMap<>();
-                Map<String, Object> body = response.getBody();
-
-                result.put("success", true);
-                result.put("aiAnalysis", body.get("aiAnalysis"));  // Python服务返回的字段名
-                result.put("sessionId", body.get("sessionId"));     // 驼峰命名
-                result.put("messageCount", body.get("messageCount")); // 驼峰命名
-
-                log.info("AI分析成功: batchId={}, sessionId={}", batchId, body.get("sessionId"));
-                return result;
-            } else {
-                throw new RuntimeException("AI服务返回错误: " + response.getStatusCode());
-            }
+        return chat(factoryId, batchId, request);
+    }
 
+    /**
+     * 调用 /api/ai/chat（不会异常完成）
+     */
+    private CompletableFuture<Map<String, Object>> chat(String factoryId, Long batchId, Map<String, Object> request) {
+        // 3. 发送请求
+        log.info("调用AI服务: url={}/api/ai/chat, batchId={}, factoryId={}",
+                aiServiceClient.getBaseUrl(), batchId, factoryId);
+        return aiServiceClient.postAsync("/api/ai/chat", request)
+                .thenApply(body -> {
+                    // 4. 处理响应
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("success", true);
+                    result.put("aiAnalysis", body.get("aiAnalysis"));  // Python服务返回的字段名
+                    result.put("sessionId", body.get("sessionId"));     // 驼峰命名
+                    result.put("messageCount", body.get("messageCount")); // 驼峰命名
+
+                    log.info("AI分析成功: batchId={}, sessionId={}", batchId, body.get("sessionId"));
+                    return result;
+                })
+                .exceptionally(e -> errorResult(factoryId, batchId, e.getCause() != null ? e.getCause() : e));
+    }
+
+    /**
+     * 流式调用AI分析批次成本
+     *
+     * Python 服务 /api/ai/chat/stream 以 SSE 返回：若干 {"delta": "..."} 增量事件，
+     * 最后一个 {"done": true, "sessionId": ..., "messageCount": ...} 结束事件。
+     * 每个增量在到达时回调 onDelta；返回的 Future 在流结束后以与 analyzeCostAsync 相同格式的结果完成
+     * （aiAnalysis 为全部增量拼接的完整文本），同样不会异常完成。
+     *
+     * AI 服务没有流式接口时（返回 404/405）改为调用 /api/ai/chat，完整结果作为一个增量回调。
+     */
+    public CompletableFuture<Map<String, Object>> streamCostAnalysis(String factoryId, Long batchId,
+                                                                     Map<String, Object> costData,
+                                                                     String sessionId,
+                                                                     String customMessage,
+                                                                     Consumer<String> onDelta) {
+        Map<String, Object> request;
+        try {
+            request = buildChatRequest(factoryId, batchId, costData, sessionId, customMessage);
         } catch (Exception e) {
-            log.error("AI分析失败: factoryId={}, batchId={}, error={}",
-                     factoryId, batchId, e.getMessage(), e);
-
-            // 返回友好的错误信息
-            Map<String, Object> errorResult = new HashMap<>();
-            errorResult.put("success", false);
-            errorResult.put("error", "AI服务暂时不可用，请稍后重试");
-            errorResult.put("errorDetail", e.getMessage());
-            return errorResult;
+            return CompletableFuture.completedFuture(errorResult(factoryId, batchId, e));
+        }
+
+        if (!streamSupported.get()) {
+            return chatAsSingleDelta(factoryId, batchId, request, onDelta);
         }
+
+        log.info("调用AI服务(流式): url={}/api/ai/chat/stream, batchId={}, factoryId={}",
+                aiServiceClient.getBaseUrl(), batchId, factoryId);
+        StringBuilder text = new StringBuilder();
+        Map<String, Object> result = new HashMap<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        return aiServiceClient.postStream("/api/ai/chat/stream", request, event -> {
+                    Object delta = event.get("delta");
+                    if (delta != null) {
+                        text.append(delta);
+                        onDelta.accept(delta.toString());
+                    }
+                    if (Boolean.TRUE.equals(event.get("done"))) {
+                        finished.set(true);
+                        result.put("sessionId", event.get("sessionId"));
+                        result.put("messageCount", event.get("messageCount"));
+                    }
+                })
+                .thenApply(ignored -> {
+                    if (!finished.get()) {
+                        throw new IllegalStateException("AI服务流式响应未正常结束");
+                    }
+                    result.put("success", true);
+                    result.put("aiAnalysis", text.toString());
+                    log.info("AI流式分析完成: batchId={}, sessionId={}, length={}",
+                            batchId, result.get("sessionId"), text.length());
+                    return result;
+                })
+                .handle((value, e) -> {
+                    if (e == null) {
+                        return CompletableFuture.completedFuture(value);
+                    }
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (isStreamNotSupported(cause)) {
+                        if (streamSupported.compareAndSet(true, false)) {
+                            log.warn("AI服务未提供流式接口，改为调用 /api/ai/chat 并整体推送: url={}",
+                                    aiServiceClient.getBaseUrl());
+                        }
+                        return chatAsSingleDelta(factoryId, batchId, request, onDelta);
+                    }
+                    return CompletableFuture.completedFuture(errorResult(factoryId, batchId, cause));
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * 非流式调用，成功时把完整分析文本作为一个增量回调
+     */
+    private CompletableFuture<Map<String, Object>> chatAsSingleDelta(String factoryId, Long batchId,
+                                                                     Map<String, Object> request,
+                                                                     Consumer<String> onDelta) {
+        return chat(factoryId, batchId, request).thenApply(result -> {
+            Object analysis = result.get("aiAnalysis");
+            if (Boolean.TRUE.equals(result.get("success")) && analysis != null) {
+                onDelta.accept(analysis.toString());
+            }
+            return result;
+        });
+    }
+
+    private static boolean isStreamNotSupported(Throwable e) {
+        return e instanceof BusinessException
+                && Integer.valueOf(AIServiceClient.STREAM_NOT_SUPPORTED).equals(((BusinessException) e).getCode());
+    }
+
+    /**
+     * 构建 /api/ai/chat 请求体
+     */
+    private Map<String, Object> buildChatRequest(String factoryId, Long batchId, Map<String, Object> costData,
+                                                 String sessionId, String customMessage) {
+        // 1. 格式化成本数据为AI提示词
+        String message = customMessage != null && !customMessage.trim().isEmpty()
+            ? customMessage
+            : formatCostDataForAI(factoryId, batchId, costData);
+
+        // 2. 构建请求
+        Map<String, Object> request = new HashMap<>();
+        request.put("message", message);
+        request.put("user_id", factoryId + "_batch_" + batchId);
+
+        if (sessionId != null && !sessionId.trim().isEmpty()) {
+            request.put("session_id", sessionId);
+        }
+        return request;
+    }
+
+    /**
+     * 返回友好的错误信息
+     */
+    private Map<String, Object> errorResult(String factoryId, Long batchId, Throwable e) {
+        log.error("AI分析失败: factoryId={}, batchId={}, error={}", factoryId, batchId, e.getMessage());
+
+        Map<String, Object> errorResult = new HashMap<>();
+        errorResult.put("success", false);
+        errorResult.put("error", "AI服务暂时不可用，请稍后重试");
+        errorResult.put("errorDetail", e.getMessage());
+        return errorResult;
     }
 
     /**
@@ -294,13 +406,9 @@ public class AIAnalysisService {
      */
     public List<Map<String, Object>> getSessionHistory(String sessionId) {
         try {
-            String url = aiServiceUrl + "/api/ai/session/" + sessionId;
-
             log.info("获取AI会话历史: sessionId={}", sessionId);
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> body = response.getBody();
+            Map<String, Object> body = aiServiceClient.get("/api/ai/session/" + sessionId);
+            if (body.get("messages") != null) {
                 return (List<Map<String, Object>>) body.get("messages");
             }
         } catch (Exception e) {
@@ -314,19 +422,18 @@ public class AIAnalysisService {
      */
     public Map<String, Object> healthCheck() {
         try {
-            String url = aiServiceUrl + "/";
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
+            Map<String, Object> body = aiServiceClient.get("/");
 
             Map<String, Object> result = new HashMap<>();
-            result.put("available", response.getStatusCode() == HttpStatus.OK);
-            result.put("serviceUrl", aiServiceUrl);
-            result.put("serviceInfo", response.getBody());
+            result.put("available", true);
+            result.put("serviceUrl", aiServiceClient.getBaseUrl());
+            result.put("serviceInfo", body);
 
             return result;
         } catch (Exception e) {
             Map<String, Object> result = new HashMap<>();
             result.put("available", false);
-            result.put("serviceUrl", aiServiceUrl);
+            result.put("serviceUrl", aiServiceClient.getBaseUrl());
             result.put("error", e.getMessage());
 
             return result;
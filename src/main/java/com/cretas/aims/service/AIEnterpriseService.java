@@ -3,23 +3,24 @@ package com.cretas.aims.service;
 import com.cretas.aims.dto.MobileDTO;
 import com.cretas.aims.entity.AIAnalysisResult;
 import com.cretas.aims.entity.AIAuditLog;
-import com.cretas.aims.entity.AIQuotaUsage;
 import com.cretas.aims.repository.AIAnalysisResultRepository;
-import com.cretas.aims.repository.AIAuditLogRepository;
-import com.cretas.aims.repository.AIQuotaUsageRepository;
+import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletRequest;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -28,9 +29,10 @@ import java.util.stream.Collectors;
  * 核心功能：
  * 1. 智能路由：根据报告类型选择合适的处理逻辑
  * 2. 缓存管理：多层级报告缓存（batch/weekly/monthly/historical）
- * 3. 配额管理：每周100次配额，follow-up消耗1次，historical消耗5次
+ * 3. 配额管理：每周100次配额，调用AI前原子预占（follow-up 1次，时间范围2次，对比3次，historical 5次），失败时退还
  * 4. 审计日志：完整的请求追踪和分析
  * 5. 定时任务支持：为AIReportScheduler提供报告生成方法
+ * 6. 流式输出：SSE 逐段推送AI分析文本
  *
  * @author Cretas Team
  * @version 1.0.0
@@ -47,14 +49,28 @@ public class AIEnterpriseService {
     private AIAnalysisResultRepository analysisResultRepository;
 
     @Autowired
-    private AIQuotaUsageRepository quotaUsageRepository;
+    private AIQuotaService quotaService;
 
     @Autowired
-    private AIAuditLogRepository auditLogRepository;
+    private AsyncLogSink logSink;
 
     @Autowired
     private ProcessingService processingService;
 
+    @Autowired
+    private SingleFlightService singleFlightService;
+
+    @Autowired
+    private AIServiceClient aiServiceClient;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * SSE 连接超时在 AI 流式超时基础上的余量（毫秒），保证超时错误事件能送达客户端
+     */
+    private static final long STREAM_TIMEOUT_MARGIN_MS = 5000;
+
     /**
      * AI成本分析 - 主入口（智能路由）
      *
@@ -73,29 +89,35 @@ public class AIEnterpriseService {
         boolean cacheHit = false;
         boolean success = false;
         String errorMessage = null;
-        AIAnalysisResult cachedResult = null;
+        AIQuotaService.Reservation reservation = null;
 
         try {
-            // 1. 检查缓存（default和followup类型）
-            if ("default".equals(questionType) || "followup".equals(questionType)) {
-                cachedResult = checkCache(factoryId, request.getBatchId(), questionType, request.getQuestion());
-                if (cachedResult != null) {
-                    cacheHit = true;
-                    success = true;
+            // 1. 默认分析：先查缓存，未命中时相同批次的并发请求合并为一次AI调用
+            if ("default".equals(questionType)) {
+                DefaultAnalysis analysis = singleFlightService.execute(
+                        SingleFlightService.key("ai-enterprise", factoryId, request.getBatchId(), questionType),
+                        () -> {
+                            AIAnalysisResult cached = checkCache(factoryId, request.getBatchId(), questionType, request.getQuestion());
+                            return cached != null ? new DefaultAnalysis(cached, cached.getSessionId(), null, true) : null;
+                        },
+                        () -> generateDefaultAnalysis(factoryId, request));
+                success = true;
+                cacheHit = analysis.fromCache;
+                logAuditRecord(factoryId, userId, request, questionType, true, cacheHit ? null : 0,
+                               System.currentTimeMillis() - startTime, cacheHit, httpRequest);
+                if (cacheHit) {
+                    // 缓存命中不消耗配额
                     log.info("AI分析缓存命中: factoryId={}, batchId={}, type={}",
                             factoryId, request.getBatchId(), questionType);
-
-                    // 记录审计日志（缓存命中不消耗配额）
-                    logAuditRecord(factoryId, userId, request, questionType, true, null,
-                                   System.currentTimeMillis() - startTime, cacheHit, httpRequest);
-
-                    return buildResponseFromCache(cachedResult, factoryId);
+                    return buildResponseFromCache(analysis.result, factoryId);
                 }
+                return buildSuccessResponse(analysis.result, factoryId, analysis.sessionId, analysis.messageCount,
+                                            System.currentTimeMillis() - startTime);
             }
 
-            // 2. 配额检查（followup和historical消耗配额）
+            // 2. 预占配额（followup和historical消耗配额，失败时退还）
             if ("followup".equals(questionType) || "historical".equals(questionType)) {
-                checkQuotaOrThrow(factoryId, questionType);
+                reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota(questionType));
             }
 
             // 3. 调用AI服务生成分析
@@ -123,23 +145,16 @@ public class AIEnterpriseService {
                 }
             }
 
-            // 4. 消耗配额
-            if ("followup".equals(questionType)) {
-                consumeQuota(factoryId, 1);
-            } else if ("historical".equals(questionType)) {
-                consumeQuota(factoryId, 5);
-            }
-
-            // 5. 保存结果到缓存
+            // 4. 保存结果到缓存
             AIAnalysisResult savedResult = saveAnalysisResult(
                     factoryId, request.getBatchId(), questionType, aiAnalysis, sessionId, request);
 
-            // 6. 记录审计日志
-            int quotaCost = "followup".equals(questionType) ? 1 : ("historical".equals(questionType) ? 5 : 0);
+            // 5. 记录审计日志
+            int quotaCost = reservation != null ? reservation.getCount() : 0;
             logAuditRecord(factoryId, userId, request, questionType, true, quotaCost,
                            System.currentTimeMillis() - startTime, false, httpRequest);
 
-            // 7. 构建响应
+            // 6. 构建响应
             return buildSuccessResponse(savedResult, factoryId, sessionId, messageCount,
                                         System.currentTimeMillis() - startTime);
 
@@ -152,6 +167,7 @@ public class AIEnterpriseService {
             errorMessage = e.getMessage();
             log.error("AI分析失败: factoryId={}, batchId={}, error={}",
                      factoryId, request.getBatchId(), e.getMessage(), e);
+            quotaService.refund(reservation);
             logAuditRecord(factoryId, userId, request, questionType, false, 0,
                            System.currentTimeMillis() - startTime, cacheHit, httpRequest);
 
@@ -195,6 +211,8 @@ public class AIEnterpriseService {
 
         } catch (Exception e) {
             log.error("周报告生成失败: factoryId={}, error={}", factoryId, e.getMessage(), e);
+            // 抛给调用方（定时任务按工厂重试并记录状态）
+            throw e;
         }
     }
 
@@ -231,6 +249,8 @@ public class AIEnterpriseService {
 
         } catch (Exception e) {
             log.error("月报告生成失败: factoryId={}, error={}", factoryId, e.getMessage(), e);
+            // 抛给调用方（定时任务按工厂重试并记录状态）
+            throw e;
         }
     }
 
@@ -269,21 +289,7 @@ public class AIEnterpriseService {
      * 获取工厂配额信息
      */
     public MobileDTO.AIQuotaInfo getQuotaInfo(String factoryId) {
-        LocalDate weekStart = getWeekStart(LocalDate.now());
-        Optional<AIQuotaUsage> quotaOpt = quotaUsageRepository.findByFactoryIdAndWeekStart(factoryId, weekStart);
-
-        AIQuotaUsage quota = quotaOpt.orElseGet(() -> createNewQuota(factoryId, weekStart));
-
-        LocalDate nextMonday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
-
-        return MobileDTO.AIQuotaInfo.builder()
-                .total(quota.getQuotaLimit())
-                .used(quota.getUsedCount())
-                .remaining(quota.getRemainingQuota())
-                .usageRate(quota.getUsageRate())
-                .resetDate(nextMonday.atStartOfDay())
-                .exceeded(quota.isExceeded())
-                .build();
+        return quotaService.getQuotaInfo(factoryId);
     }
 
     /**
@@ -336,6 +342,7 @@ public class AIEnterpriseService {
             HttpServletRequest httpRequest) {
 
         long startTime = System.currentTimeMillis();
+        AIQuotaService.Reservation reservation = null;
 
         try {
             log.info("开始时间范围成本分析: factoryId={}, userId={}, 时间段={} to {}, 维度={}",
@@ -343,13 +350,7 @@ public class AIEnterpriseService {
 
             // 1. 检查缓存（基于时间范围和维度，仅在无question时）
             if (question == null || question.trim().isEmpty()) {
-                Optional<AIAnalysisResult> cachedResult = analysisResultRepository
-                        .findByFactoryIdAndExpiresAtAfterOrderByCreatedAtDesc(factoryId, LocalDateTime.now())
-                        .stream()
-                        .filter(r -> "time_range".equals(r.getReportType()))
-                        .filter(r -> r.getPeriodStart() != null && r.getPeriodEnd() != null)
-                        .filter(r -> r.getPeriodStart().equals(startDate) && r.getPeriodEnd().equals(endDate))
-                        .findFirst();
+                Optional<AIAnalysisResult> cachedResult = findCachedTimeRange(factoryId, startDate, endDate);
 
                 if (cachedResult.isPresent()) {
                     log.info("时间范围分析缓存命中: factoryId={}, startDate={}, endDate={}",
@@ -363,8 +364,8 @@ public class AIEnterpriseService {
                 }
             }
 
-            // 2. 配额检查（时间范围分析消耗2次配额）
-            checkQuotaOrThrow(factoryId, "time_range");
+            // 2. 预占配额（时间范围分析消耗2次配额，失败时退还）
+            reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota("time_range"));
 
             // 3. 获取时间范围内的批次成本数据
             List<Map<String, Object>> batchesData = processingService
@@ -396,30 +397,17 @@ public class AIEnterpriseService {
             String aiAnalysis = (String) aiResult.get("aiAnalysis");
             String sessionId = (String) aiResult.get("sessionId");
 
-            // 6. 消耗配额（时间范围分析消耗2次）
-            consumeQuota(factoryId, 2);
-
-            // 7. 保存结果到缓存（7天有效期）
-            AIAnalysisResult result = AIAnalysisResult.builder()
-                    .factoryId(factoryId)
-                    .reportType("time_range")
-                    .analysisText(aiAnalysis)
-                    .sessionId(sessionId)
-                    .periodStart(startDate)
-                    .periodEnd(endDate)
-                    .expiresAt(LocalDateTime.now().plusDays(7))
-                    .isAutoGenerated(false)
-                    .build();
-            analysisResultRepository.save(result);
+            // 6. 保存结果到缓存（7天有效期）
+            AIAnalysisResult result = saveTimeRangeResult(factoryId, startDate, endDate, aiAnalysis, sessionId);
 
-            // 8. 记录审计日志
+            // 7. 记录审计日志
             logAuditRecord(factoryId, userId, null, "time_range", true, 2,
                     System.currentTimeMillis() - startTime, false, httpRequest);
 
             log.info("时间范围成本分析完成: factoryId={}, reportId={}, 批次数={}",
                     factoryId, result.getId(), batchesData.size());
 
-            // 9. 构建响应
+            // 8. 构建响应
             return buildSuccessResponse(result, factoryId, sessionId, null,
                     System.currentTimeMillis() - startTime);
 
@@ -430,6 +418,7 @@ public class AIEnterpriseService {
             throw e;
         } catch (Exception e) {
             log.error("时间范围成本分析失败: factoryId={}, error={}", factoryId, e.getMessage(), e);
+            quotaService.refund(reservation);
             logAuditRecord(factoryId, userId, null, "time_range", false, 0,
                     System.currentTimeMillis() - startTime, false, httpRequest);
 
@@ -440,6 +429,37 @@ public class AIEnterpriseService {
         }
     }
 
+    /**
+     * 查询未过期的时间范围分析
+     */
+    private Optional<AIAnalysisResult> findCachedTimeRange(String factoryId, LocalDateTime startDate, LocalDateTime endDate) {
+        return analysisResultRepository
+                .findByFactoryIdAndExpiresAtAfterOrderByCreatedAtDesc(factoryId, LocalDateTime.now())
+                .stream()
+                .filter(r -> "time_range".equals(r.getReportType()))
+                .filter(r -> r.getPeriodStart() != null && r.getPeriodEnd() != null)
+                .filter(r -> r.getPeriodStart().equals(startDate) && r.getPeriodEnd().equals(endDate))
+                .findFirst();
+    }
+
+    /**
+     * 保存时间范围分析（7天有效期）
+     */
+    private AIAnalysisResult saveTimeRangeResult(String factoryId, LocalDateTime startDate, LocalDateTime endDate,
+                                                 String analysis, String sessionId) {
+        AIAnalysisResult result = AIAnalysisResult.builder()
+                .factoryId(factoryId)
+                .reportType("time_range")
+                .analysisText(analysis)
+                .sessionId(sessionId)
+                .periodStart(startDate)
+                .periodEnd(endDate)
+                .expiresAt(LocalDateTime.now().plusDays(7))
+                .isAutoGenerated(false)
+                .build();
+        return analysisResultRepository.save(result);
+    }
+
     /**
      * 格式化时间范围Prompt
      */
@@ -502,27 +522,17 @@ public class AIEnterpriseService {
             String question, HttpServletRequest httpRequest) {
 
         long startTime = System.currentTimeMillis();
+        AIQuotaService.Reservation reservation = null;
 
         try {
             log.info("开始批次对比分析: factoryId={}, userId={}, batchIds={}", factoryId, userId, batchIds);
 
             // 1. 参数校验
-            if (batchIds == null || batchIds.size() < 2) {
-                throw new IllegalArgumentException("至少需要2个批次进行对比分析");
-            }
-            if (batchIds.size() > 5) {
-                throw new IllegalArgumentException("最多支持5个批次进行对比分析");
-            }
+            validateComparisonBatchIds(batchIds);
 
             // 2. 检查缓存（仅在无question时）
             if (question == null || question.trim().isEmpty()) {
-                String cacheKey = String.join(",", batchIds.stream().map(String::valueOf).toArray(String[]::new));
-                Optional<AIAnalysisResult> cachedResult = analysisResultRepository
-                        .findByFactoryIdAndExpiresAtAfterOrderByCreatedAtDesc(factoryId, LocalDateTime.now())
-                        .stream()
-                        .filter(r -> "comparison".equals(r.getReportType()))
-                        .filter(r -> cacheKey.equals(r.getBatchId()))
-                        .findFirst();
+                Optional<AIAnalysisResult> cachedResult = findCachedComparison(factoryId, comparisonKey(batchIds));
 
                 if (cachedResult.isPresent()) {
                     log.info("命中缓存: 批次对比分析");
@@ -530,8 +540,8 @@ public class AIEnterpriseService {
                 }
             }
 
-            // 3. 配额检查（对比分析消耗3次配额）
-            checkQuotaOrThrow(factoryId, "comparison");
+            // 3. 预占配额（对比分析消耗3次配额，失败时退还）
+            reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota("comparison"));
 
             // 4. 获取批次对比数据
             List<Map<String, Object>> batchesData = processingService
@@ -549,26 +559,19 @@ public class AIEnterpriseService {
             Map<String, Object> aiResult = basicAIService.analyzeCost(
                     factoryId, batchIds.get(0), virtualCostData, null, promptMessage);
 
+            if (aiResult == null || !Boolean.TRUE.equals(aiResult.get("success"))) {
+                throw new RuntimeException("AI服务返回错误: " + (aiResult != null ? aiResult.get("error") : "unknown"));
+            }
+
             String aiAnalysis = (String) aiResult.get("aiAnalysis");
             String sessionId = (String) aiResult.get("sessionId");
             Integer messageCount = (Integer) aiResult.getOrDefault("messageCount", 1);
 
-            // 8. 消耗配额（对比分析消耗3次）
-            consumeQuota(factoryId, 3);
+            // 8. 保存结果到缓存（7天有效期）
+            String cacheKey = comparisonKey(batchIds);
+            AIAnalysisResult result = saveComparisonResult(factoryId, cacheKey, aiAnalysis, sessionId);
 
-            // 9. 保存结果到缓存（7天有效期）
-            String cacheKey = String.join(",", batchIds.stream().map(String::valueOf).toArray(String[]::new));
-            AIAnalysisResult result = AIAnalysisResult.builder()
-                    .factoryId(factoryId)
-                    .batchId(cacheKey)  // 使用批次ID组合作为key
-                    .reportType("comparison")
-                    .analysisText(aiAnalysis)
-                    .sessionId(sessionId)
-                    .expiresAt(LocalDateTime.now().plusDays(7))
-                    .build();
-            analysisResultRepository.save(result);
-
-            // 10. 记录审计日志
+            // 9. 记录审计日志
             MobileDTO.AICostAnalysisRequest dummyRequest = new MobileDTO.AICostAnalysisRequest();
             dummyRequest.setBatchId(cacheKey);
             dummyRequest.setQuestion(question);
@@ -594,6 +597,7 @@ public class AIEnterpriseService {
         } catch (Exception e) {
             log.error("批次对比分析失败: factoryId={}, batchIds={}, error={}",
                     factoryId, batchIds, e.getMessage(), e);
+            quotaService.refund(reservation);
 
             return MobileDTO.AICostAnalysisResponse.builder()
                     .success(false)
@@ -602,6 +606,47 @@ public class AIEnterpriseService {
         }
     }
 
+    private static void validateComparisonBatchIds(List<Long> batchIds) {
+        if (batchIds == null || batchIds.size() < 2) {
+            throw new IllegalArgumentException("至少需要2个批次进行对比分析");
+        }
+        if (batchIds.size() > 5) {
+            throw new IllegalArgumentException("最多支持5个批次进行对比分析");
+        }
+    }
+
+    /**
+     * 对比分析缓存key：批次ID组合
+     */
+    private static String comparisonKey(List<Long> batchIds) {
+        return batchIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 查询未过期的对比分析
+     */
+    private Optional<AIAnalysisResult> findCachedComparison(String factoryId, String cacheKey) {
+        // 按 (工厂, 批次组合, 类型) 只取最新一条，不加载工厂全部未过期结果
+        return analysisResultRepository
+                .findFirstByFactoryIdAndBatchIdAndReportTypeOrderByCreatedAtDesc(factoryId, cacheKey, "comparison")
+                .filter(r -> r.getExpiresAt().isAfter(LocalDateTime.now()));
+    }
+
+    /**
+     * 保存对比分析（7天有效期）
+     */
+    private AIAnalysisResult saveComparisonResult(String factoryId, String cacheKey, String analysis, String sessionId) {
+        AIAnalysisResult result = AIAnalysisResult.builder()
+                .factoryId(factoryId)
+                .batchId(cacheKey)  // 使用批次ID组合作为key
+                .reportType("comparison")
+                .analysisText(analysis)
+                .sessionId(sessionId)
+                .expiresAt(LocalDateTime.now().plusDays(7))
+                .build();
+        return analysisResultRepository.save(result);
+    }
+
     /**
      * 格式化批次对比Prompt（表格格式）
      */
@@ -668,6 +713,305 @@ public class AIEnterpriseService {
         return sb.toString();
     }
 
+    // ========== 流式分析（SSE） ==========
+
+    /**
+     * AI批次成本分析（SSE流式）
+     *
+     * 缓存检查、配额检查和成本数据加载在请求线程中完成；之后请求线程立即返回，
+     * AI 输出的每段文本以 delta 事件推送，结束后保存结果、消耗配额、记录审计日志并推送 done 事件。
+     */
+    public SseEmitter streamBatchCost(String factoryId, Long userId,
+                                      MobileDTO.AICostAnalysisRequest request,
+                                      HttpServletRequest httpRequest) {
+        EventSink sink = new EventSink(new SseEmitter(aiServiceClient.getStreamTimeoutMs() + STREAM_TIMEOUT_MARGIN_MS));
+        long startTime = System.currentTimeMillis();
+        String questionType = determineQuestionType(request);
+        String ipAddress = getClientIP(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+
+        if ("historical".equals(questionType)) {
+            // 历史综合报告不经过AI服务，直接返回完整结果（审计日志由 analyzeCost 记录）
+            try {
+                sink.finish(transactionTemplate.execute(status -> analyzeCost(factoryId, userId, request, httpRequest)));
+            } catch (Exception e) {
+                sink.fail(e.getMessage());
+            }
+            return sink.emitter;
+        }
+
+        AIQuotaService.Reservation reservation = null;
+        try {
+            if ("default".equals(questionType)) {
+                AIAnalysisResult cached = checkCache(factoryId, request.getBatchId(), questionType, request.getQuestion());
+                if (cached != null) {
+                    logAuditRecord(factoryId, userId, request, questionType, true, null,
+                                   System.currentTimeMillis() - startTime, true, ipAddress, userAgent);
+                    sink.finish(buildResponseFromCache(cached, factoryId));
+                    return sink.emitter;
+                }
+            } else if ("followup".equals(questionType)) {
+                reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota(questionType));
+            }
+
+            Long batchId = Long.parseLong(request.getBatchId());
+            Map<String, Object> costData = transactionTemplate.execute(status ->
+                    processingService.getBatchCostAnalysis(factoryId, batchId));
+            String reportType = "default".equals(questionType) ? "batch" : questionType;
+
+            relay(sink, StreamTask.builder()
+                    .factoryId(factoryId)
+                    .userId(userId)
+                    .questionType(questionType)
+                    .reservation(reservation)
+                    .auditRequest(request)
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .startTime(startTime)
+                    .aiBatchId(batchId)
+                    .costData(costData)
+                    .sessionId(request.getSession_id())
+                    .message(request.getQuestion())
+                    .persist((analysis, sessionId) -> saveAnalysisResult(
+                            factoryId, request.getBatchId(), reportType, analysis, sessionId, request))
+                    .build());
+        } catch (Exception e) {
+            log.error("AI流式分析启动失败: factoryId={}, batchId={}, error={}",
+                    factoryId, request.getBatchId(), e.getMessage());
+            quotaService.refund(reservation);
+            logAuditRecord(factoryId, userId, request, questionType, false, 0,
+                           System.currentTimeMillis() - startTime, false, ipAddress, userAgent);
+            sink.fail("AI分析失败: " + e.getMessage());
+        }
+        return sink.emitter;
+    }
+
+    /**
+     * AI时间范围成本分析（SSE流式）
+     */
+    public SseEmitter streamTimeRangeCost(String factoryId, Long userId,
+                                          LocalDateTime startDate, LocalDateTime endDate,
+                                          String dimension, String question,
+                                          HttpServletRequest httpRequest) {
+        EventSink sink = new EventSink(new SseEmitter(aiServiceClient.getStreamTimeoutMs() + STREAM_TIMEOUT_MARGIN_MS));
+        long startTime = System.currentTimeMillis();
+        String ipAddress = getClientIP(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+        AIQuotaService.Reservation reservation = null;
+
+        try {
+            if (question == null || question.trim().isEmpty()) {
+                Optional<AIAnalysisResult> cached = findCachedTimeRange(factoryId, startDate, endDate);
+                if (cached.isPresent()) {
+                    logAuditRecord(factoryId, userId, null, "time_range", true, 0,
+                                   System.currentTimeMillis() - startTime, true, ipAddress, userAgent);
+                    sink.finish(buildResponseFromCache(cached.get(), factoryId));
+                    return sink.emitter;
+                }
+            }
+
+            reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota("time_range"));
+
+            List<Map<String, Object>> batchesData = transactionTemplate.execute(status ->
+                    processingService.getTimeRangeBatchesCostAnalysis(factoryId, startDate, endDate));
+            if (batchesData.isEmpty()) {
+                throw new RuntimeException("该时间范围内无生产批次数据");
+            }
+
+            Map<String, Object> costData = new java.util.HashMap<>();
+            costData.put("timeRangeBatches", batchesData);
+            costData.put("startDate", startDate);
+            costData.put("endDate", endDate);
+            costData.put("dimension", dimension);
+
+            relay(sink, StreamTask.builder()
+                    .factoryId(factoryId)
+                    .userId(userId)
+                    .questionType("time_range")
+                    .reservation(reservation)
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .startTime(startTime)
+                    .costData(costData)
+                    .message(formatTimeRangePrompt(batchesData, startDate, endDate, dimension, question))
+                    .persist((analysis, sessionId) -> saveTimeRangeResult(
+                            factoryId, startDate, endDate, analysis, sessionId))
+                    .build());
+        } catch (Exception e) {
+            log.error("时间范围流式分析启动失败: factoryId={}, error={}", factoryId, e.getMessage());
+            quotaService.refund(reservation);
+            logAuditRecord(factoryId, userId, null, "time_range", false, 0,
+                           System.currentTimeMillis() - startTime, false, ipAddress, userAgent);
+            sink.fail("时间范围成本分析失败: " + e.getMessage());
+        }
+        return sink.emitter;
+    }
+
+    /**
+     * 批次对比分析（SSE流式）
+     */
+    public SseEmitter streamCompareBatchCosts(String factoryId, Long userId, List<Long> batchIds,
+                                              String question, HttpServletRequest httpRequest) {
+        EventSink sink = new EventSink(new SseEmitter(aiServiceClient.getStreamTimeoutMs() + STREAM_TIMEOUT_MARGIN_MS));
+        long startTime = System.currentTimeMillis();
+        String ipAddress = getClientIP(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+        MobileDTO.AICostAnalysisRequest auditRequest = new MobileDTO.AICostAnalysisRequest();
+        auditRequest.setQuestion(question);
+        AIQuotaService.Reservation reservation = null;
+
+        try {
+            validateComparisonBatchIds(batchIds);
+            String cacheKey = comparisonKey(batchIds);
+            auditRequest.setBatchId(cacheKey);
+
+            if (question == null || question.trim().isEmpty()) {
+                Optional<AIAnalysisResult> cached = findCachedComparison(factoryId, cacheKey);
+                if (cached.isPresent()) {
+                    logAuditRecord(factoryId, userId, auditRequest, "comparison", true, 0,
+                                   System.currentTimeMillis() - startTime, true, ipAddress, userAgent);
+                    sink.finish(buildResponseFromCache(cached.get(), factoryId));
+                    return sink.emitter;
+                }
+            }
+
+            reservation = quotaService.reserve(factoryId, AIQuotaService.requiredQuota("comparison"));
+
+            List<Map<String, Object>> batchesData = transactionTemplate.execute(status ->
+                    processingService.getComparativeBatchesCostAnalysis(factoryId, batchIds));
+
+            Map<String, Object> virtualCostData = new java.util.HashMap<>();
+            virtualCostData.put("comparisonData", batchesData);
+            virtualCostData.put("type", "comparison");
+
+            relay(sink, StreamTask.builder()
+                    .factoryId(factoryId)
+                    .userId(userId)
+                    .questionType("comparison")
+                    .reservation(reservation)
+                    .auditRequest(auditRequest)
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .startTime(startTime)
+                    .aiBatchId(batchIds.get(0))
+                    .costData(virtualCostData)
+                    .message(formatComparisonPrompt(batchesData, question))
+                    .persist((analysis, sessionId) -> saveComparisonResult(factoryId, cacheKey, analysis, sessionId))
+                    .build());
+        } catch (Exception e) {
+            log.error("批次对比流式分析启动失败: factoryId={}, batchIds={}, error={}",
+                    factoryId, batchIds, e.getMessage());
+            quotaService.refund(reservation);
+            logAuditRecord(factoryId, userId, auditRequest, "comparison", false, 0,
+                           System.currentTimeMillis() - startTime, false, ipAddress, userAgent);
+            sink.fail("批次对比分析失败: " + e.getMessage());
+        }
+        return sink.emitter;
+    }
+
+    /**
+     * 转发AI流式输出，流结束后在新事务中持久化并推送最终结果；AI失败或保存失败时退还预占的配额
+     *
+     * 客户端中途断开时继续读取AI输出，完整结果仍会保存（下次可命中缓存）。
+     */
+    private void relay(EventSink sink, StreamTask task) {
+        basicAIService.streamCostAnalysis(task.factoryId, task.aiBatchId, task.costData,
+                        task.sessionId, task.message,
+                        delta -> sink.send("delta", Map.of("delta", delta)))
+                .thenAccept(aiResult -> {
+                    long elapsed = System.currentTimeMillis() - task.startTime;
+                    int quotaCost = task.reservation != null ? task.reservation.getCount() : 0;
+                    if (!Boolean.TRUE.equals(aiResult.get("success"))) {
+                        quotaService.refund(task.reservation);
+                        logAuditRecord(task.factoryId, task.userId, task.auditRequest, task.questionType, false, 0,
+                                       elapsed, false, task.ipAddress, task.userAgent);
+                        sink.fail("AI服务返回错误: " + aiResult.get("error"));
+                        return;
+                    }
+                    String sessionId = (String) aiResult.get("sessionId");
+                    Integer messageCount = (Integer) aiResult.get("messageCount");
+                    try {
+                        MobileDTO.AICostAnalysisResponse response = transactionTemplate.execute(status -> {
+                            AIAnalysisResult saved = task.persist.apply((String) aiResult.get("aiAnalysis"), sessionId);
+                            logAuditRecord(task.factoryId, task.userId, task.auditRequest, task.questionType, true,
+                                           quotaCost, elapsed, false, task.ipAddress, task.userAgent);
+                            return buildSuccessResponse(saved, task.factoryId, sessionId, messageCount, elapsed);
+                        });
+                        sink.finish(response);
+                    } catch (Exception e) {
+                        log.error("AI流式分析结果保存失败: factoryId={}, type={}, error={}",
+                                task.factoryId, task.questionType, e.getMessage(), e);
+                        quotaService.refund(task.reservation);
+                        sink.fail("AI分析结果保存失败: " + e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 流式分析任务（请求线程中准备好的数据与提示词）
+     */
+    @Builder
+    private static final class StreamTask {
+        private final String factoryId;
+        private final Long userId;
+        private final String questionType;
+        /** 预占的配额（不消耗配额时为 null） */
+        private final AIQuotaService.Reservation reservation;
+        private final MobileDTO.AICostAnalysisRequest auditRequest;
+        private final String ipAddress;
+        private final String userAgent;
+        private final long startTime;
+        private final Long aiBatchId;
+        private final Map<String, Object> costData;
+        private final String sessionId;
+        private final String message;
+        /** (分析文本, sessionId) -> 保存的分析结果 */
+        private final BiFunction<String, String, AIAnalysisResult> persist;
+    }
+
+    /**
+     * SSE 事件发送：客户端断开或超时后静默丢弃后续事件
+     */
+    private static final class EventSink {
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private EventSink(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onTimeout(() -> closed.set(true));
+            emitter.onError(e -> closed.set(true));
+            emitter.onCompletion(() -> closed.set(true));
+        }
+
+        private void send(String name, Object data) {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                closed.set(true);
+                log.debug("SSE客户端已断开: {}", e.getMessage());
+            }
+        }
+
+        private void finish(MobileDTO.AICostAnalysisResponse response) {
+            send("done", response);
+            complete();
+        }
+
+        private void fail(String message) {
+            send("error", Map.of("message", message));
+            complete();
+        }
+
+        private void complete() {
+            if (closed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+    }
+
     // ========== 私有辅助方法 ==========
 
     /**
@@ -683,6 +1027,40 @@ public class AIEnterpriseService {
         return "default";
     }
 
+    /**
+     * 默认分析结果（合并请求的共享结果）
+     */
+    private static final class DefaultAnalysis {
+        private final AIAnalysisResult result;
+        private final String sessionId;
+        private final Integer messageCount;
+        private final boolean fromCache;
+
+        private DefaultAnalysis(AIAnalysisResult result, String sessionId, Integer messageCount, boolean fromCache) {
+            this.result = result;
+            this.sessionId = sessionId;
+            this.messageCount = messageCount;
+            this.fromCache = fromCache;
+        }
+    }
+
+    /**
+     * 生成默认批次分析并保存为 batch 报告（供 checkCache 命中）
+     */
+    private DefaultAnalysis generateDefaultAnalysis(String factoryId, MobileDTO.AICostAnalysisRequest request) {
+        Long batchId = Long.parseLong(request.getBatchId());
+        Map<String, Object> costData = processingService.getBatchCostAnalysis(factoryId, batchId);
+        Map<String, Object> aiResult = basicAIService.analyzeCost(
+                factoryId, batchId, costData, request.getSession_id(), request.getQuestion());
+        if (aiResult == null || !Boolean.TRUE.equals(aiResult.get("success"))) {
+            throw new RuntimeException("AI服务返回错误: " + (aiResult != null ? aiResult.get("error") : null));
+        }
+        String sessionId = (String) aiResult.get("sessionId");
+        AIAnalysisResult saved = saveAnalysisResult(factoryId, request.getBatchId(), "batch",
+                (String) aiResult.get("aiAnalysis"), sessionId, request);
+        return new DefaultAnalysis(saved, sessionId, (Integer) aiResult.get("messageCount"), false);
+    }
+
     /**
      * 检查缓存
      */
@@ -698,40 +1076,6 @@ public class AIEnterpriseService {
         return null;
     }
 
-    /**
-     * 检查配额
-     */
-    private void checkQuotaOrThrow(String factoryId, String questionType) {
-        LocalDate weekStart = getWeekStart(LocalDate.now());
-        AIQuotaUsage quota = quotaUsageRepository
-                .findByFactoryIdAndWeekStart(factoryId, weekStart)
-                .orElseGet(() -> createNewQuota(factoryId, weekStart));
-
-        // 不同类型消耗不同配额
-        int required = 1;  // 默认1次
-        if ("historical".equals(questionType)) {
-            required = 5;
-        } else if ("comparison".equals(questionType)) {
-            required = 3;
-        } else if ("time_range".equals(questionType)) {
-            required = 2;
-        }
-
-        if (quota.getUsedCount() + required > quota.getQuotaLimit()) {
-            throw new QuotaExceededException(
-                    String.format("本周配额不足。已使用: %d/%d，需要: %d",
-                            quota.getUsedCount(), quota.getQuotaLimit(), required));
-        }
-    }
-
-    /**
-     * 消耗配额
-     */
-    private void consumeQuota(String factoryId, int count) {
-        LocalDate weekStart = getWeekStart(LocalDate.now());
-        quotaUsageRepository.incrementUsedCount(factoryId, weekStart, count);
-    }
-
     /**
      * 生成历史综合报告
      */
@@ -787,6 +1131,16 @@ public class AIEnterpriseService {
     private void logAuditRecord(String factoryId, Long userId, MobileDTO.AICostAnalysisRequest request,
                                String questionType, boolean success, Integer quotaCost,
                                long responseTime, boolean cacheHit, HttpServletRequest httpRequest) {
+        logAuditRecord(factoryId, userId, request, questionType, success, quotaCost, responseTime, cacheHit,
+                       getClientIP(httpRequest), httpRequest != null ? httpRequest.getHeader("User-Agent") : null);
+    }
+
+    /**
+     * 记录审计日志（异步流式场景：请求对象可能已回收，调用方预先取出IP和User-Agent）
+     */
+    private void logAuditRecord(String factoryId, Long userId, MobileDTO.AICostAnalysisRequest request,
+                               String questionType, boolean success, Integer quotaCost,
+                               long responseTime, boolean cacheHit, String ipAddress, String userAgent) {
         AIAuditLog log = AIAuditLog.builder()
                 .factoryId(factoryId)
                 .userId(userId)
@@ -799,11 +1153,11 @@ public class AIEnterpriseService {
                 .isSuccess(success)
                 .responseTimeMs(responseTime)
                 .cacheHit(cacheHit)
-                .ipAddress(getClientIP(httpRequest))
-                .userAgent(httpRequest != null ? httpRequest.getHeader("User-Agent") : null)
+                .ipAddress(ipAddress)
+                .userAgent(userAgent)
                 .build();
 
-        auditLogRepository.save(log);
+        logSink.submit(log);
     }
 
     /**
@@ -863,33 +1217,12 @@ public class AIEnterpriseService {
                 .build();
     }
 
-    /**
-     * 获取本周一日期
-     */
-    private LocalDate getWeekStart(LocalDate date) {
-        return date.with(DayOfWeek.MONDAY);
-    }
-
-    /**
-     * 创建新配额记录
-     */
-    private AIQuotaUsage createNewQuota(String factoryId, LocalDate weekStart) {
-        AIQuotaUsage newQuota = AIQuotaUsage.builder()
-                .factoryId(factoryId)
-                .weekStart(weekStart)
-                .usedCount(0)
-                .quotaLimit(100)
-                .build();
-        return quotaUsageRepository.save(newQuota);
-    }
-
     /**
      * 更新工厂的AI配额限制（平台管理员功能）
      *
      * @param factoryId 工厂ID
      * @param newQuotaLimit 新的配额限制
      */
-    @Transactional
     public void updateQuotaLimit(String factoryId, Integer newQuotaLimit) {
         log.info("更新工厂AI配额: factoryId={}, newQuotaLimit={}", factoryId, newQuotaLimit);
 
@@ -901,19 +1234,7 @@ public class AIEnterpriseService {
             throw new IllegalArgumentException("配额限制不能超过1000");
         }
 
-        // 获取当前周的配额记录
-        LocalDate weekStart = getWeekStart(LocalDate.now());
-        AIQuotaUsage quota = quotaUsageRepository
-                .findByFactoryIdAndWeekStart(factoryId, weekStart)
-                .orElseGet(() -> createNewQuota(factoryId, weekStart));
-
-        // 更新配额限制
-        int oldLimit = quota.getQuotaLimit();
-        quota.setQuotaLimit(newQuotaLimit);
-        quotaUsageRepository.save(quota);
-
-        log.info("工厂AI配额已更新: factoryId={}, oldLimit={}, newLimit={}, usedCount={}",
-                factoryId, oldLimit, newQuotaLimit, quota.getUsedCount());
+        quotaService.updateQuotaLimit(factoryId, newQuotaLimit);
     }
 
     /**
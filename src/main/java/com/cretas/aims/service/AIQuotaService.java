@@ -0,0 +1,236 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.MobileDTO;
+import com.cretas.aims.entity.AIQuotaUsage;
+import com.cretas.aims.repository.AIQuotaUsageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * AI配额预占服务
+ *
+ * 1. 调用AI之前预占配额：一条条件 UPDATE（used_count + n <= quota_limit）完成检查与扣减，并发请求不会超出上限
+ * 2. 预占在独立事务中立即提交，不持有行锁等待AI返回；AI调用失败时调用方退还预占的配额
+ * 3. 本周配额记录用 INSERT ... ON DUPLICATE KEY UPDATE 创建，并发首次访问不会产生重复记录
+ * 4. 每个工厂的本周用量在进程内缓存 cache-ttl 毫秒，本节点预占/退还时同步更新，查询配额信息不必每次访问数据库
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AIQuotaService {
+
+    /**
+     * 新建配额记录的默认周上限
+     */
+    private static final int DEFAULT_QUOTA_LIMIT = 100;
+
+    private final AIQuotaUsageRepository quotaUsageRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private final ConcurrentMap<String, QuotaSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 配额用量缓存时间（毫秒），多节点部署时其他节点的扣减最多延迟这么久可见
+     */
+    @Value("${cretas.ai.quota.cache-ttl:30000}")
+    private long cacheTtlMs;
+
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    public void init() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 各类分析消耗的配额
+     */
+    public static int requiredQuota(String questionType) {
+        if ("historical".equals(questionType)) {
+            return 5;
+        } else if ("comparison".equals(questionType)) {
+            return 3;
+        } else if ("time_range".equals(questionType)) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * 预占配额，不足时抛出 QuotaExceededException
+     *
+     * @return 预占凭证（AI调用失败时传给 refund）
+     */
+    public Reservation reserve(String factoryId, int count) {
+        LocalDate weekStart = getWeekStart(LocalDate.now());
+        Integer updated = requiresNew.execute(status -> {
+            quotaUsageRepository.insertIfAbsent(factoryId, weekStart, DEFAULT_QUOTA_LIMIT);
+            return quotaUsageRepository.reserveIfAvailable(factoryId, weekStart, count);
+        });
+
+        if (updated == null || updated == 0) {
+            AIQuotaUsage quota = load(factoryId, weekStart);
+            throw new AIEnterpriseService.QuotaExceededException(
+                    String.format("本周配额不足。已使用: %d/%d，需要: %d",
+                            quota.getUsedCount(), quota.getQuotaLimit(), count));
+        }
+
+        adjustSnapshot(factoryId, weekStart, count);
+        log.debug("预占AI配额: factoryId={}, weekStart={}, count={}", factoryId, weekStart, count);
+        return new Reservation(factoryId, weekStart, count);
+    }
+
+    /**
+     * 退还预占的配额（重复调用只退还一次；退还失败只记录日志）
+     */
+    public void refund(Reservation reservation) {
+        if (reservation == null || reservation.refunded) {
+            return;
+        }
+        reservation.refunded = true;
+        try {
+            requiresNew.execute(status -> quotaUsageRepository.refundUsedCount(
+                    reservation.factoryId, reservation.weekStart, reservation.count));
+            adjustSnapshot(reservation.factoryId, reservation.weekStart, -reservation.count);
+            log.info("退还AI配额: factoryId={}, weekStart={}, count={}",
+                    reservation.factoryId, reservation.weekStart, reservation.count);
+        } catch (Exception e) {
+            log.error("退还AI配额失败: factoryId={}, weekStart={}, count={}, error={}",
+                    reservation.factoryId, reservation.weekStart, reservation.count, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取工厂本周配额信息（优先读缓存）
+     */
+    public MobileDTO.AIQuotaInfo getQuotaInfo(String factoryId) {
+        LocalDate weekStart = getWeekStart(LocalDate.now());
+        QuotaSnapshot snapshot = snapshots.get(factoryId);
+        if (snapshot == null || !snapshot.weekStart.equals(weekStart)
+                || System.currentTimeMillis() - snapshot.loadedAt > cacheTtlMs) {
+            snapshot = QuotaSnapshot.of(load(factoryId, weekStart));
+        }
+
+        int remaining = Math.max(0, snapshot.quotaLimit - snapshot.usedCount);
+        LocalDate nextMonday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+        return MobileDTO.AIQuotaInfo.builder()
+                .total(snapshot.quotaLimit)
+                .used(snapshot.usedCount)
+                .remaining(remaining)
+                .usageRate(snapshot.quotaLimit > 0 ? (snapshot.usedCount * 100.0 / snapshot.quotaLimit) : 0.0)
+                .resetDate(nextMonday.atStartOfDay())
+                .exceeded(snapshot.usedCount >= snapshot.quotaLimit)
+                .build();
+    }
+
+    /**
+     * 更新工厂本周配额上限
+     *
+     * @return 原配额上限
+     */
+    public int updateQuotaLimit(String factoryId, int newQuotaLimit) {
+        LocalDate weekStart = getWeekStart(LocalDate.now());
+        Integer oldLimit = requiresNew.execute(status -> {
+            quotaUsageRepository.insertIfAbsent(factoryId, weekStart, DEFAULT_QUOTA_LIMIT);
+            AIQuotaUsage quota = quotaUsageRepository.findByFactoryIdAndWeekStart(factoryId, weekStart)
+                    .orElseThrow(() -> new IllegalStateException("配额记录不存在: factoryId=" + factoryId));
+            int previous = quota.getQuotaLimit();
+            quota.setQuotaLimit(newQuotaLimit);
+            quotaUsageRepository.save(quota);
+            log.info("工厂AI配额已更新: factoryId={}, oldLimit={}, newLimit={}, usedCount={}",
+                    factoryId, previous, newQuotaLimit, quota.getUsedCount());
+            return previous;
+        });
+        snapshots.remove(factoryId);
+        return oldLimit;
+    }
+
+    /**
+     * 从数据库读取本周配额（不存在时创建）并刷新缓存；在独立事务中读取，不受调用方持久化上下文中旧实体的影响
+     */
+    private AIQuotaUsage load(String factoryId, LocalDate weekStart) {
+        AIQuotaUsage quota = requiresNew.execute(status -> quotaUsageRepository
+                .findByFactoryIdAndWeekStart(factoryId, weekStart)
+                .orElseGet(() -> {
+                    quotaUsageRepository.insertIfAbsent(factoryId, weekStart, DEFAULT_QUOTA_LIMIT);
+                    return quotaUsageRepository.findByFactoryIdAndWeekStart(factoryId, weekStart)
+                            .orElseThrow(() -> new IllegalStateException("配额记录创建失败: factoryId=" + factoryId));
+                }));
+        snapshots.put(factoryId, QuotaSnapshot.of(quota));
+        return quota;
+    }
+
+    /**
+     * 本节点预占/退还后同步调整缓存中的用量（缓存不存在或已跨周时不处理，下次查询重新加载）
+     */
+    private void adjustSnapshot(String factoryId, LocalDate weekStart, int delta) {
+        snapshots.computeIfPresent(factoryId, (key, snapshot) -> snapshot.weekStart.equals(weekStart)
+                ? new QuotaSnapshot(weekStart, Math.max(0, snapshot.usedCount + delta), snapshot.quotaLimit,
+                        snapshot.loadedAt)
+                : null);
+    }
+
+    private LocalDate getWeekStart(LocalDate date) {
+        return date.with(DayOfWeek.MONDAY);
+    }
+
+    /**
+     * 配额预占凭证
+     */
+    public static final class Reservation {
+        private final String factoryId;
+        private final LocalDate weekStart;
+        private final int count;
+        private volatile boolean refunded;
+
+        private Reservation(String factoryId, LocalDate weekStart, int count) {
+            this.factoryId = factoryId;
+            this.weekStart = weekStart;
+            this.count = count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * 缓存的本周用量
+     */
+    private static final class QuotaSnapshot {
+        private final LocalDate weekStart;
+        private final int usedCount;
+        private final int quotaLimit;
+        private final long loadedAt;
+
+        private QuotaSnapshot(LocalDate weekStart, int usedCount, int quotaLimit, long loadedAt) {
+            this.weekStart = weekStart;
+            this.usedCount = usedCount;
+            this.quotaLimit = quotaLimit;
+            this.loadedAt = loadedAt;
+        }
+
+        private static QuotaSnapshot of(AIQuotaUsage quota) {
+            return new QuotaSnapshot(quota.getWeekStart(), quota.getUsedCount(), quota.getQuotaLimit(),
+                    System.currentTimeMillis());
+        }
+    }
+}
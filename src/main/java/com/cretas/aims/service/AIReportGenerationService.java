@@ -0,0 +1,295 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.AIReportJob;
+import com.cretas.aims.entity.enums.ReportJobStatus;
+import com.cretas.aims.repository.AIReportJobRepository;
+import com.cretas.aims.repository.FactoryRepository;
+import com.cretas.aims.util.TokenBucketRateLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * AI定时报告批量生成服务
+ *
+ * 1. 只查询活跃工厂ID，为每个工厂在 ai_report_jobs 中登记本周期的任务（已存在则不变，已成功的工厂跳过）
+ * 2. 执行前用条件更新领取任务，只有更新到一行的运行才生成；定时任务与手动补生成重叠、或多个节点同时触发时，
+ *    同一工厂只生成一次；生成中超过 stale-after 的任务视为上次运行中断，可以重新领取
+ * 3. 固定大小的工作线程池并行生成，每次调用AI前从令牌桶取令牌，整体速率受 rate-per-second 限制
+ * 4. 单个工厂失败后按指数退避重试，重试用尽记为 FAILED；再次运行同一周期即可只补生成未成功的工厂
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AIReportGenerationService {
+
+    public static final String REPORT_WEEKLY = "weekly";
+    public static final String REPORT_MONTHLY = "monthly";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final AIEnterpriseService aiEnterpriseService;
+    private final FactoryRepository factoryRepository;
+    private final AIReportJobRepository reportJobRepository;
+
+    /**
+     * 并行生成的工作线程数
+     */
+    @Value("${cretas.ai.report.workers:8}")
+    private int workers;
+
+    /**
+     * 每秒最多发起的报告生成次数
+     */
+    @Value("${cretas.ai.report.rate-per-second:2}")
+    private double ratePerSecond;
+
+    /**
+     * 令牌桶容量（允许的突发量）
+     */
+    @Value("${cretas.ai.report.burst:4}")
+    private int burst;
+
+    /**
+     * 单个工厂每次运行的最大尝试次数
+     */
+    @Value("${cretas.ai.report.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 首次重试前的等待时间（毫秒），之后每次翻倍
+     */
+    @Value("${cretas.ai.report.backoff:5000}")
+    private long backoffMs;
+
+    /**
+     * 生成中的任务超过该时间（毫秒）未更新视为中断，可被重新领取
+     */
+    @Value("${cretas.ai.report.stale-after:3600000}")
+    private long staleAfterMs;
+
+    private ExecutorService workerPool;
+    private TokenBucketRateLimiter rateLimiter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "ai-report-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        rateLimiter = new TokenBucketRateLimiter(ratePerSecond, burst);
+        log.info("AI报告生成线程池初始化完成: workers={}, ratePerSecond={}, burst={}, maxAttempts={}",
+                workers, ratePerSecond, burst, maxAttempts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * 为所有活跃工厂生成指定周期的报告（阻塞到全部工厂处理完成）
+     *
+     * @param reportType  weekly / monthly
+     * @param periodStart 周期开始日期
+     * @param periodEnd   周期结束日期
+     * @return 汇总：total / skipped / inProgress / success / failed / durationMs
+     */
+    public Map<String, Object> generateForAllFactories(String reportType, LocalDate periodStart, LocalDate periodEnd) {
+        long startTime = System.currentTimeMillis();
+        List<String> factoryIds = factoryRepository.findActiveFactoryIds();
+        List<AIReportJob> jobs = prepareJobs(reportType, periodStart, periodEnd, factoryIds);
+        log.info("开始生成{}报告: 周期={} 至 {}, 活跃工厂={}, 待生成={}",
+                reportType, periodStart, periodEnd, factoryIds.size(), jobs.size());
+
+        AtomicInteger inProgressCount = new AtomicInteger();
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger failureCount = new AtomicInteger();
+        CompletableFuture.allOf(jobs.stream()
+                        .map(job -> CompletableFuture.runAsync(() -> {
+                            if (!claim(job)) {
+                                inProgressCount.incrementAndGet();
+                            } else if (runJob(job)) {
+                                successCount.incrementAndGet();
+                            } else {
+                                failureCount.incrementAndGet();
+                            }
+                        }, workerPool))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("{}报告生成完成: 总计={} | 已完成跳过={} | 其他运行处理中={} | 成功={} | 失败={} | 耗时={}ms",
+                reportType, factoryIds.size(), factoryIds.size() - jobs.size(), inProgressCount.get(),
+                successCount.get(), failureCount.get(), duration);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("total", factoryIds.size());
+        summary.put("skipped", factoryIds.size() - jobs.size());
+        summary.put("inProgress", inProgressCount.get());
+        summary.put("success", successCount.get());
+        summary.put("failed", failureCount.get());
+        summary.put("durationMs", duration);
+        return summary;
+    }
+
+    /**
+     * 指定周期的生成进度：total 及各状态（pending / running / success / failed）的工厂数
+     */
+    public Map<String, Object> getProgress(String reportType, LocalDate periodStart) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("reportType", reportType);
+        progress.put("periodStart", periodStart);
+        for (ReportJobStatus status : ReportJobStatus.values()) {
+            progress.put(status.name().toLowerCase(), 0L);
+        }
+        long total = 0;
+        for (Object[] row : reportJobRepository.countByStatus(reportType, periodStart)) {
+            long count = ((Number) row[1]).longValue();
+            progress.put(((ReportJobStatus) row[0]).name().toLowerCase(), count);
+            total += count;
+        }
+        progress.put("total", total);
+        return progress;
+    }
+
+    /**
+     * 登记本周期任务，返回未成功的任务（新建、待生成、失败或生成中的，是否执行由 claim 决定）
+     */
+    private List<AIReportJob> prepareJobs(String reportType, LocalDate periodStart, LocalDate periodEnd,
+                                          List<String> factoryIds) {
+        List<AIReportJob> jobs = reportJobRepository.findByReportTypeAndPeriodStart(reportType, periodStart);
+        Set<String> registered = jobs.stream()
+                .map(AIReportJob::getFactoryId)
+                .collect(Collectors.toSet());
+        boolean created = false;
+        for (String factoryId : factoryIds) {
+            if (!registered.contains(factoryId)) {
+                reportJobRepository.insertIfAbsent(factoryId, reportType, periodStart, periodEnd);
+                created = true;
+            }
+        }
+        if (created) {
+            jobs = reportJobRepository.findByReportTypeAndPeriodStart(reportType, periodStart);
+        }
+
+        Set<String> activeFactoryIds = new HashSet<>(factoryIds);
+        return jobs.stream()
+                .filter(job -> activeFactoryIds.contains(job.getFactoryId()))
+                .filter(job -> job.getStatus() != ReportJobStatus.SUCCESS)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 领取任务（条件更新），只有领取成功的运行才生成
+     *
+     * @return false 表示任务已被其他运行领取或已生成
+     */
+    private boolean claim(AIReportJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        if (reportJobRepository.claim(job.getId(), now, now.minus(Duration.ofMillis(staleAfterMs))) == 0) {
+            log.info("工厂 {} {}报告已由其他运行领取或已生成，本次跳过", job.getFactoryId(), job.getReportType());
+            return false;
+        }
+        job.setStatus(ReportJobStatus.RUNNING);
+        job.setStartedAt(now);
+        return true;
+    }
+
+    /**
+     * 执行单个工厂的报告生成（含重试）
+     *
+     * @return 是否成功
+     */
+    private boolean runJob(AIReportJob job) {
+        String lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                rateLimiter.acquire();
+                // 每次尝试刷新开始时间，重试期间不会被其他运行视为中断
+                job.setStatus(ReportJobStatus.RUNNING);
+                job.setAttempts(job.getAttempts() + 1);
+                job.setStartedAt(LocalDateTime.now());
+                job = reportJobRepository.save(job);
+
+                generate(job);
+
+                job.setStatus(ReportJobStatus.SUCCESS);
+                job.setLastError(null);
+                job.setFinishedAt(LocalDateTime.now());
+                reportJobRepository.save(job);
+                log.info("✅ 工厂 {} {}报告生成成功", job.getFactoryId(), job.getReportType());
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lastError = "任务被中断";
+                break;
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                log.warn("工厂 {} {}报告生成失败（第{}/{}次）: {}",
+                        job.getFactoryId(), job.getReportType(), attempt, maxAttempts, e.getMessage());
+                if (attempt < maxAttempts && !sleepBackoff(attempt)) {
+                    lastError = "任务被中断";
+                    break;
+                }
+            }
+        }
+
+        job.setStatus(ReportJobStatus.FAILED);
+        job.setLastError(lastError != null && lastError.length() > MAX_ERROR_LENGTH
+                ? lastError.substring(0, MAX_ERROR_LENGTH) : lastError);
+        try {
+            reportJobRepository.save(job);
+        } catch (Exception e) {
+            log.error("保存报告任务状态失败: factoryId={}, error={}", job.getFactoryId(), e.getMessage());
+        }
+        log.error("❌ 工厂 {} {}报告生成失败: {}", job.getFactoryId(), job.getReportType(), lastError);
+        return false;
+    }
+
+    private void generate(AIReportJob job) {
+        if (REPORT_MONTHLY.equals(job.getReportType())) {
+            aiEnterpriseService.generateMonthlyReport(job.getFactoryId(), job.getPeriodStart(), job.getPeriodEnd());
+        } else {
+            aiEnterpriseService.generateWeeklyReport(job.getFactoryId(), job.getPeriodStart(), job.getPeriodEnd());
+        }
+    }
+
+    /**
+     * 指数退避：backoff, 2*backoff, 4*backoff ...
+     *
+     * @return false 表示等待期间被中断
+     */
+    private boolean sleepBackoff(int attempt) {
+        try {
+            Thread.sleep(backoffMs << (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package com.cretas.aims.service;
 
-import com.cretas.aims.entity.Factory;
-import com.cretas.aims.repository.FactoryRepository;
+import com.cretas.aims.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * AI报告定时任务调度器
@@ -18,6 +20,7 @@ import java.util.List;
  * 功能：
  * 1. 每周一早上6点自动生成所有工厂的周报告
  * 2. 每月1日早上6点自动生成所有工厂的月报告
+ *    （由 AIReportGenerationService 并行生成、限流、失败重试，可按周期补生成）
  * 3. 定期清理过期的报告和审计日志
  *
  * 注意：
@@ -38,7 +41,11 @@ public class AIReportScheduler {
     private AIEnterpriseService aiEnterpriseService;
 
     @Autowired
-    private FactoryRepository factoryRepository;
+    private AIReportGenerationService reportGenerationService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
 
     /**
      * 每周一早上6点生成周报告
@@ -53,49 +60,15 @@ public class AIReportScheduler {
     @Scheduled(cron = "0 0 6 * * MON")
     public void generateWeeklyReportsForAllFactories() {
         log.info("========== 开始生成周报告 ==========");
-        long startTime = System.currentTimeMillis();
 
         try {
-            // 1. 获取所有活跃的工厂
-            List<Factory> activeFactories = factoryRepository.findAll().stream()
-                    .filter(f -> Boolean.TRUE.equals(f.getIsActive()))
-                    .collect(java.util.stream.Collectors.toList());
-
-            log.info("找到 {} 个活跃工厂，开始生成周报告", activeFactories.size());
-
-            // 2. 计算上周的时间范围（上周一到上周日）
+            // 上周的时间范围（上周一到上周日）
             LocalDate lastMonday = LocalDate.now().minusWeeks(1).with(java.time.DayOfWeek.MONDAY);
             LocalDate lastSunday = lastMonday.plusDays(6);
 
-            log.info("报告周期: {} 至 {}", lastMonday, lastSunday);
-
-            // 3. 为每个工厂生成周报告
-            int successCount = 0;
-            int failureCount = 0;
-
-            for (Factory factory : activeFactories) {
-                try {
-                    aiEnterpriseService.generateWeeklyReport(
-                            factory.getId(),
-                            lastMonday,
-                            lastSunday
-                    );
-                    successCount++;
-                    log.info("✅ 工厂 {} 周报告生成成功", factory.getId());
-
-                    // 避免同时请求过多，间隔2秒
-                    Thread.sleep(2000);
-
-                } catch (Exception e) {
-                    failureCount++;
-                    log.error("❌ 工厂 {} 周报告生成失败: {}", factory.getId(), e.getMessage(), e);
-                }
-            }
-
-            long duration = System.currentTimeMillis() - startTime;
+            reportGenerationService.generateForAllFactories(
+                    AIReportGenerationService.REPORT_WEEKLY, lastMonday, lastSunday);
             log.info("========== 周报告生成完成 ==========");
-            log.info("总计: {} 个工厂 | 成功: {} | 失败: {} | 耗时: {}ms",
-                    activeFactories.size(), successCount, failureCount, duration);
 
         } catch (Exception e) {
             log.error("周报告生成任务异常: {}", e.getMessage(), e);
@@ -115,49 +88,15 @@ public class AIReportScheduler {
     @Scheduled(cron = "0 0 6 1 * *")
     public void generateMonthlyReportsForAllFactories() {
         log.info("========== 开始生成月报告 ==========");
-        long startTime = System.currentTimeMillis();
 
         try {
-            // 1. 获取所有活跃的工厂
-            List<Factory> activeFactories = factoryRepository.findAll().stream()
-                    .filter(f -> Boolean.TRUE.equals(f.getIsActive()))
-                    .collect(java.util.stream.Collectors.toList());
-
-            log.info("找到 {} 个活跃工厂，开始生成月报告", activeFactories.size());
-
-            // 2. 计算上月的时间范围（上月1日到上月最后一天）
+            // 上月的时间范围（上月1日到上月最后一天）
             LocalDate lastMonthStart = LocalDate.now().minusMonths(1).withDayOfMonth(1);
             LocalDate lastMonthEnd = lastMonthStart.with(TemporalAdjusters.lastDayOfMonth());
 
-            log.info("报告月份: {} 至 {}", lastMonthStart, lastMonthEnd);
-
-            // 3. 为每个工厂生成月报告
-            int successCount = 0;
-            int failureCount = 0;
-
-            for (Factory factory : activeFactories) {
-                try {
-                    aiEnterpriseService.generateMonthlyReport(
-                            factory.getId(),
-                            lastMonthStart,
-                            lastMonthEnd
-                    );
-                    successCount++;
-                    log.info("✅ 工厂 {} 月报告生成成功", factory.getId());
-
-                    // 避免同时请求过多，间隔3秒
-                    Thread.sleep(3000);
-
-                } catch (Exception e) {
-                    failureCount++;
-                    log.error("❌ 工厂 {} 月报告生成失败: {}", factory.getId(), e.getMessage(), e);
-                }
-            }
-
-            long duration = System.currentTimeMillis() - startTime;
+            reportGenerationService.generateForAllFactories(
+                    AIReportGenerationService.REPORT_MONTHLY, lastMonthStart, lastMonthEnd);
             log.info("========== 月报告生成完成 ==========");
-            log.info("总计: {} 个工厂 | 成功: {} | 失败: {} | 耗时: {}ms",
-                    activeFactories.size(), successCount, failureCount, duration);
 
         } catch (Exception e) {
             log.error("月报告生成任务异常: {}", e.getMessage(), e);
@@ -253,6 +192,50 @@ public class AIReportScheduler {
         }
     }
 
+    /**
+     * 补生成指定周期的报告：只处理该周期内未成功（失败、中断或新增）的工厂
+     * 由平台管理接口 POST /api/platform/ai-reports/resume 调用，提交到通用线程池后立即返回，
+     * 进度通过 getReportProgress 按 ai_report_jobs 查询
+     *
+     * @param reportType weekly / monthly
+     * @return 任务标识：reportType / periodStart / periodEnd
+     */
+    public Map<String, Object> resumeReports(String reportType, LocalDate periodStart, LocalDate periodEnd) {
+        validateReportType(reportType);
+        if (periodEnd.isBefore(periodStart)) {
+            throw new BusinessException("周期结束日期不能早于开始日期");
+        }
+        taskExecutor.execute(() -> {
+            try {
+                reportGenerationService.generateForAllFactories(reportType, periodStart, periodEnd);
+            } catch (Exception e) {
+                log.error("补生成{}报告异常: periodStart={}, error={}", reportType, periodStart, e.getMessage(), e);
+            }
+        });
+        log.info("已提交补生成任务: type={}, period={} to {}", reportType, periodStart, periodEnd);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("reportType", reportType);
+        result.put("periodStart", periodStart);
+        result.put("periodEnd", periodEnd);
+        return result;
+    }
+
+    /**
+     * 查询指定周期的生成进度（各状态的工厂数）
+     */
+    public Map<String, Object> getReportProgress(String reportType, LocalDate periodStart) {
+        validateReportType(reportType);
+        return reportGenerationService.getProgress(reportType, periodStart);
+    }
+
+    private void validateReportType(String reportType) {
+        if (!AIReportGenerationService.REPORT_WEEKLY.equals(reportType)
+                && !AIReportGenerationService.REPORT_MONTHLY.equals(reportType)) {
+            throw new BusinessException("不支持的报告类型: " + reportType);
+        }
+    }
+
     /**
      * 手动触发周报告生成（用于测试或补生成）
      */
@@ -0,0 +1,336 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Python AI 服务 HTTP 客户端
+ *
+ * - 基于 JDK HttpClient：单实例复用 keep-alive 长连接（连接池由 HttpClient 内部维护），不再每次新建连接
+ * - 连接超时、读取（整体响应）超时均来自配置，AI 服务挂起时调用方最多等待 read-timeout
+ * - 同时在途请求数受 max-concurrent 限制，超出时立即失败，不会堆积线程
+ * - 提供 CompletableFuture 异步接口，同步接口只是异步接口的 join
+ * - 提供 SSE 流式接口：逐行解析 data: 事件并回调，不占用调用线程
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AIServiceClient {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    /**
+     * 流式接口不存在（AI 服务返回 404/405）时的错误码
+     */
+    public static final int STREAM_NOT_SUPPORTED = 404;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${cretas.ai.service.url:http://localhost:8085}")
+    private String baseUrl;
+
+    /**
+     * 读取超时（毫秒）：从发出请求到收到完整响应的最长时间
+     */
+    @Value("${cretas.ai.service.timeout:30000}")
+    private long readTimeoutMs;
+
+    /**
+     * 流式请求整体超时（毫秒）：从发出请求到流结束的最长时间
+     */
+    @Value("${cretas.ai.service.stream-timeout:120000}")
+    private long streamTimeoutMs;
+
+    @Value("${cretas.ai.service.connect-timeout:3000}")
+    private long connectTimeoutMs;
+
+    /**
+     * 同时在途请求上限
+     */
+    @Value("${cretas.ai.service.max-concurrent:32}")
+    private int maxConcurrent;
+
+    private HttpClient httpClient;
+    private ExecutorService ioExecutor;
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "ai-http-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(ioExecutor)
+                .build();
+        permits = new Semaphore(maxConcurrent);
+        log.info("AI服务客户端初始化完成: baseUrl={}, connectTimeout={}ms, readTimeout={}ms, maxConcurrent={}",
+                baseUrl, connectTimeoutMs, readTimeoutMs, maxConcurrent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdown();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public long getStreamTimeoutMs() {
+        return streamTimeoutMs;
+    }
+
+    // ==================== 异步接口 ====================
+
+    /**
+     * 异步 POST JSON，返回解析后的 JSON 对象
+     */
+    public CompletableFuture<Map<String, Object>> postAsync(String path, Object body) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new BusinessException("AI请求序列化失败: " + e.getMessage(), e));
+        }
+        HttpRequest request = requestBuilder(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return send(request);
+    }
+
+    /**
+     * 异步 GET，返回解析后的 JSON 对象
+     */
+    public CompletableFuture<Map<String, Object>> getAsync(String path) {
+        return send(requestBuilder(path).GET().build());
+    }
+
+    /**
+     * 异步 POST JSON 并以 SSE 方式读取响应：每个 "data: {json}" 行解析后回调 onEvent
+     *
+     * 回调在 HTTP 客户端线程上执行，不应阻塞；回调抛出异常时中止读取。
+     * 返回的 Future 在流结束时完成，失败时以 BusinessException 异常完成
+     * （AI 服务没有该接口时错误码为 STREAM_NOT_SUPPORTED）。
+     */
+    public CompletableFuture<Void> postStream(String path, Object body, Consumer<Map<String, Object>> onEvent) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new BusinessException("AI请求序列化失败: " + e.getMessage(), e));
+        }
+        if (!permits.tryAcquire()) {
+            return CompletableFuture.failedFuture(new BusinessException(503, "AI服务繁忙，请稍后重试"));
+        }
+        HttpRequest request = requestBuilder(path)
+                .setHeader("Accept", "text/event-stream")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+
+        long startTime = System.nanoTime();
+        EventLineSubscriber subscriber = new EventLineSubscriber(onEvent);
+        httpClient.sendAsync(request, info -> info.statusCode() / 100 == 2
+                        ? HttpResponse.BodySubscribers.fromLineSubscriber(subscriber)
+                        : HttpResponse.BodySubscribers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        subscriber.done.completeExceptionally(error);
+                    } else if (response.statusCode() == 404 || response.statusCode() == 405) {
+                        subscriber.done.completeExceptionally(new BusinessException(STREAM_NOT_SUPPORTED,
+                                "AI服务不支持流式接口: HTTP " + response.statusCode()));
+                    } else if (response.statusCode() / 100 != 2) {
+                        subscriber.done.completeExceptionally(
+                                new BusinessException(502, "AI服务返回错误: HTTP " + response.statusCode()));
+                    }
+                });
+
+        return subscriber.done
+                .orTimeout(streamTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, error) -> {
+                    permits.release();
+                    long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+                    if (error != null) {
+                        subscriber.cancel();
+                        log.warn("AI服务流式请求失败: POST {}, 耗时={}ms, error={}", path, elapsedMs, error.toString());
+                    } else {
+                        log.debug("AI服务流式请求完成: POST {}, events={}, 耗时={}ms", path, subscriber.events, elapsedMs);
+                    }
+                })
+                .exceptionally(error -> {
+                    throw new CompletionException(translate(error));
+                });
+    }
+
+    // ==================== 同步接口 ====================
+
+    public Map<String, Object> post(String path, Object body) {
+        return join(postAsync(path, body));
+    }
+
+    public Map<String, Object> get(String path) {
+        return join(getAsync(path));
+    }
+
+    // ==================== 内部实现 ====================
+
+    private HttpRequest.Builder requestBuilder(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .header("Accept", "application/json");
+    }
+
+    private CompletableFuture<Map<String, Object>> send(HttpRequest request) {
+        if (!permits.tryAcquire()) {
+            return CompletableFuture.failedFuture(new BusinessException(503, "AI服务繁忙，请稍后重试"));
+        }
+        long startTime = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    permits.release();
+                    long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+                    if (error != null) {
+                        log.warn("AI服务请求失败: {} {}, 耗时={}ms, error={}",
+                                request.method(), request.uri().getPath(), elapsedMs, error.toString());
+                    } else {
+                        log.debug("AI服务请求完成: {} {}, status={}, 耗时={}ms",
+                                request.method(), request.uri().getPath(), response.statusCode(), elapsedMs);
+                    }
+                })
+                .thenApply(this::parse)
+                .exceptionally(error -> {
+                    throw new CompletionException(translate(error));
+                });
+    }
+
+    private Map<String, Object> parse(HttpResponse<String> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw new BusinessException(502, "AI服务返回错误: HTTP " + response.statusCode());
+        }
+        String body = response.body();
+        if (body == null || body.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(body, MAP_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SSE 行解析：只处理 "data:" 行，其余（event:、id:、注释、空行）忽略
+     */
+    private final class EventLineSubscriber implements Flow.Subscriber<String> {
+
+        private final Consumer<Map<String, Object>> onEvent;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private int events;
+
+        private EventLineSubscriber(Consumer<Map<String, Object>> onEvent) {
+            this.onEvent = onEvent;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (done.isDone() || !line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.isEmpty()) {
+                return;
+            }
+            try {
+                events++;
+                onEvent.accept(objectMapper.readValue(data, MAP_TYPE));
+            } catch (Exception e) {
+                done.completeExceptionally(e);
+                cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+
+        private void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * 统一转换为 BusinessException（超时 504，连接/解析失败 503）
+     */
+    private static BusinessException translate(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof BusinessException) {
+            return (BusinessException) cause;
+        }
+        if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+            return new BusinessException(504, "AI服务响应超时", cause);
+        }
+        return new BusinessException(503, "AI服务暂时不可用: " + cause.getMessage(), cause);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw translate(e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.AIAuditLog;
+import com.cretas.aims.entity.SystemLog;
+import com.cretas.aims.repository.AIAuditLogRepository;
+import com.cretas.aims.repository.SystemLogRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步批量日志写入（system_logs / ai_audit_logs）
+ *
+ * 1. 调用方只把日志放入有界无锁队列（ConcurrentLinkedQueue + 计数器），不再在业务事务中同步 INSERT
+ * 2. 后台写入线程每 flush-interval 毫秒、或队列积累到 flush-size 条时，按批 saveAll 写入；
+ *    两张表均使用 TABLE 主键生成器（allocationSize=50），配合 JDBC 批处理与 rewriteBatchedStatements 合并为多行 INSERT
+ * 3. 队列满时按 overflow 策略处理：drop 直接丢弃并计数，caller-runs 由调用线程同步写入（反压）
+ * 4. 批量写入失败时逐条重试，只丢弃真正写不进去的记录
+ * 5. 应用关闭时停止接收新日志，并在 shutdown-timeout 内把队列中的日志全部写完
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AsyncLogSink {
+
+    private static final String OVERFLOW_CALLER_RUNS = "caller-runs";
+
+    private final SystemLogRepository systemLogRepository;
+    private final AIAuditLogRepository auditLogRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * 队列容量
+     */
+    @Value("${cretas.log-sink.capacity:10000}")
+    private int capacity;
+
+    /**
+     * 每批最多写入条数，队列积累到该数量时立即唤醒写入线程
+     */
+    @Value("${cretas.log-sink.flush-size:200}")
+    private int flushSize;
+
+    /**
+     * 定时写入间隔（毫秒）
+     */
+    @Value("${cretas.log-sink.flush-interval:1000}")
+    private long flushIntervalMs;
+
+    /**
+     * 队列满时的处理策略：drop / caller-runs
+     */
+    @Value("${cretas.log-sink.overflow:drop}")
+    private String overflow;
+
+    /**
+     * 关闭时等待队列写完的最长时间（毫秒）
+     */
+    @Value("${cretas.log-sink.shutdown-timeout:10000}")
+    private long shutdownTimeoutMs;
+
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private TransactionTemplate requiresNew;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        running = true;
+        writer = new Thread(this::writeLoop, "log-sink-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("异步日志写入线程已启动: capacity={}, flushSize={}, flushInterval={}ms, overflow={}",
+                capacity, flushSize, flushIntervalMs, overflow);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入线程超时未退出时由关闭线程写完剩余日志
+        drain();
+        log.info("异步日志写入已停止: {}", getStats());
+    }
+
+    /**
+     * 提交系统日志
+     */
+    public void submit(SystemLog systemLog) {
+        if (systemLog.getCreatedAt() == null) {
+            systemLog.setCreatedAt(LocalDateTime.now());
+        }
+        enqueue(systemLog);
+    }
+
+    /**
+     * 提交AI审计日志
+     */
+    public void submit(AIAuditLog auditLog) {
+        if (auditLog.getCreatedAt() == null) {
+            LocalDateTime now = LocalDateTime.now();
+            auditLog.setCreatedAt(now);
+            auditLog.setUpdatedAt(now);
+        }
+        enqueue(auditLog);
+    }
+
+    /**
+     * 运行指标：队列长度与各类计数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueSize", queueSize.get());
+        stats.put("capacity", capacity);
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("written", writtenCount.get());
+        stats.put("dropped", droppedCount.get());
+        stats.put("callerRuns", callerRunsCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("batches", batchCount.get());
+        return stats;
+    }
+
+    private void enqueue(Object record) {
+        if (!running) {
+            // 已进入关闭流程，直接同步写入
+            write(List.of(record));
+            return;
+        }
+        int size = queueSize.incrementAndGet();
+        if (size > capacity) {
+            queueSize.decrementAndGet();
+            if (OVERFLOW_CALLER_RUNS.equals(overflow)) {
+                callerRunsCount.incrementAndGet();
+                write(List.of(record));
+            } else if (droppedCount.incrementAndGet() % 1000 == 1) {
+                log.warn("日志队列已满，丢弃日志: capacity={}, 累计丢弃={}", capacity, droppedCount.get());
+            }
+            return;
+        }
+        queue.offer(record);
+        enqueuedCount.incrementAndGet();
+        if (size >= flushSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            if (queueSize.get() < flushSize) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+            try {
+                flushOnce();
+            } catch (Exception e) {
+                log.error("日志批量写入异常: {}", e.getMessage(), e);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * 写完队列中的全部日志
+     */
+    private synchronized void drain() {
+        while (flushOnce() > 0) {
+            // 继续直到队列清空
+        }
+    }
+
+    /**
+     * 取出最多 flushSize 条写入
+     *
+     * @return 本次取出的条数
+     */
+    private synchronized int flushOnce() {
+        List<Object> batch = new ArrayList<>(Math.min(flushSize, Math.max(1, queueSize.get())));
+        Object record;
+        while (batch.size() < flushSize && (record = queue.poll()) != null) {
+            batch.add(record);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        queueSize.addAndGet(-batch.size());
+        write(batch);
+        return batch.size();
+    }
+
+    private void write(List<Object> records) {
+        List<SystemLog> systemLogs = new ArrayList<>();
+        List<AIAuditLog> auditLogs = new ArrayList<>();
+        for (Object record : records) {
+            if (record instanceof SystemLog) {
+                systemLogs.add((SystemLog) record);
+            } else {
+                auditLogs.add((AIAuditLog) record);
+            }
+        }
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                if (!systemLogs.isEmpty()) {
+                    systemLogRepository.saveAll(systemLogs);
+                }
+                if (!auditLogs.isEmpty()) {
+                    auditLogRepository.saveAll(auditLogs);
+                }
+            });
+            writtenCount.addAndGet(records.size());
+            batchCount.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("日志批量写入失败，逐条重试: size={}, error={}", records.size(), e.getMessage());
+            for (Object record : records) {
+                writeOne(record);
+            }
+        }
+    }
+
+    private void writeOne(Object record) {
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                if (record instanceof SystemLog) {
+                    SystemLog systemLog = (SystemLog) record;
+                    systemLog.setId(null);
+                    systemLogRepository.save(systemLog);
+                } else {
+                    AIAuditLog auditLog = (AIAuditLog) record;
+                    auditLog.setId(null);
+                    auditLogRepository.save(auditLog);
+                }
+            });
+            writtenCount.incrementAndGet();
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            log.error("日志写入失败，已丢弃: type={}, error={}", record.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.EquipmentUsage;
+import com.cretas.aims.entity.FactoryEquipment;
+import com.cretas.aims.entity.MaterialBatch;
+import com.cretas.aims.entity.MaterialConsumption;
+import com.cretas.aims.entity.ProductionBatch;
+import com.cretas.aims.entity.ProductionPlan;
+import com.cretas.aims.entity.QualityInspection;
+import com.cretas.aims.entity.User;
+import com.cretas.aims.repository.EquipmentRepository;
+import com.cretas.aims.repository.EquipmentUsageRepository;
+import com.cretas.aims.repository.MaterialConsumptionRepository;
+import com.cretas.aims.repository.ProductionPlanRepository;
+import com.cretas.aims.repository.QualityInspectionRepository;
+import com.cretas.aims.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 批次成本分析数据批量加载器
+ *
+ * 为一组生产批次一次性取回成本分析所需的业务链数据：生产计划、原材料消耗（连同原材料批次、类型、供应商）、
+ * 设备使用及设备信息、质检记录及检验员，全部使用 IN 查询，查询次数固定（最多 6 次），与批次数量无关。
+ * 取回后在内存中按批次组装；单批次分析（getEnhancedBatchCostAnalysis）与时间范围、对比分析共用这一套组装逻辑。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchCostAnalysisLoader {
+
+    /**
+     * 每个批次最多纳入分析的质检记录数
+     */
+    private static final int MAX_INSPECTIONS_PER_BATCH = 100;
+
+    /**
+     * 设备成本：每小时50元
+     */
+    private static final BigDecimal EQUIPMENT_HOURLY_COST = new BigDecimal("50");
+
+    private final ProductionPlanRepository productionPlanRepository;
+    private final MaterialConsumptionRepository materialConsumptionRepository;
+    private final EquipmentUsageRepository equipmentUsageRepository;
+    private final EquipmentRepository equipmentRepository;
+    private final QualityInspectionRepository qualityInspectionRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * 批量加载成本分析数据
+     *
+     * @param factoryId 工厂ID
+     * @param batches   已按工厂校验过的生产批次
+     * @return 批次ID -> 增强成本分析，顺序与传入批次一致；组装失败的批次不在结果中
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Map<String, Object>> load(String factoryId, List<ProductionBatch> batches) {
+        if (batches.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> batchIds = batches.stream().map(ProductionBatch::getId).collect(Collectors.toList());
+
+        Set<Integer> planIds = batches.stream()
+                .map(ProductionBatch::getProductionPlanId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, ProductionPlan> plans = planIds.isEmpty() ? Collections.emptyMap()
+                : indexById(productionPlanRepository.findAllById(planIds), ProductionPlan::getId);
+
+        Map<Long, List<MaterialConsumption>> consumptions = materialConsumptionRepository
+                .findWithMaterialByProductionBatchIdIn(batchIds).stream()
+                .collect(Collectors.groupingBy(MaterialConsumption::getProductionBatchId));
+
+        List<EquipmentUsage> allUsages = equipmentUsageRepository.findByProductionBatchIdIn(batchIds);
+        Set<Integer> equipmentIds = allUsages.stream()
+                .map(EquipmentUsage::getEquipmentId)
+                .collect(Collectors.toSet());
+        Map<Integer, FactoryEquipment> equipments = equipmentIds.isEmpty() ? Collections.emptyMap()
+                : indexById(equipmentRepository.findAllById(equipmentIds), FactoryEquipment::getId);
+        Map<Long, List<EquipmentUsage>> usages = allUsages.stream()
+                .collect(Collectors.groupingBy(EquipmentUsage::getProductionBatchId));
+
+        Map<Long, List<QualityInspection>> inspections = new HashMap<>();
+        for (QualityInspection inspection : qualityInspectionRepository
+                .findByFactoryIdAndProductionBatchIdInOrderByProductionBatchIdAscIdAsc(factoryId, batchIds)) {
+            List<QualityInspection> list = inspections.computeIfAbsent(
+                    inspection.getProductionBatchId(), id -> new ArrayList<>());
+            if (list.size() < MAX_INSPECTIONS_PER_BATCH) {
+                list.add(inspection);
+            }
+        }
+        Set<Integer> inspectorIds = inspections.values().stream()
+                .flatMap(List::stream)
+                .map(QualityInspection::getInspectorId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, User> inspectors = inspectorIds.isEmpty() ? Collections.emptyMap()
+                : indexById(userRepository.findAllById(inspectorIds), User::getId);
+
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        for (ProductionBatch batch : batches) {
+            // 单个批次的数据异常（如原材料批次缺少单价）只跳过该批次，不影响其他批次
+            try {
+                result.put(batch.getId(), assemble(batch,
+                        batch.getProductionPlanId() != null ? plans.get(batch.getProductionPlanId()) : null,
+                        consumptions.getOrDefault(batch.getId(), Collections.emptyList()),
+                        usages.getOrDefault(batch.getId(), Collections.emptyList()),
+                        equipments,
+                        inspections.getOrDefault(batch.getId(), Collections.emptyList()),
+                        inspectors));
+            } catch (Exception e) {
+                log.error("组装批次成本数据失败: batchId={}, error={}", batch.getId(), e.getMessage(), e);
+            }
+        }
+        log.info("批量加载批次成本数据完成: factoryId={}, 批次{}个, 消耗记录{}条, 设备使用{}条, 质检{}条",
+                factoryId, batches.size(), consumptions.values().stream().mapToInt(List::size).sum(),
+                allUsages.size(), inspections.values().stream().mapToInt(List::size).sum());
+        return result;
+    }
+
+    /**
+     * 组装单个批次的增强成本分析（整合原材料、设备、人工、质检等全维度信息）
+     */
+    private Map<String, Object> assemble(ProductionBatch batch,
+                                         ProductionPlan plan,
+                                         List<MaterialConsumption> consumptions,
+                                         List<EquipmentUsage> usages,
+                                         Map<Integer, FactoryEquipment> equipments,
+                                         List<QualityInspection> inspections,
+                                         Map<Integer, User> inspectors) {
+        Map<String, Object> analysis = new HashMap<>();
+
+        // ========== 1. 基本信息 ==========
+        Map<String, Object> batchInfo = new HashMap<>();
+        batchInfo.put("batchNumber", batch.getBatchNumber());
+        batchInfo.put("productName", batch.getProductName());
+        batchInfo.put("plannedQuantity", batch.getPlannedQuantity());
+        batchInfo.put("actualQuantity", batch.getActualQuantity());
+        batchInfo.put("goodQuantity", batch.getGoodQuantity());
+        batchInfo.put("defectQuantity", batch.getDefectQuantity());
+        batchInfo.put("yieldRate", batch.getYieldRate());
+        batchInfo.put("efficiency", batch.getEfficiency());
+        batchInfo.put("status", batch.getStatus());
+        batchInfo.put("startTime", batch.getStartTime());
+        batchInfo.put("endTime", batch.getEndTime());
+
+        // 计算生产时长
+        if (batch.getStartTime() != null && batch.getEndTime() != null) {
+            long hours = ChronoUnit.HOURS.between(batch.getStartTime(), batch.getEndTime());
+            batchInfo.put("productionHours", hours);
+        }
+        analysis.put("batchInfo", batchInfo);
+
+        // ========== 2. 生产计划对比 ==========
+        if (plan != null) {
+            Map<String, Object> planComparison = new HashMap<>();
+            planComparison.put("planId", plan.getId());
+            planComparison.put("planNumber", plan.getPlanNumber());
+            planComparison.put("plannedDate", plan.getPlannedDate());
+            planComparison.put("plannedQuantity", plan.getPlannedQuantity());
+            planComparison.put("actualQuantity", batch.getActualQuantity());
+
+            if (plan.getPlannedQuantity() != null && batch.getActualQuantity() != null) {
+                BigDecimal completionRate = batch.getActualQuantity()
+                    .divide(plan.getPlannedQuantity(), 4, RoundingMode.HALF_UP)
+                    .multiply(new BigDecimal(100));
+                planComparison.put("completionRate", completionRate);
+            }
+
+            planComparison.put("planStartTime", plan.getStartTime());
+            planComparison.put("planEndTime", plan.getEndTime());
+            planComparison.put("actualStartTime", batch.getStartTime());
+            planComparison.put("actualEndTime", batch.getEndTime());
+            planComparison.put("status", plan.getStatus());
+
+            analysis.put("productionPlanComparison", planComparison);
+        }
+
+        // ========== 3. 原材料消耗详情 ==========
+        List<Map<String, Object>> materialDetails = new ArrayList<>();
+        BigDecimal totalMaterialCost = BigDecimal.ZERO;
+
+        for (MaterialConsumption consumption : consumptions) {
+            Map<String, Object> materialDetail = new HashMap<>();
+            MaterialBatch materialBatch = consumption.getBatch();
+
+            materialDetail.put("consumptionId", consumption.getId());
+            materialDetail.put("batchNumber", materialBatch.getBatchNumber());
+
+            // 获取原材料名称（通过materialType关联）
+            String materialName = materialBatch.getMaterialType() != null ?
+                materialBatch.getMaterialType().getName() : "未知原材料";
+            materialDetail.put("materialName", materialName);
+
+            materialDetail.put("quantity", consumption.getQuantity());
+            materialDetail.put("unit", materialBatch.getQuantityUnit());
+            materialDetail.put("unitPrice", materialBatch.getUnitPrice());
+
+            // 计算此次消耗成本
+            BigDecimal cost = consumption.getQuantity().multiply(materialBatch.getUnitPrice());
+            materialDetail.put("cost", cost);
+            totalMaterialCost = totalMaterialCost.add(cost);
+
+            // 供应商信息
+            if (materialBatch.getSupplier() != null) {
+                Map<String, Object> supplierInfo = new HashMap<>();
+                supplierInfo.put("id", materialBatch.getSupplier().getId());
+                supplierInfo.put("name", materialBatch.getSupplier().getName());
+                supplierInfo.put("contactPerson", materialBatch.getSupplier().getContactPerson());
+                materialDetail.put("supplier", supplierInfo);
+            }
+
+            // FIFO信息
+            materialDetail.put("receiptDate", materialBatch.getReceiptDate());
+            materialDetail.put("expireDate", materialBatch.getExpireDate());
+
+            // 库存状态
+            materialDetail.put("initialQuantity", materialBatch.getInitialQuantity());
+            materialDetail.put("remainingQuantity", materialBatch.getRemainingQuantity());
+
+            materialDetail.put("consumedAt", consumption.getConsumedAt());
+
+            materialDetails.add(materialDetail);
+        }
+
+        analysis.put("materialConsumptions", materialDetails);
+        analysis.put("materialConsumptionCount", materialDetails.size());
+        analysis.put("totalMaterialCost", totalMaterialCost);
+
+        // ========== 4. 设备使用详情 ==========
+        List<Map<String, Object>> equipmentDetails = new ArrayList<>();
+        BigDecimal totalEquipmentCost = BigDecimal.ZERO;
+        int totalEquipmentHours = 0;
+
+        for (EquipmentUsage usage : usages) {
+            Map<String, Object> equipmentDetail = new HashMap<>();
+
+            FactoryEquipment equipment = equipments.get(usage.getEquipmentId());
+            if (equipment != null) {
+                equipmentDetail.put("equipmentId", equipment.getId());
+                equipmentDetail.put("equipmentName", equipment.getName());
+                equipmentDetail.put("equipmentCode", equipment.getEquipmentCode());
+                equipmentDetail.put("model", equipment.getModel());
+                equipmentDetail.put("status", equipment.getStatus());
+            }
+
+            equipmentDetail.put("usageId", usage.getId());
+            equipmentDetail.put("startTime", usage.getStartTime());
+            equipmentDetail.put("endTime", usage.getEndTime());
+            equipmentDetail.put("durationHours", usage.getDurationHours());
+
+            BigDecimal equipmentCost = new BigDecimal(usage.getDurationHours()).multiply(EQUIPMENT_HOURLY_COST);
+            equipmentDetail.put("cost", equipmentCost);
+
+            totalEquipmentCost = totalEquipmentCost.add(equipmentCost);
+            totalEquipmentHours += usage.getDurationHours();
+
+            equipmentDetails.add(equipmentDetail);
+        }
+
+        analysis.put("equipmentUsages", equipmentDetails);
+        analysis.put("equipmentUsageCount", equipmentDetails.size());
+        analysis.put("totalEquipmentHours", totalEquipmentHours);
+        analysis.put("totalEquipmentCost", totalEquipmentCost);
+
+        // ========== 5. 人工工时详情 ==========
+        // BatchWorkSession 关联的是 processing_batches（Integer ID），与 production_batches 不是同一模型，
+        // 这里沿用批次表中的 labor_cost / work_duration_minutes 汇总字段，不查询工时会话
+        List<Map<String, Object>> laborDetails = new ArrayList<>();
+        BigDecimal totalLaborCost = batch.getLaborCost() != null ? batch.getLaborCost() : BigDecimal.ZERO;
+        int totalWorkMinutes = batch.getWorkDurationMinutes() != null ? batch.getWorkDurationMinutes() : 0;
+
+        if (totalLaborCost.compareTo(BigDecimal.ZERO) > 0 || totalWorkMinutes > 0) {
+            Map<String, Object> laborSummary = new HashMap<>();
+            laborSummary.put("workMinutes", totalWorkMinutes);
+            laborSummary.put("laborCost", totalLaborCost);
+            laborSummary.put("workerCount", batch.getWorkerCount());
+            laborSummary.put("note", "工时详情需要数据模型统一后提供");
+            laborDetails.add(laborSummary);
+        }
+
+        analysis.put("laborSessions", laborDetails);
+        analysis.put("laborSessionCount", laborDetails.size());
+        analysis.put("totalWorkMinutes", totalWorkMinutes);
+        analysis.put("totalWorkHours", totalWorkMinutes / 60.0);
+        analysis.put("totalLaborCost", totalLaborCost);
+
+        // ========== 6. 质量检验详情 ==========
+        List<Map<String, Object>> qualityDetails = new ArrayList<>();
+
+        for (QualityInspection inspection : inspections) {
+            Map<String, Object> qualityDetail = new HashMap<>();
+
+            qualityDetail.put("inspectionId", inspection.getId());
+            qualityDetail.put("inspectionDate", inspection.getInspectionDate());
+            qualityDetail.put("sampleSize", inspection.getSampleSize());
+            qualityDetail.put("passCount", inspection.getPassCount());
+            qualityDetail.put("failCount", inspection.getFailCount());
+            qualityDetail.put("passRate", inspection.getPassRate());
+            qualityDetail.put("result", inspection.getResult());
+            qualityDetail.put("notes", inspection.getNotes());
+
+            // 检验员信息
+            User inspector = inspection.getInspectorId() != null ? inspectors.get(inspection.getInspectorId()) : null;
+            if (inspector != null) {
+                Map<String, Object> inspectorInfo = new HashMap<>();
+                inspectorInfo.put("id", inspector.getId());
+                inspectorInfo.put("fullName", inspector.getFullName());
+                qualityDetail.put("inspector", inspectorInfo);
+            }
+
+            qualityDetails.add(qualityDetail);
+        }
+
+        analysis.put("qualityInspections", qualityDetails);
+        analysis.put("qualityInspectionCount", qualityDetails.size());
+
+        // 计算平均合格率
+        if (!inspections.isEmpty()) {
+            BigDecimal avgPassRate = inspections.stream()
+                .map(QualityInspection::getPassRate)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .divide(new BigDecimal(inspections.size()), 2, RoundingMode.HALF_UP);
+            analysis.put("averagePassRate", avgPassRate);
+        }
+
+        // ========== 7. 成本汇总 ==========
+        BigDecimal otherCost = batch.getOtherCost() != null ? batch.getOtherCost() : BigDecimal.ZERO;
+        Map<String, Object> costSummary = new HashMap<>();
+        costSummary.put("materialCost", totalMaterialCost);
+        costSummary.put("laborCost", totalLaborCost);
+        costSummary.put("equipmentCost", totalEquipmentCost);
+        costSummary.put("otherCost", otherCost);
+
+        BigDecimal totalCost = totalMaterialCost.add(totalLaborCost).add(totalEquipmentCost).add(otherCost);
+        costSummary.put("totalCost", totalCost);
+
+        // 单位成本
+        if (batch.getActualQuantity() != null && batch.getActualQuantity().compareTo(BigDecimal.ZERO) > 0) {
+            BigDecimal unitCost = totalCost.divide(batch.getActualQuantity(), 4, RoundingMode.HALF_UP);
+            costSummary.put("unitCost", unitCost);
+        }
+
+        // 成本占比
+        if (totalCost.compareTo(BigDecimal.ZERO) > 0) {
+            costSummary.put("materialCostRatio",
+                totalMaterialCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
+            costSummary.put("laborCostRatio",
+                totalLaborCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
+            costSummary.put("equipmentCostRatio",
+                totalEquipmentCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
+        }
+
+        analysis.put("costSummary", costSummary);
+
+        // ========== 8. 风险预警 ==========
+        List<String> risks = new ArrayList<>();
+
+        // 原材料过期风险
+        LocalDate expiryThreshold = LocalDate.now().plusDays(7);
+        for (MaterialConsumption consumption : consumptions) {
+            MaterialBatch mb = consumption.getBatch();
+            if (mb.getExpireDate() != null && mb.getExpireDate().isBefore(expiryThreshold)) {
+                String matName = mb.getMaterialType() != null ?
+                    mb.getMaterialType().getName() : "未知原材料";
+                risks.add("原材料 " + matName + " 批次 " + mb.getBatchNumber() + " 即将过期");
+            }
+        }
+
+        // 良品率风险
+        if (batch.getYieldRate() != null && batch.getYieldRate().compareTo(new BigDecimal("90")) < 0) {
+            risks.add("良品率偏低（" + batch.getYieldRate() + "%），建议加强质量控制");
+        }
+
+        // 成本占比风险
+        if (totalCost.compareTo(BigDecimal.ZERO) > 0) {
+            BigDecimal materialRatio = totalMaterialCost.divide(totalCost, 4, RoundingMode.HALF_UP);
+            if (materialRatio.compareTo(new BigDecimal("0.65")) > 0) {
+                risks.add("原材料成本占比过高（" + materialRatio.multiply(new BigDecimal(100)) + "%），建议优化采购");
+            }
+        }
+
+        analysis.put("risks", risks);
+        analysis.put("riskCount", risks.size());
+
+        return analysis;
+    }
+
+    private static <T> Map<Integer, T> indexById(List<T> entities, Function<T, Integer> idGetter) {
+        return entities.stream().collect(Collectors.toMap(idGetter, Function.identity(), (a, b) -> a));
+    }
+}
@@ -4,6 +4,7 @@ import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.customer.CreateCustomerRequest;
 import com.cretas.aims.dto.customer.CustomerDTO;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -80,9 +81,9 @@ public interface CustomerService {
       */
     boolean checkCustomerCodeExists(String factoryId, String customerCode);
      /**
-     * 导出客户列表
+     * 导出客户列表（format: csv / xlsx，流式写入响应）
       */
-    byte[] exportCustomerList(String factoryId);
+    void exportCustomerList(String factoryId, String format, HttpServletResponse response);
      /**
      * 批量导入客户
       */
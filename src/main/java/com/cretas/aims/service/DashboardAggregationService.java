@@ -0,0 +1,170 @@
+package com.cretas.aims.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Dashboard并行聚合服务
+ *
+ * 将仪表盘的各个统计模块真正提交到 dashboardExecutor 线程池并行执行：
+ * 1. 每个模块独立超时，超时或异常时使用该模块的降级值（部分结果），不影响其他模块
+ * 2. 超时的模块会被取消：尚未开始的不再执行，正在执行的线程被中断，避免占满线程池
+ * 3. 按工厂记录每个模块的耗时，便于定位拖慢整体的模块
+ *
+ * 注意：模块计算必须通过本服务提交，不能在 ReportServiceImpl 内部调用 @Async 方法（会绕过Spring代理）
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+public class DashboardAggregationService {
+
+    @Autowired
+    @Qualifier("dashboardExecutor")
+    private Executor dashboardExecutor;
+
+    /**
+     * 单个统计模块的超时时间（毫秒）
+     */
+    @Value("${cretas.dashboard.section-timeout:3000}")
+    private long sectionTimeoutMillis;
+
+    /**
+     * 各模块耗时统计（工厂ID -> 模块名称 -> 统计）
+     */
+    private final Map<String, Map<String, SectionLatency>> latencyStats = new ConcurrentHashMap<>();
+
+    /**
+     * 提交一个统计模块到线程池并行计算
+     *
+     * @param factoryId 工厂ID（用于日志与耗时统计）
+     * @param section   模块名称
+     * @param loader    模块计算逻辑
+     * @param fallback  超时或失败时的降级值
+     * @param degradedSections 使用了降级值的模块名称收集器（需线程安全，可为null）
+     * @return 模块计算结果（不会异常完成）
+     */
+    public <T> CompletableFuture<T> submit(String factoryId, String section,
+                                           Supplier<T> loader, Supplier<T> fallback,
+                                           Collection<String> degradedSections) {
+        SectionLatency latency = latencyStats
+                .computeIfAbsent(factoryId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(section, k -> new SectionLatency());
+        long submitTime = System.nanoTime();
+
+        // 使用 FutureTask 提交，超时后可以取消（CompletableFuture 的 cancel 不会中断执行中的任务）
+        CompletableFuture<T> future = new CompletableFuture<>();
+        FutureTask<T> task = new FutureTask<T>(() -> {
+            long start = System.nanoTime();
+            try {
+                return loader.get();
+            } finally {
+                latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }) {
+            @Override
+            protected void done() {
+                try {
+                    future.complete(get());
+                } catch (ExecutionException e) {
+                    future.completeExceptionally(e.getCause());
+                } catch (CancellationException | InterruptedException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+        try {
+            dashboardExecutor.execute(task);
+        } catch (RuntimeException e) {
+            // 线程池已满等提交失败的情况，直接走降级
+            future.completeExceptionally(e);
+        }
+
+        return future
+                .orTimeout(sectionTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((result, e) -> {
+                    if (e == null) {
+                        return result;
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        task.cancel(true);
+                        latency.timeouts.incrementAndGet();
+                        log.warn("Dashboard模块计算超时，使用降级数据: factoryId={}, section={}, 已等待={}ms",
+                                factoryId, section, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTime));
+                    } else {
+                        latency.failures.incrementAndGet();
+                        log.error("Dashboard模块计算失败，使用降级数据: factoryId={}, section={}, error={}",
+                                factoryId, section, cause.getMessage());
+                    }
+                    if (degradedSections != null) {
+                        degradedSections.add(section);
+                    }
+                    return fallback.get();
+                });
+    }
+
+    /**
+     * 获取指定工厂各模块的耗时统计
+     *
+     * @return 模块名称 -> 统计数据（次数、平均/最大/最近耗时、失败与超时次数）
+     */
+    public Map<String, Map<String, Object>> getSectionLatencyStats(String factoryId) {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        latencyStats.getOrDefault(factoryId, Collections.emptyMap())
+                .forEach((section, latency) -> result.put(section, latency.snapshot()));
+        return result;
+    }
+
+    /**
+     * 单个模块的耗时累计
+     */
+    private static class SectionLatency {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final AtomicLong lastMillis = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        void record(long millis) {
+            count.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            lastMillis.set(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", n);
+            map.put("avgMillis", n > 0 ? totalMillis.get() / n : 0L);
+            map.put("maxMillis", maxMillis.get());
+            map.put("lastMillis", lastMillis.get());
+            map.put("failures", failures.get());
+            map.put("timeouts", timeouts.get());
+            return map;
+        }
+    }
+}
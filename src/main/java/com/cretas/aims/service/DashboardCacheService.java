@@ -0,0 +1,313 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.report.DashboardStatisticsDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 仪表盘统计缓存（dashboardStats）：写入驱动失效 + 合并重算 + 过期期间返回旧值
+ *
+ * 1. 生产批次、原材料批次、生产计划、设备的写操作提交后调用 onDataChanged，删除该工厂的缓存（两级缓存会通知所有节点）
+ * 2. 本节点看过该工厂仪表盘时立即在后台重算一次；重算期间又有变更只记版本号，本次完成后再补算一次，不会每次提交都重算
+ * 3. 缓存未命中但本节点有不超过 max-stale-age 的旧结果时直接返回旧值，同时后台重算（stale-while-revalidate）；
+ *    没有旧值或旧值已超龄时同步计算，并发请求通过 SingleFlightService 合并为一次
+ * 4. 降级结果不写入缓存；本节点没有可用的完整结果时记为旧值，重算一直降级也不会无限期返回很久以前的数据
+ * 5. 版本号同时记在本节点和 Redis（所有节点共享）；重算期间任一节点提交过变更，结果只作为旧值保留，不写入缓存
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardCacheService {
+
+    public static final String CACHE_NAME = "dashboardStats";
+
+    private static final String VERSION_KEY_PREFIX = "dashboard:version:";
+
+    private final CacheManager cacheManager;
+    private final SingleFlightService singleFlightService;
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 后台重算线程数
+     */
+    @Value("${cretas.dashboard.refresh-workers:2}")
+    private int refreshWorkers;
+
+    /**
+     * 旧值最长可返回时间（毫秒），超过后同步重算
+     */
+    @Value("${cretas.dashboard.max-stale-age:300000}")
+    private long maxStaleAgeMs;
+
+    /**
+     * 各工厂最近一次的统计结果，缓存失效期间作为旧值返回
+     */
+    private final ConcurrentMap<String, Snapshot> lastKnown = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong changeEvents = new AtomicLong();
+    private final AtomicLong recomputes = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong staleExpired = new AtomicLong();
+    private final AtomicLong degradedResults = new AtomicLong();
+    private final AtomicLong skippedWrites = new AtomicLong();
+    private final AtomicLong coalescedRefreshes = new AtomicLong();
+
+    private volatile Function<String, DashboardStatisticsDTO> loader;
+    /**
+     * 旧值计时与后台重算线程池（测试中替换为可控的时钟和手动执行的线程池）
+     */
+    private Clock clock = Clock.systemUTC();
+    private ExecutorService refreshPool;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        refreshPool = Executors.newFixedThreadPool(refreshWorkers, r -> {
+            Thread thread = new Thread(r, "dashboard-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshPool.shutdownNow();
+    }
+
+    /**
+     * 注册统计计算逻辑（由 ReportServiceImpl 启动时注册）
+     */
+    public void registerLoader(Function<String, DashboardStatisticsDTO> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 读取仪表盘统计
+     */
+    public DashboardStatisticsDTO get(String factoryId) {
+        Cache cache = cache();
+        DashboardStatisticsDTO cached = cache.get(factoryId, DashboardStatisticsDTO.class);
+        if (cached != null) {
+            lastKnown.put(factoryId, new Snapshot(cached, false));
+            return cached;
+        }
+
+        Snapshot stale = lastKnown.get(factoryId);
+        if (stale != null) {
+            if (stale.age() <= maxStaleAgeMs) {
+                staleServed.incrementAndGet();
+                scheduleRefresh(factoryId);
+                return stale.value;
+            }
+            staleExpired.incrementAndGet();
+            log.debug("仪表盘旧值已超龄，同步重算: factoryId={}, age={}ms", factoryId, stale.age());
+        }
+
+        long version = versionOf(factoryId).get();
+        return singleFlightService.execute(SingleFlightService.key("dashboard", factoryId),
+                () -> cache.get(factoryId, DashboardStatisticsDTO.class),
+                () -> compute(factoryId, version));
+    }
+
+    /**
+     * 工厂数据变更：处于事务中时在提交后处理，同一事务内多次调用只处理一次
+     */
+    public void onDataChanged(String factoryId) {
+        if (factoryId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(factoryId);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof ChangedFactories) {
+                ((ChangedFactories) synchronization).factoryIds.add(factoryId);
+                return;
+            }
+        }
+        ChangedFactories changed = new ChangedFactories();
+        changed.factoryIds.add(factoryId);
+        TransactionSynchronizationManager.registerSynchronization(changed);
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("changeEvents", changeEvents.get());
+        stats.put("recomputes", recomputes.get());
+        stats.put("staleServed", staleServed.get());
+        stats.put("staleExpired", staleExpired.get());
+        stats.put("degradedResults", degradedResults.get());
+        stats.put("skippedWrites", skippedWrites.get());
+        stats.put("coalescedRefreshes", coalescedRefreshes.get());
+        stats.put("refreshing", refreshing.size());
+        stats.put("factories", lastKnown.size());
+        return stats;
+    }
+
+    private void invalidate(String factoryId) {
+        changeEvents.incrementAndGet();
+        versionOf(factoryId).incrementAndGet();
+        // 先递增共享版本再删除缓存，其他节点进行中的重算写入前能看到变化
+        try {
+            redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + factoryId);
+        } catch (Exception e) {
+            log.warn("递增仪表盘共享版本失败: factoryId={}, error={}", factoryId, e.getMessage());
+        }
+        try {
+            cache().evict(factoryId);
+        } catch (Exception e) {
+            log.warn("删除仪表盘缓存失败: factoryId={}, error={}", factoryId, e.getMessage());
+        }
+        // 只为本节点看过的工厂预热，其他工厂等首次访问时再计算
+        if (lastKnown.containsKey(factoryId)) {
+            scheduleRefresh(factoryId);
+        }
+    }
+
+    /**
+     * 后台重算；同一工厂同时只有一个重算任务，期间的变更在任务结束后合并补算一次
+     */
+    private void scheduleRefresh(String factoryId) {
+        if (loader == null) {
+            return;
+        }
+        if (!refreshing.add(factoryId)) {
+            coalescedRefreshes.incrementAndGet();
+            return;
+        }
+        refreshPool.execute(() -> {
+            long version = versionOf(factoryId).get();
+            try {
+                do {
+                    version = versionOf(factoryId).get();
+                    long startVersion = version;
+                    singleFlightService.execute(SingleFlightService.key("dashboard", factoryId),
+                            () -> cache().get(factoryId, DashboardStatisticsDTO.class),
+                            () -> compute(factoryId, startVersion));
+                } while (versionOf(factoryId).get() != version);
+            } catch (Exception e) {
+                log.warn("仪表盘后台重算失败: factoryId={}, error={}", factoryId, e.getMessage());
+            } finally {
+                refreshing.remove(factoryId);
+            }
+            // 覆盖“循环判断之后、移除标记之前”到达的变更
+            if (versionOf(factoryId).get() != version) {
+                scheduleRefresh(factoryId);
+            }
+        });
+    }
+
+    private DashboardStatisticsDTO compute(String factoryId, long version) {
+        Function<String, DashboardStatisticsDTO> currentLoader = loader;
+        if (currentLoader == null) {
+            throw new IllegalStateException("仪表盘统计计算逻辑未注册");
+        }
+        recomputes.incrementAndGet();
+        long sharedVersion = sharedVersion(factoryId);
+        DashboardStatisticsDTO result = currentLoader.apply(factoryId);
+        if (result == null) {
+            return null;
+        }
+        if (result.getDegradedSections() != null && !result.getDegradedSections().isEmpty()) {
+            // 降级结果不缓存；没有可用的完整结果时记为旧值，避免一直返回超龄数据
+            degradedResults.incrementAndGet();
+            lastKnown.compute(factoryId, (key, previous) ->
+                    previous == null || previous.degraded || previous.age() > maxStaleAgeMs
+                            ? new Snapshot(result, true) : previous);
+            return result;
+        }
+        lastKnown.put(factoryId, new Snapshot(result, false));
+        if (versionOf(factoryId).get() == version && sharedVersion(factoryId) == sharedVersion) {
+            cache().put(factoryId, result);
+        } else {
+            skippedWrites.incrementAndGet();
+            log.debug("仪表盘重算期间数据已变化，结果不写入缓存: factoryId={}", factoryId);
+        }
+        return result;
+    }
+
+    /**
+     * 所有节点共享的版本号；Redis 不可用时返回 -1，只按本节点版本判断
+     */
+    private long sharedVersion(String factoryId) {
+        try {
+            String value = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + factoryId);
+            return value == null ? 0L : Long.parseLong(value);
+        } catch (Exception e) {
+            log.warn("读取仪表盘共享版本失败: factoryId={}, error={}", factoryId, e.getMessage());
+            return -1L;
+        }
+    }
+
+    private AtomicLong versionOf(String factoryId) {
+        return versions.computeIfAbsent(factoryId, key -> new AtomicLong());
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+
+    /**
+     * 统计结果及其记录时间
+     */
+    private final class Snapshot {
+        private final DashboardStatisticsDTO value;
+        private final boolean degraded;
+        private final long storedAt = clock.millis();
+
+        private Snapshot(DashboardStatisticsDTO value, boolean degraded) {
+            this.value = value;
+            this.degraded = degraded;
+        }
+
+        private long age() {
+            return clock.millis() - storedAt;
+        }
+    }
+
+    /**
+     * 事务内变更过的工厂，提交后逐个失效
+     */
+    private final class ChangedFactories implements TransactionSynchronization {
+        private final Set<String> factoryIds = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            for (String factoryId : factoryIds) {
+                invalidate(factoryId);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.equipment.CreateEquipmentRequest;
 import com.cretas.aims.dto.equipment.EquipmentDTO;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -103,9 +104,9 @@ public interface EquipmentService {
       */
     List<EquipmentDTO> importEquipment(String factoryId, List<CreateEquipmentRequest> requests, Integer userId);
      /**
-     * 导出设备列表
+     * 导出设备列表（format: csv / xlsx，流式写入响应）
       */
-    byte[] exportEquipmentList(String factoryId);
+    void exportEquipmentList(String factoryId, String format, HttpServletResponse response);
      /**
      * 报废设备
       */
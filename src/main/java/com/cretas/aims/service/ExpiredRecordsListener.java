@@ -0,0 +1,54 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.SystemLog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 过期清扫结果处理：每块提交后按工厂通知仪表盘缓存，并通过 AsyncLogSink 记录审计日志
+ *
+ * 清扫直接用 SQL 修改状态，不经过各业务服务的写方法，因此需要在这里补发数据变更通知
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExpiredRecordsListener {
+
+    private static final String AUDIT_MODULE = "EXPIRY_SWEEP";
+    private static final int MAX_ACTION_LENGTH = 50;
+
+    private final DashboardCacheService dashboardCacheService;
+    private final AsyncLogSink asyncLogSink;
+
+    @EventListener
+    public void onExpiredRecords(ExpirySweepService.ExpiredRecordsEvent event) {
+        for (Map.Entry<String, List<Long>> entry : event.getIdsByFactory().entrySet()) {
+            String factoryId = entry.getKey();
+            List<Long> ids = entry.getValue();
+            dashboardCacheService.onDataChanged(factoryId);
+
+            SystemLog auditLog = new SystemLog();
+            auditLog.setFactoryId(factoryId);
+            auditLog.setLogType("AUDIT");
+            auditLog.setLogLevel("INFO");
+            auditLog.setModule(AUDIT_MODULE);
+            auditLog.setAction(event.getSweepName().length() > MAX_ACTION_LENGTH
+                    ? event.getSweepName().substring(0, MAX_ACTION_LENGTH) : event.getSweepName());
+            auditLog.setMessage(String.format("过期清扫将 %s 中 %d 条记录标记为过期: ids=%s",
+                    event.getTable(), ids.size(), ids));
+            auditLog.setCreatedAt(LocalDateTime.now());
+            asyncLogSink.submit(auditLog);
+        }
+        log.debug("过期清扫[{}]已通知 {} 个工厂", event.getSweepName(), event.getIdsByFactory().size());
+    }
+}
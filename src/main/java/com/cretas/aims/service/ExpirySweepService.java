@@ -0,0 +1,149 @@
+package com.cretas.aims.service;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 过期记录批量清扫服务
+ *
+ * 按主键游标分块处理：每块在独立事务中 SELECT ... FOR UPDATE 锁定至多 chunkSize 条符合条件的记录，
+ * 再用一条 UPDATE ... WHERE id IN (...) 修改状态，提交后发布 {@link ExpiredRecordsEvent}（携带本块ID，
+ * 设置了 factoryColumn 时还按工厂分组，由 {@link ExpiredRecordsListener} 通知仪表盘缓存并记录审计日志）。
+ * 内存占用只与块大小有关，与表大小无关；每块事务很短，不会长时间持有行锁。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpirySweepService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 每块处理的记录数
+     */
+    @Value("${cretas.expiry-sweep.chunk-size:500}")
+    private int chunkSize;
+
+    private TransactionTemplate requiresNewTemplate;
+
+    @PostConstruct
+    public void init() {
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 清扫规则（表名、条件等均为代码中的常量，不接受外部输入）
+     */
+    @Getter
+    @Builder
+    public static class SweepSpec {
+        /** 规则名称（日志、事件中使用） */
+        private final String name;
+        /** 表名 */
+        private final String table;
+        /** SET 子句，如 status = 'EXPIRED', updated_at = NOW() */
+        private final String assignments;
+        /** WHERE 条件（不含主键游标），可使用 ? 占位符 */
+        private final String condition;
+        /** condition 中占位符的参数 */
+        @Singular
+        private final List<Object> params;
+        /** 工厂ID列名（可选），设置后事件按工厂分组携带ID */
+        private final String factoryColumn;
+    }
+
+    /**
+     * 一块记录被标记过期后发布（事务已提交）
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ExpiredRecordsEvent {
+        private final String sweepName;
+        private final String table;
+        private final List<Long> ids;
+        /** 按工厂分组的ID（规则未设置 factoryColumn 时为空） */
+        private final Map<String, List<Long>> idsByFactory;
+    }
+
+    /**
+     * 执行清扫
+     *
+     * @return 更新的记录总数
+     */
+    public int sweep(SweepSpec spec) {
+        String factoryColumn = spec.getFactoryColumn();
+        String selectSql = "SELECT id" + (factoryColumn != null ? ", " + factoryColumn : "") +
+                " FROM " + spec.getTable() + " WHERE (" + spec.getCondition() + ") " +
+                "AND id > ? ORDER BY id LIMIT ? FOR UPDATE";
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        int total = 0;
+        int chunks = 0;
+
+        while (true) {
+            long cursor = lastId;
+            Map<String, List<Long>> idsByFactory = new LinkedHashMap<>();
+            List<Long> ids = requiresNewTemplate.execute(status -> {
+                List<Object> args = new ArrayList<>(spec.getParams());
+                args.add(cursor);
+                args.add(chunkSize);
+                List<Long> locked = jdbcTemplate.query(selectSql, (rs, rowNum) -> {
+                    long id = rs.getLong(1);
+                    if (factoryColumn != null) {
+                        idsByFactory.computeIfAbsent(rs.getString(2), key -> new ArrayList<>()).add(id);
+                    }
+                    return id;
+                }, args.toArray());
+                if (!locked.isEmpty()) {
+                    String placeholders = locked.stream().map(id -> "?").collect(Collectors.joining(","));
+                    jdbcTemplate.update("UPDATE " + spec.getTable() + " SET " + spec.getAssignments() +
+                            " WHERE id IN (" + placeholders + ")", locked.toArray());
+                }
+                return locked;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+
+            chunks++;
+            total += ids.size();
+            lastId = ids.get(ids.size() - 1);
+            log.debug("过期清扫[{}]: table={}, ids={}", spec.getName(), spec.getTable(), ids);
+            eventPublisher.publishEvent(new ExpiredRecordsEvent(spec.getName(), spec.getTable(),
+                    Collections.unmodifiableList(ids), Collections.unmodifiableMap(idsByFactory)));
+
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+
+        log.info("过期清扫[{}]完成: 共 {} 条, {} 块, 耗时={}ms",
+                spec.getName(), total, chunks, System.currentTimeMillis() - startTime);
+        return total;
+    }
+}
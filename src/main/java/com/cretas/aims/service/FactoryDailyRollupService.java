@@ -0,0 +1,344 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.ProductionBatch;
+import com.cretas.aims.entity.QualityInspection;
+import com.cretas.aims.entity.TimeClockRecord;
+import com.cretas.aims.repository.FactoryDailyRollupRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 工厂每日汇总（factory_daily_rollup）维护服务
+ *
+ * 1. 增量维护：业务事务提交后，按工厂/天原子累加计数器；累加失败只记日志，不影响业务
+ * 2. 夜间对账：按原始表重算最近几天的汇总，修正增量维护中的偏差（如重复打卡、事务外写入）
+ * 3. 报表读取：按日期范围汇总，读取 O(天数) 行
+ * 4. 回填：汇总表为空时（首次上线），启动后在后台按原始表回填最近 backfill-days 天
+ *
+ * 口径：产量/成本/批次数按完工批次（production_batches.end_time 所在日）统计，
+ * 与按生产计划统计的产量/成本不同；报表中计划口径的字段仍读取生产计划表
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FactoryDailyRollupService {
+
+    private final FactoryDailyRollupRepository rollupRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * 夜间对账回溯天数（含昨天）
+     */
+    @Value("${cretas.rollup.reconcile-days:2}")
+    private int reconcileDays;
+
+    /**
+     * 汇总表为空时启动回填的天数（含昨天，小于等于 0 不回填）
+     */
+    @Value("${cretas.rollup.backfill-days:366}")
+    private int backfillDays;
+
+    /**
+     * 增量写入使用独立事务，避免在 afterCommit 阶段加入已提交的业务事务
+     */
+    private TransactionTemplate requiresNewTemplate;
+
+    @PostConstruct
+    public void init() {
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ==================== 增量维护 ====================
+
+    /**
+     * 生产批次完工
+     */
+    public void onProductionCompleted(ProductionBatch batch) {
+        LocalDate date = batch.getEndTime() != null ? batch.getEndTime().toLocalDate() : LocalDate.now();
+        String factoryId = batch.getFactoryId();
+        BigDecimal output = nz(batch.getActualQuantity());
+        BigDecimal good = nz(batch.getGoodQuantity());
+        BigDecimal defect = nz(batch.getDefectQuantity());
+        BigDecimal planned = nz(batch.getPlannedQuantity());
+        BigDecimal materialCost = nz(batch.getMaterialCost());
+        BigDecimal laborCost = nz(batch.getLaborCost());
+        BigDecimal equipmentCost = nz(batch.getEquipmentCost());
+        BigDecimal otherCost = nz(batch.getOtherCost());
+        BigDecimal totalCost = nz(batch.getTotalCost());
+        afterCommit("production", factoryId, () -> rollupRepository.addCompletedBatch(
+                factoryId, date, output, good, defect, planned,
+                materialCost, laborCost, equipmentCost, otherCost, totalCost));
+    }
+
+    /**
+     * 提交质检记录
+     */
+    public void onInspectionSubmitted(QualityInspection inspection) {
+        LocalDate date = inspection.getInspectionDate() != null ? inspection.getInspectionDate() : LocalDate.now();
+        String factoryId = inspection.getFactoryId();
+        int passed = "PASS".equals(inspection.getResult()) ? 1 : 0;
+        BigDecimal sampleSize = nz(inspection.getSampleSize());
+        BigDecimal passCount = nz(inspection.getPassCount());
+        afterCommit("inspection", factoryId, () -> rollupRepository.addInspection(
+                factoryId, date, passed, sampleSize, passCount));
+    }
+
+    /**
+     * 记录原材料消耗
+     */
+    public void onMaterialConsumed(String factoryId, LocalDateTime consumedAt, BigDecimal quantity, BigDecimal cost) {
+        LocalDate date = consumedAt != null ? consumedAt.toLocalDate() : LocalDate.now();
+        BigDecimal consumedQuantity = nz(quantity);
+        BigDecimal consumedCost = nz(cost);
+        afterCommit("consumption", factoryId, () -> rollupRepository.addConsumption(
+                factoryId, date, consumedQuantity, consumedCost));
+    }
+
+    /**
+     * 下班打卡
+     */
+    public void onClockOut(TimeClockRecord record) {
+        String factoryId = record.getFactoryId();
+        LocalDate date = record.getClockDate();
+        String status = record.getAttendanceStatus();
+        int late = "LATE".equals(status) || "LATE_AND_EARLY_LEAVE".equals(status) ? 1 : 0;
+        int earlyLeave = "EARLY_LEAVE".equals(status) || "LATE_AND_EARLY_LEAVE".equals(status) ? 1 : 0;
+        long workMinutes = record.getWorkDurationMinutes() != null ? record.getWorkDurationMinutes() : 0L;
+        long overtimeMinutes = record.getOvertimeMinutes() != null ? record.getOvertimeMinutes() : 0L;
+        afterCommit("attendance", factoryId, () -> rollupRepository.addAttendance(
+                factoryId, date, late, earlyLeave, workMinutes, overtimeMinutes));
+    }
+
+    /**
+     * 在当前事务提交后执行累加；当前没有事务时立即执行
+     */
+    private void afterCommit(String counter, String factoryId, Runnable increment) {
+        Runnable guarded = () -> {
+            try {
+                requiresNewTemplate.executeWithoutResult(status -> increment.run());
+            } catch (Exception e) {
+                // 汇总表只影响报表，失败由夜间对账修正
+                log.warn("更新每日汇总失败: counter={}, factoryId={}, error={}", counter, factoryId, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    // ==================== 夜间对账 ====================
+
+    /**
+     * 每天凌晨1点半按原始表重算最近几天的汇总
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void reconcileRecentDays() {
+        LocalDate today = LocalDate.now();
+        for (int i = 1; i <= reconcileDays; i++) {
+            try {
+                reconcileDay(today.minusDays(i));
+            } catch (Exception e) {
+                log.error("每日汇总对账失败: date={}, error={}", today.minusDays(i), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 汇总表为空时（首次上线），在后台线程回填历史日期，避免报表读到空的历史区间
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (backfillDays <= 0 || rollupRepository.count() > 0) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Thread thread = new Thread(() -> backfill(yesterday.minusDays(backfillDays - 1L), yesterday),
+                "rollup-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按原始表逐日重算 [from, to] 的汇总（每天独立事务，单日失败不影响其他日期）
+     *
+     * @return 成功重算的天数
+     */
+    public int backfill(LocalDate from, LocalDate to) {
+        long startTime = System.currentTimeMillis();
+        int succeeded = 0;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            try {
+                reconcileDay(date);
+                succeeded++;
+            } catch (Exception e) {
+                log.error("每日汇总回填失败: date={}, error={}", date, e.getMessage(), e);
+            }
+        }
+        log.info("每日汇总回填完成: from={}, to={}, 成功={}天, 耗时={}ms",
+                from, to, succeeded, System.currentTimeMillis() - startTime);
+        return succeeded;
+    }
+
+    /**
+     * 按原始表重算指定日期所有工厂的汇总（单事务：先清零，再按各来源表覆盖写入）
+     */
+    public void reconcileDay(LocalDate date) {
+        long startTime = System.currentTimeMillis();
+        LocalDateTime start = date.atStartOfDay();
+        LocalDateTime end = date.plusDays(1).atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        requiresNewTemplate.executeWithoutResult(status -> {
+            rollupRepository.resetDay(date, now);
+            int production = rollupRepository.reconcileProduction(date, start, end, now);
+            int consumption = rollupRepository.reconcileConsumption(date, start, end, now);
+            int inspections = rollupRepository.reconcileInspections(date, now);
+            int attendance = rollupRepository.reconcileAttendance(date, now);
+            log.info("每日汇总对账完成: date={}, production={}, consumption={}, inspections={}, attendance={}, 耗时={}ms",
+                    date, production, consumption, inspections, attendance, System.currentTimeMillis() - startTime);
+        });
+    }
+
+    // ==================== 报表读取 ====================
+
+    /**
+     * 汇总工厂指定日期范围（含首尾）
+     */
+    public RollupSummary summarize(String factoryId, LocalDate startDate, LocalDate endDate) {
+        List<Object[]> rows = rollupRepository.summarize(factoryId, startDate, endDate);
+        Object[] row = rows.isEmpty() ? new Object[21] : rows.get(0);
+        RollupSummary summary = new RollupSummary();
+        summary.setCompletedBatches(toLong(row[0]));
+        summary.setOutputQuantity(toBigDecimal(row[1]));
+        summary.setGoodQuantity(toBigDecimal(row[2]));
+        summary.setDefectQuantity(toBigDecimal(row[3]));
+        summary.setPlannedQuantity(toBigDecimal(row[4]));
+        summary.setMaterialCost(toBigDecimal(row[5]));
+        summary.setLaborCost(toBigDecimal(row[6]));
+        summary.setEquipmentCost(toBigDecimal(row[7]));
+        summary.setOtherCost(toBigDecimal(row[8]));
+        summary.setTotalCost(toBigDecimal(row[9]));
+        summary.setConsumedQuantity(toBigDecimal(row[10]));
+        summary.setConsumedCost(toBigDecimal(row[11]));
+        summary.setInspectionCount(toLong(row[12]));
+        summary.setInspectionPassCount(toLong(row[13]));
+        summary.setSampleSize(toBigDecimal(row[14]));
+        summary.setSamplePassCount(toBigDecimal(row[15]));
+        summary.setAttendanceCount(toLong(row[16]));
+        summary.setLateCount(toLong(row[17]));
+        summary.setEarlyLeaveCount(toLong(row[18]));
+        summary.setWorkMinutes(toLong(row[19]));
+        summary.setOvertimeMinutes(toLong(row[20]));
+        return summary;
+    }
+
+    /**
+     * 日期范围汇总结果
+     */
+    @Data
+    public static class RollupSummary {
+        private long completedBatches;
+        private BigDecimal outputQuantity;
+        private BigDecimal goodQuantity;
+        private BigDecimal defectQuantity;
+        private BigDecimal plannedQuantity;
+        private BigDecimal materialCost;
+        private BigDecimal laborCost;
+        private BigDecimal equipmentCost;
+        private BigDecimal otherCost;
+        private BigDecimal totalCost;
+        private BigDecimal consumedQuantity;
+        private BigDecimal consumedCost;
+        private long inspectionCount;
+        private long inspectionPassCount;
+        private BigDecimal sampleSize;
+        private BigDecimal samplePassCount;
+        private long attendanceCount;
+        private long lateCount;
+        private long earlyLeaveCount;
+        private long workMinutes;
+        private long overtimeMinutes;
+
+        /**
+         * 良品率（百分比）
+         */
+        public double getYieldRate() {
+            return percent(goodQuantity, outputQuantity);
+        }
+
+        /**
+         * 抽样合格率（百分比）
+         */
+        public double getQualityRate() {
+            return percent(samplePassCount, sampleSize);
+        }
+
+        /**
+         * 一次检验合格率（百分比）
+         */
+        public double getFirstPassRate() {
+            return inspectionCount > 0 ? inspectionPassCount * 100.0 / inspectionCount : 0.0;
+        }
+
+        /**
+         * 生产效率：实际产量 / 计划产量（百分比）
+         */
+        public double getEfficiency() {
+            return percent(outputQuantity, plannedQuantity);
+        }
+
+        private static double percent(BigDecimal part, BigDecimal whole) {
+            if (part == null || whole == null || whole.compareTo(BigDecimal.ZERO) <= 0) {
+                return 0.0;
+            }
+            return part.multiply(BigDecimal.valueOf(100)).divide(whole, 2, RoundingMode.HALF_UP).doubleValue();
+        }
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
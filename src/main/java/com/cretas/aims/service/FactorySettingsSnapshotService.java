@@ -0,0 +1,459 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.FactorySettingsDTO;
+import com.cretas.aims.entity.FactorySettings;
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.repository.FactorySettingsRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工厂设置快照：每个工厂一份解析好的不可变设置
+ *
+ * 1. JSON 字段（AI/通知/工作时间/生产/库存/数据保留）只在加载或保存时解析一次，读取不再查库、不再反序列化
+ * 2. 保存后在事务提交时用已保存的实体构建新快照并整体替换，读取方要么看到旧快照、要么看到新快照；
+ *    保存的实体比缓存中的快照旧（提交回调乱序）时只删除快照，不回退到旧设置
+ * 3. 同时通过 Redis 频道通知其他节点删除快照（下次读取时重新加载）；加载期间版本号变化的快照不写入缓存
+ * 4. 快照在调用方的事务中加载（没有事务时开启只读事务），不额外占用连接；调用方处于读写事务时不参与相同请求合并，
+ *    只在提交后写入缓存
+ * 5. 读取方拿到的是设置DTO的副本，修改副本不影响快照；失效消息丢失时，快照最多保留 max-age
+ * 6. 未配置或格式错误的上下班时间使用 DEFAULT_WORK_START_TIME / DEFAULT_WORK_END_TIME，与设置默认值一致
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FactorySettingsSnapshotService implements MessageListener {
+
+    /**
+     * 默认上下班时间（工厂未配置工作时间设置时使用）
+     */
+    public static final LocalTime DEFAULT_WORK_START_TIME = LocalTime.of(8, 0);
+    public static final LocalTime DEFAULT_WORK_END_TIME = LocalTime.of(18, 0);
+
+    private final FactorySettingsRepository settingsRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final StringRedisTemplate redisTemplate;
+    private final SingleFlightService singleFlightService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 本节点最多缓存的工厂数（按访问顺序淘汰）
+     */
+    @Value("${cretas.factory-settings.max-factories:500}")
+    private int maxFactories;
+
+    /**
+     * 快照最长存活时间（毫秒）
+     */
+    @Value("${cretas.factory-settings.max-age:600000}")
+    private long maxAgeMs;
+
+    @Value("${cretas.factory-settings.invalidation-channel:cretas:settings:invalidate}")
+    private String channel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong swaps = new AtomicLong();
+    private final AtomicLong staleSwaps = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Map<String, SettingsSnapshot> snapshots;
+    private TransactionTemplate readTemplate;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Collections.synchronizedMap(new LinkedHashMap<String, SettingsSnapshot>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SettingsSnapshot> eldest) {
+                return size() > maxFactories;
+            }
+        });
+        readTemplate = new TransactionTemplate(transactionManager);
+        readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        readTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 获取工厂设置快照（工厂没有设置记录时返回 isPresent() 为 false 的快照）
+     */
+    public SettingsSnapshot snapshot(String factoryId) {
+        SettingsSnapshot current = fresh(factoryId);
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // 读写事务中加载的快照可能包含本事务未提交的修改，不与其他请求共享
+            return load(factoryId);
+        }
+        // 快照只保存在本节点，其他节点加载完成不会填充本节点缓存，只在进程内合并
+        return singleFlightService.executeLocal(SingleFlightService.key("settings", factoryId),
+                () -> fresh(factoryId),
+                () -> load(factoryId));
+    }
+
+    /**
+     * 设置已保存：处于事务中时在提交后替换快照，否则立即替换
+     */
+    public void onSaved(FactorySettings settings) {
+        String factoryId = settings.getFactoryId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            swap(factoryId, settings);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // 提交时已 flush，实体上的 updatedAt、lastModifiedAt 等字段为最终值
+                swap(factoryId, settings);
+            }
+        });
+    }
+
+    /**
+     * 将设置实体解析为DTO（JSON 字段为空或解析失败时使用默认值）
+     */
+    public FactorySettingsDTO toDTO(FactorySettings settings) {
+        return FactorySettingsDTO.builder()
+                .id(settings.getId())
+                .factoryId(settings.getFactoryId())
+                // AI设置
+                .aiSettings(parseJsonField(settings.getAiSettings(), FactorySettingsDTO.AISettings.class))
+                .aiWeeklyQuota(settings.getAiWeeklyQuota())
+                // 用户注册设置
+                .allowSelfRegistration(settings.getAllowSelfRegistration())
+                .requireAdminApproval(settings.getRequireAdminApproval())
+                .defaultUserRole(settings.getDefaultUserRole())
+                // 通知设置
+                .notificationSettings(parseJsonField(settings.getNotificationSettings(),
+                        FactorySettingsDTO.NotificationSettings.class))
+                // 系统设置
+                .workTimeSettings(parseJsonField(settings.getWorkTimeSettings(),
+                        FactorySettingsDTO.WorkTimeSettings.class))
+                .productionSettings(parseJsonField(settings.getProductionSettings(),
+                        FactorySettingsDTO.ProductionSettings.class))
+                .inventorySettings(parseJsonField(settings.getInventorySettings(),
+                        FactorySettingsDTO.InventorySettings.class))
+                .dataRetentionSettings(parseJsonField(settings.getDataRetentionSettings(),
+                        FactorySettingsDTO.DataRetentionSettings.class))
+                // 显示设置
+                .language(settings.getLanguage())
+                .timezone(settings.getTimezone())
+                .dateFormat(settings.getDateFormat())
+                .currency(settings.getCurrency())
+                // 功能开关
+                .enableQrCode(settings.getEnableQrCode())
+                .enableBatchManagement(settings.getEnableBatchManagement())
+                .enableQualityCheck(settings.getEnableQualityCheck())
+                .enableCostCalculation(settings.getEnableCostCalculation())
+                .enableEquipmentManagement(settings.getEnableEquipmentManagement())
+                .enableAttendance(settings.getEnableAttendance())
+                // 审计信息
+                .lastModifiedAt(settings.getLastModifiedAt())
+                .build();
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 收到其他节点的失效消息：nodeId \n factoryId
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        versionOf(parts[1]).incrementAndGet();
+        snapshots.remove(parts[1]);
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("factories", snapshots.size());
+        stats.put("hits", hits.get());
+        stats.put("loads", loads.get());
+        stats.put("swaps", swaps.get());
+        stats.put("staleSwaps", staleSwaps.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private SettingsSnapshot fresh(String factoryId) {
+        SettingsSnapshot snapshot = snapshots.get(factoryId);
+        if (snapshot == null
+                || snapshot.version != versionOf(factoryId).get()
+                || System.currentTimeMillis() - snapshot.loadedAt > maxAgeMs) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private SettingsSnapshot load(String factoryId) {
+        long version = versionOf(factoryId).get();
+        loads.incrementAndGet();
+        SettingsSnapshot snapshot = readTemplate.execute(status -> settingsRepository.findByFactoryId(factoryId)
+                .map(settings -> build(version, settings))
+                .orElseGet(() -> new SettingsSnapshot(version, null, null,
+                        DEFAULT_WORK_START_TIME, DEFAULT_WORK_END_TIME)));
+        // 读写事务中可能读到未提交的修改，提交后再写入缓存
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store(factoryId, version, snapshot);
+                }
+            });
+        } else {
+            store(factoryId, version, snapshot);
+        }
+        return snapshot;
+    }
+
+    private void store(String factoryId, long version, SettingsSnapshot snapshot) {
+        if (versionOf(factoryId).get() == version) {
+            snapshots.put(factoryId, snapshot);
+        } else {
+            log.debug("加载期间工厂设置已变化，快照不写入缓存: factoryId={}", factoryId);
+        }
+    }
+
+    private void swap(String factoryId, FactorySettings settings) {
+        snapshots.compute(factoryId, (key, cached) -> {
+            long version = versionOf(factoryId).incrementAndGet();
+            if (cached != null && cached.updatedAt != null
+                    && (settings.getUpdatedAt() == null || settings.getUpdatedAt().isBefore(cached.updatedAt))) {
+                // 提交回调可能乱序执行：缓存中的设置更新，不用较旧的实体覆盖，删除后下次读取重新加载
+                staleSwaps.incrementAndGet();
+                log.debug("保存的工厂设置早于缓存中的快照，只删除快照: factoryId={}, saved={}, cached={}",
+                        factoryId, settings.getUpdatedAt(), cached.updatedAt);
+                return null;
+            }
+            swaps.incrementAndGet();
+            return build(version, settings);
+        });
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + "\n" + factoryId);
+        } catch (Exception e) {
+            // 其他节点的快照最多保留 max-age
+            log.warn("发布工厂设置失效消息失败: factoryId={}, error={}", factoryId, e.getMessage());
+        }
+    }
+
+    private SettingsSnapshot build(long version, FactorySettings settings) {
+        FactorySettingsDTO.WorkTimeSettings workTime = StringUtils.hasText(settings.getWorkTimeSettings())
+                ? parseJsonField(settings.getWorkTimeSettings(), FactorySettingsDTO.WorkTimeSettings.class)
+                : null;
+        return new SettingsSnapshot(version, settings.getUpdatedAt(), toDTO(settings),
+                workTime != null
+                        ? parseTime(settings.getFactoryId(), workTime.getStartTime(), DEFAULT_WORK_START_TIME)
+                        : DEFAULT_WORK_START_TIME,
+                workTime != null
+                        ? parseTime(settings.getFactoryId(), workTime.getEndTime(), DEFAULT_WORK_END_TIME)
+                        : DEFAULT_WORK_END_TIME);
+    }
+
+    private LocalTime parseTime(String factoryId, String value, LocalTime defaultTime) {
+        if (!StringUtils.hasText(value)) {
+            return defaultTime;
+        }
+        try {
+            return LocalTime.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            log.warn("工作时间格式错误，使用默认值: factoryId={}, value={}", factoryId, value);
+            return defaultTime;
+        }
+    }
+
+    private AtomicLong versionOf(String factoryId) {
+        return versions.computeIfAbsent(factoryId, key -> new AtomicLong());
+    }
+
+    /**
+     * 解析JSON字符串为指定类型
+     * 如果JSON为空或解析失败，返回默认对象
+     */
+    private <T> T parseJsonField(String jsonString, Class<T> clazz) {
+        if (!StringUtils.hasText(jsonString)) {
+            return createDefaultObject(clazz);
+        }
+
+        try {
+            return objectMapper.readValue(jsonString, clazz);
+        } catch (JsonProcessingException e) {
+            log.warn("解析JSON字段失败，返回默认值: class={}, error={}", clazz.getSimpleName(), e.getMessage());
+            return createDefaultObject(clazz);
+        }
+    }
+
+    /**
+     * 创建默认对象实例
+     */
+    private <T> T createDefaultObject(Class<T> clazz) {
+        try {
+            // 使用Builder模式创建默认实例
+            if (clazz == FactorySettingsDTO.AISettings.class) {
+                return clazz.cast(FactorySettingsDTO.AISettings.builder()
+                        .enabled(true)
+                        .tone("professional")
+                        .goal("cost_optimization")
+                        .detailLevel("standard")
+                        .build());
+            } else if (clazz == FactorySettingsDTO.NotificationSettings.class) {
+                return clazz.cast(FactorySettingsDTO.NotificationSettings.builder()
+                        .emailEnabled(true)
+                        .pushEnabled(true)
+                        .wechatEnabled(false)
+                        .build());
+            } else if (clazz == FactorySettingsDTO.WorkTimeSettings.class) {
+                return clazz.cast(FactorySettingsDTO.WorkTimeSettings.builder()
+                        .startTime(DEFAULT_WORK_START_TIME.toString())
+                        .endTime(DEFAULT_WORK_END_TIME.toString())
+                        .workDays("1,2,3,4,5")
+                        .build());
+            } else if (clazz == FactorySettingsDTO.ProductionSettings.class) {
+                return clazz.cast(FactorySettingsDTO.ProductionSettings.builder()
+                        .defaultBatchSize(100)
+                        .qualityCheckFrequency(10)
+                        .autoApprovalThreshold(95)
+                        .build());
+            } else if (clazz == FactorySettingsDTO.InventorySettings.class) {
+                return clazz.cast(FactorySettingsDTO.InventorySettings.builder()
+                        .minStockAlert(100)
+                        .maxStockLimit(10000)
+                        .autoReorderPoint(200)
+                        .build());
+            } else if (clazz == FactorySettingsDTO.DataRetentionSettings.class) {
+                return clazz.cast(FactorySettingsDTO.DataRetentionSettings.builder()
+                        .logRetentionDays(90)
+                        .dataArchiveDays(365)
+                        .backupFrequency("daily")
+                        .build());
+            }
+
+            // 如果没有特定的默认值，尝试使用无参构造器
+            return clazz.getDeclaredConstructor().newInstance();
+
+        } catch (Exception e) {
+            log.error("创建默认对象失败: class={}", clazz.getSimpleName(), e);
+            throw new BusinessException("创建默认对象失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 工厂设置快照（只读）
+     */
+    public static final class SettingsSnapshot {
+        private final long version;
+        private final long loadedAt = System.currentTimeMillis();
+        /**
+         * 设置记录的更新时间（无设置记录时为 null），用于判断保存回调是否乱序
+         */
+        private final LocalDateTime updatedAt;
+        private final FactorySettingsDTO settings;
+        private final LocalTime workStartTime;
+        private final LocalTime workEndTime;
+
+        private SettingsSnapshot(long version, LocalDateTime updatedAt, FactorySettingsDTO settings,
+                                 LocalTime workStartTime, LocalTime workEndTime) {
+            this.version = version;
+            this.updatedAt = updatedAt;
+            this.settings = settings;
+            this.workStartTime = workStartTime;
+            this.workEndTime = workEndTime;
+        }
+
+        /**
+         * 工厂是否有设置记录
+         */
+        public boolean isPresent() {
+            return settings != null;
+        }
+
+        /**
+         * 解析后的完整设置的副本（无设置记录时为 null），调用方可以修改
+         */
+        public FactorySettingsDTO getSettings() {
+            return settings != null ? copyOf(settings) : null;
+        }
+
+        /**
+         * 上班时间（未配置或格式错误时为 DEFAULT_WORK_START_TIME）
+         */
+        public LocalTime getWorkStartTime() {
+            return workStartTime;
+        }
+
+        /**
+         * 下班时间（未配置或格式错误时为 DEFAULT_WORK_END_TIME）
+         */
+        public LocalTime getWorkEndTime() {
+            return workEndTime;
+        }
+
+        /**
+         * 逐层复制（各层字段均为不可变类型）
+         */
+        private static FactorySettingsDTO copyOf(FactorySettingsDTO settings) {
+            FactorySettingsDTO.AISettings ai = settings.getAiSettings();
+            return settings.toBuilder()
+                    .aiSettings(ai == null ? null : ai.toBuilder()
+                            .industryStandards(ai.getIndustryStandards() == null
+                                    ? null : ai.getIndustryStandards().toBuilder().build())
+                            .build())
+                    .notificationSettings(settings.getNotificationSettings() == null
+                            ? null : settings.getNotificationSettings().toBuilder().build())
+                    .workTimeSettings(settings.getWorkTimeSettings() == null
+                            ? null : settings.getWorkTimeSettings().toBuilder().build())
+                    .productionSettings(settings.getProductionSettings() == null
+                            ? null : settings.getProductionSettings().toBuilder().build())
+                    .inventorySettings(settings.getInventorySettings() == null
+                            ? null : settings.getInventorySettings().toBuilder().build())
+                    .dataRetentionSettings(settings.getDataRetentionSettings() == null
+                            ? null : settings.getDataRetentionSettings().toBuilder().build())
+                    .build();
+        }
+    }
+}
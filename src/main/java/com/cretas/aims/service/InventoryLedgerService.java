@@ -0,0 +1,192 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.MaterialBatch;
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.exception.ResourceNotFoundException;
+import com.cretas.aims.repository.MaterialBatchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 原材料库存台账服务
+ *
+ * 所有库存数量变更（消耗、预留、释放、调整）都通过单条条件 UPDATE 完成：
+ * 数量校验写在 WHERE 子句中，由数据库行锁保证并发下不会超卖或出现负库存，
+ * 不需要先读后写，也不需要乐观锁重试。更新行数为 0 时再查询一次批次，给出具体失败原因。
+ *
+ * 调用方已加载到持久化上下文中的 MaterialBatch 不会自动刷新，需要最新数量时请 refresh。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryLedgerService {
+
+    /**
+     * 批量预留语句，条件与 MaterialBatchRepository.reserve 相同
+     */
+    private static final String RESERVE_SQL = "UPDATE material_batches SET " +
+            "status = CASE WHEN receipt_quantity - used_quantity - reserved_quantity - ? <= 0 THEN 'DEPLETED' ELSE status END, " +
+            "reserved_quantity = reserved_quantity + ?, updated_at = ? " +
+            "WHERE id = ? AND factory_id = ? AND deleted_at IS NULL " +
+            "AND receipt_quantity - used_quantity - reserved_quantity >= ?";
+
+    private final MaterialBatchRepository materialBatchRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 直接消耗可用库存（剩余不足时抛出 BusinessException）
+     */
+    @Transactional
+    public void consume(String factoryId, Integer batchId, BigDecimal quantity) {
+        requirePositive(quantity);
+        int updated = materialBatchRepository.consumeAvailable(factoryId, batchId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, quantity, "批次剩余数量不足");
+        }
+        log.debug("库存消耗: batchId={}, quantity={}", batchId, quantity);
+    }
+
+    /**
+     * 预留库存（剩余不足时抛出 BusinessException）
+     */
+    @Transactional
+    public void reserve(String factoryId, Integer batchId, BigDecimal quantity) {
+        requirePositive(quantity);
+        int updated = materialBatchRepository.reserve(factoryId, batchId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, quantity, "批次剩余数量不足以预留");
+        }
+        log.debug("库存预留: batchId={}, quantity={}", batchId, quantity);
+    }
+
+    /**
+     * 批量预留：多个批次的条件 UPDATE 在一次 JDBC batch 中发送（按批次ID排序，加锁顺序一致）
+     *
+     * @param quantities 批次ID -> 预留数量
+     * @return 因剩余不足（被并发占用）而未预留的批次ID，其余批次已预留
+     */
+    @Transactional
+    public Set<Integer> reserveAll(String factoryId, Map<Integer, BigDecimal> quantities) {
+        List<Map.Entry<Integer, BigDecimal>> entries = new ArrayList<>(quantities.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        entries.forEach(entry -> requirePositive(entry.getValue()));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int[] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BigDecimal quantity = entries.get(i).getValue();
+                ps.setBigDecimal(1, quantity);
+                ps.setBigDecimal(2, quantity);
+                ps.setTimestamp(3, now);
+                ps.setInt(4, entries.get(i).getKey());
+                ps.setString(5, factoryId);
+                ps.setBigDecimal(6, quantity);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+
+        Set<Integer> rejected = new HashSet<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                rejected.add(entries.get(i).getKey());
+            }
+        }
+        log.debug("批量预留: batches={}, rejected={}", entries.size(), rejected);
+        return rejected;
+    }
+
+    /**
+     * 释放预留（预留量不足时抛出 BusinessException）
+     */
+    @Transactional
+    public void release(String factoryId, Integer batchId, BigDecimal quantity) {
+        requirePositive(quantity);
+        int updated = materialBatchRepository.releaseReservation(factoryId, batchId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, quantity, "预留数量不足以释放");
+        }
+        log.debug("释放预留: batchId={}, quantity={}", batchId, quantity);
+    }
+
+    /**
+     * 消耗已预留的库存（预留量不足时抛出 BusinessException）
+     */
+    @Transactional
+    public void consumeReserved(String factoryId, Integer batchId, BigDecimal quantity) {
+        requirePositive(quantity);
+        int updated = materialBatchRepository.consumeReserved(factoryId, batchId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, quantity, "预留数量不足以消耗");
+        }
+        log.debug("消耗预留: batchId={}, quantity={}", batchId, quantity);
+    }
+
+    /**
+     * 按增量调整入库数量（delta 可为负，调整后剩余不能为负）
+     */
+    @Transactional
+    public void adjust(String factoryId, Integer batchId, BigDecimal delta) {
+        int updated = materialBatchRepository.adjustReceipt(factoryId, batchId, delta, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, delta.negate(), "调整后数量不能为负数");
+        }
+    }
+
+    /**
+     * 盘点：把剩余数量设为指定值
+     */
+    @Transactional
+    public void setRemaining(String factoryId, Integer batchId, BigDecimal remaining) {
+        if (remaining == null || remaining.signum() < 0) {
+            throw new BusinessException("剩余数量不能为负数");
+        }
+        int updated = materialBatchRepository.setRemaining(factoryId, batchId, remaining, LocalDateTime.now());
+        if (updated == 0) {
+            throw insufficient(factoryId, batchId, remaining, "批次不可调整");
+        }
+    }
+
+    private static void requirePositive(BigDecimal quantity) {
+        if (quantity == null || quantity.signum() <= 0) {
+            throw new BusinessException("数量必须大于0");
+        }
+    }
+
+    /**
+     * 条件更新未命中时区分：批次不存在 / 无权操作 / 数量不足
+     */
+    private RuntimeException insufficient(String factoryId, Integer batchId, BigDecimal quantity, String message) {
+        MaterialBatch batch = materialBatchRepository.findById(batchId)
+                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
+        if (!batch.getFactoryId().equals(factoryId)) {
+            return new BusinessException("无权操作该批次");
+        }
+        log.info("库存台账更新被拒绝: batchId={}, batchNumber={}, quantity={}, reason={}",
+                batchId, batch.getBatchNumber(), quantity, message);
+        return new BusinessException(message + ": " + batch.getBatchNumber());
+    }
+}
@@ -0,0 +1,247 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.material.MaterialAllocationDTO;
+import com.cretas.aims.entity.ProductionPlan;
+import com.cretas.aims.entity.ProductionPlanBatchUsage;
+import com.cretas.aims.entity.enums.MaterialBatchStatus;
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.exception.ResourceNotFoundException;
+import com.cretas.aims.repository.MaterialBatchRepository;
+import com.cretas.aims.repository.ProductionPlanBatchUsageRepository;
+import com.cretas.aims.repository.ProductionPlanRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 原材料多批次分配服务
+ *
+ * 按 FIFO（入库日期）或 FEFO（到期日期）从可用批次中为生产计划分配需求数量，在同一事务内：
+ * 1. 一次查询读取可分配批次及最新剩余量
+ * 2. 贪心分配后，由 InventoryLedgerService 用一次 JDBC batch 条件预留全部批次
+ * 3. 被并发占用导致预留失败的批次，重新读取后把缺口分配给其他批次（最多重试 MAX_ATTEMPTS 次）
+ * 4. 批量写入 / 累加 ProductionPlanBatchUsage
+ * 最终仍无法满足需求时抛出异常，整个事务回滚，不会留下部分预留。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MaterialAllocationService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MaterialBatchRepository materialBatchRepository;
+    private final ProductionPlanRepository productionPlanRepository;
+    private final ProductionPlanBatchUsageRepository planBatchUsageRepository;
+    private final InventoryLedgerService inventoryLedgerService;
+
+    /**
+     * 分配策略
+     */
+    public enum AllocationStrategy {
+        /** 先入先出：按入库日期 */
+        FIFO,
+        /** 先到期先出：按到期日期，无到期日期的批次排在最后 */
+        FEFO;
+
+        /**
+         * 解析策略参数，默认 FIFO
+         */
+        public static AllocationStrategy fromCode(String code) {
+            if (code == null || code.trim().isEmpty()) {
+                return FIFO;
+            }
+            for (AllocationStrategy strategy : values()) {
+                if (strategy.name().equalsIgnoreCase(code.trim())) {
+                    return strategy;
+                }
+            }
+            throw new BusinessException("不支持的分配策略: " + code);
+        }
+    }
+
+    /**
+     * 为生产计划分配并预留原材料
+     *
+     * @param factoryId        工厂ID
+     * @param materialTypeId   原材料类型ID
+     * @param requiredQuantity 需求数量
+     * @param productionPlanId 生产计划ID
+     * @param strategy         分配策略
+     * @return 分配结果
+     */
+    @Transactional
+    public MaterialAllocationDTO allocate(String factoryId, Integer materialTypeId, BigDecimal requiredQuantity,
+                                          Integer productionPlanId, AllocationStrategy strategy) {
+        if (requiredQuantity == null || requiredQuantity.signum() <= 0) {
+            throw new BusinessException("需求数量必须大于0");
+        }
+        ProductionPlan plan = productionPlanRepository.findById(productionPlanId)
+                .orElseThrow(() -> new ResourceNotFoundException("生产计划", "id", productionPlanId));
+        if (!plan.getFactoryId().equals(factoryId)) {
+            throw new BusinessException("无权操作该生产计划");
+        }
+
+        // 批次ID -> 已预留数量（保持分配顺序）
+        Map<Integer, BigDecimal> reserved = new LinkedHashMap<>();
+        Map<Integer, Candidate> candidateById = new LinkedHashMap<>();
+        BigDecimal shortfall = requiredQuantity;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && shortfall.signum() > 0; attempt++) {
+            List<Candidate> candidates = loadCandidates(factoryId, materialTypeId, strategy);
+            candidates.forEach(c -> candidateById.put(c.id, c));
+
+            Map<Integer, BigDecimal> proposal = distribute(candidates, shortfall);
+            if (proposal.isEmpty()) {
+                break;
+            }
+            Set<Integer> rejected = inventoryLedgerService.reserveAll(factoryId, proposal);
+            for (Map.Entry<Integer, BigDecimal> entry : proposal.entrySet()) {
+                if (!rejected.contains(entry.getKey())) {
+                    reserved.merge(entry.getKey(), entry.getValue(), BigDecimal::add);
+                    shortfall = shortfall.subtract(entry.getValue());
+                }
+            }
+            if (!rejected.isEmpty()) {
+                log.info("批次被并发占用，重新分配: planId={}, rejected={}, shortfall={}, attempt={}",
+                        productionPlanId, rejected, shortfall, attempt);
+            }
+        }
+
+        if (shortfall.signum() > 0) {
+            throw new BusinessException("原材料库存不足: 需求 " + requiredQuantity.toPlainString()
+                    + "，可分配 " + requiredQuantity.subtract(shortfall).toPlainString());
+        }
+
+        saveUsages(productionPlanId, reserved);
+
+        List<MaterialAllocationDTO.BatchAllocation> allocations = reserved.entrySet().stream()
+                .map(entry -> {
+                    Candidate c = candidateById.get(entry.getKey());
+                    return MaterialAllocationDTO.BatchAllocation.builder()
+                            .batchId(c.id)
+                            .batchNumber(c.batchNumber)
+                            .receiptDate(c.receiptDate)
+                            .expireDate(c.expireDate)
+                            .quantity(entry.getValue())
+                            .build();
+                })
+                .collect(Collectors.toList());
+
+        log.info("原材料分配完成: planId={}, materialTypeId={}, strategy={}, quantity={}, batches={}",
+                productionPlanId, materialTypeId, strategy, requiredQuantity, allocations.size());
+        return MaterialAllocationDTO.builder()
+                .productionPlanId(productionPlanId)
+                .materialTypeId(materialTypeId)
+                .strategy(strategy.name())
+                .requiredQuantity(requiredQuantity)
+                .allocatedQuantity(requiredQuantity)
+                .allocations(allocations)
+                .build();
+    }
+
+    /**
+     * 读取可分配批次（标量投影，每次都是数据库中的最新剩余量）
+     */
+    private List<Candidate> loadCandidates(String factoryId, Integer materialTypeId, AllocationStrategy strategy) {
+        List<Candidate> candidates = materialBatchRepository.findAllocatableBatches(
+                        factoryId, materialTypeId, MaterialBatchStatus.AVAILABLE, LocalDate.now())
+                .stream()
+                .map(row -> new Candidate((Integer) row[0], (String) row[1], (LocalDate) row[2],
+                        (LocalDate) row[3], (BigDecimal) row[4]))
+                .collect(Collectors.toList());
+        if (strategy == AllocationStrategy.FEFO) {
+            // 查询结果已按入库日期排序，稳定排序后到期日期相同的批次仍保持 FIFO
+            candidates.sort(Comparator.comparing((Candidate c) -> c.expireDate,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return candidates;
+    }
+
+    /**
+     * 贪心分配：按顺序从每个批次取 min(剩余, 缺口)
+     */
+    private static Map<Integer, BigDecimal> distribute(List<Candidate> candidates, BigDecimal shortfall) {
+        Map<Integer, BigDecimal> proposal = new LinkedHashMap<>();
+        BigDecimal remaining = shortfall;
+        for (Candidate candidate : candidates) {
+            if (remaining.signum() <= 0) {
+                break;
+            }
+            BigDecimal take = candidate.available.min(remaining);
+            if (take.signum() > 0) {
+                proposal.put(candidate.id, take);
+                remaining = remaining.subtract(take);
+            }
+        }
+        return proposal;
+    }
+
+    /**
+     * 已有使用记录的累加预留量，没有的新建；saveAll 由 JDBC 批量写入
+     */
+    private void saveUsages(Integer productionPlanId, Map<Integer, BigDecimal> reserved) {
+        Map<Integer, ProductionPlanBatchUsage> existing = planBatchUsageRepository
+                .findByProductionPlanIdAndBatchIdIn(productionPlanId, reserved.keySet())
+                .stream()
+                .collect(Collectors.toMap(ProductionPlanBatchUsage::getBatchId, Function.identity(), (a, b) -> a));
+
+        List<ProductionPlanBatchUsage> usages = new ArrayList<>(reserved.size());
+        reserved.forEach((batchId, quantity) -> {
+            ProductionPlanBatchUsage usage = existing.get(batchId);
+            if (usage == null) {
+                usage = new ProductionPlanBatchUsage();
+                usage.setProductionPlanId(productionPlanId);
+                usage.setBatchId(batchId);
+                usage.setMaterialBatchId(batchId);
+                usage.setPlannedQuantity(quantity);
+                usage.setReservedQuantity(quantity);
+                usage.setUsedQuantity(BigDecimal.ZERO);
+            } else {
+                usage.setPlannedQuantity(nz(usage.getPlannedQuantity()).add(quantity));
+                usage.setReservedQuantity(nz(usage.getReservedQuantity()).add(quantity));
+            }
+            usages.add(usage);
+        });
+        planBatchUsageRepository.saveAll(usages);
+    }
+
+    private static BigDecimal nz(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * 可分配批次
+     */
+    private static final class Candidate {
+        private final Integer id;
+        private final String batchNumber;
+        private final LocalDate receiptDate;
+        private final LocalDate expireDate;
+        private final BigDecimal available;
+
+        private Candidate(Integer id, String batchNumber, LocalDate receiptDate, LocalDate expireDate, BigDecimal available) {
+            this.id = id;
+            this.batchNumber = batchNumber;
+            this.receiptDate = receiptDate;
+            this.expireDate = expireDate;
+            this.available = available;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.cretas.aims.service;
 import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.material.CreateMaterialBatchRequest;
+import com.cretas.aims.dto.material.MaterialAllocationDTO;
 import com.cretas.aims.dto.material.MaterialBatchDTO;
 import com.cretas.aims.entity.enums.MaterialBatchStatus;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -97,10 +99,6 @@ public interface MaterialBatchService {
      * 批量入库
       */
     List<MaterialBatchDTO> batchCreateMaterialBatches(String factoryId, List<CreateMaterialBatchRequest> requests, Integer userId);
-     /**
-     * 导出库存报表
-      */
-    byte[] exportInventoryReport(String factoryId);
      /**
      * 获取批次使用记录
       */
@@ -114,9 +112,10 @@ public interface MaterialBatchService {
       */
     void autoCheckAndUpdateExpiredBatches();
      /**
-     * 导出库存报表（带日期范围）
+     * 导出库存报表（入库日期范围可为空；format: csv / xlsx，流式写入响应）
       */
-    byte[] exportInventoryReport(String factoryId, LocalDate startDate, LocalDate endDate);
+    void exportInventoryReport(String factoryId, LocalDate startDate, LocalDate endDate,
+                               String format, HttpServletResponse response);
      /**
      * 按材料类型获取批次
       */
@@ -126,6 +125,11 @@ public interface MaterialBatchService {
       */
     List<MaterialBatchDTO> getFIFOBatches(String factoryId, Integer materialTypeId, BigDecimal requiredQuantity);
      /**
+     * 按 FIFO / FEFO 为生产计划分配并预留多个批次（一次事务，库存不足时整体失败）
+      */
+    MaterialAllocationDTO allocateBatches(String factoryId, Integer materialTypeId, BigDecimal requiredQuantity,
+                                          Integer productionPlanId, String strategy);
+     /**
      * 使用批次材料
       */
     MaterialBatchDTO useBatchMaterial(String factoryId, Integer batchId, BigDecimal quantity, Integer productionPlanId);
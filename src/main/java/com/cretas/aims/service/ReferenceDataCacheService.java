@@ -0,0 +1,401 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.MaterialSpecConfig;
+import com.cretas.aims.entity.ProductType;
+import com.cretas.aims.entity.RawMaterialType;
+import com.cretas.aims.entity.WorkType;
+import com.cretas.aims.repository.MaterialSpecConfigRepository;
+import com.cretas.aims.repository.ProductTypeRepository;
+import com.cretas.aims.repository.RawMaterialTypeRepository;
+import com.cretas.aims.repository.WorkTypeRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工厂基础数据快照缓存：原材料类型、产品类型、工种、原材料规格配置
+ *
+ * 1. 每个工厂一份不可变快照，提供 ID → 名称/单位等 O(1) 查找，DTO 组装时不再逐条查库
+ * 2. 版本号失效：上述数据的增删改在事务提交后调用 onDataChanged，本地版本号 +1 并删除快照，
+ *    同时通过 Redis 频道通知其他节点；加载期间版本号变化的快照不写入缓存
+ * 3. 快照在调用方的事务中加载（没有事务时开启只读事务），不额外占用连接；调用方处于读写事务时，
+ *    快照可能包含其未提交的修改，因此不参与相同请求合并，只在该事务提交后写入缓存，回滚则丢弃；
+ *    工种实体复制后放入快照
+ * 4. 失效消息丢失时，快照最多保留 max-age
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReferenceDataCacheService implements MessageListener {
+
+    private final RawMaterialTypeRepository materialTypeRepository;
+    private final ProductTypeRepository productTypeRepository;
+    private final WorkTypeRepository workTypeRepository;
+    private final MaterialSpecConfigRepository specConfigRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final StringRedisTemplate redisTemplate;
+    private final SingleFlightService singleFlightService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 本节点最多缓存的工厂数（按访问顺序淘汰）
+     */
+    @Value("${cretas.reference-data.max-factories:500}")
+    private int maxFactories;
+
+    /**
+     * 快照最长存活时间（毫秒）
+     */
+    @Value("${cretas.reference-data.max-age:600000}")
+    private long maxAgeMs;
+
+    @Value("${cretas.reference-data.invalidation-channel:cretas:refdata:invalidate}")
+    private String channel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Map<String, ReferenceSnapshot> snapshots;
+    private TransactionTemplate readTemplate;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Collections.synchronizedMap(new LinkedHashMap<String, ReferenceSnapshot>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReferenceSnapshot> eldest) {
+                return size() > maxFactories;
+            }
+        });
+        readTemplate = new TransactionTemplate(transactionManager);
+        readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        readTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 获取工厂基础数据快照
+     */
+    public ReferenceSnapshot snapshot(String factoryId) {
+        ReferenceSnapshot current = fresh(factoryId);
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // 读写事务中加载的快照可能包含本事务未提交的修改，不与其他请求共享
+            return load(factoryId);
+        }
+        // 快照只保存在本节点，其他节点加载完成不会填充本节点缓存，只在进程内合并
+        return singleFlightService.executeLocal(SingleFlightService.key("refdata", factoryId),
+                () -> fresh(factoryId),
+                () -> load(factoryId));
+    }
+
+    /**
+     * 基础数据变更：处于事务中时在提交后失效，否则立即失效
+     */
+    public void onDataChanged(String factoryId) {
+        if (factoryId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(factoryId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(factoryId);
+            }
+        });
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 收到其他节点的失效消息：nodeId \n factoryId
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        invalidateLocal(parts[1]);
+    }
+
+    /**
+     * 运行指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("factories", snapshots.size());
+        stats.put("hits", hits.get());
+        stats.put("loads", loads.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private ReferenceSnapshot fresh(String factoryId) {
+        ReferenceSnapshot snapshot = snapshots.get(factoryId);
+        if (snapshot == null
+                || snapshot.version != versionOf(factoryId).get()
+                || System.currentTimeMillis() - snapshot.loadedAt > maxAgeMs) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private ReferenceSnapshot load(String factoryId) {
+        long version = versionOf(factoryId).get();
+        loads.incrementAndGet();
+        ReferenceSnapshot snapshot = readTemplate.execute(status -> new ReferenceSnapshot(version,
+                materialTypeRepository.findByFactoryId(factoryId),
+                productTypeRepository.findByFactoryId(factoryId),
+                workTypeRepository.findByFactoryId(factoryId),
+                parseSpecConfigs(specConfigRepository.findByFactoryId(factoryId))));
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store(factoryId, version, snapshot);
+                }
+            });
+        } else {
+            store(factoryId, version, snapshot);
+        }
+        return snapshot;
+    }
+
+    private void store(String factoryId, long version, ReferenceSnapshot snapshot) {
+        if (versionOf(factoryId).get() == version) {
+            snapshots.put(factoryId, snapshot);
+        } else {
+            log.debug("加载期间基础数据已变化，快照不写入缓存: factoryId={}", factoryId);
+        }
+    }
+
+    private Map<String, List<String>> parseSpecConfigs(List<MaterialSpecConfig> configs) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (MaterialSpecConfig config : configs) {
+            if (!result.containsKey(config.getCategory())) {
+                result.put(config.getCategory(), Collections.unmodifiableList(parseSpecifications(config)));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private List<String> parseSpecifications(MaterialSpecConfig config) {
+        try {
+            return objectMapper.readValue(config.getSpecifications(), new TypeReference<List<String>>() {});
+        } catch (JsonProcessingException e) {
+            log.error("解析规格JSON失败: {}", config.getSpecifications(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    private void invalidate(String factoryId) {
+        invalidateLocal(factoryId);
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + "\n" + factoryId);
+        } catch (Exception e) {
+            // 其他节点的快照最多保留 max-age
+            log.warn("发布基础数据失效消息失败: factoryId={}, error={}", factoryId, e.getMessage());
+        }
+    }
+
+    private void invalidateLocal(String factoryId) {
+        invalidations.incrementAndGet();
+        versionOf(factoryId).incrementAndGet();
+        snapshots.remove(factoryId);
+    }
+
+    private AtomicLong versionOf(String factoryId) {
+        return versions.computeIfAbsent(factoryId, key -> new AtomicLong());
+    }
+
+    /**
+     * 工厂基础数据快照（只读，调用方不得修改其中的工种实体）
+     */
+    public static final class ReferenceSnapshot {
+        private final long version;
+        private final long loadedAt = System.currentTimeMillis();
+        private final Map<Integer, TypeRef> materialTypes;
+        private final Map<Integer, TypeRef> productTypes;
+        private final Map<Integer, WorkType> workTypes;
+        private final List<WorkType> activeWorkTypes;
+        private final Map<String, List<String>> specConfigs;
+
+        private ReferenceSnapshot(long version, List<RawMaterialType> materialTypes, List<ProductType> productTypes,
+                                  List<WorkType> workTypes, Map<String, List<String>> specConfigs) {
+            this.version = version;
+            Map<Integer, TypeRef> materials = new HashMap<>();
+            for (RawMaterialType type : materialTypes) {
+                materials.put(type.getId(), TypeRef.of(type));
+            }
+            Map<Integer, TypeRef> products = new HashMap<>();
+            for (ProductType type : productTypes) {
+                products.put(type.getId(), TypeRef.of(type));
+            }
+            Map<Integer, WorkType> works = new HashMap<>();
+            List<WorkType> active = new ArrayList<>();
+            for (WorkType type : workTypes) {
+                WorkType copy = copyOf(type);
+                works.put(copy.getId(), copy);
+                if (Boolean.TRUE.equals(copy.getIsActive())) {
+                    active.add(copy);
+                }
+            }
+            this.materialTypes = Collections.unmodifiableMap(materials);
+            this.productTypes = Collections.unmodifiableMap(products);
+            this.workTypes = Collections.unmodifiableMap(works);
+            this.activeWorkTypes = Collections.unmodifiableList(active);
+            this.specConfigs = specConfigs;
+        }
+
+        /**
+         * 复制工种实体，快照不持有调用方持久化上下文中的受管实体
+         */
+        private static WorkType copyOf(WorkType type) {
+            WorkType copy = WorkType.builder()
+                    .id(type.getId())
+                    .factoryId(type.getFactoryId())
+                    .name(type.getName())
+                    .code(type.getCode())
+                    .description(type.getDescription())
+                    .department(type.getDepartment())
+                    .billingType(type.getBillingType())
+                    .baseRate(type.getBaseRate())
+                    .overtimeRateMultiplier(type.getOvertimeRateMultiplier())
+                    .holidayRateMultiplier(type.getHolidayRateMultiplier())
+                    .nightShiftRateMultiplier(type.getNightShiftRateMultiplier())
+                    .hazardLevel(type.getHazardLevel())
+                    .certificationRequired(type.getCertificationRequired())
+                    .requiredSkills(type.getRequiredSkills())
+                    .isActive(type.getIsActive())
+                    .isDefault(type.getIsDefault())
+                    .displayOrder(type.getDisplayOrder())
+                    .color(type.getColor())
+                    .icon(type.getIcon())
+                    .build();
+            copy.setCreatedAt(type.getCreatedAt());
+            copy.setUpdatedAt(type.getUpdatedAt());
+            copy.setDeletedAt(type.getDeletedAt());
+            return copy;
+        }
+
+        public TypeRef getMaterialType(Integer id) {
+            return materialTypes.get(id);
+        }
+
+        public TypeRef getProductType(Integer id) {
+            return productTypes.get(id);
+        }
+
+        public WorkType getWorkType(Integer id) {
+            return workTypes.get(id);
+        }
+
+        public List<WorkType> getActiveWorkTypes() {
+            return activeWorkTypes;
+        }
+
+        /**
+         * 工厂自定义的规格配置（类别 → 规格列表），不含系统默认
+         */
+        public Map<String, List<String>> getSpecConfigs() {
+            return specConfigs;
+        }
+    }
+
+    /**
+     * 原材料类型/产品类型的只读摘要
+     */
+    public static final class TypeRef {
+        private final Integer id;
+        private final String code;
+        private final String name;
+        private final String unit;
+        private final String category;
+        private final Boolean active;
+
+        private TypeRef(Integer id, String code, String name, String unit, String category, Boolean active) {
+            this.id = id;
+            this.code = code;
+            this.name = name;
+            this.unit = unit;
+            this.category = category;
+            this.active = active;
+        }
+
+        public static TypeRef of(RawMaterialType type) {
+            return new TypeRef(type.getId(), type.getCode(), type.getName(), type.getUnit(),
+                    type.getCategory(), type.getIsActive());
+        }
+
+        public static TypeRef of(ProductType type) {
+            return new TypeRef(type.getId(), type.getCode(), type.getName(), type.getUnit(),
+                    type.getCategory(), type.getIsActive());
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public Boolean getActive() {
+            return active;
+        }
+    }
+}
@@ -16,6 +16,10 @@ public interface ReportService {
      * 获取仪表盘统计数据
      */
     DashboardStatisticsDTO getDashboardStatistics(String factoryId);
+    /**
+     * 获取工厂仪表盘各统计模块的耗时统计
+     */
+    Map<String, Map<String, Object>> getDashboardSectionLatency(String factoryId);
      /**
      * 获取生产报表
       */
@@ -0,0 +1,234 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并执行（single-flight）
+ *
+ * 同一 key 的并发请求只有第一个（leader）真正执行加载逻辑，其余请求等待并共享 leader 的结果或异常。
+ * leader 执行前先调用 recheck 再查一次缓存，避免在上一个 leader 刚写完缓存时重复加载。
+ *
+ * 开启 cretas.single-flight.distributed 后，leader 还会在 Redis 上 SET NX 一把锁：
+ * 抢锁失败说明其他节点正在加载，本节点轮询 recheck 等待其结果；锁在加载完成（有事务时为事务结束）后释放。
+ * Redis 不可用时退化为仅进程内合并。
+ *
+ * 结果只保存在本节点的数据（如进程内快照）使用 executeLocal：其他节点加载后不会填充本节点的缓存，
+ * 跨节点等待只会一直轮询到超时。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SingleFlightService {
+
+    private static final String LOCK_PREFIX = "single_flight:";
+
+    /**
+     * 仅当锁仍属于自己时才删除
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 是否启用 Redis 跨节点合并
+     */
+    @Value("${cretas.single-flight.distributed:false}")
+    private boolean distributed;
+
+    /**
+     * 等待 leader 的最长时间（毫秒），超时后自行加载
+     */
+    @Value("${cretas.single-flight.wait-timeout:60000}")
+    private long waitTimeoutMs;
+
+    /**
+     * Redis 锁过期时间（毫秒），防止持锁节点宕机后锁无法释放
+     */
+    @Value("${cretas.single-flight.lock-ttl:60000}")
+    private long lockTtlMs;
+
+    /**
+     * 跨节点等待时轮询 recheck 的间隔（毫秒）
+     */
+    @Value("${cretas.single-flight.poll-interval:200}")
+    private long pollIntervalMs;
+
+    /**
+     * 构建合并 key
+     */
+    public static String key(String type, Object... parts) {
+        StringBuilder sb = new StringBuilder(type);
+        for (Object part : parts) {
+            sb.append(':').append(part);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 合并执行
+     *
+     * @param key     合并 key（相同 key 的并发请求共享一次加载）
+     * @param recheck 缓存查询，命中返回结果，未命中返回 null
+     * @param loader  加载逻辑
+     * @return 缓存结果或加载结果（等待者与 leader 拿到同一对象，调用方不要修改）
+     */
+    public <T> T execute(String key, Supplier<T> recheck, Supplier<T> loader) {
+        return execute(key, recheck, loader, distributed);
+    }
+
+    /**
+     * 仅在进程内合并执行，不使用 Redis 锁（用于 recheck 只查本节点缓存的场景）
+     *
+     * @param key     合并 key
+     * @param recheck 本节点缓存查询，命中返回结果，未命中返回 null
+     * @param loader  加载逻辑
+     * @return 缓存结果或加载结果（等待者与 leader 拿到同一对象，调用方不要修改）
+     */
+    public <T> T executeLocal(String key, Supplier<T> recheck, Supplier<T> loader) {
+        return execute(key, recheck, loader, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T execute(String key, Supplier<T> recheck, Supplier<T> loader, boolean acrossNodes) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return (T) await(key, leader, loader);
+        }
+
+        try {
+            T result = recheck.get();
+            if (result == null) {
+                result = acrossNodes ? loadWithLock(key, recheck, loader) : loader.get();
+            }
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 等待本节点的 leader
+     */
+    private Object await(String key, CompletableFuture<Object> leader, Supplier<?> loader) {
+        log.debug("合并到进行中的请求: key={}", key);
+        try {
+            return leader.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("等待合并请求超时，自行加载: key={}, timeout={}ms", key, waitTimeoutMs);
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BusinessException("合并请求执行失败: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待合并请求被中断");
+        }
+    }
+
+    /**
+     * 跨节点合并：抢到锁则加载，否则轮询 recheck 等待持锁节点写入缓存
+     */
+    private <T> T loadWithLock(String key, Supplier<T> recheck, Supplier<T> loader) {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+
+        while (true) {
+            Boolean acquired;
+            try {
+                acquired = redisTemplate.opsForValue().setIfAbsent(lockKey, token, lockTtlMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("获取合并锁失败，仅进程内合并: key={}, error={}", key, e.getMessage());
+                return loader.get();
+            }
+            if (Boolean.TRUE.equals(acquired)) {
+                try {
+                    return loader.get();
+                } finally {
+                    releaseLock(lockKey, token);
+                }
+            }
+
+            sleep();
+            T result = recheck.get();
+            if (result != null) {
+                log.debug("其他节点已完成加载: key={}", key);
+                return result;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("等待其他节点加载超时，自行加载: key={}, timeout={}ms", key, waitTimeoutMs);
+                return loader.get();
+            }
+        }
+    }
+
+    /**
+     * 释放锁；处于事务中时推迟到事务结束，保证其他节点 recheck 时能读到已提交的结果
+     */
+    private void releaseLock(String lockKey, String token) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    deleteLock(lockKey, token);
+                }
+            });
+        } else {
+            deleteLock(lockKey, token);
+        }
+    }
+
+    private void deleteLock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lockKey), token);
+        } catch (Exception e) {
+            log.warn("释放合并锁失败（将在 {}ms 后自动过期）: key={}, error={}", lockTtlMs, lockKey, e.getMessage());
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待合并请求被中断");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.util.CsvExportWriter;
+import com.cretas.aims.util.TabularWriter;
+import com.cretas.aims.util.XlsxStreamWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 流式导出服务（CSV / XLSX）
+ *
+ * 在只读事务中通过仓库返回的 Stream（MySQL 流式结果集）逐行读取实体，
+ * 逐行写入 HttpServletResponse 输出流，并定期清空持久化上下文，
+ * 内存占用与导出行数无关。
+ *
+ * 注意：行映射函数中不要访问未抓取的懒加载关联（流式结果集未读完前同一连接不能执行其他查询），
+ * 需要的关联请在仓库查询中 JOIN FETCH。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingExportService {
+
+    /**
+     * 每写出多少行清空一次持久化上下文
+     */
+    private static final int CLEAR_INTERVAL = 500;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate readOnlyTemplate;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * 解析格式参数，默认 XLSX
+         */
+        public static ExportFormat fromCode(String code) {
+            if (code == null || code.trim().isEmpty()) {
+                return XLSX;
+            }
+            for (ExportFormat format : values()) {
+                if (format.extension.equalsIgnoreCase(code.trim())) {
+                    return format;
+                }
+            }
+            throw new BusinessException("不支持的导出格式: " + code);
+        }
+
+        TabularWriter open(OutputStream out, String sheetName, List<String> headers) throws IOException {
+            return this == CSV ? new CsvExportWriter(out, headers) : new XlsxStreamWriter(out, sheetName, headers);
+        }
+    }
+
+    /**
+     * 流式导出到 HTTP 响应
+     *
+     * @param response  HTTP响应
+     * @param fileName  文件名（不含扩展名，同时作为工作表名称）
+     * @param format    导出格式（csv / xlsx，默认 xlsx）
+     * @param headers   表头
+     * @param rows      数据流（在只读事务中打开，导出结束后关闭）
+     * @param rowMapper 实体 -> 单元格值
+     */
+    public <T> void export(HttpServletResponse response, String fileName, String format, List<String> headers,
+                           Supplier<Stream<T>> rows, Function<? super T, List<?>> rowMapper) {
+        ExportFormat exportFormat = ExportFormat.fromCode(format);
+        String fullName = fileName + "_" + LocalDate.now() + "." + exportFormat.extension;
+        response.setContentType(exportFormat.contentType);
+        response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''"
+                + URLEncoder.encode(fullName, StandardCharsets.UTF_8).replace("+", "%20"));
+
+        long startTime = System.currentTimeMillis();
+        try {
+            Long count = readOnlyTemplate.execute(status -> {
+                try (Stream<T> stream = rows.get();
+                     TabularWriter writer = exportFormat.open(response.getOutputStream(), fileName, headers)) {
+                    long n = 0;
+                    Iterator<T> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        writer.writeRow(rowMapper.apply(iterator.next()));
+                        if (++n % CLEAR_INTERVAL == 0) {
+                            entityManager.clear();
+                        }
+                    }
+                    return n;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("导出完成: file={}, rows={}, 耗时={}ms", fullName, count, System.currentTimeMillis() - startTime);
+        } catch (UncheckedIOException e) {
+            // 通常是客户端中途断开，响应已提交，无法再返回错误信息
+            log.warn("导出中断: file={}, error={}", fullName, e.getMessage());
+        }
+    }
+}
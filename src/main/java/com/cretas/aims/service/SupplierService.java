@@ -4,6 +4,7 @@ import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.supplier.CreateSupplierRequest;
 import com.cretas.aims.dto.supplier.SupplierDTO;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -72,9 +73,9 @@ public interface SupplierService {
       */
     boolean checkSupplierCodeExists(String factoryId, String supplierCode);
      /**
-     * 导出供应商列表
+     * 导出供应商列表（format: csv / xlsx，流式写入响应）
       */
-    byte[] exportSupplierList(String factoryId);
+    void exportSupplierList(String factoryId, String format, HttpServletResponse response);
      /**
      * 批量导入供应商
       */
@@ -3,6 +3,7 @@ package com.cretas.aims.service;
 import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.entity.TimeClockRecord;
+import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 import java.util.Map;
 /**
@@ -58,7 +59,13 @@ public interface TimeClockService {
       */
     Map<String, Object> getDepartmentAttendance(String factoryId, String department, LocalDate date);
      /**
-     * 批量导出考勤记录
+     * 获取全部在职员工（可按部门过滤）的考勤汇总，一次聚合查询返回每人一行
       */
-    byte[] exportAttendanceRecords(String factoryId, LocalDate startDate, LocalDate endDate);
+    Map<String, Object> getEmployeeAttendanceStatistics(String factoryId, String department,
+                                                         LocalDate startDate, LocalDate endDate);
+     /**
+     * 批量导出考勤记录（format: csv / xlsx，流式写入响应）
+      */
+    void exportAttendanceRecords(String factoryId, LocalDate startDate, LocalDate endDate,
+                                 String format, HttpServletResponse response);
 }
@@ -5,6 +5,7 @@ import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.user.CreateUserRequest;
 import com.cretas.aims.dto.user.UserDTO;
 import com.cretas.aims.entity.enums.FactoryUserRole;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 /**
  * 用户服务接口
@@ -80,7 +81,7 @@ public interface UserService {
     List<UserDTO> batchImportUsers(String factoryId, List<CreateUserRequest> requests);
 
     /**
-     * 导出用户列表
+     * 导出用户列表（format: csv / xlsx，流式写入响应）
      */
-    byte[] exportUsers(String factoryId);
+    void exportUsers(String factoryId, String format, HttpServletResponse response);
 }
@@ -0,0 +1,384 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.WhitelistDTO;
+import com.cretas.aims.entity.Whitelist;
+import com.cretas.aims.entity.enums.WhitelistStatus;
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.exception.ResourceNotFoundException;
+import com.cretas.aims.repository.WhitelistRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 白名单批量导入流水线
+ *
+ * 1. 逐行读取 CSV（不把整个文件切分到内存）
+ * 2. 每批一次 IN 查询排除已存在的手机号，批内用 Set 去重
+ * 3. 剩余记录批量插入，每批独立事务提交；某一批失败只影响该批，不回滚已提交的批次
+ * 4. 大文件上传后在后台执行，可按任务ID查询进度
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WhitelistImportService {
+
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 已结束任务的进度保留时间（分钟）
+     */
+    private static final long FINISHED_JOB_RETENTION_MINUTES = 60;
+
+    private final WhitelistRepository whitelistRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    /**
+     * 每批条数（与 hibernate.jdbc.batch_size 一致）
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    /**
+     * 每批独立提交，调用方即使在事务中也不会把所有批次合并成一个长事务
+     */
+    private TransactionTemplate chunkTemplate;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        chunkTemplate = new TransactionTemplate(transactionManager);
+        chunkTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ==================== 同步导入 ====================
+
+    /**
+     * 导入 CSV（首行为标题：手机号,姓名,部门,职位）
+     */
+    public WhitelistDTO.BatchResult importCsv(String factoryId, Reader reader, Integer operatorId) throws IOException {
+        return importCsv(factoryId, reader, operatorId, new ImportJob(null, factoryId));
+    }
+
+    /**
+     * 批量添加（接口提交的条目列表）
+     */
+    public WhitelistDTO.BatchResult addEntries(String factoryId, WhitelistDTO.BatchAddRequest request, Integer operatorId) {
+        ChunkWriter writer = new ChunkWriter(factoryId, new ImportJob(null, factoryId));
+        for (WhitelistDTO.WhitelistEntry entry : request.getEntries()) {
+            writer.processedRows.incrementAndGet();
+            writer.accept(Whitelist.builder()
+                    .factoryId(factoryId)
+                    .phoneNumber(entry.getPhoneNumber())
+                    .name(entry.getName())
+                    .position(entry.getPosition())
+                    .department(request.getDepartment())
+                    .status(WhitelistStatus.ACTIVE)
+                    .expiresAt(request.getExpiresAt())
+                    .notes(request.getNotes())
+                    .addedBy(operatorId)
+                    .build());
+        }
+        return writer.finish();
+    }
+
+    // ==================== 后台导入 ====================
+
+    /**
+     * 上传文件后台导入：先落盘到临时文件（请求结束后上传流不可用），再逐行导入
+     *
+     * @return 任务初始进度（含任务ID）
+     */
+    public WhitelistDTO.ImportProgress submitImport(String factoryId, MultipartFile file, Integer operatorId) {
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException("导入文件不能为空");
+        }
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile("whitelist-import-", ".csv");
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            throw new BusinessException("保存导入文件失败: " + e.getMessage());
+        }
+
+        purgeFinishedJobs();
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), factoryId);
+        jobs.put(job.jobId, job);
+        log.info("提交白名单导入任务: factoryId={}, jobId={}, fileSize={}", factoryId, job.jobId, file.getSize());
+
+        taskExecutor.execute(() -> {
+            try (BufferedReader reader = Files.newBufferedReader(tempFile, StandardCharsets.UTF_8)) {
+                importCsv(factoryId, reader, operatorId, job);
+            } catch (Exception e) {
+                log.error("白名单导入任务失败: jobId={}, error={}", job.jobId, e.getMessage(), e);
+                job.fail(e.getMessage());
+            } finally {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("删除导入临时文件失败: {}", tempFile);
+                }
+            }
+        });
+        return job.snapshot();
+    }
+
+    /**
+     * 查询导入进度
+     */
+    public WhitelistDTO.ImportProgress getProgress(String factoryId, String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || !job.factoryId.equals(factoryId)) {
+            throw new ResourceNotFoundException("白名单导入任务", "jobId", jobId);
+        }
+        return job.snapshot();
+    }
+
+    // ==================== 流水线 ====================
+
+    private WhitelistDTO.BatchResult importCsv(String factoryId, Reader reader, Integer operatorId,
+                                              ImportJob job) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ChunkWriter writer = new ChunkWriter(factoryId, job);
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+
+        // 跳过标题行
+        String line = lines.readLine();
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            writer.processedRows.incrementAndGet();
+
+            List<String> fields = parseCsvLine(line);
+            if (fields.size() < 4) {
+                writer.fail(line, "格式错误");
+                continue;
+            }
+            writer.accept(Whitelist.builder()
+                    .factoryId(factoryId)
+                    .phoneNumber(fields.get(0))
+                    .name(fields.get(1))
+                    .department(fields.get(2))
+                    .position(fields.get(3))
+                    .status(WhitelistStatus.ACTIVE)
+                    .addedBy(operatorId)
+                    .build());
+        }
+        WhitelistDTO.BatchResult result = writer.finish();
+        job.complete(result);
+        log.info("导入完成: factoryId={}, rows={}, success={}, failed={}, 耗时={}ms", factoryId,
+                writer.processedRows.get(), result.getSuccessCount(), result.getFailedCount(),
+                System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    /**
+     * 解析一行 CSV：支持双引号包裹的字段和 "" 转义，字段去除首尾空白
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    inQuotes = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString().trim());
+        return fields;
+    }
+
+    private void purgeFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(FINISHED_JOB_RETENTION_MINUTES);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(threshold));
+    }
+
+    /**
+     * 按批累积、去重、写入
+     */
+    private class ChunkWriter {
+        private final String factoryId;
+        private final ImportJob job;
+        private final WhitelistDTO.BatchResult result;
+        private final Set<String> seenPhones = new HashSet<>();
+        private final List<Whitelist> chunk = new ArrayList<>(batchSize);
+        private final AtomicInteger processedRows;
+
+        ChunkWriter(String factoryId, ImportJob job) {
+            this.factoryId = factoryId;
+            this.job = job;
+            this.processedRows = job.processedRows;
+            this.result = WhitelistDTO.BatchResult.builder()
+                    .successCount(0)
+                    .failedCount(0)
+                    .successPhones(new ArrayList<>())
+                    .failedEntries(new ArrayList<>())
+                    .build();
+        }
+
+        void accept(Whitelist whitelist) {
+            if (!seenPhones.add(whitelist.getPhoneNumber())) {
+                fail(whitelist.getPhoneNumber(), "手机号已存在");
+                return;
+            }
+            chunk.add(whitelist);
+            if (chunk.size() >= batchSize) {
+                flushChunk();
+            }
+        }
+
+        void fail(String phoneNumber, String reason) {
+            result.getFailedEntries().add(
+                    WhitelistDTO.BatchResult.FailedEntry.builder()
+                            .phoneNumber(phoneNumber)
+                            .reason(reason)
+                            .build()
+            );
+            result.setFailedCount(result.getFailedCount() + 1);
+            job.failedCount.incrementAndGet();
+        }
+
+        WhitelistDTO.BatchResult finish() {
+            flushChunk();
+            return result;
+        }
+
+        private void flushChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                List<Whitelist> saved = chunkTemplate.execute(status -> {
+                    Set<String> existing = new HashSet<>(whitelistRepository.findExistingPhoneNumbers(factoryId,
+                            chunk.stream().map(Whitelist::getPhoneNumber).collect(Collectors.toList())));
+                    List<Whitelist> toSave = new ArrayList<>(chunk.size());
+                    for (Whitelist whitelist : chunk) {
+                        if (existing.contains(whitelist.getPhoneNumber())) {
+                            fail(whitelist.getPhoneNumber(), "手机号已存在");
+                        } else {
+                            toSave.add(whitelist);
+                        }
+                    }
+                    return whitelistRepository.saveAll(toSave);
+                });
+                for (Whitelist whitelist : saved) {
+                    result.getSuccessPhones().add(whitelist.getPhoneNumber());
+                }
+                result.setSuccessCount(result.getSuccessCount() + saved.size());
+                job.successCount.addAndGet(saved.size());
+            } catch (Exception e) {
+                // 该批回滚，已提交的批次不受影响
+                log.error("导入白名单批次失败: factoryId={}, size={}, error={}", factoryId, chunk.size(), e.getMessage());
+                Set<String> alreadyFailed = result.getFailedEntries().stream()
+                        .map(WhitelistDTO.BatchResult.FailedEntry::getPhoneNumber)
+                        .collect(Collectors.toSet());
+                for (Whitelist whitelist : chunk) {
+                    if (!alreadyFailed.contains(whitelist.getPhoneNumber())) {
+                        fail(whitelist.getPhoneNumber(), "系统错误: " + e.getMessage());
+                    }
+                }
+            }
+            chunk.clear();
+        }
+    }
+
+    /**
+     * 导入任务状态
+     */
+    private static class ImportJob {
+        private final String jobId;
+        private final String factoryId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger processedRows = new AtomicInteger();
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+        private volatile String status = STATUS_RUNNING;
+        private volatile String errorMessage;
+        private volatile LocalDateTime finishedAt;
+        private volatile WhitelistDTO.BatchResult result;
+
+        ImportJob(String jobId, String factoryId) {
+            this.jobId = jobId;
+            this.factoryId = factoryId;
+        }
+
+        void complete(WhitelistDTO.BatchResult result) {
+            this.result = result;
+            this.finishedAt = LocalDateTime.now();
+            this.status = STATUS_COMPLETED;
+        }
+
+        void fail(String errorMessage) {
+            this.errorMessage = errorMessage;
+            this.finishedAt = LocalDateTime.now();
+            this.status = STATUS_FAILED;
+        }
+
+        WhitelistDTO.ImportProgress snapshot() {
+            return WhitelistDTO.ImportProgress.builder()
+                    .jobId(jobId)
+                    .factoryId(factoryId)
+                    .status(status)
+                    .processedRows(processedRows.get())
+                    .successCount(successCount.get())
+                    .failedCount(failedCount.get())
+                    .errorMessage(errorMessage)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .result(result)
+                    .build();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.cretas.aims.service;
 import com.cretas.aims.dto.WhitelistDTO;
 import com.cretas.aims.dto.common.PageResponse;
 import org.springframework.data.domain.Pageable;
+import org.springframework.web.multipart.MultipartFile;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 /**
  * 白名单管理服务接口
@@ -97,17 +99,40 @@ public interface WhitelistService {
       */
     List<WhitelistDTO> getRecentlyUsed(String factoryId, Integer limit);
      /**
-     * 导出白名单
+     * 导出白名单（最新的1000条，全量导出使用 exportWhitelistFile）
      * @param status 状态筛选
      * @return 导出数据（CSV格式）
       */
     String exportWhitelist(String factoryId, String status);
+
+    /**
+     * 导出白名单文件（format: csv / xlsx，流式写入响应）
+     */
+    void exportWhitelistFile(String factoryId, String status, String format, HttpServletResponse response);
      /**
      * 导入白名单
      * @param csvData CSV数据
      * @return 导入结果
       */
     WhitelistDTO.BatchResult importWhitelist(String factoryId, String csvData);
+
+    /**
+     * 上传CSV文件后台导入白名单
+     *
+     * @param factoryId 工厂ID
+     * @param file CSV文件（首行为标题：手机号,姓名,部门,职位）
+     * @return 导入任务进度（含任务ID）
+     */
+    WhitelistDTO.ImportProgress submitImportJob(String factoryId, MultipartFile file);
+
+    /**
+     * 查询白名单导入任务进度
+     *
+     * @param factoryId 工厂ID
+     * @param jobId 任务ID
+     * @return 导入任务进度
+     */
+    WhitelistDTO.ImportProgress getImportProgress(String factoryId, String jobId);
      /**
      * 清理已删除的记录
      * @param daysOld 多少天前的记录
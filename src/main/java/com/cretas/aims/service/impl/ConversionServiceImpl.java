@@ -3,13 +3,14 @@ package com.cretas.aims.service.impl;
 import com.cretas.aims.dto.ConversionDTO;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.entity.MaterialProductConversion;
-import com.cretas.aims.entity.RawMaterialType;
-import com.cretas.aims.entity.ProductType;
 import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.repository.ConversionRepository;
 import com.cretas.aims.repository.RawMaterialTypeRepository;
 import com.cretas.aims.repository.ProductTypeRepository;
 import com.cretas.aims.service.ConversionService;
+import com.cretas.aims.service.ReferenceDataCacheService;
+import com.cretas.aims.service.ReferenceDataCacheService.ReferenceSnapshot;
+import com.cretas.aims.service.ReferenceDataCacheService.TypeRef;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -34,6 +35,7 @@ public class ConversionServiceImpl implements ConversionService {
     private final ConversionRepository conversionRepository;
     private final RawMaterialTypeRepository materialTypeRepository;
     private final ProductTypeRepository productTypeRepository;
+    private final ReferenceDataCacheService referenceDataCacheService;
     @Override
     @Transactional
     public ConversionDTO createConversion(String factoryId, ConversionDTO dto) {
@@ -44,12 +46,17 @@ public class ConversionServiceImpl implements ConversionService {
                 factoryId, dto.getMaterialTypeId(), dto.getProductTypeId())) {
             throw new BusinessException("该转换率配置已存在");
         }
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
         // 验证原材料类型存在
-        RawMaterialType materialType = materialTypeRepository.findById(dto.getMaterialTypeId())
-                .orElseThrow(() -> new BusinessException("原材料类型不存在"));
+        TypeRef materialType = findMaterialType(snapshot, dto.getMaterialTypeId());
+        if (materialType == null) {
+            throw new BusinessException("原材料类型不存在");
+        }
         // 验证产品类型存在
-        ProductType productType = productTypeRepository.findById(dto.getProductTypeId())
-                .orElseThrow(() -> new BusinessException("产品类型不存在"));
+        TypeRef productType = findProductType(snapshot, dto.getProductTypeId());
+        if (productType == null) {
+            throw new BusinessException("产品类型不存在");
+        }
         MaterialProductConversion conversion = new MaterialProductConversion();
         conversion.setFactoryId(factoryId);
         conversion.setMaterialTypeId(dto.getMaterialTypeId());
@@ -97,9 +104,9 @@ public class ConversionServiceImpl implements ConversionService {
         conversion = conversionRepository.save(conversion);
 
         // 获取原材料和产品类型
-        RawMaterialType materialType = materialTypeRepository.findById(dto.getMaterialTypeId()).orElse(null);
-        ProductType productType = productTypeRepository.findById(dto.getProductTypeId()).orElse(null);
-        return convertToDTO(conversion, materialType, productType);
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
+        return convertToDTO(conversion, findMaterialType(snapshot, dto.getMaterialTypeId()),
+                findProductType(snapshot, dto.getProductTypeId()));
     }
 
     @Override
@@ -122,9 +129,7 @@ public class ConversionServiceImpl implements ConversionService {
         if (!conversion.getFactoryId().equals(factoryId)) {
             throw new BusinessException("无权访问该转换率配置");
         }
-        RawMaterialType materialType = materialTypeRepository.findById(conversion.getMaterialTypeId()).orElse(null);
-        ProductType productType = productTypeRepository.findById(conversion.getProductTypeId()).orElse(null);
-        return convertToDTO(conversion, materialType, productType);
+        return convertToDTO(conversion, referenceDataCacheService.snapshot(factoryId));
     }
 
     @Override
@@ -137,25 +142,10 @@ public class ConversionServiceImpl implements ConversionService {
             page = conversionRepository.findByFactoryId(factoryId, pageable);
         }
 
-        // 批量预加载材料和产品类型 - 避免N+1查询
-        Set<Integer> materialTypeIds = page.getContent().stream()
-                .map(MaterialProductConversion::getMaterialTypeId)
-                .collect(Collectors.toSet());
-        Set<Integer> productTypeIds = page.getContent().stream()
-                .map(MaterialProductConversion::getProductTypeId)
-                .collect(Collectors.toSet());
-
-        Map<Integer, RawMaterialType> materialTypeMap = materialTypeRepository.findAllById(materialTypeIds).stream()
-                .collect(Collectors.toMap(RawMaterialType::getId, m -> m));
-        Map<Integer, ProductType> productTypeMap = productTypeRepository.findAllById(productTypeIds).stream()
-                .collect(Collectors.toMap(ProductType::getId, p -> p));
-
+        // 名称、单位取自工厂基础数据快照
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
         List<ConversionDTO> dtos = page.getContent().stream()
-                .map(conversion -> {
-                    RawMaterialType materialType = materialTypeMap.get(conversion.getMaterialTypeId());
-                    ProductType productType = productTypeMap.get(conversion.getProductTypeId());
-                    return convertToDTO(conversion, materialType, productType);
-                })
+                .map(conversion -> convertToDTO(conversion, snapshot))
                 .collect(Collectors.toList());
 
         return PageResponse.of(dtos, page.getNumber(), page.getSize(), page.getTotalElements());
@@ -169,19 +159,10 @@ public class ConversionServiceImpl implements ConversionService {
         List<MaterialProductConversion> conversions = conversionRepository.findByFactoryIdAndMaterialTypeId(
                 factoryId, materialTypeId);
 
-        // 批量预加载 - 避免N+1查询
-        RawMaterialType materialType = materialTypeRepository.findById(materialTypeId).orElse(null);
-        Set<Integer> productTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getProductTypeId)
-                .collect(Collectors.toSet());
-        Map<Integer, ProductType> productTypeMap = productTypeRepository.findAllById(productTypeIds).stream()
-                .collect(Collectors.toMap(ProductType::getId, p -> p));
-
+        // 名称、单位取自工厂基础数据快照
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
         return conversions.stream()
-                .map(conversion -> {
-                    ProductType productType = productTypeMap.get(conversion.getProductTypeId());
-                    return convertToDTO(conversion, materialType, productType);
-                })
+                .map(conversion -> convertToDTO(conversion, snapshot))
                 .collect(Collectors.toList());
     }
 
@@ -193,19 +174,10 @@ public class ConversionServiceImpl implements ConversionService {
         List<MaterialProductConversion> conversions = conversionRepository.findByFactoryIdAndProductTypeId(
                 factoryId, productTypeId);
 
-        // 批量预加载 - 避免N+1查询
-        ProductType productType = productTypeRepository.findById(productTypeId).orElse(null);
-        Set<Integer> materialTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getMaterialTypeId)
-                .collect(Collectors.toSet());
-        Map<Integer, RawMaterialType> materialTypeMap = materialTypeRepository.findAllById(materialTypeIds).stream()
-                .collect(Collectors.toMap(RawMaterialType::getId, m -> m));
-
+        // 名称、单位取自工厂基础数据快照
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
         return conversions.stream()
-                .map(conversion -> {
-                    RawMaterialType materialType = materialTypeMap.get(conversion.getMaterialTypeId());
-                    return convertToDTO(conversion, materialType, productType);
-                })
+                .map(conversion -> convertToDTO(conversion, snapshot))
                 .collect(Collectors.toList());
     }
 
@@ -219,10 +191,7 @@ public class ConversionServiceImpl implements ConversionService {
                 .findByFactoryIdAndMaterialTypeIdAndProductTypeId(factoryId, materialTypeId, productTypeId)
                 .orElseThrow(() -> new BusinessException("未找到对应的转换率配置"));
 
-        RawMaterialType materialType = materialTypeRepository.findById(materialTypeId).orElse(null);
-        ProductType productType = productTypeRepository.findById(productTypeId).orElse(null);
-
-        return convertToDTO(conversion, materialType, productType);
+        return convertToDTO(conversion, referenceDataCacheService.snapshot(factoryId));
     }
 
     @Override
@@ -235,17 +204,12 @@ public class ConversionServiceImpl implements ConversionService {
         List<MaterialProductConversion> conversions = conversionRepository
                 .findByFactoryIdAndProductTypeId(factoryId, productTypeId);
 
-        // 批量预加载材料类型 - 避免N+1查询
-        Set<Integer> materialTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getMaterialTypeId)
-                .collect(Collectors.toSet());
-        Map<Integer, RawMaterialType> materialTypeMap = materialTypeRepository.findAllById(materialTypeIds).stream()
-                .collect(Collectors.toMap(RawMaterialType::getId, m -> m));
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
 
         return conversions.stream()
                 .filter(MaterialProductConversion::getIsActive)
                 .map(conversion -> {
-                    RawMaterialType materialType = materialTypeMap.get(conversion.getMaterialTypeId());
+                    TypeRef materialType = findMaterialType(snapshot, conversion.getMaterialTypeId());
 
                     MaterialRequirement requirement = new MaterialRequirement();
                     requirement.setMaterialTypeId(conversion.getMaterialTypeId());
@@ -279,17 +243,12 @@ public class ConversionServiceImpl implements ConversionService {
         List<MaterialProductConversion> conversions = conversionRepository
                 .findByFactoryIdAndMaterialTypeId(factoryId, materialTypeId);
 
-        // 批量预加载产品类型 - 避免N+1查询
-        Set<Integer> productTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getProductTypeId)
-                .collect(Collectors.toSet());
-        Map<Integer, ProductType> productTypeMap = productTypeRepository.findAllById(productTypeIds).stream()
-                .collect(Collectors.toMap(ProductType::getId, p -> p));
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
 
         return conversions.stream()
                 .filter(MaterialProductConversion::getIsActive)
                 .map(conversion -> {
-                    ProductType productType = productTypeMap.get(conversion.getProductTypeId());
+                    TypeRef productType = findProductType(snapshot, conversion.getProductTypeId());
 
                     ProductOutput output = new ProductOutput();
                     output.setProductTypeId(conversion.getProductTypeId());
@@ -359,25 +318,10 @@ public class ConversionServiceImpl implements ConversionService {
 
         List<MaterialProductConversion> conversions = conversionRepository.findByFactoryId(factoryId, Pageable.unpaged()).getContent();
 
-        // 批量预加载材料和产品类型 - 避免N+1查询
-        Set<Integer> materialTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getMaterialTypeId)
-                .collect(Collectors.toSet());
-        Set<Integer> productTypeIds = conversions.stream()
-                .map(MaterialProductConversion::getProductTypeId)
-                .collect(Collectors.toSet());
-
-        Map<Integer, RawMaterialType> materialTypeMap = materialTypeRepository.findAllById(materialTypeIds).stream()
-                .collect(Collectors.toMap(RawMaterialType::getId, m -> m));
-        Map<Integer, ProductType> productTypeMap = productTypeRepository.findAllById(productTypeIds).stream()
-                .collect(Collectors.toMap(ProductType::getId, p -> p));
-
+        // 名称、单位取自工厂基础数据快照
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
         return conversions.stream()
-                .map(conversion -> {
-                    RawMaterialType materialType = materialTypeMap.get(conversion.getMaterialTypeId());
-                    ProductType productType = productTypeMap.get(conversion.getProductTypeId());
-                    return convertToDTO(conversion, materialType, productType);
-                })
+                .map(conversion -> convertToDTO(conversion, snapshot))
                 .collect(Collectors.toList());
     }
 
@@ -414,10 +358,11 @@ public class ConversionServiceImpl implements ConversionService {
         }
 
         // 验证材料和产品存在性
-        if (!materialTypeRepository.existsById(dto.getMaterialTypeId())) {
+        ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(factoryId);
+        if (findMaterialType(snapshot, dto.getMaterialTypeId()) == null) {
             errors.add("原材料类型不存在");
         }
-        if (!productTypeRepository.existsById(dto.getProductTypeId())) {
+        if (findProductType(snapshot, dto.getProductTypeId()) == null) {
             errors.add("产品类型不存在");
         }
 
@@ -475,7 +420,36 @@ public class ConversionServiceImpl implements ConversionService {
 
         return stats;
     }
-    private ConversionDTO convertToDTO(MaterialProductConversion conversion, RawMaterialType materialType, ProductType productType) {
+    /**
+     * 原材料类型：先查工厂基础数据快照，快照中没有（如同一事务内刚创建）时回查数据库
+     */
+    private TypeRef findMaterialType(ReferenceSnapshot snapshot, Integer materialTypeId) {
+        if (materialTypeId == null) {
+            return null;
+        }
+        TypeRef materialType = snapshot.getMaterialType(materialTypeId);
+        return materialType != null ? materialType
+                : materialTypeRepository.findById(materialTypeId).map(TypeRef::of).orElse(null);
+    }
+
+    /**
+     * 产品类型：先查工厂基础数据快照，快照中没有时回查数据库
+     */
+    private TypeRef findProductType(ReferenceSnapshot snapshot, Integer productTypeId) {
+        if (productTypeId == null) {
+            return null;
+        }
+        TypeRef productType = snapshot.getProductType(productTypeId);
+        return productType != null ? productType
+                : productTypeRepository.findById(productTypeId).map(TypeRef::of).orElse(null);
+    }
+
+    private ConversionDTO convertToDTO(MaterialProductConversion conversion, ReferenceSnapshot snapshot) {
+        return convertToDTO(conversion, findMaterialType(snapshot, conversion.getMaterialTypeId()),
+                findProductType(snapshot, conversion.getProductTypeId()));
+    }
+
+    private ConversionDTO convertToDTO(MaterialProductConversion conversion, TypeRef materialType, TypeRef productType) {
         return ConversionDTO.builder()
                 .id(conversion.getId())
                 .materialTypeId(conversion.getMaterialTypeId())
@@ -10,12 +10,14 @@ import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.mapper.CustomerMapper;
 import com.cretas.aims.repository.CustomerRepository;
 import com.cretas.aims.service.CustomerService;
+import com.cretas.aims.service.StreamingExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -33,6 +35,7 @@ import java.util.stream.Collectors;
 public class CustomerServiceImpl implements CustomerService {
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
+    private final StreamingExportService streamingExportService;
     @Override
     @Transactional
     public CustomerDTO createCustomer(String factoryId, CreateCustomerRequest request, Integer userId) {
@@ -250,9 +253,27 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public byte[] exportCustomerList(String factoryId) {
-        // TODO: 实现客户列表导出功能
-        throw new UnsupportedOperationException("客户列表导出功能待实现");
+    public void exportCustomerList(String factoryId, String format, HttpServletResponse response) {
+        log.info("导出客户列表: factoryId={}, format={}", factoryId, format);
+        streamingExportService.export(response, "customers", format,
+                Arrays.asList("客户编码", "名称", "类型", "行业", "联系人", "联系电话", "邮箱",
+                        "收货地址", "开票地址", "税号", "付款条件", "评级", "状态", "备注"),
+                () -> customerRepository.streamByFactoryId(factoryId),
+                customer -> Arrays.asList(
+                        customer.getCustomerCode() != null ? customer.getCustomerCode() : customer.getCode(),
+                        customer.getName(),
+                        customer.getType(),
+                        customer.getIndustry(),
+                        customer.getContactPerson() != null ? customer.getContactPerson() : customer.getContactName(),
+                        customer.getContactPhone() != null ? customer.getContactPhone() : customer.getPhone(),
+                        customer.getContactEmail() != null ? customer.getContactEmail() : customer.getEmail(),
+                        customer.getShippingAddress(),
+                        customer.getBillingAddress(),
+                        customer.getTaxNumber(),
+                        customer.getPaymentTerms(),
+                        customer.getRating(),
+                        Boolean.TRUE.equals(customer.getIsActive()) ? "启用" : "停用",
+                        customer.getNotes()));
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.cretas.aims.entity.DeviceActivation;
 import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.repository.DeviceActivationRepository;
 import com.cretas.aims.service.DeviceActivationService;
+import com.cretas.aims.service.ExpirySweepService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -30,6 +31,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DeviceActivationServiceImpl implements DeviceActivationService {
     private final DeviceActivationRepository activationRepository;
+    private final ExpirySweepService expirySweepService;
     @Override
     @Transactional
     public List<DeviceActivationDTO> generateActivationCodes(String factoryId,
@@ -300,16 +302,17 @@ public class DeviceActivationServiceImpl implements DeviceActivationService {
         return activation.isPresent() && activation.get().isValid();
     }
     @Override
-    @Transactional
     public void cleanupExpiredActivations() {
         log.info("清理过期的激活记录");
-        List<DeviceActivation> expiredActivations = activationRepository
-                .findExpiredActivations(LocalDateTime.now());
-        for (DeviceActivation activation : expiredActivations) {
-            activation.setStatus("EXPIRED");
-            activationRepository.save(activation);
-        }
-        log.info("已将{}个激活记录标记为过期", expiredActivations.size());
+        int count = expirySweepService.sweep(ExpirySweepService.SweepSpec.builder()
+                .name("device-activation-expiry")
+                .table("device_activations")
+                .factoryColumn("factory_id")
+                .assignments("status = 'EXPIRED', updated_at = NOW()")
+                .condition("status = 'ACTIVATED' AND expires_at < ? AND deleted_at IS NULL")
+                .param(LocalDateTime.now())
+                .build());
+        log.info("已将{}个激活记录标记为过期", count);
     }
     @Override
     public String exportActivations(String factoryId, LocalDateTime startDate, LocalDateTime endDate) {
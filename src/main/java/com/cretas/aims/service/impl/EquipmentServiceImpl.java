@@ -8,7 +8,9 @@ import com.cretas.aims.entity.FactoryEquipment;
 import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.EquipmentRepository;
+import com.cretas.aims.service.DashboardCacheService;
 import com.cretas.aims.service.EquipmentService;
+import com.cretas.aims.service.StreamingExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -16,6 +18,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -37,6 +40,8 @@ import java.util.stream.Collectors;
 public class EquipmentServiceImpl implements EquipmentService {
 
     private final EquipmentRepository equipmentRepository;
+    private final StreamingExportService streamingExportService;
+    private final DashboardCacheService dashboardCacheService;
 
     @Override
     @Transactional
@@ -72,6 +77,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         }
 
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("设备创建成功: id={}, code={}", equipment.getId(), equipment.getEquipmentCode());
         return toDTO(equipment);
     }
@@ -101,6 +107,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         equipment.setUpdatedAt(LocalDateTime.now());
 
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("设备更新成功: id={}", equipment.getId());
         return toDTO(equipment);
     }
@@ -119,6 +126,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         }
 
         equipmentRepository.delete(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("设备删除成功: id={}", equipmentId);
     }
 
@@ -189,6 +197,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         equipment.setStatus(status);
         equipment.setUpdatedAt(LocalDateTime.now());
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("设备状态更新成功: id={}, status={}", equipment.getId(), status);
         return toDTO(equipment);
@@ -215,6 +224,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         equipment.setStatus("running");
         equipment.setUpdatedAt(LocalDateTime.now());
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("设备启动成功: id={}", equipment.getId());
         return toDTO(equipment);
@@ -238,6 +248,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         }
         equipment.setUpdatedAt(LocalDateTime.now());
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("设备停止成功: id={}", equipment.getId());
         return toDTO(equipment);
@@ -259,6 +270,7 @@ public class EquipmentServiceImpl implements EquipmentService {
         }
         equipment.setUpdatedAt(LocalDateTime.now());
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
 
         // TODO: 保存维护记录到EquipmentMaintenance表
 
@@ -434,9 +446,28 @@ public class EquipmentServiceImpl implements EquipmentService {
     }
 
     @Override
-    public byte[] exportEquipmentList(String factoryId) {
-        // TODO: 实现设备列表导出功能
-        throw new UnsupportedOperationException("设备列表导出功能待实现");
+    public void exportEquipmentList(String factoryId, String format, HttpServletResponse response) {
+        log.info("导出设备列表: factoryId={}, format={}", factoryId, format);
+        streamingExportService.export(response, "equipment", format,
+                Arrays.asList("设备编码", "名称", "类型", "型号", "制造商", "序列号", "位置", "状态",
+                        "购买日期", "购买价格", "小时成本", "上次维护", "下次维护", "保修到期", "备注"),
+                () -> equipmentRepository.streamByFactoryId(factoryId),
+                equipment -> Arrays.asList(
+                        equipment.getEquipmentCode() != null ? equipment.getEquipmentCode() : equipment.getCode(),
+                        equipment.getName(),
+                        equipment.getType(),
+                        equipment.getModel(),
+                        equipment.getManufacturer(),
+                        equipment.getSerialNumber(),
+                        equipment.getLocation(),
+                        equipment.getStatus(),
+                        equipment.getPurchaseDate(),
+                        equipment.getPurchasePrice(),
+                        equipment.getHourlyCost(),
+                        equipment.getLastMaintenanceDate(),
+                        equipment.getNextMaintenanceDate(),
+                        equipment.getWarrantyExpiryDate(),
+                        equipment.getNotes()));
     }
 
     @Override
@@ -452,6 +483,7 @@ public class EquipmentServiceImpl implements EquipmentService {
                 equipment.getNotes() + "\n报废原因: " + reason : "报废原因: " + reason);
         equipment.setUpdatedAt(LocalDateTime.now());
         equipment = equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("设备报废成功: id={}", equipment.getId());
         return toDTO(equipment);
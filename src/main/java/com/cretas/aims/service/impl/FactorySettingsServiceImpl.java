@@ -6,6 +6,7 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.FactorySettingsRepository;
 import com.cretas.aims.service.FactorySettingsService;
+import com.cretas.aims.service.FactorySettingsSnapshotService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ import java.util.Map;
 /**
  * 工厂设置服务实现
  * 处理JSON序列化/反序列化的工厂设置管理
+ * 读取走 FactorySettingsSnapshotService 中已解析的快照，写入后替换快照
  *
  * @author Cretas Team
  * @version 1.0.0
@@ -31,13 +33,16 @@ import java.util.Map;
 public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     private final FactorySettingsRepository settingsRepository;
+    private final FactorySettingsSnapshotService settingsSnapshotService;
     private final ObjectMapper objectMapper;
 
     @Override
     public FactorySettingsDTO getSettings(String factoryId) {
-        FactorySettings settings = settingsRepository.findByFactoryId(factoryId)
-                .orElseThrow(() -> new ResourceNotFoundException("工厂设置不存在"));
-        return convertToDTO(settings);
+        FactorySettingsSnapshotService.SettingsSnapshot snapshot = settingsSnapshotService.snapshot(factoryId);
+        if (!snapshot.isPresent()) {
+            throw new ResourceNotFoundException("工厂设置不存在");
+        }
+        return snapshot.getSettings();
     }
 
     @Override
@@ -50,15 +55,15 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
         updateEntityFromDTO(settings, dto);
         FactorySettings saved = settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(saved);
 
         log.info("保存工厂设置成功: factoryId={}", factoryId);
-        return convertToDTO(saved);
+        return settingsSnapshotService.toDTO(saved);
     }
 
     @Override
     public FactorySettingsDTO.AISettings getAiSettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getAiSettings(), FactorySettingsDTO.AISettings.class);
+        return getSnapshotSettings(factoryId).getAiSettings();
     }
 
     @Override
@@ -66,7 +71,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
     public FactorySettingsDTO.AISettings updateAiSettings(String factoryId, FactorySettingsDTO.AISettings aiSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setAiSettings(toJsonString(aiSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新AI设置成功: factoryId={}", factoryId);
         return aiSettings;
@@ -87,8 +92,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     @Override
     public FactorySettingsDTO.NotificationSettings getNotificationSettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getNotificationSettings(), FactorySettingsDTO.NotificationSettings.class);
+        return getSnapshotSettings(factoryId).getNotificationSettings();
     }
 
     @Override
@@ -97,7 +101,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                                                                              FactorySettingsDTO.NotificationSettings notifSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setNotificationSettings(toJsonString(notifSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新通知设置成功: factoryId={}", factoryId);
         return notifSettings;
@@ -105,8 +109,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     @Override
     public FactorySettingsDTO.WorkTimeSettings getWorkTimeSettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getWorkTimeSettings(), FactorySettingsDTO.WorkTimeSettings.class);
+        return getSnapshotSettings(factoryId).getWorkTimeSettings();
     }
 
     @Override
@@ -115,7 +118,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                                                                       FactorySettingsDTO.WorkTimeSettings workTimeSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setWorkTimeSettings(toJsonString(workTimeSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新工作时间设置成功: factoryId={}", factoryId);
         return workTimeSettings;
@@ -123,8 +126,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     @Override
     public FactorySettingsDTO.ProductionSettings getProductionSettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getProductionSettings(), FactorySettingsDTO.ProductionSettings.class);
+        return getSnapshotSettings(factoryId).getProductionSettings();
     }
 
     @Override
@@ -133,7 +135,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                                                                           FactorySettingsDTO.ProductionSettings prodSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setProductionSettings(toJsonString(prodSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新生产设置成功: factoryId={}", factoryId);
         return prodSettings;
@@ -141,8 +143,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     @Override
     public FactorySettingsDTO.InventorySettings getInventorySettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getInventorySettings(), FactorySettingsDTO.InventorySettings.class);
+        return getSnapshotSettings(factoryId).getInventorySettings();
     }
 
     @Override
@@ -151,7 +152,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                                                                         FactorySettingsDTO.InventorySettings invSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setInventorySettings(toJsonString(invSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新库存设置成功: factoryId={}", factoryId);
         return invSettings;
@@ -159,8 +160,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
 
     @Override
     public FactorySettingsDTO.DataRetentionSettings getDataRetentionSettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
-        return parseJsonField(settings.getDataRetentionSettings(), FactorySettingsDTO.DataRetentionSettings.class);
+        return getSnapshotSettings(factoryId).getDataRetentionSettings();
     }
 
     @Override
@@ -169,7 +169,7 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                                                                                 FactorySettingsDTO.DataRetentionSettings dataSettings) {
         FactorySettings settings = getSettingsEntity(factoryId);
         settings.setDataRetentionSettings(toJsonString(dataSettings));
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
 
         log.info("更新数据保留设置成功: factoryId={}", factoryId);
         return dataSettings;
@@ -203,13 +203,13 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
                 throw new BusinessException("未知的功能开关: " + feature);
         }
 
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
         log.info("更新功能开关成功: factoryId={}, feature={}, enabled={}", factoryId, feature, enabled);
     }
 
     @Override
     public Map<String, Boolean> getFeatureToggles(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
+        FactorySettingsDTO settings = getSnapshotSettings(factoryId);
 
         Map<String, Boolean> toggles = new HashMap<>();
         toggles.put("qrCode", settings.getEnableQrCode());
@@ -241,13 +241,13 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
             settings.setCurrency(currency);
         }
 
-        settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(settingsRepository.save(settings));
         log.info("更新显示设置成功: factoryId={}", factoryId);
     }
 
     @Override
     public Map<String, String> getDisplaySettings(String factoryId) {
-        FactorySettings settings = getSettingsEntity(factoryId);
+        FactorySettingsDTO settings = getSnapshotSettings(factoryId);
 
         Map<String, String> display = new HashMap<>();
         display.put("language", settings.getLanguage());
@@ -297,9 +297,10 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
         settings.setDataRetentionSettings(null);
 
         FactorySettings saved = settingsRepository.save(settings);
+        settingsSnapshotService.onSaved(saved);
         log.info("重置工厂设置为默认值: factoryId={}", factoryId);
 
-        return convertToDTO(saved);
+        return settingsSnapshotService.toDTO(saved);
     }
 
     @Override
@@ -336,54 +337,22 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
     // ==================== 私有辅助方法 ====================
 
     /**
-     * 获取工厂设置实体
+     * 获取已解析的工厂设置（快照，只读）
      */
-    private FactorySettings getSettingsEntity(String factoryId) {
-        return settingsRepository.findByFactoryId(factoryId)
-                .orElseThrow(() -> new ResourceNotFoundException("工厂设置不存在: " + factoryId));
+    private FactorySettingsDTO getSnapshotSettings(String factoryId) {
+        FactorySettingsSnapshotService.SettingsSnapshot snapshot = settingsSnapshotService.snapshot(factoryId);
+        if (!snapshot.isPresent()) {
+            throw new ResourceNotFoundException("工厂设置不存在: " + factoryId);
+        }
+        return snapshot.getSettings();
     }
 
     /**
-     * 将实体转换为DTO
+     * 获取工厂设置实体
      */
-    private FactorySettingsDTO convertToDTO(FactorySettings settings) {
-        return FactorySettingsDTO.builder()
-                .id(settings.getId())
-                .factoryId(settings.getFactoryId())
-                // AI设置
-                .aiSettings(parseJsonField(settings.getAiSettings(), FactorySettingsDTO.AISettings.class))
-                .aiWeeklyQuota(settings.getAiWeeklyQuota())
-                // 用户注册设置
-                .allowSelfRegistration(settings.getAllowSelfRegistration())
-                .requireAdminApproval(settings.getRequireAdminApproval())
-                .defaultUserRole(settings.getDefaultUserRole())
-                // 通知设置
-                .notificationSettings(parseJsonField(settings.getNotificationSettings(),
-                        FactorySettingsDTO.NotificationSettings.class))
-                // 系统设置
-                .workTimeSettings(parseJsonField(settings.getWorkTimeSettings(),
-                        FactorySettingsDTO.WorkTimeSettings.class))
-                .productionSettings(parseJsonField(settings.getProductionSettings(),
-                        FactorySettingsDTO.ProductionSettings.class))
-                .inventorySettings(parseJsonField(settings.getInventorySettings(),
-                        FactorySettingsDTO.InventorySettings.class))
-                .dataRetentionSettings(parseJsonField(settings.getDataRetentionSettings(),
-                        FactorySettingsDTO.DataRetentionSettings.class))
-                // 显示设置
-                .language(settings.getLanguage())
-                .timezone(settings.getTimezone())
-                .dateFormat(settings.getDateFormat())
-                .currency(settings.getCurrency())
-                // 功能开关
-                .enableQrCode(settings.getEnableQrCode())
-                .enableBatchManagement(settings.getEnableBatchManagement())
-                .enableQualityCheck(settings.getEnableQualityCheck())
-                .enableCostCalculation(settings.getEnableCostCalculation())
-                .enableEquipmentManagement(settings.getEnableEquipmentManagement())
-                .enableAttendance(settings.getEnableAttendance())
-                // 审计信息
-                .lastModifiedAt(settings.getLastModifiedAt())
-                .build();
+    private FactorySettings getSettingsEntity(String factoryId) {
+        return settingsRepository.findByFactoryId(factoryId)
+                .orElseThrow(() -> new ResourceNotFoundException("工厂设置不存在: " + factoryId));
     }
 
     /**
@@ -469,23 +438,6 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
         }
     }
 
-    /**
-     * 解析JSON字符串为指定类型
-     * 如果JSON为空或解析失败，返回默认对象
-     */
-    private <T> T parseJsonField(String jsonString, Class<T> clazz) {
-        if (!StringUtils.hasText(jsonString)) {
-            return createDefaultObject(clazz);
-        }
-
-        try {
-            return objectMapper.readValue(jsonString, clazz);
-        } catch (JsonProcessingException e) {
-            log.warn("解析JSON字段失败，返回默认值: class={}, error={}", clazz.getSimpleName(), e.getMessage());
-            return createDefaultObject(clazz);
-        }
-    }
-
     /**
      * 将对象转换为JSON字符串
      */
@@ -501,58 +453,4 @@ public class FactorySettingsServiceImpl implements FactorySettingsService {
             throw new BusinessException("JSON序列化失败: " + e.getMessage());
         }
     }
-
-    /**
-     * 创建默认对象实例
-     */
-    private <T> T createDefaultObject(Class<T> clazz) {
-        try {
-            // 使用Builder模式创建默认实例
-            if (clazz == FactorySettingsDTO.AISettings.class) {
-                return clazz.cast(FactorySettingsDTO.AISettings.builder()
-                        .enabled(true)
-                        .tone("professional")
-                        .goal("cost_optimization")
-                        .detailLevel("standard")
-                        .build());
-            } else if (clazz == FactorySettingsDTO.NotificationSettings.class) {
-                return clazz.cast(FactorySettingsDTO.NotificationSettings.builder()
-                        .emailEnabled(true)
-                        .pushEnabled(true)
-                        .wechatEnabled(false)
-                        .build());
-            } else if (clazz == FactorySettingsDTO.WorkTimeSettings.class) {
-                return clazz.cast(FactorySettingsDTO.WorkTimeSettings.builder()
-                        .startTime("08:00")
-                        .endTime("18:00")
-                        .workDays("1,2,3,4,5")
-                        .build());
-            } else if (clazz == FactorySettingsDTO.ProductionSettings.class) {
-                return clazz.cast(FactorySettingsDTO.ProductionSettings.builder()
-                        .defaultBatchSize(100)
-                        .qualityCheckFrequency(10)
-                        .autoApprovalThreshold(95)
-                        .build());
-            } else if (clazz == FactorySettingsDTO.InventorySettings.class) {
-                return clazz.cast(FactorySettingsDTO.InventorySettings.builder()
-                        .minStockAlert(100)
-                        .maxStockLimit(10000)
-                        .autoReorderPoint(200)
-                        .build());
-            } else if (clazz == FactorySettingsDTO.DataRetentionSettings.class) {
-                return clazz.cast(FactorySettingsDTO.DataRetentionSettings.builder()
-                        .logRetentionDays(90)
-                        .dataArchiveDays(365)
-                        .backupFrequency("daily")
-                        .build());
-            }
-
-            // 如果没有特定的默认值，尝试使用无参构造器
-            return clazz.getDeclaredConstructor().newInstance();
-
-        } catch (Exception e) {
-            log.error("创建默认对象失败: class={}", clazz.getSimpleName(), e);
-            throw new BusinessException("创建默认对象失败: " + e.getMessage());
-        }
-    }
 }
@@ -3,11 +3,13 @@ package com.cretas.aims.service.impl;
 import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.dto.material.CreateMaterialBatchRequest;
+import com.cretas.aims.dto.material.MaterialAllocationDTO;
 import com.cretas.aims.dto.material.MaterialBatchDTO;
 import com.cretas.aims.entity.MaterialBatch;
 import com.cretas.aims.entity.MaterialBatchAdjustment;
 import com.cretas.aims.entity.MaterialConsumption;
 import com.cretas.aims.entity.ProductionPlanBatchUsage;
+import com.cretas.aims.entity.RawMaterialType;
 import com.cretas.aims.entity.enums.MaterialBatchStatus;
 import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
@@ -17,15 +19,24 @@ import com.cretas.aims.repository.MaterialBatchRepository;
 import com.cretas.aims.repository.MaterialConsumptionRepository;
 import com.cretas.aims.repository.ProductionPlanBatchUsageRepository;
 import com.cretas.aims.repository.RawMaterialTypeRepository;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.ExpirySweepService;
+import com.cretas.aims.service.InventoryLedgerService;
+import com.cretas.aims.service.MaterialAllocationService;
 import com.cretas.aims.service.MaterialBatchService;
+import com.cretas.aims.service.StreamingExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -50,6 +61,20 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
     private final MaterialBatchMapper materialBatchMapper;
     private final MaterialConsumptionRepository materialConsumptionRepository;
     private final ProductionPlanBatchUsageRepository productionPlanBatchUsageRepository;
+    private final StreamingExportService streamingExportService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final MaterialAllocationService materialAllocationService;
+    private final ExpirySweepService expirySweepService;
+    private final DashboardCacheService dashboardCacheService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 批量写入每批条数（与 hibernate.jdbc.batch_size 一致）
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
 
     @Override
     @Transactional
@@ -73,6 +98,7 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         String batchNumber = generateUniqueBatchNumber(batch.getBatchNumber());
         batch.setBatchNumber(batchNumber);
         batch = materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("创建原材料批次成功: batchNumber={}", batch.getBatchNumber());
         return materialBatchMapper.toDTO(batch);
     }
@@ -96,6 +122,7 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         // 更新批次信息
         materialBatchMapper.updateEntity(batch, request);
         batch = materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("更新原材料批次成功: batchId={}", batchId);
         return materialBatchMapper.toDTO(batch);
     }
@@ -117,6 +144,7 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         }
 
         materialBatchRepository.delete(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("删除原材料批次成功: batchId={}", batchId);
     }
 
@@ -214,35 +242,24 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
             throw new BusinessException("无权操作该批次");
         }
 
-        // 计算新数量
-        BigDecimal newQuantity = batch.getCurrentQuantity().add(adjustmentQuantity);
-        if (newQuantity.compareTo(BigDecimal.ZERO) < 0) {
-            throw new BusinessException("调整后数量不能为负数");
-        }
+        // 原子调整入库数量（调整后剩余为负时拒绝），再刷新得到实际的前后数量
+        inventoryLedgerService.adjust(factoryId, batchId, adjustmentQuantity);
+        entityManager.refresh(batch);
+        BigDecimal newQuantity = batch.getCurrentQuantity();
 
         // 记录调整
         MaterialBatchAdjustment adjustment = new MaterialBatchAdjustment();
         adjustment.setBatchId(batchId);
         adjustment.setAdjustmentType(adjustmentQuantity.compareTo(BigDecimal.ZERO) > 0 ? "increase" : "decrease");
-        adjustment.setQuantityBefore(batch.getCurrentQuantity());
+        adjustment.setQuantityBefore(newQuantity.subtract(adjustmentQuantity));
         adjustment.setAdjustmentQuantity(adjustmentQuantity.abs());
         adjustment.setQuantityAfter(newQuantity);
         adjustment.setReason(reason);
         adjustment.setAdjustmentTime(LocalDateTime.now());
         adjustment.setAdjustedBy(1); // TODO: 从上下文获取用户ID
         materialBatchAdjustmentRepository.save(adjustment);
+        dashboardCacheService.onDataChanged(factoryId);
 
-        // 更新批次数量
-        // 注意: currentQuantity 现在是计算属性 (receiptQuantity - usedQuantity - reservedQuantity)
-        // 要调整可用数量，需要调整 receiptQuantity
-        BigDecimal qtyAdjustment = newQuantity.subtract(batch.getCurrentQuantity());
-        batch.setReceiptQuantity(batch.getReceiptQuantity().add(qtyAdjustment));
-
-        if (newQuantity.compareTo(BigDecimal.ZERO) == 0) {
-            batch.setStatus(MaterialBatchStatus.USED_UP);
-        }
-
-        batch = materialBatchRepository.save(batch);
         log.info("调整批次数量: batchId={}, adjustment={}, reason={}", batchId, adjustmentQuantity, reason);
         return materialBatchMapper.toDTO(batch);
     }
@@ -260,6 +277,7 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
 
         batch.setStatus(MaterialBatchStatus.EXPIRED);
         materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("标记批次过期: batchId={}", batchId);
     }
 
@@ -279,67 +297,28 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         // 标记为用完：设置 usedQuantity = receiptQuantity - reservedQuantity
         batch.setUsedQuantity(batch.getReceiptQuantity().subtract(batch.getReservedQuantity()));
         materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("标记批次用完: batchId={}", batchId);
     }
 
     @Override
     @Transactional
     public void reserveBatchQuantity(String factoryId, Integer batchId, BigDecimal quantity) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        // 检查可用数量
-        if (batch.getCurrentQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("批次可用数量不足");
-        }
-
-        // 预留数量（这里简化处理，实际可能需要额外的预留字段）
-        materialBatchRepository.save(batch);
+        inventoryLedgerService.reserve(factoryId, batchId, quantity);
         log.info("预留批次数量: batchId={}, quantity={}", batchId, quantity);
     }
 
     @Override
     @Transactional
     public void releaseBatchQuantity(String factoryId, Integer batchId, BigDecimal quantity) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        // 释放预留数量
-        materialBatchRepository.save(batch);
+        inventoryLedgerService.release(factoryId, batchId, quantity);
         log.info("释放批次预留: batchId={}, quantity={}", batchId, quantity);
     }
 
     @Override
     @Transactional
     public void useBatchQuantity(String factoryId, Integer batchId, BigDecimal quantity) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        // 使用数量
-        // 注意: currentQuantity 是计算属性，通过增加 usedQuantity 来减少 currentQuantity
-        batch.setUsedQuantity(batch.getUsedQuantity().add(quantity));
-        batch.setLastUsedAt(LocalDateTime.now());
-
-        if (batch.getCurrentQuantity().compareTo(BigDecimal.ZERO) == 0) {
-            batch.setStatus(MaterialBatchStatus.USED_UP);
-        }
-
-        materialBatchRepository.save(batch);
+        inventoryLedgerService.consume(factoryId, batchId, quantity);
         log.info("使用批次数量: batchId={}, quantity={}", batchId, quantity);
     }
 
@@ -373,15 +352,48 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
     @Override
     @Transactional
     public List<MaterialBatchDTO> batchCreateMaterialBatches(String factoryId, List<CreateMaterialBatchRequest> requests, Integer userId) {
-        return requests.stream()
-                .map(request -> createMaterialBatch(factoryId, request, userId))
-                .collect(Collectors.toList());
-    }
+        // 原材料类型一次加载
+        Map<Integer, RawMaterialType> materialTypes = materialTypeRepository.findAllById(
+                requests.stream().map(CreateMaterialBatchRequest::getMaterialTypeId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(RawMaterialType::getId, t -> t));
+
+        // 先构建全部批次并分配批次号（此阶段只有查询，没有待写入的实体，不会触发 flush）
+        Map<String, Set<String>> takenByPrefix = new HashMap<>();
+        List<MaterialBatch> batches = new ArrayList<>(requests.size());
+        for (CreateMaterialBatchRequest request : requests) {
+            RawMaterialType materialType = materialTypes.get(request.getMaterialTypeId());
+            if (materialType == null) {
+                throw new ResourceNotFoundException("原材料类型不存在");
+            }
+            MaterialBatch batch = materialBatchMapper.toEntity(request, factoryId, userId);
+            if (batch.getExpireDate() == null && materialType.getShelfLifeDays() != null) {
+                batch.setExpireDate(request.getReceiptDate().plusDays(materialType.getShelfLifeDays()));
+            }
+            String baseNumber = batch.getBatchNumber();
+            Set<String> taken = takenByPrefix.computeIfAbsent(baseNumber,
+                    prefix -> new HashSet<>(materialBatchRepository.findBatchNumbersStartingWith(prefix)));
+            String batchNumber = baseNumber;
+            int counter = 0;
+            while (!taken.add(batchNumber)) {
+                counter++;
+                batchNumber = baseNumber + "-" + counter;
+            }
+            batch.setBatchNumber(batchNumber);
+            batches.add(batch);
+        }
 
-    @Override
-    public byte[] exportInventoryReport(String factoryId) {
-        // TODO: 实现库存报表导出
-        throw new UnsupportedOperationException("库存报表导出功能暂未实现");
+        // 分批 saveAll + flush，JDBC 批量写入为多行 INSERT
+        List<MaterialBatchDTO> result = new ArrayList<>(batches.size());
+        for (int from = 0; from < batches.size(); from += batchSize) {
+            List<MaterialBatch> saved = materialBatchRepository.saveAll(
+                    batches.subList(from, Math.min(from + batchSize, batches.size())));
+            entityManager.flush();
+            saved.forEach(batch -> result.add(materialBatchMapper.toDTO(batch)));
+            entityManager.clear();
+        }
+        dashboardCacheService.onDataChanged(factoryId);
+        log.info("批量创建原材料批次成功: factoryId={}, count={}", factoryId, result.size());
+        return result;
     }
 
     @Override
@@ -400,26 +412,42 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
     public void autoCheckAndUpdateExpiredBatches() {
         log.info("开始自动检查过期批次");
 
-        // 查找所有工厂的过期批次
-        List<MaterialBatch> expiredBatches = materialBatchRepository.findAll().stream()
-                .filter(batch -> batch.getStatus() == MaterialBatchStatus.AVAILABLE)
-                .filter(batch -> batch.getExpireDate() != null)
-                .filter(batch -> batch.getExpireDate().isBefore(LocalDate.now()))
-                .collect(Collectors.toList());
-
-        for (MaterialBatch batch : expiredBatches) {
-            batch.setStatus(MaterialBatchStatus.EXPIRED);
-            materialBatchRepository.save(batch);
-            log.info("自动标记批次过期: batchNumber={}", batch.getBatchNumber());
-        }
-
-        log.info("完成自动检查过期批次，共处理 {} 个批次", expiredBatches.size());
-    }
-
-    @Override
-    public byte[] exportInventoryReport(String factoryId, LocalDate startDate, LocalDate endDate) {
-        // TODO: 实现带日期范围的库存报表导出
-        throw new UnsupportedOperationException("库存报表导出功能待实现");
+        // 所有工厂的 AVAILABLE 过期批次，分块批量更新（不再加载全表）
+        int count = expirySweepService.sweep(ExpirySweepService.SweepSpec.builder()
+                .name("material-batch-expiry")
+                .table("material_batches")
+                .factoryColumn("factory_id")
+                .assignments("status = 'EXPIRED', updated_at = NOW()")
+                .condition("status = 'AVAILABLE' AND expire_date < ? AND deleted_at IS NULL")
+                .param(LocalDate.now())
+                .build());
+
+        log.info("完成自动检查过期批次，共处理 {} 个批次", count);
+    }
+
+    @Override
+    public void exportInventoryReport(String factoryId, LocalDate startDate, LocalDate endDate,
+                                      String format, HttpServletResponse response) {
+        log.info("导出库存报表: factoryId={}, startDate={}, endDate={}, format={}", factoryId, startDate, endDate, format);
+        streamingExportService.export(response, "inventory", format,
+                Arrays.asList("批次号", "原材料", "供应商", "入库日期", "到期日期", "入库数量", "已用数量", "预留数量",
+                        "当前库存", "单位", "单价", "总价值", "状态", "存储位置"),
+                () -> materialBatchRepository.streamInventory(factoryId, startDate, endDate),
+                batch -> Arrays.asList(
+                        batch.getBatchNumber(),
+                        batch.getMaterialType() != null ? batch.getMaterialType().getName() : null,
+                        batch.getSupplier() != null ? batch.getSupplier().getName() : null,
+                        batch.getReceiptDate(),
+                        batch.getExpireDate(),
+                        batch.getReceiptQuantity(),
+                        batch.getUsedQuantity(),
+                        batch.getReservedQuantity(),
+                        batch.getCurrentQuantity(),
+                        batch.getQuantityUnit(),
+                        batch.getUnitPrice(),
+                        batch.getTotalValue(),
+                        batch.getStatus() != null ? batch.getStatus().getDisplayName() : null,
+                        batch.getStorageLocation()));
     }
 
     @Override
@@ -449,25 +477,22 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         return result;
     }
 
+    @Override
+    public MaterialAllocationDTO allocateBatches(String factoryId, Integer materialTypeId, BigDecimal requiredQuantity,
+                                                 Integer productionPlanId, String strategy) {
+        return materialAllocationService.allocate(factoryId, materialTypeId, requiredQuantity, productionPlanId,
+                MaterialAllocationService.AllocationStrategy.fromCode(strategy));
+    }
+
     @Override
     @Transactional
     public MaterialBatchDTO useBatchMaterial(String factoryId, Integer batchId, BigDecimal quantity, Integer productionPlanId) {
         MaterialBatch batch = materialBatchRepository.findByIdAndFactoryId(batchId, factoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("原材料批次不存在"));
 
-        if (batch.getRemainingQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("批次剩余数量不足");
-        }
-
-        // 更新已使用数量 (remainingQuantity 会自动重新计算)
-        batch.setUsedQuantity(batch.getUsedQuantity().add(quantity));
-        batch.setLastUsedAt(LocalDateTime.now());
-
-        // 如果用完了，更新状态
-        // 注意: getRemainingQuantity() 现在是计算属性
-        if (batch.getRemainingQuantity().compareTo(BigDecimal.ZERO) == 0) {
-            batch.setStatus(MaterialBatchStatus.USED_UP);
-        }
+        // 条件原子扣减：剩余不足时抛出异常，用完时状态置为 USED_UP
+        inventoryLedgerService.consume(factoryId, batchId, quantity);
+        dashboardCacheService.onDataChanged(factoryId);
 
         // 记录消耗（如果提供了生产计划ID）
         if (productionPlanId != null) {
@@ -480,7 +505,8 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
             materialConsumptionRepository.save(consumption);
         }
 
-        return materialBatchMapper.toDTO(materialBatchRepository.save(batch));
+        entityManager.refresh(batch);
+        return materialBatchMapper.toDTO(batch);
     }
 
     @Override
@@ -498,9 +524,8 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         BigDecimal oldQuantity = batch.getRemainingQuantity();
         BigDecimal adjustment = newQuantity.subtract(oldQuantity);
 
-        // 注意: remainingQuantity 和 totalQuantity 都是计算属性
-        // 要调整剩余数量，需要调整 receiptQuantity
-        batch.setReceiptQuantity(batch.getReceiptQuantity().add(adjustment));
+        // 按 已使用 + 已预留 + 新剩余 原子重算 receiptQuantity，不覆盖并发的消耗/预留
+        inventoryLedgerService.setRemaining(factoryId, batchId, newQuantity);
 
         // 记录调整
         MaterialBatchAdjustment adjustmentRecord = new MaterialBatchAdjustment();
@@ -513,8 +538,9 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         adjustmentRecord.setAdjustedBy(adjustedBy);
         adjustmentRecord.setAdjustmentTime(LocalDateTime.now());
         materialBatchAdjustmentRepository.save(adjustmentRecord);
+        dashboardCacheService.onDataChanged(factoryId);
 
-        batch = materialBatchRepository.save(batch);
+        entityManager.refresh(batch);
         return materialBatchMapper.toDTO(batch);
     }
 
@@ -531,36 +557,17 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
 
         batch.setStatus(status);
         batch = materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
         return materialBatchMapper.toDTO(batch);
     }
 
     @Override
     @Transactional
     public void reserveBatchMaterial(String factoryId, Integer batchId, BigDecimal quantity, Integer productionPlanId) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        if (batch.getRemainingQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("批次剩余数量不足以预留");
-        }
-
-        // 更新预留数量 (remainingQuantity 会自动重新计算)
-        batch.setReservedQuantity(batch.getReservedQuantity().add(quantity));
-
-        // 如果剩余量为0，更新状态为DEPLETED
-        // 注意: getRemainingQuantity() 现在是计算属性
-        if (batch.getRemainingQuantity().compareTo(BigDecimal.ZERO) == 0) {
-            batch.setStatus(MaterialBatchStatus.DEPLETED);
-        }
-
-        materialBatchRepository.save(batch);
-        log.info("预留批次材料成功: batchId={}, quantity={}, remainingAfter={}, reservedTotal={}",
-                batchId, quantity, batch.getRemainingQuantity(), batch.getReservedQuantity());
+        // 批次不存在 / 不属于该工厂 / 数量不足都由台账服务在条件更新未命中时区分并抛出
+        // 条件原子预留：剩余不足时抛出异常，剩余为0时状态置为 DEPLETED
+        inventoryLedgerService.reserve(factoryId, batchId, quantity);
+        log.info("预留批次材料成功: batchId={}, quantity={}", batchId, quantity);
 
         // 记录批次使用关联
         ProductionPlanBatchUsage usage = new ProductionPlanBatchUsage();
@@ -569,37 +576,16 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         usage.setReservedQuantity(quantity);
         usage.setUsedQuantity(BigDecimal.ZERO);
         productionPlanBatchUsageRepository.save(usage);
+        dashboardCacheService.onDataChanged(factoryId);
     }
 
     @Override
     @Transactional
     public void releaseBatchReservation(String factoryId, Integer batchId, BigDecimal quantity, Integer productionPlanId) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        // 验证预留数量是否充足
-        if (batch.getReservedQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("预留数量不足以释放");
-        }
-
-        // 释放预留数量 (remainingQuantity 会自动增加)
-        batch.setReservedQuantity(batch.getReservedQuantity().subtract(quantity));
-
-        // 如果之前是DEPLETED状态，恢复为AVAILABLE
-        // 注意: getRemainingQuantity() 现在是计算属性
-        if (batch.getStatus() == MaterialBatchStatus.DEPLETED &&
-            batch.getRemainingQuantity().compareTo(BigDecimal.ZERO) > 0) {
-            batch.setStatus(MaterialBatchStatus.AVAILABLE);
-        }
-
-        materialBatchRepository.save(batch);
-        log.info("释放预留材料成功: batchId={}, quantity={}, remainingAfter={}, reservedTotal={}",
-                batchId, quantity, batch.getRemainingQuantity(), batch.getReservedQuantity());
+        // 条件原子释放：预留量不足时抛出异常，DEPLETED 批次恢复为 AVAILABLE
+        inventoryLedgerService.release(factoryId, batchId, quantity);
+        dashboardCacheService.onDataChanged(factoryId);
+        log.info("释放预留材料成功: batchId={}, quantity={}", batchId, quantity);
 
         // 更新批次使用关联
         ProductionPlanBatchUsage usage = productionPlanBatchUsageRepository
@@ -619,33 +605,9 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
     @Override
     @Transactional
     public void consumeBatchMaterial(String factoryId, Integer batchId, BigDecimal quantity, Integer productionPlanId) {
-        MaterialBatch batch = materialBatchRepository.findById(batchId)
-                .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
-
-        // 验证工厂ID
-        if (!batch.getFactoryId().equals(factoryId)) {
-            throw new BusinessException("无权操作该批次");
-        }
-
-        // 验证预留数量是否充足
-        if (batch.getReservedQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("预留数量不足以消耗");
-        }
-
-        // 从预留数量中扣减，增加已使用数量
-        batch.setReservedQuantity(batch.getReservedQuantity().subtract(quantity));
-        batch.setUsedQuantity(batch.getUsedQuantity().add(quantity));
-        batch.setLastUsedAt(LocalDateTime.now());
-
-        // 如果预留和剩余都为0，更新状态为DEPLETED
-        if (batch.getReservedQuantity().compareTo(BigDecimal.ZERO) == 0 &&
-            batch.getRemainingQuantity().compareTo(BigDecimal.ZERO) == 0) {
-            batch.setStatus(MaterialBatchStatus.DEPLETED);
-        }
-
-        materialBatchRepository.save(batch);
-        log.info("消耗批次材料成功: batchId={}, quantity={}, reservedRemaining={}, usedTotal={}",
-                batchId, quantity, batch.getReservedQuantity(), batch.getUsedQuantity());
+        // 条件原子消耗预留：预留量不足时抛出异常，预留和剩余都为0时状态置为 DEPLETED
+        inventoryLedgerService.consumeReserved(factoryId, batchId, quantity);
+        log.info("消耗批次材料成功: batchId={}, quantity={}", batchId, quantity);
 
         // 记录消耗记录
         MaterialConsumption consumption = new MaterialConsumption();
@@ -655,17 +617,10 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
         consumption.setQuantity(quantity);
         consumption.setConsumptionTime(LocalDateTime.now());
         materialConsumptionRepository.save(consumption);
+        dashboardCacheService.onDataChanged(factoryId);
 
-        // 更新批次使用关联
-        ProductionPlanBatchUsage usage = productionPlanBatchUsageRepository
-                .findByProductionPlanIdAndBatchId(productionPlanId, batchId)
-                .orElse(null);
-
-        if (usage != null) {
-            usage.setReservedQuantity(usage.getReservedQuantity().subtract(quantity));
-            usage.setUsedQuantity(usage.getUsedQuantity().add(quantity));
-            productionPlanBatchUsageRepository.save(usage);
-        }
+        // 更新批次使用关联（原子累加，没有关联记录时不更新）
+        productionPlanBatchUsageRepository.consumeReserved(productionPlanId, batchId, quantity);
     }
 
     @Override
@@ -706,21 +661,16 @@ public class MaterialBatchServiceImpl implements MaterialBatchService {
     }
 
     @Override
-    @Transactional
     public int handleExpiredBatches(String factoryId) {
-        List<MaterialBatch> expiredBatches = materialBatchRepository.findExpiredBatchesByDate(
-                factoryId, LocalDate.now());
-
-        int count = 0;
-        for (MaterialBatch batch : expiredBatches) {
-            if (batch.getStatus() != MaterialBatchStatus.EXPIRED) {
-                batch.setStatus(MaterialBatchStatus.EXPIRED);
-                materialBatchRepository.save(batch);
-                count++;
-            }
-        }
-
-        return count;
+        return expirySweepService.sweep(ExpirySweepService.SweepSpec.builder()
+                .name("material-batch-expiry:" + factoryId)
+                .table("material_batches")
+                .factoryColumn("factory_id")
+                .assignments("status = 'EXPIRED', updated_at = NOW()")
+                .condition("factory_id = ? AND status <> 'EXPIRED' AND expire_date < ? AND deleted_at IS NULL")
+                .param(factoryId)
+                .param(LocalDate.now())
+                .build());
     }
 
     /**
@@ -3,8 +3,8 @@ package com.cretas.aims.service.impl;
 import com.cretas.aims.entity.MaterialSpecConfig;
 import com.cretas.aims.repository.MaterialSpecConfigRepository;
 import com.cretas.aims.service.MaterialSpecConfigService;
+import com.cretas.aims.service.ReferenceDataCacheService;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,7 +12,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 原材料规格配置服务实现
@@ -28,6 +27,7 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
 
     private final MaterialSpecConfigRepository repository;
     private final ObjectMapper objectMapper;
+    private final ReferenceDataCacheService referenceDataCacheService;
 
     /**
      * 系统默认规格配置
@@ -46,18 +46,6 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
         SYSTEM_DEFAULT_CONFIGS.put("其他", Arrays.asList("原装", "分装", "定制"));
     }
 
-    /**
-     * JSON转List工具方法
-     */
-    private List<String> parseSpecifications(String json) {
-        try {
-            return objectMapper.readValue(json, new TypeReference<List<String>>() {});
-        } catch (JsonProcessingException e) {
-            log.error("解析规格JSON失败: {}", json, e);
-            return new ArrayList<>();
-        }
-    }
-
     /**
      * List转JSON工具方法
      */
@@ -74,22 +62,16 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
     public Map<String, List<String>> getAllSpecConfigs(String factoryId) {
         log.info("获取工厂规格配置: factoryId={}", factoryId);
 
-        // 从数据库查询配置
-        List<MaterialSpecConfig> configs = repository.findByFactoryId(factoryId);
+        // 工厂配置取自基础数据快照（已完成JSON解析）
+        Map<String, List<String>> configs = referenceDataCacheService.snapshot(factoryId).getSpecConfigs();
 
         if (configs.isEmpty()) {
             log.info("工厂{}无自定义配置，返回系统默认配置", factoryId);
             return new LinkedHashMap<>(SYSTEM_DEFAULT_CONFIGS);
         }
 
-        // 转换为Map格式（需要JSON解析）
-        Map<String, List<String>> result = configs.stream()
-                .collect(Collectors.toMap(
-                        MaterialSpecConfig::getCategory,
-                        config -> parseSpecifications(config.getSpecifications()),
-                        (a, b) -> a,
-                        LinkedHashMap::new
-                ));
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        configs.forEach((category, specs) -> result.put(category, new ArrayList<>(specs)));
 
         // 补充缺失的类别（使用系统默认）
         SYSTEM_DEFAULT_CONFIGS.forEach((category, defaultSpecs) -> {
@@ -103,10 +85,9 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
     public List<String> getSpecsByCategory(String factoryId, String category) {
         log.info("获取类别规格配置: factoryId={}, category={}", factoryId, category);
 
-        Optional<MaterialSpecConfig> config = repository.findByFactoryIdAndCategory(factoryId, category);
-
-        if (config.isPresent()) {
-            return parseSpecifications(config.get().getSpecifications());
+        List<String> specs = referenceDataCacheService.snapshot(factoryId).getSpecConfigs().get(category);
+        if (specs != null) {
+            return new ArrayList<>(specs);
         }
 
         // 返回系统默认配置
@@ -143,6 +124,7 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
             repository.save(config);
             log.info("创建规格配置成功: id={}", config.getId());
         }
+        referenceDataCacheService.onDataChanged(factoryId);
     }
 
     @Override
@@ -175,6 +157,7 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
             repository.save(config);
             log.info("创建默认配置成功: category={}", category);
         }
+        referenceDataCacheService.onDataChanged(factoryId);
 
         return new ArrayList<>(defaultSpecs);
     }
@@ -203,6 +186,7 @@ public class MaterialSpecConfigServiceImpl implements MaterialSpecConfigService
         });
 
         repository.saveAll(configs);
+        referenceDataCacheService.onDataChanged(factoryId);
         log.info("初始化工厂默认规格配置成功: factoryId={}, count={}", factoryId, configs.size());
     }
 
@@ -107,8 +107,8 @@ public class MobileServiceImpl implements MobileService {
 
         log.info("工厂用户登录: factoryId={}, username={}", factoryId, username);
 
-        // 根据工厂ID和用户名查找用户
-        User user = userRepository.findByFactoryIdAndUsername(factoryId, username)
+        // 根据工厂ID和用户名查找用户（自然键，走二级缓存）
+        User user = userRepository.findByNaturalId(factoryId, username)
                 .orElseThrow(() -> new BusinessException("用户名或密码错误"));
 
         // 验证密码
@@ -708,7 +708,7 @@ public class MobileServiceImpl implements MobileService {
     @Override
     @Transactional
     public void resetPassword(String factoryId, String username, String newPassword) {
-        User user = userRepository.findByFactoryIdAndUsername(factoryId, username)
+        User user = userRepository.findByNaturalId(factoryId, username)
                 .orElseThrow(() -> new ResourceNotFoundException("用户不存在"));
 
         // 更新密码
@@ -9,7 +9,14 @@ import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.*;
 import com.cretas.aims.service.ProcessingService;
 import com.cretas.aims.service.AIAnalysisService;
+import com.cretas.aims.service.BatchCostAnalysisLoader;
 import com.cretas.aims.service.CacheService;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.InventoryLedgerService;
+import com.cretas.aims.service.SingleFlightService;
+import com.cretas.aims.service.TrendQueryService;
+import com.cretas.aims.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -48,6 +55,12 @@ public class ProcessingServiceImpl implements ProcessingService {
     private final SupplierRepository supplierRepository;
     private final AIAnalysisService aiAnalysisService;
     private final CacheService cacheService;
+    private final TrendQueryService trendQueryService;
+    private final FactoryDailyRollupService factoryDailyRollupService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final SingleFlightService singleFlightService;
+    private final BatchCostAnalysisLoader batchCostAnalysisLoader;
+    private final DashboardCacheService dashboardCacheService;
     // ========== 批次管理 ==========
     @Override
     @Transactional
@@ -60,7 +73,9 @@ public class ProcessingServiceImpl implements ProcessingService {
         batch.setFactoryId(factoryId);
         batch.setStatus("PLANNED");
         batch.setCreatedAt(LocalDateTime.now());
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public ProductionBatch startProduction(String factoryId, Long batchId, Integer supervisorId) {
         log.info("开始生产: factoryId={}, batchId={}, supervisorId={}", factoryId, batchId, supervisorId);
@@ -72,7 +87,9 @@ public class ProcessingServiceImpl implements ProcessingService {
         batch.setStatus("IN_PROGRESS");
         batch.setStartTime(LocalDateTime.now());
         batch.setSupervisorId(supervisorId);
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public ProductionBatch pauseProduction(String factoryId, Long batchId, String reason) {
         log.info("暂停生产: factoryId={}, batchId={}, reason={}", factoryId, batchId, reason);
@@ -83,7 +100,9 @@ public class ProcessingServiceImpl implements ProcessingService {
         }
         batch.setStatus("PAUSED");
         batch.setNotes(batch.getNotes() != null ? batch.getNotes() + "\n暂停原因: " + reason : "暂停原因: " + reason);
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public ProductionBatch completeProduction(String factoryId, Long batchId, BigDecimal actualQuantity,
                                              BigDecimal goodQuantity, BigDecimal defectQuantity) {
@@ -101,7 +120,10 @@ public class ProcessingServiceImpl implements ProcessingService {
         batch.setDefectQuantity(defectQuantity);
         // 计算指标
         batch.calculateMetrics();
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        factoryDailyRollupService.onProductionCompleted(saved);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public ProductionBatch cancelProduction(String factoryId, Long batchId, String reason) {
         log.info("取消生产: factoryId={}, batchId={}, reason={}", factoryId, batchId, reason);
@@ -112,7 +134,9 @@ public class ProcessingServiceImpl implements ProcessingService {
         }
         batch.setStatus("CANCELLED");
         batch.setNotes(batch.getNotes() != null ? batch.getNotes() + "\n取消原因: " + reason : "取消原因: " + reason);
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public ProductionBatch getBatchById(String factoryId, Long batchId) {
         return productionBatchRepository.findByIdAndFactoryId(batchId, factoryId)
@@ -214,7 +238,9 @@ public class ProcessingServiceImpl implements ProcessingService {
             materialBatch.setUnitPrice(BigDecimal.ZERO);
         }
 
-        return materialBatchRepository.save(materialBatch);
+        MaterialBatch saved = materialBatchRepository.save(materialBatch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public PageResponse<MaterialBatch> getMaterialReceipts(String factoryId, PageRequest pageRequest) {
         org.springframework.data.domain.PageRequest pageable = org.springframework.data.domain.PageRequest.of(
@@ -246,45 +272,52 @@ public class ProcessingServiceImpl implements ProcessingService {
         if (updates.getNotes() != null) {
             batch.setNotes(updates.getNotes());
         }
-        return materialBatchRepository.save(batch);
+        MaterialBatch saved = materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
+    @Transactional
     public void recordMaterialConsumption(String factoryId, Long productionBatchId,
                                          List<Map<String, Object>> consumptions) {
         log.info("记录原材料消耗: factoryId={}, productionBatchId={}", factoryId, productionBatchId);
         ProductionBatch productionBatch = getBatchById(factoryId, productionBatchId);
-        for (Map<String, Object> consumption : consumptions) {
+        Integer currentUserId = SecurityUtils.getCurrentUserId();
+        Integer recordedBy = currentUserId != null ? currentUserId : productionBatch.getCreatedBy();
+        LocalDateTime now = LocalDateTime.now();
+        // 按原材料批次ID顺序扣减，多个请求同时消耗同一组批次时加锁顺序一致，避免死锁
+        List<Map<String, Object>> ordered = new ArrayList<>(consumptions);
+        ordered.sort(Comparator.comparing(c -> (Integer) c.get("materialBatchId")));
+        BigDecimal totalMaterialCost = BigDecimal.ZERO;
+        BigDecimal totalQuantity = BigDecimal.ZERO;
+        for (Map<String, Object> consumption : ordered) {
             Integer materialBatchId = (Integer) consumption.get("materialBatchId");
             BigDecimal quantity = new BigDecimal(consumption.get("quantity").toString());
             MaterialBatch materialBatch = materialBatchRepository.findById(materialBatchId)
                     .orElseThrow(() -> new ResourceNotFoundException("原材料批次不存在"));
-            // 检查库存
-            if (materialBatch.getRemainingQuantity().compareTo(quantity) < 0) {
-                throw new BusinessException("原材料库存不足: " + materialBatch.getBatchNumber());
-            }
-            // 更新库存
-            // 注意: remainingQuantity 和 currentQuantity 是计算属性，会自动重新计算
-            materialBatch.setUsedQuantity(materialBatch.getUsedQuantity().add(quantity));
-            materialBatch.setLastUsedAt(LocalDateTime.now());
+            // 条件原子扣减库存，剩余不足时抛出异常并回滚整个事务（之前批次的扣减和消耗记录一并撤销）
+            inventoryLedgerService.consume(factoryId, materialBatchId, quantity);
+            BigDecimal unitPrice = materialBatch.getUnitPrice() != null ? materialBatch.getUnitPrice() : BigDecimal.ZERO;
+            BigDecimal cost = quantity.multiply(unitPrice);
             // 创建消耗记录
             MaterialConsumption consumptionRecord = new MaterialConsumption();
-            consumptionRecord.setBatch(materialBatch);
+            consumptionRecord.setFactoryId(factoryId);
+            consumptionRecord.setBatchId(materialBatchId);
             consumptionRecord.setProductionBatchId(productionBatchId);
             consumptionRecord.setQuantity(quantity);
-            consumptionRecord.setConsumedAt(LocalDateTime.now());
-            materialBatchRepository.save(materialBatch);
+            consumptionRecord.setUnitPrice(unitPrice);
+            consumptionRecord.setTotalCost(cost);
+            consumptionRecord.setConsumptionTime(now);
+            consumptionRecord.setConsumedAt(now);
+            consumptionRecord.setRecordedBy(recordedBy);
             materialConsumptionRepository.save(consumptionRecord);
-        }
-        // 更新生产批次的原材料成本
-        BigDecimal totalMaterialCost = BigDecimal.ZERO;
-        for (Map<String, Object> consumption : consumptions) {
-            Integer materialBatchId = (Integer) consumption.get("materialBatchId");
-            BigDecimal quantity = new BigDecimal(consumption.get("quantity").toString());
-            MaterialBatch materialBatch = materialBatchRepository.findById(materialBatchId).get();
-            BigDecimal cost = quantity.multiply(materialBatch.getUnitPrice());
             totalMaterialCost = totalMaterialCost.add(cost);
+            totalQuantity = totalQuantity.add(quantity);
         }
+        // 更新生产批次的原材料成本
         productionBatch.setMaterialCost(totalMaterialCost);
         productionBatchRepository.save(productionBatch);
+        factoryDailyRollupService.onMaterialConsumed(factoryId, LocalDateTime.now(), totalQuantity, totalMaterialCost);
+        dashboardCacheService.onDataChanged(factoryId);
     }
     // ========== 质量检验 ==========
     public Map<String, Object> submitInspection(String factoryId, Long batchId, Map<String, Object> inspection) {
@@ -304,6 +337,8 @@ public class ProcessingServiceImpl implements ProcessingService {
         qualityInspection.setResult((String) inspection.get("result"));
         qualityInspection.setNotes((String) inspection.get("notes"));
         QualityInspection saved = qualityInspectionRepository.save(qualityInspection);
+        factoryDailyRollupService.onInspectionSubmitted(saved);
+        dashboardCacheService.onDataChanged(factoryId);
         Map<String, Object> result = new HashMap<>();
         result.put("inspection", saved);
         result.put("passRate", passRate);
@@ -353,28 +388,17 @@ public class ProcessingServiceImpl implements ProcessingService {
     public List<Map<String, Object>> getQualityTrends(String factoryId, Integer days) {
         LocalDate endDate = LocalDate.now();
         LocalDate startDate = endDate.minusDays(days);
-        List<QualityInspection> inspections = qualityInspectionRepository.findByFactoryIdAndDateRange(
-                factoryId, startDate, endDate);
-        Map<LocalDate, List<QualityInspection>> groupedByDate = inspections.stream()
-                .collect(Collectors.groupingBy(QualityInspection::getInspectionDate));
+        // 一次GROUP BY查询得到每日合格率，服务端补齐无检验的日期
+        Map<LocalDate, TrendQueryService.DailyInspectionStat> dailyStats =
+                trendQueryService.getDailyInspectionStats(factoryId, startDate, endDate);
         List<Map<String, Object>> trends = new ArrayList<>();
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+        dailyStats.forEach((date, stat) -> {
             Map<String, Object> dayTrend = new HashMap<>();
             dayTrend.put("date", date);
-            List<QualityInspection> dayInspections = groupedByDate.getOrDefault(date, new ArrayList<>());
-            if (!dayInspections.isEmpty()) {
-                BigDecimal avgPassRate = dayInspections.stream()
-                        .map(QualityInspection::getPassRate)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)
-                        .divide(new BigDecimal(dayInspections.size()), 2, RoundingMode.HALF_UP);
-                dayTrend.put("passRate", avgPassRate);
-                dayTrend.put("inspectionCount", dayInspections.size());
-            } else {
-                dayTrend.put("passRate", null);
-                dayTrend.put("inspectionCount", 0);
-            }
+            dayTrend.put("passRate", stat.getPassRate());
+            dayTrend.put("inspectionCount", stat.getInspectionCount());
             trends.add(dayTrend);
-        }
+        });
         return trends;
     }
     // ========== 设备监控 ==========
@@ -395,6 +419,7 @@ public class ProcessingServiceImpl implements ProcessingService {
         );
         equipment.setLastMaintenanceDate(LocalDate.now());
         equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
     }
     public List<Map<String, Object>> getEquipmentMonitoring(String factoryId) {
         List<FactoryEquipment> equipments = equipmentRepository.findByFactoryId(factoryId,
@@ -439,6 +464,7 @@ public class ProcessingServiceImpl implements ProcessingService {
         equipment.setStatus("running");
         equipment.setNotes((String) maintenance.get("notes"));
         equipmentRepository.save(equipment);
+        dashboardCacheService.onDataChanged(factoryId);
     }
     // ========== 成本分析 ==========
     public Map<String, Object> getBatchCostAnalysis(String factoryId, Long batchId) {
@@ -485,281 +511,21 @@ public class ProcessingServiceImpl implements ProcessingService {
         log.info("获取增强的批次成本分析: factoryId={}, batchId={}", factoryId, batchId);
 
         ProductionBatch batch = getBatchById(factoryId, batchId);
-        Map<String, Object> analysis = new HashMap<>();
-
-        // ========== 1. 基本信息 ==========
-        Map<String, Object> batchInfo = new HashMap<>();
-        batchInfo.put("batchNumber", batch.getBatchNumber());
-        batchInfo.put("productName", batch.getProductName());
-        batchInfo.put("plannedQuantity", batch.getPlannedQuantity());
-        batchInfo.put("actualQuantity", batch.getActualQuantity());
-        batchInfo.put("goodQuantity", batch.getGoodQuantity());
-        batchInfo.put("defectQuantity", batch.getDefectQuantity());
-        batchInfo.put("yieldRate", batch.getYieldRate());
-        batchInfo.put("efficiency", batch.getEfficiency());
-        batchInfo.put("status", batch.getStatus());
-        batchInfo.put("startTime", batch.getStartTime());
-        batchInfo.put("endTime", batch.getEndTime());
-
-        // 计算生产时长
-        if (batch.getStartTime() != null && batch.getEndTime() != null) {
-            long hours = ChronoUnit.HOURS.between(batch.getStartTime(), batch.getEndTime());
-            batchInfo.put("productionHours", hours);
-        }
-        analysis.put("batchInfo", batchInfo);
-
-        // ========== 2. 生产计划对比 ==========
-        if (batch.getProductionPlanId() != null) {
-            productionPlanRepository.findById(batch.getProductionPlanId().intValue()).ifPresent(plan -> {
-                Map<String, Object> planComparison = new HashMap<>();
-                planComparison.put("planId", plan.getId());
-                planComparison.put("planNumber", plan.getPlanNumber());
-                planComparison.put("plannedDate", plan.getPlannedDate());
-                planComparison.put("plannedQuantity", plan.getPlannedQuantity());
-                planComparison.put("actualQuantity", batch.getActualQuantity());
-
-                if (plan.getPlannedQuantity() != null && batch.getActualQuantity() != null) {
-                    BigDecimal completionRate = batch.getActualQuantity()
-                        .divide(plan.getPlannedQuantity(), 4, RoundingMode.HALF_UP)
-                        .multiply(new BigDecimal(100));
-                    planComparison.put("completionRate", completionRate);
-                }
-
-                planComparison.put("planStartTime", plan.getStartTime());
-                planComparison.put("planEndTime", plan.getEndTime());
-                planComparison.put("actualStartTime", batch.getStartTime());
-                planComparison.put("actualEndTime", batch.getEndTime());
-                planComparison.put("status", plan.getStatus());
-
-                analysis.put("productionPlanComparison", planComparison);
-            });
-        }
-
-        // ========== 3. 原材料消耗详情 ==========
-        List<MaterialConsumption> consumptions = materialConsumptionRepository.findByProductionBatchId(batchId);
-        List<Map<String, Object>> materialDetails = new ArrayList<>();
-        BigDecimal totalMaterialCost = BigDecimal.ZERO;
-
-        for (MaterialConsumption consumption : consumptions) {
-            Map<String, Object> materialDetail = new HashMap<>();
-            MaterialBatch materialBatch = consumption.getBatch();
-
-            materialDetail.put("consumptionId", consumption.getId());
-            materialDetail.put("batchNumber", materialBatch.getBatchNumber());
-
-            // 获取原材料名称（通过materialType关联）
-            String materialName = materialBatch.getMaterialType() != null ?
-                materialBatch.getMaterialType().getName() : "未知原材料";
-            materialDetail.put("materialName", materialName);
-
-            materialDetail.put("quantity", consumption.getQuantity());
-            materialDetail.put("unit", materialBatch.getQuantityUnit());
-            materialDetail.put("unitPrice", materialBatch.getUnitPrice());
-
-            // 计算此次消耗成本
-            BigDecimal cost = consumption.getQuantity().multiply(materialBatch.getUnitPrice());
-            materialDetail.put("cost", cost);
-            totalMaterialCost = totalMaterialCost.add(cost);
-
-            // 供应商信息
-            if (materialBatch.getSupplier() != null) {
-                Map<String, Object> supplierInfo = new HashMap<>();
-                supplierInfo.put("id", materialBatch.getSupplier().getId());
-                supplierInfo.put("name", materialBatch.getSupplier().getName());
-                supplierInfo.put("contactPerson", materialBatch.getSupplier().getContactPerson());
-                materialDetail.put("supplier", supplierInfo);
-            }
-
-            // FIFO信息
-            materialDetail.put("receiptDate", materialBatch.getReceiptDate());
-            materialDetail.put("expireDate", materialBatch.getExpireDate());
-
-            // 库存状态
-            materialDetail.put("initialQuantity", materialBatch.getInitialQuantity());
-            materialDetail.put("remainingQuantity", materialBatch.getRemainingQuantity());
-
-            materialDetail.put("consumedAt", consumption.getConsumedAt());
-
-            materialDetails.add(materialDetail);
-        }
-
-        analysis.put("materialConsumptions", materialDetails);
-        analysis.put("materialConsumptionCount", materialDetails.size());
-        analysis.put("totalMaterialCost", totalMaterialCost);
-
-        // ========== 4. 设备使用详情 ==========
-        List<EquipmentUsage> usages = equipmentUsageRepository.findByProductionBatchId(batchId);
-        List<Map<String, Object>> equipmentDetails = new ArrayList<>();
-        BigDecimal totalEquipmentCost = BigDecimal.ZERO;
-        int totalEquipmentHours = 0;
-
-        for (EquipmentUsage usage : usages) {
-            Map<String, Object> equipmentDetail = new HashMap<>();
-
-            equipmentRepository.findById(usage.getEquipmentId()).ifPresent(equipment -> {
-                equipmentDetail.put("equipmentId", equipment.getId());
-                equipmentDetail.put("equipmentName", equipment.getName());
-                equipmentDetail.put("equipmentCode", equipment.getEquipmentCode());
-                equipmentDetail.put("model", equipment.getModel());
-                equipmentDetail.put("status", equipment.getStatus());
-            });
-
-            equipmentDetail.put("usageId", usage.getId());
-            equipmentDetail.put("startTime", usage.getStartTime());
-            equipmentDetail.put("endTime", usage.getEndTime());
-            equipmentDetail.put("durationHours", usage.getDurationHours());
-
-            // 计算设备成本（假设每小时50元）
-            BigDecimal equipmentCost = new BigDecimal(usage.getDurationHours()).multiply(new BigDecimal("50"));
-            equipmentDetail.put("cost", equipmentCost);
-
-            totalEquipmentCost = totalEquipmentCost.add(equipmentCost);
-            totalEquipmentHours += usage.getDurationHours();
-
-            equipmentDetails.add(equipmentDetail);
-        }
-
-        analysis.put("equipmentUsages", equipmentDetails);
-        analysis.put("equipmentUsageCount", equipmentDetails.size());
-        analysis.put("totalEquipmentHours", totalEquipmentHours);
-        analysis.put("totalEquipmentCost", totalEquipmentCost);
-
-        // ========== 5. 人工工时详情 ==========
-        // TODO-FIX: BatchWorkSession关联到ProcessingBatch(ID:Integer),而此方法接收ProductionBatch(ID:Long)
-        // 导致类型不匹配错误。暂时使用batch表中的labor_cost字段,后续需要统一数据模型。
-        // 问题详情: BatchWorkSession.batchId是Integer类型,关联processing_batches表
-        // 而这里的batchId参数是Long类型,来自production_batches表
-
-        List<Map<String, Object>> laborDetails = new ArrayList<>();
-        BigDecimal totalLaborCost = batch.getLaborCost() != null ? batch.getLaborCost() : BigDecimal.ZERO;
-        int totalWorkMinutes = batch.getWorkDurationMinutes() != null ? batch.getWorkDurationMinutes() : 0;
-
-        // 添加汇总信息 (详细的工时会话数据需要数据模型统一后才能查询)
-        if (totalLaborCost.compareTo(BigDecimal.ZERO) > 0 || totalWorkMinutes > 0) {
-            Map<String, Object> laborSummary = new HashMap<>();
-            laborSummary.put("workMinutes", totalWorkMinutes);
-            laborSummary.put("laborCost", totalLaborCost);
-            laborSummary.put("workerCount", batch.getWorkerCount());
-            laborSummary.put("note", "工时详情需要数据模型统一后提供");
-            laborDetails.add(laborSummary);
-        }
-
-        analysis.put("laborSessions", laborDetails);
-        analysis.put("laborSessionCount", laborDetails.size());
-        analysis.put("totalWorkMinutes", totalWorkMinutes);
-        analysis.put("totalWorkHours", totalWorkMinutes / 60.0);
-        analysis.put("totalLaborCost", totalLaborCost);
-
-        // ========== 6. 质量检验详情 ==========
-        List<QualityInspection> inspections = qualityInspectionRepository.findByFactoryIdAndProductionBatchId(
-            factoryId, batchId, org.springframework.data.domain.PageRequest.of(0, 100)).getContent();
-
-        List<Map<String, Object>> qualityDetails = new ArrayList<>();
-
-        for (QualityInspection inspection : inspections) {
-            Map<String, Object> qualityDetail = new HashMap<>();
-
-            qualityDetail.put("inspectionId", inspection.getId());
-            qualityDetail.put("inspectionDate", inspection.getInspectionDate());
-            qualityDetail.put("sampleSize", inspection.getSampleSize());
-            qualityDetail.put("passCount", inspection.getPassCount());
-            qualityDetail.put("failCount", inspection.getFailCount());
-            qualityDetail.put("passRate", inspection.getPassRate());
-            qualityDetail.put("result", inspection.getResult());
-            qualityDetail.put("notes", inspection.getNotes());
-
-            // 检验员信息
-            if (inspection.getInspectorId() != null) {
-                userRepository.findById(inspection.getInspectorId()).ifPresent(inspector -> {
-                    Map<String, Object> inspectorInfo = new HashMap<>();
-                    inspectorInfo.put("id", inspector.getId());
-                    inspectorInfo.put("fullName", inspector.getFullName());
-                    qualityDetail.put("inspector", inspectorInfo);
-                });
-            }
-
-            qualityDetails.add(qualityDetail);
-        }
-
-        analysis.put("qualityInspections", qualityDetails);
-        analysis.put("qualityInspectionCount", qualityDetails.size());
-
-        // 计算平均合格率
-        if (!inspections.isEmpty()) {
-            BigDecimal avgPassRate = inspections.stream()
-                .map(QualityInspection::getPassRate)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(new BigDecimal(inspections.size()), 2, RoundingMode.HALF_UP);
-            analysis.put("averagePassRate", avgPassRate);
-        }
-
-        // ========== 7. 成本汇总 ==========
-        Map<String, Object> costSummary = new HashMap<>();
-        costSummary.put("materialCost", totalMaterialCost);
-        costSummary.put("laborCost", totalLaborCost);
-        costSummary.put("equipmentCost", totalEquipmentCost);
-        costSummary.put("otherCost", batch.getOtherCost() != null ? batch.getOtherCost() : BigDecimal.ZERO);
-
-        BigDecimal totalCost = totalMaterialCost.add(totalLaborCost).add(totalEquipmentCost)
-            .add(batch.getOtherCost() != null ? batch.getOtherCost() : BigDecimal.ZERO);
-        costSummary.put("totalCost", totalCost);
-
-        // 单位成本
-        if (batch.getActualQuantity() != null && batch.getActualQuantity().compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal unitCost = totalCost.divide(batch.getActualQuantity(), 4, RoundingMode.HALF_UP);
-            costSummary.put("unitCost", unitCost);
-        }
-
-        // 成本占比
-        if (totalCost.compareTo(BigDecimal.ZERO) > 0) {
-            costSummary.put("materialCostRatio",
-                totalMaterialCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
-            costSummary.put("laborCostRatio",
-                totalLaborCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
-            costSummary.put("equipmentCostRatio",
-                totalEquipmentCost.divide(totalCost, 4, RoundingMode.HALF_UP).multiply(new BigDecimal(100)));
-        }
-
-        analysis.put("costSummary", costSummary);
-
-        // ========== 8. 风险预警 ==========
-        List<String> risks = new ArrayList<>();
-
-        // 原材料过期风险
-        for (MaterialConsumption consumption : consumptions) {
-            MaterialBatch mb = consumption.getBatch();
-            if (mb.getExpireDate() != null && mb.getExpireDate().isBefore(LocalDate.now().plusDays(7))) {
-                String matName = mb.getMaterialType() != null ?
-                    mb.getMaterialType().getName() : "未知原材料";
-                risks.add("原材料 " + matName + " 批次 " + mb.getBatchNumber() + " 即将过期");
-            }
-        }
-
-        // 良品率风险
-        if (batch.getYieldRate() != null && batch.getYieldRate().compareTo(new BigDecimal("90")) < 0) {
-            risks.add("良品率偏低（" + batch.getYieldRate() + "%），建议加强质量控制");
-        }
-
-        // 成本占比风险
-        if (totalCost.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal materialRatio = totalMaterialCost.divide(totalCost, 4, RoundingMode.HALF_UP);
-            if (materialRatio.compareTo(new BigDecimal("0.65")) > 0) {
-                risks.add("原材料成本占比过高（" + materialRatio.multiply(new BigDecimal(100)) + "%），建议优化采购");
-            }
-        }
-
-        analysis.put("risks", risks);
-        analysis.put("riskCount", risks.size());
+        // 关联数据通过连接抓取和按ID集合预取一次取回，查询次数固定，不随消耗、设备、质检记录数增长
+        Map<String, Object> analysis = requireCostData(
+                batchCostAnalysisLoader.load(factoryId, Collections.singletonList(batch)), batch);
 
         log.info("增强的批次成本分析完成: batchId={}, 原材料{}种, 设备{}台, 人工{}人次, 质检{}次",
-                 batchId, materialDetails.size(), equipmentDetails.size(), laborDetails.size(), qualityDetails.size());
+                 batchId, analysis.get("materialConsumptionCount"), analysis.get("equipmentUsageCount"),
+                 analysis.get("laborSessionCount"), analysis.get("qualityInspectionCount"));
 
         return analysis;
     }
     public ProductionBatch recalculateBatchCost(String factoryId, Long batchId) {
         ProductionBatch batch = getBatchById(factoryId, batchId);
-        // 重新计算原材料成本
-        List<MaterialConsumption> consumptions = materialConsumptionRepository.findByProductionBatchId(batchId);
+        // 重新计算原材料成本（连同原材料批次一起取回，避免逐条加载单价）
+        List<MaterialConsumption> consumptions = materialConsumptionRepository
+                .findWithMaterialByProductionBatchIdIn(Collections.singletonList(batchId));
         BigDecimal materialCost = consumptions.stream()
                 .map(c -> c.getQuantity().multiply(c.getBatch().getUnitPrice()))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -772,7 +538,9 @@ public class ProcessingServiceImpl implements ProcessingService {
         batch.setEquipmentCost(equipmentCost);
         // 重新计算总成本
         batch.calculateMetrics();
-        return productionBatchRepository.save(batch);
+        ProductionBatch saved = productionBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
+        return saved;
     }
     public Map<String, Object> getAICostAnalysis(String factoryId, Long batchId) {
         ProductionBatch batch = getBatchById(factoryId, batchId);
@@ -930,29 +698,26 @@ public class ProcessingServiceImpl implements ProcessingService {
         Map<String, Object> analysis = new HashMap<>();
         LocalDate endDate = LocalDate.now();
         LocalDate startDate = endDate.minusDays(days);
+        // 每个指标一次GROUP BY查询覆盖整个日期范围
+        Map<LocalDate, BigDecimal> series;
+        switch (metric.toLowerCase()) {
+            case "production":
+                series = trendQueryService.getDailyBatchOutput(factoryId, startDate, endDate);
+                break;
+            case "quality":
+                series = trendQueryService.getDailyBatchYieldRate(factoryId, startDate, endDate);
+                break;
+            case "cost":
+                series = trendQueryService.getDailyBatchCost(factoryId, startDate, endDate);
+                break;
+            default:
+                series = null;
+        }
         List<Map<String, Object>> trendData = new ArrayList<>();
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
             Map<String, Object> dayData = new HashMap<>();
             dayData.put("date", date);
-            switch (metric.toLowerCase()) {
-                case "production":
-                    BigDecimal dayOutput = productionBatchRepository.calculateDailyOutput(
-                            factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-                    dayData.put("value", dayOutput != null ? dayOutput : BigDecimal.ZERO);
-                    break;
-                case "quality":
-                    BigDecimal dayYieldRate = productionBatchRepository.calculateDailyYieldRate(
-                            factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-                    dayData.put("value", dayYieldRate != null ? dayYieldRate : BigDecimal.ZERO);
-                    break;
-                case "cost":
-                    BigDecimal dayCost = productionBatchRepository.calculateDailyCost(
-                            factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-                    dayData.put("value", dayCost != null ? dayCost : BigDecimal.ZERO);
-                    break;
-                default:
-                    dayData.put("value", BigDecimal.ZERO);
-            }
+            dayData.put("value", series != null ? series.get(date) : BigDecimal.ZERO);
             trendData.add(dayData);
         }
         analysis.put("metric", metric);
@@ -997,16 +762,35 @@ public class ProcessingServiceImpl implements ProcessingService {
         log.info("AI成本分析(增强版): factoryId={}, batchId={}, sessionId={}, customMessage={}",
                  factoryId, batchId, sessionId, customMessage != null ? "有追问" : "初次分析");
 
-        // 1. 检查缓存（仅对初次分析且无自定义消息的情况使用缓存）
+        // 1. 初次分析：先查缓存，未命中时相同批次的并发请求合并为一次数据加载和AI调用
         if (sessionId == null && customMessage == null) {
-            Map<String, Object> cachedResult = cacheService.getAIAnalysisCache(factoryId, batchId);
-            if (cachedResult != null) {
-                log.info("返回缓存的AI分析结果: factoryId={}, batchId={}", factoryId, batchId);
-                cachedResult.put("fromCache", true);
-                return cachedResult;
-            }
+            Map<String, Object> shared = singleFlightService.execute(
+                    SingleFlightService.key("ai-cost", factoryId, batchId, "default"),
+                    () -> getCachedAIAnalysis(factoryId, batchId),
+                    () -> doAnalyzeWithAI(factoryId, batchId, null, null));
+            // 等待者共享同一结果对象，返回副本
+            return new HashMap<>(shared);
         }
+        return doAnalyzeWithAI(factoryId, batchId, sessionId, customMessage);
+    }
+
+    /**
+     * 读取AI分析缓存
+     */
+    private Map<String, Object> getCachedAIAnalysis(String factoryId, Long batchId) {
+        Map<String, Object> cachedResult = cacheService.getAIAnalysisCache(factoryId, batchId);
+        if (cachedResult != null) {
+            log.info("返回缓存的AI分析结果: factoryId={}, batchId={}", factoryId, batchId);
+            cachedResult.put("fromCache", true);
+        }
+        return cachedResult;
+    }
 
+    /**
+     * 加载增强成本数据并调用AI
+     */
+    private Map<String, Object> doAnalyzeWithAI(String factoryId, Long batchId,
+                                                String sessionId, String customMessage) {
         // 2. 获取增强的批次成本数据（包含完整业务链数据）
         Map<String, Object> enhancedCostData = getEnhancedBatchCostAnalysis(factoryId, batchId);
 
@@ -1084,25 +868,22 @@ public class ProcessingServiceImpl implements ProcessingService {
             batches = batches.subList(0, MAX_BATCHES);
         }
 
-        // 3. 为每个批次获取增强的成本数据
-        List<Map<String, Object>> batchesCostData = batches.stream()
-                .map(batch -> {
-                    try {
-                        Map<String, Object> costData = getEnhancedBatchCostAnalysis(factoryId, batch.getId());
-                        // 添加批次基本信息
-                        costData.put("batchNumber", batch.getBatchNumber());
-                        costData.put("productName", batch.getProductName());
-                        costData.put("status", batch.getStatus());
-                        costData.put("createdAt", batch.getCreatedAt());
-                        return costData;
-                    } catch (Exception e) {
-                        log.error("获取批次成本数据失败: batchId={}, error={}",
-                                batch.getId(), e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(data -> data != null)
-                .collect(java.util.stream.Collectors.toList());
+        // 3. 批量获取所有批次的增强成本数据（查询次数与批次数量无关）
+        Map<Long, Map<String, Object>> costDataByBatch = batchCostAnalysisLoader.load(factoryId, batches);
+        List<Map<String, Object>> batchesCostData = new ArrayList<>(batches.size());
+        for (ProductionBatch batch : batches) {
+            try {
+                Map<String, Object> costData = requireCostData(costDataByBatch, batch);
+                // 添加批次基本信息
+                costData.put("batchNumber", batch.getBatchNumber());
+                costData.put("productName", batch.getProductName());
+                costData.put("status", batch.getStatus());
+                costData.put("createdAt", batch.getCreatedAt());
+                batchesCostData.add(costData);
+            } catch (Exception e) {
+                log.error("获取批次成本数据失败: batchId={}, error={}", batch.getId(), e.getMessage());
+            }
+        }
 
         log.info("成功获取{}个批次的成本数据", batchesCostData.size());
 
@@ -1127,34 +908,36 @@ public class ProcessingServiceImpl implements ProcessingService {
             throw new IllegalArgumentException("最多支持5个批次进行对比分析");
         }
 
-        // 2. 为每个批次获取增强的成本数据
-        List<Map<String, Object>> comparativeBatchesData = batchIds.stream()
-                .map(batchId -> {
-                    try {
-                        // 获取批次基本信息
-                        ProductionBatch batch = productionBatchRepository.findByIdAndFactoryId(batchId, factoryId)
-                                .orElseThrow(() -> new RuntimeException("批次不存在: " + batchId));
-
-                        // 获取增强的成本数据
-                        Map<String, Object> costData = getEnhancedBatchCostAnalysis(factoryId, batchId);
-
-                        // 添加批次基本信息
-                        costData.put("batchId", batch.getId());
-                        costData.put("batchNumber", batch.getBatchNumber());
-                        costData.put("productName", batch.getProductName());
-                        costData.put("status", batch.getStatus());
-                        costData.put("createdAt", batch.getCreatedAt());
-
-                        log.info("成功获取批次{}的成本数据", batchId);
-                        return costData;
+        // 2. 一次查询取回所有批次（只保留本工厂的），再批量获取增强的成本数据
+        Map<Long, ProductionBatch> batchesById = productionBatchRepository.findAllById(batchIds).stream()
+                .filter(batch -> factoryId.equals(batch.getFactoryId()))
+                .collect(Collectors.toMap(ProductionBatch::getId, batch -> batch, (a, b) -> a));
+        List<ProductionBatch> batches = new ArrayList<>();
+        for (Long batchId : new LinkedHashSet<>(batchIds)) {
+            ProductionBatch batch = batchesById.get(batchId);
+            if (batch == null) {
+                log.error("获取批次成本数据失败: batchId={}, error=批次不存在", batchId);
+            } else {
+                batches.add(batch);
+            }
+        }
 
-                    } catch (Exception e) {
-                        log.error("获取批次成本数据失败: batchId={}, error={}", batchId, e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(data -> data != null)
-                .collect(java.util.stream.Collectors.toList());
+        Map<Long, Map<String, Object>> costDataByBatch = batchCostAnalysisLoader.load(factoryId, batches);
+        List<Map<String, Object>> comparativeBatchesData = new ArrayList<>(batches.size());
+        for (ProductionBatch batch : batches) {
+            try {
+                Map<String, Object> costData = requireCostData(costDataByBatch, batch);
+                // 添加批次基本信息
+                costData.put("batchId", batch.getId());
+                costData.put("batchNumber", batch.getBatchNumber());
+                costData.put("productName", batch.getProductName());
+                costData.put("status", batch.getStatus());
+                costData.put("createdAt", batch.getCreatedAt());
+                comparativeBatchesData.add(costData);
+            } catch (Exception e) {
+                log.error("获取批次成本数据失败: batchId={}, error={}", batch.getId(), e.getMessage());
+            }
+        }
 
         // 3. 校验：确保所有批次数据都获取成功
         if (comparativeBatchesData.size() < 2) {
@@ -1166,6 +949,18 @@ public class ProcessingServiceImpl implements ProcessingService {
         return comparativeBatchesData;
     }
 
+    /**
+     * 取出批量加载结果中的单个批次（组装失败的批次不在结果中）
+     */
+    private Map<String, Object> requireCostData(Map<Long, Map<String, Object>> costDataByBatch,
+                                                ProductionBatch batch) {
+        Map<String, Object> costData = costDataByBatch.get(batch.getId());
+        if (costData == null) {
+            throw new BusinessException("批次成本数据组装失败: batchId=" + batch.getId());
+        }
+        return costData;
+    }
+
     /**
      * AI服务健康检查
      */
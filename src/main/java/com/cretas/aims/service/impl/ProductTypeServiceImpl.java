@@ -8,6 +8,7 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.ProductTypeRepository;
 import com.cretas.aims.service.ProductTypeService;
+import com.cretas.aims.service.ReferenceDataCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -34,6 +35,7 @@ import java.util.stream.Collectors;
 public class ProductTypeServiceImpl implements ProductTypeService {
 
     private final ProductTypeRepository productTypeRepository;
+    private final ReferenceDataCacheService referenceDataCacheService;
 
     @Override
     @Transactional
@@ -62,6 +64,7 @@ public class ProductTypeServiceImpl implements ProductTypeService {
         productType.setUpdatedAt(LocalDateTime.now());
 
         productType = productTypeRepository.save(productType);
+        referenceDataCacheService.onDataChanged(factoryId);
         log.info("产品类型创建成功: id={}", productType.getId());
 
         return convertToDTO(productType);
@@ -100,6 +103,7 @@ public class ProductTypeServiceImpl implements ProductTypeService {
 
         productType.setUpdatedAt(LocalDateTime.now());
         productType = productTypeRepository.save(productType);
+        referenceDataCacheService.onDataChanged(factoryId);
 
         log.info("产品类型更新成功: id={}", productType.getId());
         return convertToDTO(productType);
@@ -123,6 +127,7 @@ public class ProductTypeServiceImpl implements ProductTypeService {
         // }
 
         productTypeRepository.delete(productType);
+        referenceDataCacheService.onDataChanged(factoryId);
         log.info("产品类型删除成功: id={}", id);
     }
 
@@ -236,6 +241,7 @@ public class ProductTypeServiceImpl implements ProductTypeService {
             productType.setUpdatedAt(LocalDateTime.now());
             productTypeRepository.save(productType);
         }
+        referenceDataCacheService.onDataChanged(factoryId);
 
         log.info("批量更新产品类型状态成功: count={}", ids.size());
     }
@@ -274,6 +280,7 @@ public class ProductTypeServiceImpl implements ProductTypeService {
         );
 
         productTypeRepository.saveAll(defaultTypes);
+        referenceDataCacheService.onDataChanged(factoryId);
         log.info("默认产品类型初始化成功: count={}", defaultTypes.size());
     }
 
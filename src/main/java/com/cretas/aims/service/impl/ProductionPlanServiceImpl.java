@@ -11,6 +11,8 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.mapper.ProductionPlanMapper;
 import com.cretas.aims.repository.*;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.InventoryLedgerService;
 import com.cretas.aims.service.ProductionPlanService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +44,8 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
     private final ProductionPlanBatchUsageRepository planBatchUsageRepository;
     private final ProductTypeRepository productTypeRepository;
     private final ProductionPlanMapper productionPlanMapper;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final DashboardCacheService dashboardCacheService;
 
     @Override
     @Transactional
@@ -54,6 +58,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         // 创建生产计划
         ProductionPlan plan = productionPlanMapper.toEntity(request, factoryId, userId);
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         // 如果指定了原材料批次，创建关联
         if (request.getMaterialBatchIds() != null && request.getMaterialBatchIds().length > 0) {
@@ -83,6 +88,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         // 更新计划信息
         productionPlanMapper.updateEntity(plan, request);
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("更新生产计划成功: planId={}", planId);
         return productionPlanMapper.toDTO(plan);
@@ -105,6 +111,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         }
 
         productionPlanRepository.delete(plan);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("删除生产计划成功: planId={}", planId);
     }
 
@@ -199,6 +206,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         plan.setStatus(ProductionPlanStatus.IN_PROGRESS);
         plan.setStartTime(LocalDateTime.now());
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("开始生产: planId={}", planId);
         return productionPlanMapper.toDTO(plan);
@@ -224,6 +232,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         plan.setEndTime(LocalDateTime.now());
         plan.setActualQuantity(actualQuantity);
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("完成生产: planId={}, actualQuantity={}", planId, actualQuantity);
         return productionPlanMapper.toDTO(plan);
@@ -251,6 +260,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
             plan.getNotes() + "\n取消原因：" + reason :
             "取消原因：" + reason);
         productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("取消生产计划: planId={}, reason={}", planId, reason);
     }
@@ -273,6 +283,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
 
         plan.setStatus(ProductionPlanStatus.PAUSED);
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("暂停生产: planId={}", planId);
         return productionPlanMapper.toDTO(plan);
@@ -296,6 +307,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
 
         plan.setStatus(ProductionPlanStatus.IN_PROGRESS);
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("恢复生产: planId={}", planId);
         return productionPlanMapper.toDTO(plan);
@@ -331,6 +343,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         }
 
         plan = productionPlanRepository.save(plan);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("更新实际成本: planId={}", planId);
         return productionPlanMapper.toDTO(plan);
@@ -348,6 +361,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         }
 
         assignMaterialBatchesToPlan(plan, batchIds);
+        dashboardCacheService.onDataChanged(factoryId);
         log.info("分配原材料批次: planId={}, batchCount={}", planId, batchIds.size());
     }
 
@@ -365,10 +379,8 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         MaterialBatch batch = materialBatchRepository.findById(batchId)
                 .orElseThrow(() -> new ResourceNotFoundException("原材料批次", "id", batchId));
 
-        // 检查库存是否足够
-        if (batch.getCurrentQuantity().compareTo(quantity) < 0) {
-            throw new BusinessException("批次库存不足");
-        }
+        // 条件原子扣减库存：库存不足时抛出异常，用完时状态置为 USED_UP
+        inventoryLedgerService.consume(factoryId, batchId, quantity);
 
         // 创建消耗记录
         MaterialConsumption consumption = new MaterialConsumption();
@@ -381,15 +393,7 @@ public class ProductionPlanServiceImpl implements ProductionPlanService {
         consumption.setConsumptionTime(LocalDateTime.now());
         consumption.setRecordedBy(plan.getCreatedBy());
         materialConsumptionRepository.save(consumption);
-
-        // 更新批次库存
-        // 注意: currentQuantity 是计算属性，通过增加 usedQuantity 来减少 currentQuantity
-        batch.setUsedQuantity(batch.getUsedQuantity().add(quantity));
-        batch.setLastUsedAt(LocalDateTime.now());
-        if (batch.getCurrentQuantity().compareTo(BigDecimal.ZERO) <= 0) {
-            batch.setStatus(MaterialBatchStatus.USED_UP);
-        }
-        materialBatchRepository.save(batch);
+        dashboardCacheService.onDataChanged(factoryId);
 
         log.info("记录材料消耗: planId={}, batchId={}, quantity={}", planId, batchId, quantity);
     }
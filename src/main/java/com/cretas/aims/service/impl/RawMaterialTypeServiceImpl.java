@@ -11,6 +11,7 @@ import com.cretas.aims.repository.RawMaterialTypeRepository;
 import com.cretas.aims.repository.MaterialBatchRepository;
 import com.cretas.aims.repository.ConversionRepository;
 import com.cretas.aims.service.RawMaterialTypeService;
+import com.cretas.aims.service.ReferenceDataCacheService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -38,6 +39,7 @@ public class RawMaterialTypeServiceImpl implements RawMaterialTypeService {
     private final RawMaterialTypeRepository materialTypeRepository;
     private final MaterialBatchRepository materialBatchRepository;
     private final ConversionRepository conversionRepository;
+    private final ReferenceDataCacheService referenceDataCacheService;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -71,6 +73,7 @@ public class RawMaterialTypeServiceImpl implements RawMaterialTypeService {
         materialType.setUpdatedAt(LocalDateTime.now());
 
         materialType = materialTypeRepository.save(materialType);
+        referenceDataCacheService.onDataChanged(factoryId);
 
         log.info("原材料类型创建成功: id={}", materialType.getId());
         return convertToDTO(materialType);
@@ -110,6 +113,7 @@ public class RawMaterialTypeServiceImpl implements RawMaterialTypeService {
 
         materialType.setUpdatedAt(LocalDateTime.now());
         materialType = materialTypeRepository.save(materialType);
+        referenceDataCacheService.onDataChanged(factoryId);
 
         log.info("原材料类型更新成功: id={}", materialType.getId());
         return convertToDTO(materialType);
@@ -170,6 +174,7 @@ public class RawMaterialTypeServiceImpl implements RawMaterialTypeService {
 
         try {
             materialTypeRepository.delete(materialType);
+            referenceDataCacheService.onDataChanged(factoryId);
             log.info("原材料类型删除成功: id={}", id);
         } catch (Exception e) {
             log.error("删除原材料类型失败: id={}, error={}", id, e.getMessage(), e);
@@ -312,6 +317,7 @@ public class RawMaterialTypeServiceImpl implements RawMaterialTypeService {
             materialType.setUpdatedAt(LocalDateTime.now());
             materialTypeRepository.save(materialType);
         }
+        referenceDataCacheService.onDataChanged(factoryId);
 
         log.info("批量更新原材料类型状态成功: count={}", ids.size());
     }
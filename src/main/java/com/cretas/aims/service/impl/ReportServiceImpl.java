@@ -5,13 +5,21 @@ import com.cretas.aims.entity.MaterialBatch;
 import com.cretas.aims.entity.FactoryEquipment;
 import com.cretas.aims.entity.enums.MaterialBatchStatus;
 import com.cretas.aims.entity.enums.ProductionPlanStatus;
+import com.cretas.aims.entity.enums.ReworkStatus;
 import com.cretas.aims.repository.*;
+import com.cretas.aims.service.DashboardAggregationService;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.MaterialBatchService;
 import com.cretas.aims.service.ReportService;
+import com.cretas.aims.service.StreamingExportService;
+import com.cretas.aims.service.TimeClockService;
+import com.cretas.aims.service.TrendQueryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -36,120 +44,105 @@ public class ReportServiceImpl implements ReportService {
     private final SupplierRepository supplierRepository;
     private final CustomerRepository customerRepository;
     private final FactoryRepository factoryRepository;
-    @Override
-    @Cacheable(value = "dashboardStats", key = "#factoryId", unless = "#result == null")
-    public DashboardStatisticsDTO getDashboardStatistics(String factoryId) {
-        log.info("获取仪表盘统计数据（实时计算）: factoryId={}", factoryId);
-        long startTime = System.currentTimeMillis();
-
-        try {
-            // 并行异步计算各个统计模块
-            CompletableFuture<DashboardStatisticsDTO.ProductionStatistics> productionFuture =
-                    getProductionStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.InventoryStatistics> inventoryFuture =
-                    getInventoryStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.FinanceStatistics> financeFuture =
-                    getFinanceStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.PersonnelStatistics> personnelFuture =
-                    getPersonnelStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.EquipmentStatistics> equipmentFuture =
-                    getEquipmentStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.QualityStatistics> qualityFuture =
-                    getQualityStatisticsAsync(factoryId);
-            CompletableFuture<DashboardStatisticsDTO.TrendStatistics> trendFuture =
-                    getTrendStatisticsAsync(factoryId);
-            CompletableFuture<List<DashboardStatisticsDTO.AlertInfo>> alertsFuture =
-                    getAlertsAsync(factoryId);
-
-            // 等待所有异步任务完成
-            CompletableFuture.allOf(
-                    productionFuture, inventoryFuture, financeFuture, personnelFuture,
-                    equipmentFuture, qualityFuture, trendFuture, alertsFuture
-            ).join();
+    private final DashboardAggregationService dashboardAggregationService;
+    private final TrendQueryService trendQueryService;
+    private final FactoryDailyRollupService factoryDailyRollupService;
+    private final ProductionBatchRepository productionBatchRepository;
+    private final QualityInspectionRepository qualityInspectionRepository;
+    private final ReworkRecordRepository reworkRecordRepository;
+    private final FactoryDailyRollupRepository factoryDailyRollupRepository;
+    private final MaterialBatchService materialBatchService;
+    private final TimeClockService timeClockService;
+    private final StreamingExportService streamingExportService;
+    private final DashboardCacheService dashboardCacheService;
 
-            // 组装结果
-            DashboardStatisticsDTO result = DashboardStatisticsDTO.builder()
-                    .productionStats(productionFuture.join())
-                    .inventoryStats(inventoryFuture.join())
-                    .financeStats(financeFuture.join())
-                    .personnelStats(personnelFuture.join())
-                    .equipmentStats(equipmentFuture.join())
-                    .qualityStats(qualityFuture.join())
-                    .trendStats(trendFuture.join())
-                    .alerts(alertsFuture.join())
-                    .build();
-
-            long endTime = System.currentTimeMillis();
-            log.info("仪表盘统计数据计算完成: factoryId={}, 耗时={}ms", factoryId, endTime - startTime);
-
-            return result;
-        } catch (Exception e) {
-            log.error("获取仪表盘统计数据失败: factoryId={}, error={}", factoryId, e.getMessage(), e);
-            // 降级：同步串行执行
-            return getDashboardStatisticsFallback(factoryId);
-        }
+    @PostConstruct
+    public void registerDashboardLoader() {
+        dashboardCacheService.registerLoader(this::computeDashboardStatistics);
     }
 
     /**
-     * 降级方法：同步串行执行
+     * 仪表盘统计：由 DashboardCacheService 缓存，业务数据提交后失效并合并重算
      */
-    private DashboardStatisticsDTO getDashboardStatisticsFallback(String factoryId) {
-        log.warn("使用降级方法获取仪表盘数据: factoryId={}", factoryId);
-        return DashboardStatisticsDTO.builder()
-                .productionStats(getProductionStatistics(factoryId))
-                .inventoryStats(getInventoryStatistics(factoryId))
-                .financeStats(getFinanceStatistics(factoryId))
-                .personnelStats(getPersonnelStatistics(factoryId))
-                .equipmentStats(getEquipmentStatistics(factoryId))
-                .qualityStats(getQualityStatistics(factoryId))
-                .trendStats(getTrendStatistics(factoryId))
-                .alerts(getAlerts(factoryId))
-                .build();
-    }
-
-    // ==================== 异步方法 ====================
-
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.ProductionStatistics> getProductionStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getProductionStatistics(factoryId));
+    @Override
+    public DashboardStatisticsDTO getDashboardStatistics(String factoryId) {
+        return dashboardCacheService.get(factoryId);
     }
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.InventoryStatistics> getInventoryStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getInventoryStatistics(factoryId));
-    }
+    private DashboardStatisticsDTO computeDashboardStatistics(String factoryId) {
+        log.info("获取仪表盘统计数据（实时计算）: factoryId={}", factoryId);
+        long startTime = System.currentTimeMillis();
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.FinanceStatistics> getFinanceStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getFinanceStatistics(factoryId));
-    }
+        // 各模块提交到dashboardExecutor并行计算，单个模块超时/失败时仅该模块降级
+        List<String> degradedSections = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<DashboardStatisticsDTO.ProductionStatistics> productionFuture =
+                dashboardAggregationService.submit(factoryId, "production",
+                        () -> getProductionStatistics(factoryId),
+                        DashboardStatisticsDTO.ProductionStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.InventoryStatistics> inventoryFuture =
+                dashboardAggregationService.submit(factoryId, "inventory",
+                        () -> getInventoryStatistics(factoryId),
+                        DashboardStatisticsDTO.InventoryStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.FinanceStatistics> financeFuture =
+                dashboardAggregationService.submit(factoryId, "finance",
+                        () -> getFinanceStatistics(factoryId),
+                        DashboardStatisticsDTO.FinanceStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.PersonnelStatistics> personnelFuture =
+                dashboardAggregationService.submit(factoryId, "personnel",
+                        () -> getPersonnelStatistics(factoryId),
+                        DashboardStatisticsDTO.PersonnelStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.EquipmentStatistics> equipmentFuture =
+                dashboardAggregationService.submit(factoryId, "equipment",
+                        () -> getEquipmentStatistics(factoryId),
+                        DashboardStatisticsDTO.EquipmentStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.QualityStatistics> qualityFuture =
+                dashboardAggregationService.submit(factoryId, "quality",
+                        () -> getQualityStatistics(factoryId),
+                        DashboardStatisticsDTO.QualityStatistics::new, degradedSections);
+        CompletableFuture<DashboardStatisticsDTO.TrendStatistics> trendFuture =
+                dashboardAggregationService.submit(factoryId, "trend",
+                        () -> getTrendStatistics(factoryId),
+                        DashboardStatisticsDTO.TrendStatistics::new, degradedSections);
+        CompletableFuture<List<DashboardStatisticsDTO.AlertInfo>> alertsFuture =
+                dashboardAggregationService.submit(factoryId, "alerts",
+                        () -> getAlerts(factoryId),
+                        ArrayList::new, degradedSections);
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.PersonnelStatistics> getPersonnelStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getPersonnelStatistics(factoryId));
-    }
+        // 等待所有模块完成（各模块已自带超时与降级，不会异常完成）
+        CompletableFuture.allOf(
+                productionFuture, inventoryFuture, financeFuture, personnelFuture,
+                equipmentFuture, qualityFuture, trendFuture, alertsFuture
+        ).join();
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.EquipmentStatistics> getEquipmentStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getEquipmentStatistics(factoryId));
-    }
-
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.QualityStatistics> getQualityStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getQualityStatistics(factoryId));
-    }
+        // 组装结果
+        DashboardStatisticsDTO result = DashboardStatisticsDTO.builder()
+                .productionStats(productionFuture.join())
+                .inventoryStats(inventoryFuture.join())
+                .financeStats(financeFuture.join())
+                .personnelStats(personnelFuture.join())
+                .equipmentStats(equipmentFuture.join())
+                .qualityStats(qualityFuture.join())
+                .trendStats(trendFuture.join())
+                .alerts(alertsFuture.join())
+                .degradedSections(new ArrayList<>(degradedSections))
+                .build();
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<DashboardStatisticsDTO.TrendStatistics> getTrendStatisticsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getTrendStatistics(factoryId));
+        long endTime = System.currentTimeMillis();
+        if (degradedSections.isEmpty()) {
+            log.info("仪表盘统计数据计算完成: factoryId={}, 耗时={}ms", factoryId, endTime - startTime);
+        } else {
+            log.warn("仪表盘统计数据部分降级: factoryId={}, 降级模块={}, 耗时={}ms",
+                    factoryId, degradedSections, endTime - startTime);
+        }
+        return result;
     }
 
-    @Async("dashboardExecutor")
-    public CompletableFuture<List<DashboardStatisticsDTO.AlertInfo>> getAlertsAsync(String factoryId) {
-        return CompletableFuture.completedFuture(getAlerts(factoryId));
+    @Override
+    public Map<String, Map<String, Object>> getDashboardSectionLatency(String factoryId) {
+        return dashboardAggregationService.getSectionLatencyStats(factoryId);
     }
 
-    // ==================== 原有同步方法 ====================
+    // ==================== 各统计模块 ====================
 
     private DashboardStatisticsDTO.ProductionStatistics getProductionStatistics(String factoryId) {
         // 获取生产计划统计
@@ -240,29 +233,37 @@ public class ReportServiceImpl implements ReportService {
                 .build();
     }
     private DashboardStatisticsDTO.QualityStatistics getQualityStatistics(String factoryId) {
-        // TODO: 实现质量统计
+        // 本月质量统计（读取每日汇总表，按完工批次/质检记录统计）
+        LocalDate today = LocalDate.now();
+        LocalDate monthStart = today.withDayOfMonth(1);
+        FactoryDailyRollupService.RollupSummary summary =
+                factoryDailyRollupService.summarize(factoryId, monthStart, today);
+        // 已解决问题：本月开始且已完成的返工
+        long resolvedIssues = reworkRecordRepository.countByFactoryIdAndStatusAndStartTimeBetween(
+                factoryId, ReworkStatus.COMPLETED, monthStart.atStartOfDay(), today.atTime(23, 59, 59));
         return DashboardStatisticsDTO.QualityStatistics.builder()
-                .totalProduction(BigDecimal.valueOf(10000))
-                .qualifiedProduction(BigDecimal.valueOf(9800))
-                .defectiveProduction(BigDecimal.valueOf(200))
-                .qualityRate(98.0)
-                .qualityIssues(5)
-                .resolvedIssues(3)
-                .firstPassRate(96.0)
+                .totalProduction(summary.getOutputQuantity())
+                .qualifiedProduction(summary.getGoodQuantity())
+                .defectiveProduction(summary.getDefectQuantity())
+                .qualityRate(summary.getQualityRate())
+                .qualityIssues((int) (summary.getInspectionCount() - summary.getInspectionPassCount()))
+                .resolvedIssues((int) resolvedIssues)
+                .firstPassRate(summary.getFirstPassRate())
                 .build();
     }
     private DashboardStatisticsDTO.TrendStatistics getTrendStatistics(String factoryId) {
         // 获取最近7天的趋势数据
         List<DashboardStatisticsDTO.DailyTrend> dailyProduction = new ArrayList<>();
         List<DashboardStatisticsDTO.DailyTrend> dailyRevenue = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, BigDecimal> outputSeries = trendQueryService.getDailyPlanOutput(
+                factoryId, today.minusDays(6), today);
         for (int i = 6; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
+            LocalDate date = today.minusDays(i);
             // 生产趋势
-            BigDecimal output = productionPlanRepository.calculateOutputBetweenDates(
-                    factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
             dailyProduction.add(DashboardStatisticsDTO.DailyTrend.builder()
                     .date(date)
-                    .value(output != null ? output : BigDecimal.ZERO)
+                    .value(outputSeries.get(date))
                     .changeRate(0.0)
                     .build());
             // 收入趋势（示例数据）
@@ -327,16 +328,12 @@ public class ReportServiceImpl implements ReportService {
         report.put("totalCost", totalCost != null ? totalCost : BigDecimal.ZERO);
         // 日产量趋势
         List<Map<String, Object>> dailyOutput = new ArrayList<>();
-        LocalDate current = startDate;
-        while (!current.isAfter(endDate)) {
-            BigDecimal output = productionPlanRepository.calculateOutputBetweenDates(
-                    factoryId, current.atStartOfDay(), current.atTime(23, 59, 59));
+        trendQueryService.getDailyPlanOutput(factoryId, startDate, endDate).forEach((date, output) -> {
             Map<String, Object> daily = new HashMap<>();
-            daily.put("date", current);
-            daily.put("output", output != null ? output : BigDecimal.ZERO);
+            daily.put("date", date);
+            daily.put("output", output);
             dailyOutput.add(daily);
-            current = current.plusDays(1);
-        }
+        });
         report.put("dailyOutput", dailyOutput);
         return report;
     }
@@ -415,13 +412,24 @@ public class ReportServiceImpl implements ReportService {
     public Map<String, Object> getQualityReport(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("获取质量报表: factoryId={}, startDate={}, endDate={}", factoryId, startDate, endDate);
         Map<String, Object> report = new HashMap<>();
-        // TODO: 实现质量报表统计
-        report.put("totalProduction", BigDecimal.valueOf(10000));
-        report.put("qualifiedProduction", BigDecimal.valueOf(9800));
-        report.put("defectiveProduction", BigDecimal.valueOf(200));
-        report.put("qualityRate", 98.0);
-        report.put("firstPassRate", 96.0);
-        report.put("reworkRate", 2.0);
+        // 读取每日汇总表
+        FactoryDailyRollupService.RollupSummary summary =
+                factoryDailyRollupService.summarize(factoryId, startDate, endDate);
+        report.put("totalProduction", summary.getOutputQuantity());
+        report.put("qualifiedProduction", summary.getGoodQuantity());
+        report.put("defectiveProduction", summary.getDefectQuantity());
+        report.put("yieldRate", summary.getYieldRate());
+        report.put("qualityRate", summary.getQualityRate());
+        report.put("firstPassRate", summary.getFirstPassRate());
+        report.put("inspectionCount", summary.getInspectionCount());
+        // 返工率：期间内返工数量 / 完工产量
+        Double reworkQuantity = reworkRecordRepository.calculateTotalReworkQuantity(
+                factoryId, startDate.atStartOfDay(), endDate.atTime(23, 59, 59));
+        BigDecimal output = summary.getOutputQuantity();
+        report.put("reworkRate", reworkQuantity != null && output.compareTo(BigDecimal.ZERO) > 0
+                ? BigDecimal.valueOf(reworkQuantity).multiply(BigDecimal.valueOf(100))
+                        .divide(output, 2, RoundingMode.HALF_UP).doubleValue()
+                : 0.0);
         return report;
     }
     @Override
@@ -630,9 +638,13 @@ public class ReportServiceImpl implements ReportService {
     public Map<String, Object> getKPIMetrics(String factoryId, LocalDate date) {
         log.info("获取KPI指标: factoryId={}, date={}", factoryId, date);
         Map<String, Object> kpi = new HashMap<>();
+        // 当月截至指定日期的汇总（读取每日汇总表）
+        FactoryDailyRollupService.RollupSummary summary =
+                factoryDailyRollupService.summarize(factoryId, date.withDayOfMonth(1), date);
         // 生产KPI
-        kpi.put("productionEfficiency", 85.0);
-        kpi.put("qualityRate", 98.0);
+        kpi.put("productionEfficiency", summary.getEfficiency());
+        kpi.put("yieldRate", summary.getYieldRate());
+        kpi.put("qualityRate", summary.getQualityRate());
         kpi.put("deliveryOnTime", 95.0);
         // 成本KPI
         kpi.put("costReduction", 5.0);
@@ -650,23 +662,19 @@ public class ReportServiceImpl implements ReportService {
                                                      LocalDate period2Start, LocalDate period2End) {
         log.info("获取对比分析: factoryId={}", factoryId);
         Map<String, Object> analysis = new HashMap<>();
-        // 期间1数据
+        // 期间1数据（产量/成本按生产计划统计）
         Map<String, Object> period1 = new HashMap<>();
-        BigDecimal output1 = productionPlanRepository.calculateOutputBetweenDates(
-                factoryId, period1Start.atStartOfDay(), period1End.atTime(23, 59, 59));
-        BigDecimal cost1 = productionPlanRepository.calculateTotalCostBetweenDates(
-                factoryId, period1Start.atStartOfDay(), period1End.atTime(23, 59, 59));
-        period1.put("output", output1 != null ? output1 : BigDecimal.ZERO);
-        period1.put("cost", cost1 != null ? cost1 : BigDecimal.ZERO);
+        BigDecimal output1 = planOutput(factoryId, period1Start, period1End);
+        BigDecimal cost1 = planCost(factoryId, period1Start, period1End);
+        period1.put("output", output1);
+        period1.put("cost", cost1);
         analysis.put("period1", period1);
         // 期间2数据
         Map<String, Object> period2 = new HashMap<>();
-        BigDecimal output2 = productionPlanRepository.calculateOutputBetweenDates(
-                factoryId, period2Start.atStartOfDay(), period2End.atTime(23, 59, 59));
-        BigDecimal cost2 = productionPlanRepository.calculateTotalCostBetweenDates(
-                factoryId, period2Start.atStartOfDay(), period2End.atTime(23, 59, 59));
-        period2.put("output", output2 != null ? output2 : BigDecimal.ZERO);
-        period2.put("cost", cost2 != null ? cost2 : BigDecimal.ZERO);
+        BigDecimal output2 = planOutput(factoryId, period2Start, period2End);
+        BigDecimal cost2 = planCost(factoryId, period2Start, period2End);
+        period2.put("output", output2);
+        period2.put("cost", cost2);
         analysis.put("period2", period2);
         // 变化率
         Map<String, Double> changeRate = new HashMap<>();
@@ -754,10 +762,15 @@ public class ReportServiceImpl implements ReportService {
                 factoryId, ProductionPlanStatus.COMPLETED, startDate, endDate);
         double completionRate = totalPlans > 0 ? (completedPlans * 100.0 / totalPlans) : 0.0;
         report.put("completionRate", completionRate);
-        // 产量效率
-        BigDecimal totalOutput = productionPlanRepository.calculateOutputBetweenDates(
-                factoryId, startDate.atStartOfDay(), endDate.atTime(23, 59, 59));
-        report.put("totalOutput", totalOutput != null ? totalOutput : BigDecimal.ZERO);
+        // 产量（按生产计划统计）
+        report.put("totalOutput", planOutput(factoryId, startDate, endDate));
+        // 批次效率指标（读取每日汇总表，按完工批次统计）
+        FactoryDailyRollupService.RollupSummary summary =
+                factoryDailyRollupService.summarize(factoryId, startDate, endDate);
+        report.put("productionEfficiency", summary.getEfficiency());
+        report.put("yieldRate", summary.getYieldRate());
+        report.put("workMinutes", summary.getWorkMinutes());
+        report.put("overtimeMinutes", summary.getOvertimeMinutes());
         // 设备效率
         report.put("equipmentOEE", 75.0);
         return report;
@@ -767,24 +780,13 @@ public class ReportServiceImpl implements ReportService {
         log.info("获取趋势分析报表: factoryId={}, type={}, period={}", factoryId, type, period);
         Map<String, Object> report = new HashMap<>();
         List<Map<String, Object>> trendData = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, BigDecimal> series = getPlanSeries(factoryId, type, today.minusDays(period - 1), today);
         for (int i = period - 1; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
+            LocalDate date = today.minusDays(i);
             Map<String, Object> dataPoint = new HashMap<>();
             dataPoint.put("date", date);
-            switch (type) {
-                case "production":
-                    BigDecimal output = productionPlanRepository.calculateOutputBetweenDates(
-                            factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-                    dataPoint.put("value", output != null ? output : BigDecimal.ZERO);
-                    break;
-                case "cost":
-                    BigDecimal cost = productionPlanRepository.calculateTotalCostBetweenDates(
-                            factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-                    dataPoint.put("value", cost != null ? cost : BigDecimal.ZERO);
-                    break;
-                default:
-                    dataPoint.put("value", BigDecimal.ZERO);
-            }
+            dataPoint.put("value", series != null ? series.get(date) : BigDecimal.ZERO);
             trendData.add(dataPoint);
         }
         report.put("type", type);
@@ -792,29 +794,60 @@ public class ReportServiceImpl implements ReportService {
         report.put("trendData", trendData);
         return report;
     }
+    /**
+     * 按类型获取生产计划的每日序列（production/cost），不支持的类型返回null
+     */
+    private Map<LocalDate, BigDecimal> getPlanSeries(String factoryId, String type,
+                                                     LocalDate startDate, LocalDate endDate) {
+        if ("production".equals(type)) {
+            return trendQueryService.getDailyPlanOutput(factoryId, startDate, endDate);
+        }
+        if ("cost".equals(type)) {
+            return trendQueryService.getDailyPlanCost(factoryId, startDate, endDate);
+        }
+        return null;
+    }
+    /**
+     * 期间产量（按生产计划统计，含首尾日期）
+     */
+    private BigDecimal planOutput(String factoryId, LocalDate startDate, LocalDate endDate) {
+        BigDecimal output = productionPlanRepository.calculateOutputBetweenDates(
+                factoryId, startDate.atStartOfDay(), endDate.atTime(23, 59, 59));
+        return output != null ? output : BigDecimal.ZERO;
+    }
+    /**
+     * 期间成本（按生产计划统计，含首尾日期）
+     */
+    private BigDecimal planCost(String factoryId, LocalDate startDate, LocalDate endDate) {
+        BigDecimal cost = productionPlanRepository.calculateTotalCostBetweenDates(
+                factoryId, startDate.atStartOfDay(), endDate.atTime(23, 59, 59));
+        return cost != null ? cost : BigDecimal.ZERO;
+    }
     @Override
     public Map<String, Object> getPeriodComparisonReport(String factoryId, LocalDate period1Start, LocalDate period1End,
                                                          LocalDate period2Start, LocalDate period2End) {
         log.info("获取周期对比报表: factoryId={}, period1={}-{}, period2={}-{}",
                 factoryId, period1Start, period1End, period2Start, period2End);
         Map<String, Object> report = new HashMap<>();
-        // 期间1数据
-        BigDecimal output1 = productionPlanRepository.calculateOutputBetweenDates(
-                factoryId, period1Start.atStartOfDay(), period1End.atTime(23, 59, 59));
-        BigDecimal cost1 = productionPlanRepository.calculateTotalCostBetweenDates(
-                factoryId, period1Start.atStartOfDay(), period1End.atTime(23, 59, 59));
+        // 期间1数据（产量/成本按生产计划统计，良品率读取每日汇总表）
+        FactoryDailyRollupService.RollupSummary summary1 =
+                factoryDailyRollupService.summarize(factoryId, period1Start, period1End);
+        BigDecimal output1 = planOutput(factoryId, period1Start, period1End);
+        BigDecimal cost1 = planCost(factoryId, period1Start, period1End);
         Map<String, Object> period1Data = new HashMap<>();
-        period1Data.put("output", output1 != null ? output1 : BigDecimal.ZERO);
-        period1Data.put("cost", cost1 != null ? cost1 : BigDecimal.ZERO);
+        period1Data.put("output", output1);
+        period1Data.put("cost", cost1);
+        period1Data.put("yieldRate", summary1.getYieldRate());
         report.put("period1", period1Data);
         // 期间2数据
-        BigDecimal output2 = productionPlanRepository.calculateOutputBetweenDates(
-                factoryId, period2Start.atStartOfDay(), period2End.atTime(23, 59, 59));
-        BigDecimal cost2 = productionPlanRepository.calculateTotalCostBetweenDates(
-                factoryId, period2Start.atStartOfDay(), period2End.atTime(23, 59, 59));
+        FactoryDailyRollupService.RollupSummary summary2 =
+                factoryDailyRollupService.summarize(factoryId, period2Start, period2End);
+        BigDecimal output2 = planOutput(factoryId, period2Start, period2End);
+        BigDecimal cost2 = planCost(factoryId, period2Start, period2End);
         Map<String, Object> period2Data = new HashMap<>();
-        period2Data.put("output", output2 != null ? output2 : BigDecimal.ZERO);
-        period2Data.put("cost", cost2 != null ? cost2 : BigDecimal.ZERO);
+        period2Data.put("output", output2);
+        period2Data.put("cost", cost2);
+        period2Data.put("yieldRate", summary2.getYieldRate());
         report.put("period2", period2Data);
         // 计算变化率
         Map<String, Object> comparison = new HashMap<>();
@@ -843,22 +876,12 @@ public class ReportServiceImpl implements ReportService {
         List<Map<String, Object>> forecastData = new ArrayList<>();
         // 获取历史数据
         LocalDate today = LocalDate.now();
-        BigDecimal totalHistorical = BigDecimal.ZERO;
         int historicalDays = 30;
-        for (int i = 0; i < historicalDays; i++) {
-            LocalDate date = today.minusDays(i);
-            BigDecimal value = BigDecimal.ZERO;
-            if ("production".equals(type)) {
-                value = productionPlanRepository.calculateOutputBetweenDates(
-                        factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-            } else if ("cost".equals(type)) {
-                value = productionPlanRepository.calculateTotalCostBetweenDates(
-                        factoryId, date.atStartOfDay(), date.atTime(23, 59, 59));
-            }
-            if (value != null) {
-                totalHistorical = totalHistorical.add(value);
-            }
-        }
+        Map<LocalDate, BigDecimal> series = getPlanSeries(
+                factoryId, type, today.minusDays(historicalDays - 1), today);
+        BigDecimal totalHistorical = series != null
+                ? series.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)
+                : BigDecimal.ZERO;
         // 计算日均值
         BigDecimal dailyAverage = totalHistorical.divide(BigDecimal.valueOf(historicalDays), 2, RoundingMode.HALF_UP);
         // 生成预测数据
@@ -880,13 +903,84 @@ public class ReportServiceImpl implements ReportService {
                                     javax.servlet.http.HttpServletResponse response) {
         log.info("导出Excel报表: factoryId={}, type={}, startDate={}, endDate={}",
                 factoryId, reportType, startDate, endDate);
-        // 这里需要使用Apache POI等库来生成Excel文件
-        try {
-            response.setContentType("application/vnd.ms-excel");
-            response.setHeader("Content-Disposition", "attachment; filename=report.xlsx");
-            response.getWriter().write("Excel export not yet implemented");
-        } catch (Exception e) {
-            log.error("导出Excel失败", e);
+        String type = reportType != null ? reportType.toLowerCase() : "";
+        String fileName = "report_" + type + "_" + startDate + "_" + endDate;
+        switch (type) {
+            case "production":
+            case "cost":
+                streamingExportService.export(response, fileName, "xlsx",
+                        Arrays.asList("批次号", "产品", "状态", "质量状态", "计划产量", "实际产量", "良品数", "不良数",
+                                "良品率(%)", "开始时间", "结束时间", "负责人", "原材料成本", "人工成本", "设备成本",
+                                "其他成本", "总成本", "单位成本"),
+                        () -> productionBatchRepository.streamByFactoryIdAndCreatedAtRange(
+                                factoryId, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay()),
+                        batch -> Arrays.asList(
+                                batch.getBatchNumber(),
+                                batch.getProductName(),
+                                batch.getStatus() != null ? batch.getStatus().getDescription() : null,
+                                batch.getQualityStatus() != null ? batch.getQualityStatus().getDescription() : null,
+                                batch.getPlannedQuantity(),
+                                batch.getActualQuantity(),
+                                batch.getGoodQuantity(),
+                                batch.getDefectQuantity(),
+                                batch.getYieldRate(),
+                                batch.getStartTime(),
+                                batch.getEndTime(),
+                                batch.getSupervisorName(),
+                                batch.getMaterialCost(),
+                                batch.getLaborCost(),
+                                batch.getEquipmentCost(),
+                                batch.getOtherCost(),
+                                batch.getTotalCost(),
+                                batch.getUnitCost()));
+                break;
+            case "quality":
+                streamingExportService.export(response, fileName, "xlsx",
+                        Arrays.asList("检验日期", "生产批次ID", "检验员ID", "抽样数", "合格数", "不合格数", "合格率(%)", "结果", "备注"),
+                        () -> qualityInspectionRepository.streamByFactoryIdAndInspectionDateBetween(
+                                factoryId, startDate, endDate),
+                        inspection -> Arrays.asList(
+                                inspection.getInspectionDate(),
+                                inspection.getProductionBatchId(),
+                                inspection.getInspectorId(),
+                                inspection.getSampleSize(),
+                                inspection.getPassCount(),
+                                inspection.getFailCount(),
+                                inspection.getPassRate(),
+                                inspection.getResult(),
+                                inspection.getNotes()));
+                break;
+            case "inventory":
+                materialBatchService.exportInventoryReport(factoryId, startDate, endDate, "xlsx", response);
+                break;
+            case "attendance":
+                timeClockService.exportAttendanceRecords(factoryId, startDate, endDate, "xlsx", response);
+                break;
+            default:
+                // 其他报表类型导出每日汇总
+                streamingExportService.export(response, fileName, "xlsx",
+                        Arrays.asList("日期", "完工批次", "产量", "良品数", "不良数", "良品率(%)", "总成本",
+                                "原材料消耗量", "原材料消耗成本", "质检次数", "质检合格次数", "出勤人次", "迟到人次",
+                                "早退人次", "工作时长(分钟)", "加班时长(分钟)"),
+                        () -> factoryDailyRollupRepository.findByFactoryIdAndRollupDateBetweenOrderByRollupDateAsc(
+                                factoryId, startDate, endDate).stream(),
+                        rollup -> Arrays.asList(
+                                rollup.getRollupDate(),
+                                rollup.getCompletedBatches(),
+                                rollup.getOutputQuantity(),
+                                rollup.getGoodQuantity(),
+                                rollup.getDefectQuantity(),
+                                rollup.getYieldRate(),
+                                rollup.getTotalCost(),
+                                rollup.getConsumedQuantity(),
+                                rollup.getConsumedCost(),
+                                rollup.getInspectionCount(),
+                                rollup.getInspectionPassCount(),
+                                rollup.getAttendanceCount(),
+                                rollup.getLateCount(),
+                                rollup.getEarlyLeaveCount(),
+                                rollup.getWorkMinutes(),
+                                rollup.getOvertimeMinutes()));
         }
     }
     @Override
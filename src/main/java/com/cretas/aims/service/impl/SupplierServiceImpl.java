@@ -9,6 +9,7 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.mapper.SupplierMapper;
 import com.cretas.aims.repository.SupplierRepository;
+import com.cretas.aims.service.StreamingExportService;
 import com.cretas.aims.service.SupplierService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +17,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import javax.servlet.http.HttpServletResponse;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -33,6 +35,7 @@ import java.util.stream.Collectors;
 public class SupplierServiceImpl implements SupplierService {
     private final SupplierRepository supplierRepository;
     private final SupplierMapper supplierMapper;
+    private final StreamingExportService streamingExportService;
     @Override
     @Transactional
     public SupplierDTO createSupplier(String factoryId, CreateSupplierRequest request, Integer userId) {
@@ -223,9 +226,26 @@ public class SupplierServiceImpl implements SupplierService {
         return supplierRepository.existsByFactoryIdAndSupplierCode(factoryId, supplierCode);
     }
     @Override
-    public byte[] exportSupplierList(String factoryId) {
-        // TODO: 实现供应商列表导出功能
-        throw new UnsupportedOperationException("供应商列表导出功能待实现");
+    public void exportSupplierList(String factoryId, String format, HttpServletResponse response) {
+        log.info("导出供应商列表: factoryId={}, format={}", factoryId, format);
+        streamingExportService.export(response, "suppliers", format,
+                Arrays.asList("供应商编码", "名称", "联系人", "联系电话", "邮箱", "地址", "供应材料",
+                        "付款条件", "交货天数", "信用额度", "评级", "状态", "备注"),
+                () -> supplierRepository.streamByFactoryId(factoryId),
+                supplier -> Arrays.asList(
+                        supplier.getSupplierCode() != null ? supplier.getSupplierCode() : supplier.getCode(),
+                        supplier.getName(),
+                        supplier.getContactPerson() != null ? supplier.getContactPerson() : supplier.getContactName(),
+                        supplier.getContactPhone() != null ? supplier.getContactPhone() : supplier.getPhone(),
+                        supplier.getContactEmail() != null ? supplier.getContactEmail() : supplier.getEmail(),
+                        supplier.getAddress(),
+                        supplier.getSuppliedMaterials(),
+                        supplier.getPaymentTerms(),
+                        supplier.getDeliveryDays(),
+                        supplier.getCreditLimit(),
+                        supplier.getRating(),
+                        Boolean.TRUE.equals(supplier.getIsActive()) ? "启用" : "停用",
+                        supplier.getNotes()));
     }
     @Override
     @Transactional
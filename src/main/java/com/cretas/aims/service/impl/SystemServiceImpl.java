@@ -1,5 +1,7 @@
 package com.cretas.aims.service.impl;
 
+import com.cretas.aims.config.InProcessRegionFactory;
+import com.cretas.aims.config.TieredCacheManager;
 import com.cretas.aims.dto.common.PageRequest;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.entity.SystemLog;
@@ -8,6 +10,10 @@ import com.cretas.aims.repository.UserRepository;
 import com.cretas.aims.repository.FactoryRepository;
 import com.cretas.aims.repository.ProductionBatchRepository;
 import com.cretas.aims.repository.MaterialBatchRepository;
+import com.cretas.aims.service.AsyncLogSink;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.FactorySettingsSnapshotService;
+import com.cretas.aims.service.ReferenceDataCacheService;
 import com.cretas.aims.service.SystemService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -48,6 +54,12 @@ public class SystemServiceImpl implements SystemService {
     private final ProductionBatchRepository productionBatchRepository;
     private final MaterialBatchRepository materialBatchRepository;
     private final DataSource dataSource;
+    private final AsyncLogSink logSink;
+    private final TieredCacheManager cacheManager;
+    private final DashboardCacheService dashboardCacheService;
+    private final ReferenceDataCacheService referenceDataCacheService;
+    private final FactorySettingsSnapshotService settingsSnapshotService;
+    private final InProcessRegionFactory hibernateRegionFactory;
 
     @Value("${spring.application.name:AIMS Backend System}")
     private String applicationName;
@@ -93,10 +105,10 @@ public class SystemServiceImpl implements SystemService {
     }
 
     @Override
-    @Transactional
     public void createSystemLog(SystemLog log) {
         log.setCreatedAt(LocalDateTime.now());
-        systemLogRepository.save(log);
+        // 异步批量写入，不占用调用方事务
+        logSink.submit(log);
     }
 
     @Override
@@ -130,7 +142,6 @@ public class SystemServiceImpl implements SystemService {
     }
 
     @Override
-    @Transactional
     public void createAuditLog(String factoryId, String module, String action, String message, Integer userId) {
         SystemLog log = new SystemLog();
         log.setFactoryId(factoryId);
@@ -144,7 +155,6 @@ public class SystemServiceImpl implements SystemService {
     }
 
     @Override
-    @Transactional
     public void createErrorLog(String factoryId, String module, String errorMessage, String stackTrace) {
         SystemLog log = new SystemLog();
         log.setFactoryId(factoryId);
@@ -188,6 +198,18 @@ public class SystemServiceImpl implements SystemService {
         performance.put("gcCount", gcCount);
         performance.put("gcTimeMs", gcTime);
 
+        // 异步日志写入
+        performance.put("logSink", logSink.getStats());
+
+        // 两级缓存命中情况（按缓存名）
+        performance.put("caches", cacheManager.getStats());
+        performance.put("dashboardCache", dashboardCacheService.getStats());
+        performance.put("referenceData", referenceDataCacheService.getStats());
+        performance.put("factorySettings", settingsSnapshotService.getStats());
+
+        // Hibernate二级缓存（按区域）
+        performance.put("secondLevelCache", hibernateRegionFactory.getStats());
+
         return performance;
     }
 
@@ -8,7 +8,11 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.TimeClockRecordRepository;
 import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.FactorySettingsSnapshotService;
+import com.cretas.aims.service.StreamingExportService;
 import com.cretas.aims.service.TimeClockService;
+import com.cretas.aims.service.TimeStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -17,9 +21,12 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,10 +46,10 @@ public class TimeClockServiceImpl implements TimeClockService {
     
     private final TimeClockRecordRepository timeClockRecordRepository;
     private final UserRepository userRepository;
-    
-    // 标准上班时间（可以根据工厂设置调整）
-    private static final LocalTime STANDARD_START_TIME = LocalTime.of(9, 0); // 9:00
-    private static final LocalTime STANDARD_END_TIME = LocalTime.of(18, 0); // 18:00
+    private final FactoryDailyRollupService factoryDailyRollupService;
+    private final StreamingExportService streamingExportService;
+    private final TimeStatsService timeStatsService;
+    private final FactorySettingsSnapshotService settingsSnapshotService;
     
     @Override
     @Transactional
@@ -60,6 +67,7 @@ public class TimeClockServiceImpl implements TimeClockService {
         
         LocalDate today = LocalDate.now();
         LocalDateTime now = LocalDateTime.now();
+        LocalTime startTime = workStartTime(factoryId);
         
         // 查找今日是否已有打卡记录
         Optional<TimeClockRecord> existingRecord = timeClockRecordRepository
@@ -81,7 +89,7 @@ public class TimeClockServiceImpl implements TimeClockService {
                 record.setClockDevice(device);
                 record.setStatus("WORKING");
                 // 判断是否迟到
-                if (now.toLocalTime().isAfter(STANDARD_START_TIME)) {
+                if (now.toLocalTime().isAfter(startTime)) {
                     record.setAttendanceStatus("LATE");
                 } else {
                     record.setAttendanceStatus("NORMAL");
@@ -96,7 +104,7 @@ public class TimeClockServiceImpl implements TimeClockService {
                 record.setClockDevice(device);
                 record.setStatus("WORKING");
                 // 判断是否迟到
-                if (now.toLocalTime().isAfter(STANDARD_START_TIME)) {
+                if (now.toLocalTime().isAfter(startTime)) {
                     record.setAttendanceStatus("LATE");
                 } else {
                     record.setAttendanceStatus("NORMAL");
@@ -113,7 +121,7 @@ public class TimeClockServiceImpl implements TimeClockService {
                     .clockLocation(location)
                     .clockDevice(device)
                     .status("WORKING")
-                    .attendanceStatus(now.toLocalTime().isAfter(STANDARD_START_TIME) ? "LATE" : "NORMAL")
+                    .attendanceStatus(now.toLocalTime().isAfter(startTime) ? "LATE" : "NORMAL")
                     .build();
         }
         
@@ -159,7 +167,7 @@ public class TimeClockServiceImpl implements TimeClockService {
         record.setStatus("OFF_WORK");
         
         // 判断是否早退
-        if (now.toLocalTime().isBefore(STANDARD_END_TIME)) {
+        if (now.toLocalTime().isBefore(workEndTime(factoryId))) {
             if ("LATE".equals(record.getAttendanceStatus())) {
                 record.setAttendanceStatus("LATE_AND_EARLY_LEAVE");
             } else {
@@ -173,6 +181,7 @@ public class TimeClockServiceImpl implements TimeClockService {
         record.calculateWorkDuration();
         
         record = timeClockRecordRepository.save(record);
+        factoryDailyRollupService.onClockOut(record);
         log.info("下班打卡成功: recordId={}, clockOutTime={}, workDuration={}分钟", 
                 record.getId(), record.getClockOutTime(), record.getWorkDurationMinutes());
         return record;
@@ -360,7 +369,10 @@ public class TimeClockServiceImpl implements TimeClockService {
         // 重新计算工作时长
         existingRecord.calculateWorkDuration();
         
-        return timeClockRecordRepository.save(existingRecord);
+        TimeClockRecord saved = timeClockRecordRepository.save(existingRecord);
+        // 历史日期的统计结果已缓存，提交后失效
+        timeStatsService.recalculateStats(factoryId, saved.getClockDate());
+        return saved;
     }
 
     @Override
@@ -369,78 +381,55 @@ public class TimeClockServiceImpl implements TimeClockService {
         log.info("获取考勤统计: factoryId={}, userId={}, startDate={}, endDate={}", 
                 factoryId, userId, startDate, endDate);
         
-        List<TimeClockRecord> records = timeClockRecordRepository
-                .findByFactoryIdAndUserIdAndClockDateBetween(factoryId, userId, startDate, endDate);
-        
-        Map<String, Object> statistics = new HashMap<>();
+        // 数据库端聚合，只返回一行计数
+        List<Object[]> rows = timeClockRecordRepository
+                .summarizeAttendance(factoryId, userId, startDate, endDate);
+        Object[] row = rows.isEmpty() ? new Object[6] : rows.get(0);
         
-        int totalDays = 0;
-        int normalDays = 0;
-        int lateDays = 0;
-        int earlyLeaveDays = 0;
-        int absentDays = 0;
-        int totalWorkMinutes = 0;
-        int totalOvertimeMinutes = 0;
-        
-        for (TimeClockRecord record : records) {
-            totalDays++;
-            if ("NORMAL".equals(record.getAttendanceStatus())) {
-                normalDays++;
-            } else if (record.getAttendanceStatus() != null && record.getAttendanceStatus().contains("LATE")) {
-                lateDays++;
-            } else if (record.getAttendanceStatus() != null && record.getAttendanceStatus().contains("EARLY_LEAVE")) {
-                earlyLeaveDays++;
-            }
-            
-            if (record.getWorkDurationMinutes() != null) {
-                totalWorkMinutes += record.getWorkDurationMinutes();
-            }
-            if (record.getOvertimeMinutes() != null) {
-                totalOvertimeMinutes += record.getOvertimeMinutes();
-            }
+        return toAttendanceStatistics(row, 0, countWorkdays(startDate, endDate));
+    }
+
+    @Override
+    public Map<String, Object> getEmployeeAttendanceStatistics(String factoryId, String department,
+                                                                LocalDate startDate, LocalDate endDate) {
+        log.info("获取员工考勤汇总: factoryId={}, department={}, startDate={}, endDate={}",
+                factoryId, department, startDate, endDate);
+        if (startDate.isAfter(endDate)) {
+            throw new BusinessException("开始日期不能晚于结束日期");
         }
         
-        // 计算应出勤天数（工作日）
-        long expectedDays = startDate.datesUntil(endDate.plusDays(1))
-                .filter(date -> {
-                    int dayOfWeek = date.getDayOfWeek().getValue();
-                    return dayOfWeek >= 1 && dayOfWeek <= 5; // 周一到周五
-                })
-                .count();
-        
-        absentDays = (int) expectedDays - totalDays;
-        
-        statistics.put("totalDays", totalDays);
-        statistics.put("expectedDays", expectedDays);
-        statistics.put("normalDays", normalDays);
-        statistics.put("lateDays", lateDays);
-        statistics.put("earlyLeaveDays", earlyLeaveDays);
-        statistics.put("absentDays", absentDays);
-        statistics.put("totalWorkMinutes", totalWorkMinutes);
-        statistics.put("totalWorkHours", totalWorkMinutes / 60.0);
-        statistics.put("totalOvertimeMinutes", totalOvertimeMinutes);
-        statistics.put("totalOvertimeHours", totalOvertimeMinutes / 60.0);
-        statistics.put("attendanceRate", expectedDays > 0 ? (double) totalDays / expectedDays * 100 : 0);
+        long expectedDays = countWorkdays(startDate, endDate);
+        List<Map<String, Object>> employees = new ArrayList<>();
+        for (Object[] row : timeClockRecordRepository
+                .summarizeAttendanceByEmployee(factoryId, department, startDate, endDate)) {
+            Map<String, Object> employee = toAttendanceStatistics(row, 3, expectedDays);
+            employee.put("userId", row[0]);
+            employee.put("fullName", row[1]);
+            employee.put("department", row[2]);
+            employees.add(employee);
+        }
         
-        return statistics;
+        Map<String, Object> result = new HashMap<>();
+        result.put("startDate", startDate.toString());
+        result.put("endDate", endDate.toString());
+        result.put("department", department);
+        result.put("expectedDays", expectedDays);
+        result.put("totalEmployees", employees.size());
+        result.put("employees", employees);
+        return result;
     }
 
     @Override
     public Map<String, Object> getDepartmentAttendance(String factoryId, String department, LocalDate date) {
         log.info("获取部门考勤: factoryId={}, department={}, date={}", factoryId, department, date);
         
+        // 单个部门单日的打卡记录数以部门人数为上限，计数与明细共用这一次查询
         List<TimeClockRecord> records = timeClockRecordRepository
                 .findByFactoryIdAndDepartmentAndClockDate(factoryId, department, date);
         
-        Map<String, Object> attendance = new HashMap<>();
-        attendance.put("date", date.toString());
-        attendance.put("department", department);
-        attendance.put("totalEmployees", records.size());
-        
         int clockedInCount = 0;
         int clockedOutCount = 0;
         int onBreakCount = 0;
-        
         for (TimeClockRecord record : records) {
             if (record.getClockInTime() != null) {
                 clockedInCount++;
@@ -453,6 +442,10 @@ public class TimeClockServiceImpl implements TimeClockService {
             }
         }
         
+        Map<String, Object> attendance = new HashMap<>();
+        attendance.put("date", date.toString());
+        attendance.put("department", department);
+        attendance.put("totalEmployees", records.size());
         attendance.put("clockedInCount", clockedInCount);
         attendance.put("clockedOutCount", clockedOutCount);
         attendance.put("onBreakCount", onBreakCount);
@@ -462,8 +455,84 @@ public class TimeClockServiceImpl implements TimeClockService {
     }
 
     @Override
-    public byte[] exportAttendanceRecords(String factoryId, LocalDate startDate, LocalDate endDate) {
-        // TODO: 实现批量导出考勤记录逻辑（使用Apache POI或EasyExcel）
-        throw new UnsupportedOperationException("exportAttendanceRecords not implemented yet");
+    public void exportAttendanceRecords(String factoryId, LocalDate startDate, LocalDate endDate,
+                                        String format, HttpServletResponse response) {
+        log.info("导出考勤记录: factoryId={}, startDate={}, endDate={}, format={}", factoryId, startDate, endDate, format);
+        streamingExportService.export(response, "attendance_" + startDate + "_" + endDate, format,
+                Arrays.asList("日期", "用户ID", "用户名", "上班打卡", "下班打卡", "工作时长(分钟)", "休息时长(分钟)",
+                        "加班时长(分钟)", "考勤状态", "工种", "打卡地点", "备注"),
+                () -> timeClockRecordRepository.streamByFactoryIdAndClockDateBetween(factoryId, startDate, endDate),
+                record -> Arrays.asList(
+                        record.getClockDate(),
+                        record.getUserId(),
+                        record.getUsername(),
+                        record.getClockInTime(),
+                        record.getClockOutTime(),
+                        record.getWorkDurationMinutes(),
+                        record.getBreakDurationMinutes(),
+                        record.getOvertimeMinutes(),
+                        record.getAttendanceStatus(),
+                        record.getWorkTypeName(),
+                        record.getClockLocation(),
+                        record.getNotes()));
+    }
+
+    /**
+     * 聚合行转换为考勤统计（从 offset 列开始依次为：打卡天数、正常、迟到、早退、工作分钟、加班分钟）
+     */
+    private Map<String, Object> toAttendanceStatistics(Object[] row, int offset, long expectedDays) {
+        int totalDays = toInt(row[offset]);
+        int totalWorkMinutes = toInt(row[offset + 4]);
+        int totalOvertimeMinutes = toInt(row[offset + 5]);
+        
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalDays", totalDays);
+        statistics.put("expectedDays", expectedDays);
+        statistics.put("normalDays", toInt(row[offset + 1]));
+        statistics.put("lateDays", toInt(row[offset + 2]));
+        statistics.put("earlyLeaveDays", toInt(row[offset + 3]));
+        statistics.put("absentDays", (int) Math.max(0, expectedDays - totalDays));
+        statistics.put("totalWorkMinutes", totalWorkMinutes);
+        statistics.put("totalWorkHours", totalWorkMinutes / 60.0);
+        statistics.put("totalOvertimeMinutes", totalOvertimeMinutes);
+        statistics.put("totalOvertimeHours", totalOvertimeMinutes / 60.0);
+        statistics.put("attendanceRate", expectedDays > 0 ? (double) totalDays / expectedDays * 100 : 0);
+        return statistics;
+    }
+
+    /**
+     * 上班时间（迟到判定），取自内存中的工厂设置快照，未配置时与设置默认值一致
+     */
+    private LocalTime workStartTime(String factoryId) {
+        return settingsSnapshotService.snapshot(factoryId).getWorkStartTime();
+    }
+
+    /**
+     * 下班时间（早退判定），取自内存中的工厂设置快照，未配置时与设置默认值一致
+     */
+    private LocalTime workEndTime(String factoryId) {
+        return settingsSnapshotService.snapshot(factoryId).getWorkEndTime();
+    }
+
+    /**
+     * 应出勤天数（周一到周五），按整周计算，不逐日遍历
+     */
+    private static long countWorkdays(LocalDate startDate, LocalDate endDate) {
+        long days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+        if (days <= 0) {
+            return 0;
+        }
+        long workdays = days / 7 * 5;
+        int dayOfWeek = startDate.getDayOfWeek().getValue();
+        for (long i = 0; i < days % 7; i++) {
+            if ((dayOfWeek + i - 1) % 7 < 5) {
+                workdays++;
+            }
+        }
+        return workdays;
+    }
+
+    private static int toInt(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
     }
 }
@@ -1,24 +1,44 @@
 package com.cretas.aims.service.impl;
 
 import com.cretas.aims.dto.TimeStatsDTO;
+import com.cretas.aims.entity.User;
+import com.cretas.aims.entity.WorkType;
 import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.repository.BatchWorkSessionRepository;
+import com.cretas.aims.repository.EmployeeWorkSessionRepository;
+import com.cretas.aims.repository.TimeClockRecordRepository;
+import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.ReferenceDataCacheService;
+import com.cretas.aims.service.ReferenceDataCacheService.ReferenceSnapshot;
 import com.cretas.aims.service.TimeStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-// import java.time.format.DateTimeFormatter;
-// import java.time.temporal.ChronoUnit;
+import java.time.LocalDateTime;
 import java.time.temporal.WeekFields;
 import java.util.*;
-// import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * 时间统计服务实现
  *
+ * 1. 所有统计由 GROUP BY 聚合查询得到（考勤按日期/员工/部门，工作会话按工种），不把明细记录加载到内存
+ * 2. 已结束日期（今天之前）的日聚合结果是不可变对象，按 工厂+日期 缓存；区间统计用一次 GROUP BY 查询从最早到最晚缺失日期的整段区间
+ *    （中间已缓存的日期也会被查出，但不覆盖缓存），全部命中时不查询，今天始终实时查询
+ * 3. 员工排名先按员工聚合，再用大小为 N 的最小堆选出工时前 N 名，只为这 N 名员工查询姓名和部门
+ * 4. 手工修改历史打卡后调用 recalculateStats 使当天缓存失效；多节点部署时其他节点的缓存最多保留 closed-day-ttl 毫秒
+ *
  * @author Cretas Team
  * @version 1.0.0
  * @since 2025-01-09
@@ -27,58 +47,58 @@ import java.util.*;
 @Service
 @RequiredArgsConstructor
 public class TimeStatsServiceImpl implements TimeStatsService {
-    // TODO: 注入需要的Repository
-    // private final TimeClockRepository timeClockRepository;
-    // private final WorkSessionRepository workSessionRepository;
-    // private final UserRepository userRepository;
+
+    private static final BigDecimal MINUTES_PER_HOUR = new BigDecimal("60");
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+    private static final int DEFAULT_TOP_N = 10;
+    private static final String UNASSIGNED = "未分配";
+
+    private final TimeClockRecordRepository timeClockRecordRepository;
+    private final EmployeeWorkSessionRepository workSessionRepository;
+    private final BatchWorkSessionRepository batchWorkSessionRepository;
+    private final UserRepository userRepository;
+    private final ReferenceDataCacheService referenceDataCacheService;
+
+    /**
+     * 已结束日期聚合结果的最大缓存条数（工厂数 × 天数）
+     */
+    @Value("${cretas.time-stats.cache-size:20000}")
+    private int cacheSize;
+
+    /**
+     * 已结束日期聚合结果的缓存时间（毫秒）
+     */
+    @Value("${cretas.time-stats.closed-day-ttl:21600000}")
+    private long closedDayTtlMs;
+
+    private Map<String, DayAggregate> closedDays;
+
+    @PostConstruct
+    public void init() {
+        final int maxSize = cacheSize;
+        closedDays = Collections.synchronizedMap(new LinkedHashMap<String, DayAggregate>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DayAggregate> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getDailyStats(String factoryId, LocalDate date) {
         log.info("获取日统计: factoryId={}, date={}", factoryId, date);
-        TimeStatsDTO stats = new TimeStatsDTO();
-        stats.setPeriod("daily");
-        stats.setStartDate(date);
-        stats.setEndDate(date);
-        // TODO: 实现实际的统计逻辑，从数据库查询数据
-        // 这里提供模拟数据
-        stats.setTotalHours(new BigDecimal("240.5"));
-        stats.setRegularHours(new BigDecimal("200"));
-        stats.setOvertimeHours(new BigDecimal("40.5"));
-        stats.setActiveWorkers(25);
-        stats.setTotalClockIns(100L);
-        stats.setLateCount(5L);
-        stats.setEarlyLeaveCount(3L);
-        stats.setAbsentCount(2L);
-        stats.setAverageHours(new BigDecimal("9.6"));
-        stats.setAttendanceRate(new BigDecimal("92.0"));
-        stats.setProductivity(new BigDecimal("85.5"));
-        return stats;
+        return buildRangeStats(factoryId, date, date, "daily");
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getDailyStatsRange(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("获取日期范围统计: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
-        if (startDate.isAfter(endDate)) {
-            throw new BusinessException("开始日期不能晚于结束日期");
-        }
-        TimeStatsDTO stats = new TimeStatsDTO();
-        stats.setPeriod("range");
-        stats.setStartDate(startDate);
-        stats.setEndDate(endDate);
-        // 生成每日统计列表
-        List<TimeStatsDTO.DailyStats> dailyStatsList = new ArrayList<>();
-        LocalDate currentDate = startDate;
-        while (!currentDate.isAfter(endDate)) {
-            TimeStatsDTO.DailyStats dailyStats = createDailyStats(currentDate);
-            dailyStatsList.add(dailyStats);
-            currentDate = currentDate.plusDays(1);
-        }
-        stats.setDailyStatsList(dailyStatsList);
-        // 汇总统计
-        calculateAggregateStats(stats, dailyStatsList);
-        return stats;
+        return buildRangeStats(factoryId, startDate, endDate, "range");
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getWeeklyStats(String factoryId, Integer year, Integer week) {
@@ -88,59 +108,75 @@ public class TimeStatsServiceImpl implements TimeStatsService {
                 .with(weekFields.weekOfYear(), week)
                 .with(DayOfWeek.MONDAY);
         LocalDate endOfWeek = startOfWeek.plusDays(6);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startOfWeek, endOfWeek);
-        stats.setPeriod("weekly");
-        return stats;
+        return buildRangeStats(factoryId, startOfWeek, endOfWeek, "weekly");
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getMonthlyStats(String factoryId, Integer year, Integer month) {
         log.info("获取月统计: factoryId={}, year={}, month={}", factoryId, year, month);
         LocalDate startOfMonth = LocalDate.of(year, month, 1);
         LocalDate endOfMonth = startOfMonth.withDayOfMonth(startOfMonth.lengthOfMonth());
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startOfMonth, endOfMonth);
-        stats.setPeriod("monthly");
-        return stats;
+        return buildRangeStats(factoryId, startOfMonth, endOfMonth, "monthly");
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getYearlyStats(String factoryId, Integer year) {
         log.info("获取年统计: factoryId={}, year={}", factoryId, year);
         LocalDate startOfYear = LocalDate.of(year, 1, 1);
         LocalDate endOfYear = LocalDate.of(year, 12, 31);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startOfYear, endOfYear);
-        stats.setPeriod("yearly");
-        return stats;
+        return buildRangeStats(factoryId, startOfYear, endOfYear, "yearly");
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getStatsByWorkType(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("按工作类型统计: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startDate, endDate);
-        // TODO: 实际实现需要从数据库查询
-        Map<String, TimeStatsDTO.WorkTypeStats> workTypeStatsMap = new HashMap<>();
-        // 模拟数据
-        workTypeStatsMap.put("播种", createMockWorkTypeStats("播种", 1));
-        workTypeStatsMap.put("收割", createMockWorkTypeStats("收割", 2));
-        workTypeStatsMap.put("包装", createMockWorkTypeStats("包装", 3));
+        TimeStatsDTO stats = buildRangeStats(factoryId, startDate, endDate, "range");
+        Map<String, TimeStatsDTO.WorkTypeStats> workTypeStatsMap = new LinkedHashMap<>();
+        for (TimeStatsDTO.WorkTypeStats workTypeStats : loadWorkTypeStats(factoryId, startDate, endDate).values()) {
+            workTypeStatsMap.put(workTypeStats.getWorkTypeName(), workTypeStats);
+        }
         stats.setWorkTypeStats(workTypeStatsMap);
         return stats;
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getStatsByDepartment(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("按部门统计: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startDate, endDate);
-        // TODO: 实际实现需要从数据库查询
-        Map<String, TimeStatsDTO.DepartmentStats> departmentStatsMap = new HashMap<>();
-        departmentStatsMap.put("farming", createMockDepartmentStats("农业部"));
-        departmentStatsMap.put("processing", createMockDepartmentStats("加工部"));
-        departmentStatsMap.put("logistics", createMockDepartmentStats("物流部"));
+        TimeStatsDTO stats = buildRangeStats(factoryId, startDate, endDate, "range");
+
+        Map<String, Long> headcounts = new HashMap<>();
+        for (Object[] row : userRepository.countByDepartment(factoryId)) {
+            headcounts.put(departmentName((String) row[0]), toLong(row[1]));
+        }
+        int workdays = countElapsedWorkdays(startDate, endDate);
+
+        Map<String, TimeStatsDTO.DepartmentStats> departmentStatsMap = new LinkedHashMap<>();
+        for (Object[] row : timeClockRecordRepository.aggregateByDepartment(factoryId, startDate, endDate)) {
+            String department = departmentName((String) row[0]);
+            int workers = (int) toLong(row[1]);
+            long personDays = toLong(row[2]);
+            long workMinutes = toLong(row[3]);
+
+            TimeStatsDTO.DepartmentStats departmentStats = new TimeStatsDTO.DepartmentStats();
+            departmentStats.setDepartmentName(department);
+            departmentStats.setTotalHours(toHours(workMinutes));
+            departmentStats.setWorkerCount(workers);
+            departmentStats.setAverageHours(workers > 0 ? toHours(workMinutes / workers) : BigDecimal.ZERO);
+            departmentStats.setOvertimeHours(toHours(toLong(row[4])));
+            departmentStats.setAttendanceRate(percent(personDays,
+                    headcounts.getOrDefault(department, (long) workers) * workdays));
+            departmentStatsMap.put(department, departmentStats);
+        }
         stats.setDepartmentStats(departmentStatsMap);
         return stats;
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO.ProductivityAnalysis getProductivityAnalysis(String factoryId,
@@ -148,26 +184,51 @@ public class TimeStatsServiceImpl implements TimeStatsService {
                                                                     LocalDate endDate) {
         log.info("获取生产力分析: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
+        validateRange(startDate, endDate);
+
+        Map<Integer, TimeStatsDTO.WorkTypeStats> workTypeStats = loadWorkTypeStats(factoryId, startDate, endDate);
+        BigDecimal totalOutput = BigDecimal.ZERO;
+        BigDecimal totalInputHours = BigDecimal.ZERO;
+        for (TimeStatsDTO.WorkTypeStats stats : workTypeStats.values()) {
+            totalOutput = totalOutput.add(stats.getOutput());
+            totalInputHours = totalInputHours.add(stats.getTotalHours());
+        }
+        long workers = workSessionRepository.countDistinctWorkers(factoryId,
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay());
+        BigDecimal outputPerHour = divide(totalOutput, totalInputHours);
+
+        // 与紧邻的上一个等长周期对比
+        long days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+        BigDecimal previousOutputPerHour = loadOutputPerHour(factoryId,
+                startDate.minusDays(days), startDate.minusDays(1));
+        BigDecimal efficiencyIndex = previousOutputPerHour.signum() > 0
+                ? outputPerHour.divide(previousOutputPerHour, 2, RoundingMode.HALF_UP)
+                : BigDecimal.ONE.setScale(2);
+        BigDecimal growthRate = efficiencyIndex.subtract(BigDecimal.ONE).multiply(HUNDRED)
+                .setScale(2, RoundingMode.HALF_UP);
+
         TimeStatsDTO.ProductivityAnalysis analysis = new TimeStatsDTO.ProductivityAnalysis();
         analysis.setPeriod(String.format("%s to %s", startDate, endDate));
-        analysis.setTotalOutput(new BigDecimal("10000"));
-        analysis.setTotalInputHours(new BigDecimal("500"));
-        analysis.setOutputPerWorker(new BigDecimal("400"));
-        analysis.setOutputPerHour(new BigDecimal("20"));
-        analysis.setEfficiencyIndex(new BigDecimal("1.05"));
-        analysis.setTrend("上升");
-        analysis.setGrowthRate(new BigDecimal("5.5"));
-        analysis.setMostEfficientDepartment("加工部");
-        analysis.setMostEfficientWorkType("包装");
-        // 改进建议
-        List<String> improvements = Arrays.asList(
-            "优化早班工作安排，减少等待时间",
-            "提高包装线的自动化程度",
-            "加强新员工培训，提升工作效率"
-        );
-        analysis.setImprovements(improvements);
+        analysis.setTotalOutput(totalOutput);
+        analysis.setTotalInputHours(totalInputHours);
+        analysis.setOutputPerWorker(workers > 0
+                ? totalOutput.divide(BigDecimal.valueOf(workers), 2, RoundingMode.HALF_UP) : BigDecimal.ZERO);
+        analysis.setOutputPerHour(outputPerHour);
+        analysis.setEfficiencyIndex(efficiencyIndex);
+        analysis.setGrowthRate(growthRate);
+        analysis.setTrend(growthRate.compareTo(new BigDecimal("5")) > 0 ? "上升"
+                : growthRate.compareTo(new BigDecimal("-5")) < 0 ? "下降" : "平稳");
+        analysis.setMostEfficientWorkType(workTypeStats.values().stream()
+                .filter(stats -> stats.getTotalHours().signum() > 0)
+                .max(Comparator.comparing(TimeStatsDTO.WorkTypeStats::getEfficiency))
+                .map(TimeStatsDTO.WorkTypeStats::getWorkTypeName)
+                .orElse(null));
+        analysis.setMostEfficientDepartment(findMostEfficientDepartment(factoryId, workTypeStats));
+        analysis.setImprovements(buildImprovements(buildRangeStats(factoryId, startDate, endDate, "range"),
+                workTypeStats, growthRate));
         return analysis;
     }
+
     @Override
     @Transactional(readOnly = true)
     public List<TimeStatsDTO.WorkerTimeStats> getWorkerTimeStats(String factoryId,
@@ -176,18 +237,38 @@ public class TimeStatsServiceImpl implements TimeStatsService {
                                                                  Integer topN) {
         log.info("获取员工时间统计: factoryId={}, startDate={}, endDate={}, topN={}",
                 factoryId, startDate, endDate, topN);
-        List<TimeStatsDTO.WorkerTimeStats> workerStatsList = new ArrayList<>();
-        for (int i = 1; i <= (topN != null ? topN : 10); i++) {
-            workerStatsList.add(createMockWorkerStats(i));
+        validateRange(startDate, endDate);
+        int limit = topN != null && topN > 0 ? topN : DEFAULT_TOP_N;
+
+        // 最小堆只保留工时最多的 limit 名员工（工时相同时员工ID小的优先）
+        Comparator<Object[]> byHours = Comparator.<Object[]>comparingLong(row -> toLong(row[2]))
+                .thenComparing(row -> (Integer) row[0], Comparator.reverseOrder());
+        PriorityQueue<Object[]> heap = new PriorityQueue<>(limit + 1, byHours);
+        for (Object[] row : timeClockRecordRepository.aggregateByUser(factoryId, startDate, endDate)) {
+            heap.offer(row);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
         }
-        // 按总工时降序排序
-        workerStatsList.sort((a, b) -> b.getTotalHours().compareTo(a.getTotalHours()));
-        // 设置排名
-        for (int i = 0; i < workerStatsList.size(); i++) {
-            workerStatsList.get(i).setRanking(i + 1);
+        List<Object[]> topRows = new ArrayList<>(heap);
+        topRows.sort(byHours.reversed());
+
+        Map<Integer, User> users = userRepository.findAllById(topRows.stream()
+                        .map(row -> (Integer) row[0])
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        int workdays = countElapsedWorkdays(startDate, endDate);
+
+        List<TimeStatsDTO.WorkerTimeStats> workerStatsList = new ArrayList<>(topRows.size());
+        for (Object[] row : topRows) {
+            TimeStatsDTO.WorkerTimeStats workerStats = toWorkerStats(row, users.get((Integer) row[0]), workdays);
+            workerStats.setRanking(workerStatsList.size() + 1);
+            workerStatsList.add(workerStats);
         }
         return workerStatsList;
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO.WorkerTimeStats getWorkerTimeStatsById(String factoryId,
@@ -196,8 +277,15 @@ public class TimeStatsServiceImpl implements TimeStatsService {
                                                               LocalDate endDate) {
         log.info("获取员工个人时间统计: factoryId={}, workerId={}, startDate={}, endDate={}",
                 factoryId, workerId, startDate, endDate);
-        return createMockWorkerStats(workerId);
+        validateRange(startDate, endDate);
+        User user = userRepository.findById(workerId)
+                .filter(u -> factoryId.equals(u.getFactoryId()))
+                .orElseThrow(() -> new BusinessException("员工不存在"));
+        List<Object[]> rows = timeClockRecordRepository.aggregateForUser(factoryId, workerId, startDate, endDate);
+        Object[] row = rows.isEmpty() ? new Object[]{workerId, 0L, 0L, 0L, 0L, 0L} : rows.get(0);
+        return toWorkerStats(row, user, countElapsedWorkdays(startDate, endDate));
     }
+
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getRealtimeStats(String factoryId) {
@@ -205,6 +293,10 @@ public class TimeStatsServiceImpl implements TimeStatsService {
         LocalDate today = LocalDate.now();
         return getDailyStats(factoryId, today);
     }
+
+    /**
+     * 对比分析：数值字段为第二时段减第一时段的差值，每日明细为第二时段的数据
+     */
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getComparativeStats(String factoryId,
@@ -214,130 +306,493 @@ public class TimeStatsServiceImpl implements TimeStatsService {
                                            LocalDate period2End) {
         log.info("获取对比分析: factoryId={}, period1={} to {}, period2={} to {}",
                 factoryId, period1Start, period1End, period2Start, period2End);
-        TimeStatsDTO stats1 = getDailyStatsRange(factoryId, period1Start, period1End);
-        TimeStatsDTO stats2 = getDailyStatsRange(factoryId, period2Start, period2End);
-        // TODO: 实现对比逻辑
+        TimeStatsDTO stats1 = buildRangeStats(factoryId, period1Start, period1End, "range");
+        TimeStatsDTO stats2 = buildRangeStats(factoryId, period2Start, period2End, "range");
+
         TimeStatsDTO comparativeStats = new TimeStatsDTO();
         comparativeStats.setPeriod("comparative");
+        comparativeStats.setStartDate(period2Start);
+        comparativeStats.setEndDate(period2End);
+        comparativeStats.setTotalHours(stats2.getTotalHours().subtract(stats1.getTotalHours()));
+        comparativeStats.setRegularHours(stats2.getRegularHours().subtract(stats1.getRegularHours()));
+        comparativeStats.setOvertimeHours(stats2.getOvertimeHours().subtract(stats1.getOvertimeHours()));
+        comparativeStats.setActiveWorkers(stats2.getActiveWorkers() - stats1.getActiveWorkers());
+        comparativeStats.setTotalClockIns(stats2.getTotalClockIns() - stats1.getTotalClockIns());
+        comparativeStats.setLateCount(stats2.getLateCount() - stats1.getLateCount());
+        comparativeStats.setEarlyLeaveCount(stats2.getEarlyLeaveCount() - stats1.getEarlyLeaveCount());
+        comparativeStats.setAbsentCount(stats2.getAbsentCount() - stats1.getAbsentCount());
+        comparativeStats.setAverageHours(stats2.getAverageHours().subtract(stats1.getAverageHours()));
+        comparativeStats.setAttendanceRate(stats2.getAttendanceRate().subtract(stats1.getAttendanceRate()));
+        comparativeStats.setDailyStatsList(stats2.getDailyStatsList());
         return comparativeStats;
     }
+
+    /**
+     * 异常统计：每日明细只保留出勤率比区间平均低 10 个百分点以上、或总工时偏离均值超过 2 倍标准差的工作日
+     */
     @Override
     @Transactional(readOnly = true)
     public TimeStatsDTO getAnomalyStats(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("获取异常统计: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startDate, endDate);
-        // TODO: 实现异常检测逻辑
-        // 例如：识别异常高的加班时间、异常低的出勤率等
+        TimeStatsDTO stats = buildRangeStats(factoryId, startDate, endDate, "range");
+        LocalDate today = LocalDate.now();
+        List<TimeStatsDTO.DailyStats> workdays = stats.getDailyStatsList().stream()
+                .filter(daily -> daily.getIsWorkday() && !daily.getDate().isAfter(today))
+                .collect(Collectors.toList());
+        if (workdays.isEmpty()) {
+            stats.setDailyStatsList(Collections.emptyList());
+            return stats;
+        }
+
+        double meanHours = workdays.stream().mapToDouble(daily -> daily.getTotalHours().doubleValue())
+                .average().orElse(0);
+        double stdHours = Math.sqrt(workdays.stream()
+                .mapToDouble(daily -> Math.pow(daily.getTotalHours().doubleValue() - meanHours, 2))
+                .average().orElse(0));
+        double meanRate = workdays.stream().mapToDouble(daily -> daily.getAttendanceRate().doubleValue())
+                .average().orElse(0);
+
+        stats.setDailyStatsList(workdays.stream()
+                .filter(daily -> daily.getAttendanceRate().doubleValue() < meanRate - 10
+                        || (stdHours > 0 && Math.abs(daily.getTotalHours().doubleValue() - meanHours) > 2 * stdHours))
+                .collect(Collectors.toList()));
         return stats;
     }
+
+    /**
+     * 导出每日统计（目前各格式均生成CSV文本）
+     */
     @Override
+    @Transactional(readOnly = true)
     public String exportStatsReport(String factoryId, LocalDate startDate, LocalDate endDate, String format) {
         log.info("导出统计报告: factoryId={}, startDate={}, endDate={}, format={}",
                 factoryId, startDate, endDate, format);
-        // TODO: 实现导出逻辑，支持CSV、Excel、PDF等格式
-        String reportContent = "统计报告内容";
-        return reportContent;
+        TimeStatsDTO stats = buildRangeStats(factoryId, startDate, endDate, "range");
+        StringBuilder report = new StringBuilder("日期,星期,是否工作日,总工时,出勤人数,打卡次数,出勤率\n");
+        for (TimeStatsDTO.DailyStats daily : stats.getDailyStatsList()) {
+            report.append(daily.getDate()).append(',')
+                    .append(daily.getDayOfWeek()).append(',')
+                    .append(daily.getIsWorkday() ? "是" : "否").append(',')
+                    .append(daily.getTotalHours()).append(',')
+                    .append(daily.getActiveWorkers()).append(',')
+                    .append(daily.getClockIns()).append(',')
+                    .append(daily.getAttendanceRate()).append('\n');
+        }
+        report.append("合计,,,").append(stats.getTotalHours()).append(',')
+                .append(stats.getActiveWorkers()).append(',')
+                .append(stats.getTotalClockIns()).append(',')
+                .append(stats.getAttendanceRate()).append('\n');
+        return report.toString();
     }
+
     @Override
     @Transactional(readOnly = true)
     public List<TimeStatsDTO.DailyStats> getStatsTrend(String factoryId, LocalDate startDate, LocalDate endDate) {
         log.info("获取统计趋势: factoryId={}, startDate={}, endDate={}",
                 factoryId, startDate, endDate);
-        TimeStatsDTO stats = getDailyStatsRange(factoryId, startDate, endDate);
+        TimeStatsDTO stats = buildRangeStats(factoryId, startDate, endDate, "range");
         return stats.getDailyStatsList();
     }
+
+    /**
+     * 统计结果不落库，只清理该工厂早于保留期的日聚合缓存
+     */
     @Override
-    @Transactional
     public void cleanupOldStats(String factoryId, Integer retentionDays) {
         log.info("清理过期统计数据: factoryId={}, retentionDays={}", factoryId, retentionDays);
         LocalDate cutoffDate = LocalDate.now().minusDays(retentionDays);
-        // TODO: 实现清理逻辑
+        synchronized (closedDays) {
+            closedDays.values().removeIf(day -> day.factoryId.equals(factoryId) && day.date.isBefore(cutoffDate));
+        }
         log.info("已清理{}之前的统计数据", cutoffDate);
     }
+
+    /**
+     * 使指定日期的聚合缓存失效，下次查询时重新聚合；处于事务中时在提交后失效，避免并发查询把旧数据重新放入缓存
+     */
     @Override
-    @Transactional
     public void recalculateStats(String factoryId, LocalDate date) {
         log.info("重新计算统计: factoryId={}, date={}", factoryId, date);
-        // TODO: 实现重新计算逻辑
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    closedDays.remove(cacheKey(factoryId, date));
+                }
+            });
+        } else {
+            closedDays.remove(cacheKey(factoryId, date));
+        }
         log.info("已重新计算{}的统计数据", date);
     }
+
     // ========== 私有辅助方法 ==========
-    private TimeStatsDTO.DailyStats createDailyStats(LocalDate date) {
-        TimeStatsDTO.DailyStats stats = new TimeStatsDTO.DailyStats();
-        stats.setDate(date);
-        stats.setDayOfWeek(date.getDayOfWeek().toString());
-        stats.setIsWorkday(!isWeekend(date));
-        Random random = new Random(date.toEpochDay());
-        stats.setTotalHours(new BigDecimal(200 + random.nextInt(100)));
-        stats.setActiveWorkers(20 + random.nextInt(10));
-        stats.setClockIns((long)(40 + random.nextInt(20)));
-        stats.setAttendanceRate(new BigDecimal(85 + random.nextInt(15)));
+
+    /**
+     * 由每日聚合结果计算区间汇总
+     */
+    private TimeStatsDTO buildRangeStats(String factoryId, LocalDate startDate, LocalDate endDate, String period) {
+        validateRange(startDate, endDate);
+        List<DayAggregate> days = loadDays(factoryId, startDate, endDate);
+        long headcount = userRepository.countActiveUsers(factoryId);
+        LocalDate today = LocalDate.now();
+
+        List<TimeStatsDTO.DailyStats> dailyStatsList = new ArrayList<>(days.size());
+        long workMinutes = 0;
+        long overtimeMinutes = 0;
+        long clockIns = 0;
+        long lateCount = 0;
+        long earlyLeaveCount = 0;
+        long absentCount = 0;
+        long personDays = 0;
+        int elapsedDays = 0;
+        long workdayAttendance = 0;
+        int elapsedWorkdays = 0;
+        for (DayAggregate day : days) {
+            dailyStatsList.add(toDailyStats(day, headcount));
+            workMinutes += day.workMinutes;
+            overtimeMinutes += day.overtimeMinutes;
+            clockIns += day.clockIns;
+            lateCount += day.lateCount;
+            earlyLeaveCount += day.earlyLeaveCount;
+            personDays += day.activeWorkers;
+            if (day.date.isAfter(today)) {
+                continue;
+            }
+            elapsedDays++;
+            if (!isWeekend(day.date)) {
+                elapsedWorkdays++;
+                workdayAttendance += day.activeWorkers;
+                absentCount += Math.max(0, headcount - day.activeWorkers);
+            }
+        }
+
+        TimeStatsDTO stats = new TimeStatsDTO();
+        stats.setPeriod(period);
+        stats.setStartDate(startDate);
+        stats.setEndDate(endDate);
+        stats.setTotalHours(toHours(workMinutes));
+        stats.setOvertimeHours(toHours(overtimeMinutes));
+        stats.setRegularHours(toHours(workMinutes - overtimeMinutes));
+        stats.setActiveWorkers(elapsedDays > 0 ? (int) (personDays / elapsedDays) : 0);
+        stats.setTotalClockIns(clockIns);
+        stats.setLateCount(lateCount);
+        stats.setEarlyLeaveCount(earlyLeaveCount);
+        stats.setAbsentCount(absentCount);
+        stats.setAverageHours(personDays > 0 ? toHours(workMinutes / personDays) : BigDecimal.ZERO);
+        stats.setAttendanceRate(percent(workdayAttendance, headcount * elapsedWorkdays));
+        stats.setDailyStatsList(dailyStatsList);
         return stats;
     }
-    private boolean isWeekend(LocalDate date) {
-        DayOfWeek day = date.getDayOfWeek();
-        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+
+    /**
+     * 按日期顺序返回区间内每一天的聚合结果：已结束日期优先取缓存，缺失的日期用一次 GROUP BY 查询补齐，未来日期为空
+     */
+    private List<DayAggregate> loadDays(String factoryId, LocalDate startDate, LocalDate endDate) {
+        LocalDate today = LocalDate.now();
+        long now = System.currentTimeMillis();
+        Map<LocalDate, DayAggregate> days = new HashMap<>();
+        LocalDate missingFrom = null;
+        LocalDate missingTo = null;
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            if (date.isAfter(today)) {
+                days.put(date, DayAggregate.empty(factoryId, date, now));
+                continue;
+            }
+            if (date.isBefore(today)) {
+                DayAggregate cached = closedDays.get(cacheKey(factoryId, date));
+                if (cached != null && now - cached.loadedAt <= closedDayTtlMs) {
+                    days.put(date, cached);
+                    continue;
+                }
+            }
+            if (missingFrom == null) {
+                missingFrom = date;
+            }
+            missingTo = date;
+        }
+
+        // 缺失日期不连续时也只查一次，区间覆盖最早到最晚的缺失日期，已缓存的日期保留缓存值
+        if (missingFrom != null) {
+            Map<LocalDate, DayAggregate> loaded = new HashMap<>();
+            for (Object[] row : timeClockRecordRepository.aggregateByClockDate(factoryId, missingFrom, missingTo)) {
+                DayAggregate day = DayAggregate.of(factoryId, row, now);
+                loaded.put(day.date, day);
+            }
+            for (LocalDate date = missingFrom; !date.isAfter(missingTo); date = date.plusDays(1)) {
+                if (days.containsKey(date)) {
+                    continue;
+                }
+                DayAggregate day = loaded.getOrDefault(date, DayAggregate.empty(factoryId, date, now));
+                days.put(date, day);
+                if (date.isBefore(today)) {
+                    closedDays.put(cacheKey(factoryId, date), day);
+                }
+            }
+            log.debug("时间统计聚合查询: factoryId={}, {} 至 {}, 命中 {} 天", factoryId, missingFrom, missingTo,
+                    loaded.size());
+        }
+
+        List<DayAggregate> result = new ArrayList<>(days.size());
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            result.add(days.get(date));
+        }
+        return result;
     }
-    private void calculateAggregateStats(TimeStatsDTO stats, List<TimeStatsDTO.DailyStats> dailyStatsList) {
-        if (dailyStatsList.isEmpty()) {
-            return;
+
+    /**
+     * 按工种汇总工时与产量；批次产量按各工种在区间内投入该批次的工时比例分摊
+     */
+    private Map<Integer, TimeStatsDTO.WorkTypeStats> loadWorkTypeStats(String factoryId,
+                                                                      LocalDate startDate, LocalDate endDate) {
+        validateRange(startDate, endDate);
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+
+        List<Object[]> sessionRows = workSessionRepository.aggregateByWorkType(factoryId, start, end);
+        Map<Integer, BigDecimal> outputs = allocateOutputByWorkType(
+                batchWorkSessionRepository.aggregateByWorkTypeAndBatch(factoryId, start, end));
+        ReferenceSnapshot referenceData = referenceDataCacheService.snapshot(factoryId);
+
+        Map<Integer, TimeStatsDTO.WorkTypeStats> result = new LinkedHashMap<>();
+        for (Object[] row : sessionRows) {
+            Integer workTypeId = (Integer) row[0];
+            WorkType workType = workTypeId != null ? referenceData.getWorkType(workTypeId) : null;
+            int workers = (int) toLong(row[1]);
+            BigDecimal hours = toHours(toLong(row[2]));
+            BigDecimal output = outputs.getOrDefault(workTypeId, BigDecimal.ZERO).setScale(2, RoundingMode.HALF_UP);
+
+            TimeStatsDTO.WorkTypeStats stats = new TimeStatsDTO.WorkTypeStats();
+            stats.setWorkTypeId(workTypeId);
+            stats.setWorkTypeName(workType != null ? workType.getName()
+                    : workTypeId != null ? "工种#" + workTypeId : UNASSIGNED);
+            stats.setTotalHours(hours);
+            stats.setWorkerCount(workers);
+            stats.setAverageHours(workers > 0
+                    ? hours.divide(BigDecimal.valueOf(workers), 2, RoundingMode.HALF_UP) : BigDecimal.ZERO);
+            stats.setOutput(output);
+            stats.setEfficiency(divide(output, hours));
+            result.put(workTypeId, stats);
         }
-        BigDecimal totalHours = BigDecimal.ZERO;
-        int totalActiveWorkers = 0;
-        long totalClockIns = 0;
-        BigDecimal totalAttendanceRate = BigDecimal.ZERO;
-        for (TimeStatsDTO.DailyStats daily : dailyStatsList) {
-            totalHours = totalHours.add(daily.getTotalHours());
-            totalActiveWorkers += daily.getActiveWorkers();
-            totalClockIns += daily.getClockIns();
-            totalAttendanceRate = totalAttendanceRate.add(daily.getAttendanceRate());
+        return result;
+    }
+
+    /**
+     * 行：工种ID、批次ID、批次数量、工作分钟
+     */
+    private Map<Integer, BigDecimal> allocateOutputByWorkType(List<Object[]> rows) {
+        Map<Long, Long> batchMinutes = new HashMap<>();
+        for (Object[] row : rows) {
+            batchMinutes.merge((Long) row[1], toLong(row[3]), Long::sum);
         }
-        stats.setTotalHours(totalHours);
-        stats.setActiveWorkers(totalActiveWorkers / dailyStatsList.size());
-        stats.setTotalClockIns(totalClockIns);
-        BigDecimal avgAttendanceRate = totalAttendanceRate.divide(
-                new BigDecimal(dailyStatsList.size()), 2, RoundingMode.HALF_UP);
-        stats.setAttendanceRate(avgAttendanceRate);
-        // 模拟其他统计数据
-        stats.setRegularHours(totalHours.multiply(new BigDecimal("0.85")));
-        stats.setOvertimeHours(totalHours.multiply(new BigDecimal("0.15")));
-        stats.setAverageHours(totalHours.divide(new BigDecimal(totalActiveWorkers), 2, RoundingMode.HALF_UP));
-        stats.setProductivity(new BigDecimal("88.5"));
-    }
-    private TimeStatsDTO.WorkTypeStats createMockWorkTypeStats(String typeName, Integer typeId) {
-        TimeStatsDTO.WorkTypeStats stats = new TimeStatsDTO.WorkTypeStats();
-        stats.setWorkTypeId(typeId);
-        stats.setWorkTypeName(typeName);
-        stats.setTotalHours(new BigDecimal(100 + typeId * 50));
-        stats.setWorkerCount(5 + typeId * 2);
-        stats.setAverageHours(stats.getTotalHours().divide(new BigDecimal(stats.getWorkerCount()), 2, RoundingMode.HALF_UP));
-        stats.setOutput(new BigDecimal(500 + typeId * 100));
-        stats.setEfficiency(new BigDecimal(5 + typeId));
-        return stats;
+        Map<Integer, BigDecimal> outputs = new HashMap<>();
+        for (Object[] row : rows) {
+            long total = batchMinutes.get((Long) row[1]);
+            if (total <= 0 || row[2] == null) {
+                continue;
+            }
+            BigDecimal share = ((BigDecimal) row[2]).multiply(BigDecimal.valueOf(toLong(row[3])))
+                    .divide(BigDecimal.valueOf(total), 4, RoundingMode.HALF_UP);
+            outputs.merge((Integer) row[0], share, BigDecimal::add);
+        }
+        return outputs;
     }
-    private TimeStatsDTO.DepartmentStats createMockDepartmentStats(String departmentName) {
-        TimeStatsDTO.DepartmentStats stats = new TimeStatsDTO.DepartmentStats();
-        stats.setDepartmentName(departmentName);
-        stats.setTotalHours(new BigDecimal("500"));
-        stats.setWorkerCount(10);
-        stats.setAverageHours(new BigDecimal("50"));
-        stats.setOvertimeHours(new BigDecimal("50"));
-        stats.setAttendanceRate(new BigDecimal("95.5"));
-        return stats;
+
+    /**
+     * 区间内每工时产量（批次数量 / 工作会话工时）
+     */
+    private BigDecimal loadOutputPerHour(String factoryId, LocalDate startDate, LocalDate endDate) {
+        BigDecimal output = BigDecimal.ZERO;
+        BigDecimal hours = BigDecimal.ZERO;
+        for (TimeStatsDTO.WorkTypeStats stats : loadWorkTypeStats(factoryId, startDate, endDate).values()) {
+            output = output.add(stats.getOutput());
+            hours = hours.add(stats.getTotalHours());
+        }
+        return divide(output, hours);
+    }
+
+    /**
+     * 按工种所属部门合计产量与工时，取每工时产量最高的部门
+     */
+    private String findMostEfficientDepartment(String factoryId,
+                                               Map<Integer, TimeStatsDTO.WorkTypeStats> workTypeStats) {
+        ReferenceSnapshot referenceData = referenceDataCacheService.snapshot(factoryId);
+        Map<String, BigDecimal[]> totals = new HashMap<>();
+        for (TimeStatsDTO.WorkTypeStats stats : workTypeStats.values()) {
+            WorkType workType = stats.getWorkTypeId() != null ? referenceData.getWorkType(stats.getWorkTypeId()) : null;
+            String department = workType != null ? workType.getDepartment() : null;
+            if (department == null) {
+                continue;
+            }
+            BigDecimal[] total = totals.computeIfAbsent(department, key -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            total[0] = total[0].add(stats.getOutput());
+            total[1] = total[1].add(stats.getTotalHours());
+        }
+        return totals.entrySet().stream()
+                .filter(entry -> entry.getValue()[1].signum() > 0)
+                .max(Comparator.comparing(entry -> divide(entry.getValue()[0], entry.getValue()[1])))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private List<String> buildImprovements(TimeStatsDTO stats,
+                                           Map<Integer, TimeStatsDTO.WorkTypeStats> workTypeStats,
+                                           BigDecimal growthRate) {
+        List<String> improvements = new ArrayList<>();
+        if (stats.getTotalClockIns() > 0) {
+            BigDecimal lateRate = percent(stats.getLateCount(), stats.getTotalClockIns());
+            if (lateRate.compareTo(new BigDecimal("5")) > 0) {
+                improvements.add(String.format("迟到比例 %s%%，建议优化排班或通勤安排", lateRate));
+            }
+        }
+        BigDecimal overtimeRate = percent(stats.getOvertimeHours(), stats.getTotalHours());
+        if (overtimeRate.compareTo(new BigDecimal("20")) > 0) {
+            improvements.add(String.format("加班工时占比 %s%%，建议评估人手是否充足", overtimeRate));
+        }
+        if (stats.getAttendanceRate().signum() > 0 && stats.getAttendanceRate().compareTo(new BigDecimal("90")) < 0) {
+            improvements.add(String.format("工作日平均出勤率 %s%%，建议关注缺勤原因", stats.getAttendanceRate()));
+        }
+        workTypeStats.values().stream()
+                .filter(type -> type.getTotalHours().signum() > 0)
+                .min(Comparator.comparing(TimeStatsDTO.WorkTypeStats::getEfficiency))
+                .filter(type -> workTypeStats.size() > 1)
+                .ifPresent(type -> improvements.add(String.format("工种「%s」每工时产量最低（%s），建议加强培训或优化流程",
+                        type.getWorkTypeName(), type.getEfficiency())));
+        if (growthRate.compareTo(new BigDecimal("-5")) < 0) {
+            improvements.add(String.format("每工时产量较上一周期下降 %s%%，建议排查产线瓶颈", growthRate.negate()));
+        }
+        return improvements;
     }
-    private TimeStatsDTO.WorkerTimeStats createMockWorkerStats(Integer workerId) {
+
+    /**
+     * 行：员工ID、出勤天数、工作分钟、加班分钟、迟到次数、早退次数
+     */
+    private TimeStatsDTO.WorkerTimeStats toWorkerStats(Object[] row, User user, int workdays) {
+        long workMinutes = toLong(row[2]);
+        long overtimeMinutes = toLong(row[3]);
+        int attendanceDays = (int) toLong(row[1]);
+
         TimeStatsDTO.WorkerTimeStats stats = new TimeStatsDTO.WorkerTimeStats();
-        stats.setWorkerId(workerId);
-        stats.setWorkerName("员工" + workerId);
-        stats.setDepartment(workerId % 2 == 0 ? "生产部" : "加工部");
-        stats.setTotalHours(new BigDecimal(150 + workerId * 5));
-        stats.setRegularHours(new BigDecimal(130 + workerId * 4));
-        stats.setOvertimeHours(new BigDecimal(20 + workerId));
-        stats.setAttendanceDays(20);
-        stats.setLateCount(workerId % 3);
-        stats.setEarlyLeaveCount(workerId % 5);
-        stats.setAttendanceRate(new BigDecimal(90 + workerId % 10));
+        stats.setWorkerId((Integer) row[0]);
+        stats.setWorkerName(user != null ? user.getFullName() : null);
+        stats.setDepartment(user != null ? user.getDepartment() : null);
+        stats.setTotalHours(toHours(workMinutes));
+        stats.setRegularHours(toHours(workMinutes - overtimeMinutes));
+        stats.setOvertimeHours(toHours(overtimeMinutes));
+        stats.setAttendanceDays(attendanceDays);
+        stats.setLateCount((int) toLong(row[4]));
+        stats.setEarlyLeaveCount((int) toLong(row[5]));
+        stats.setAttendanceRate(percent(attendanceDays, workdays).min(HUNDRED));
+        return stats;
+    }
+
+    private TimeStatsDTO.DailyStats toDailyStats(DayAggregate day, long headcount) {
+        TimeStatsDTO.DailyStats stats = new TimeStatsDTO.DailyStats();
+        stats.setDate(day.date);
+        stats.setDayOfWeek(day.date.getDayOfWeek().toString());
+        stats.setIsWorkday(!isWeekend(day.date));
+        stats.setTotalHours(toHours(day.workMinutes));
+        stats.setActiveWorkers(day.activeWorkers);
+        stats.setClockIns(day.clockIns);
+        stats.setAttendanceRate(percent(day.activeWorkers, headcount));
         return stats;
     }
+
+    private void validateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new BusinessException("开始日期不能晚于结束日期");
+        }
+    }
+
+    /**
+     * 区间内截至今天的工作日天数
+     */
+    private int countElapsedWorkdays(LocalDate startDate, LocalDate endDate) {
+        LocalDate last = endDate.isAfter(LocalDate.now()) ? LocalDate.now() : endDate;
+        int workdays = 0;
+        for (LocalDate date = startDate; !date.isAfter(last); date = date.plusDays(1)) {
+            if (!isWeekend(date)) {
+                workdays++;
+            }
+        }
+        return workdays;
+    }
+
+    private boolean isWeekend(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+    }
+
+    private static String cacheKey(String factoryId, LocalDate date) {
+        return factoryId + ":" + date;
+    }
+
+    private static String departmentName(String department) {
+        return department != null && !department.isEmpty() ? department : UNASSIGNED;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static BigDecimal toHours(long minutes) {
+        return BigDecimal.valueOf(minutes).divide(MINUTES_PER_HOUR, 2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percent(long part, long whole) {
+        return whole > 0
+                ? BigDecimal.valueOf(part).multiply(HUNDRED).divide(BigDecimal.valueOf(whole), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal percent(BigDecimal part, BigDecimal whole) {
+        return whole.signum() > 0
+                ? part.multiply(HUNDRED).divide(whole, 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal divide(BigDecimal dividend, BigDecimal divisor) {
+        return divisor.signum() > 0 ? dividend.divide(divisor, 2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+    }
+
+    /**
+     * 单个工厂单日的考勤聚合结果（不可变）
+     */
+    private static final class DayAggregate {
+        private final String factoryId;
+        private final LocalDate date;
+        private final long clockIns;
+        private final int activeWorkers;
+        private final long workMinutes;
+        private final long overtimeMinutes;
+        private final long lateCount;
+        private final long earlyLeaveCount;
+        private final long loadedAt;
+
+        private DayAggregate(String factoryId, LocalDate date, long clockIns, int activeWorkers, long workMinutes,
+                             long overtimeMinutes, long lateCount, long earlyLeaveCount, long loadedAt) {
+            this.factoryId = factoryId;
+            this.date = date;
+            this.clockIns = clockIns;
+            this.activeWorkers = activeWorkers;
+            this.workMinutes = workMinutes;
+            this.overtimeMinutes = overtimeMinutes;
+            this.lateCount = lateCount;
+            this.earlyLeaveCount = earlyLeaveCount;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * 行：打卡日期、打卡次数、出勤人数、工作分钟、加班分钟、迟到人次、早退人次
+         */
+        private static DayAggregate of(String factoryId, Object[] row, long loadedAt) {
+            return new DayAggregate(factoryId, (LocalDate) row[0], toLong(row[1]), (int) toLong(row[2]),
+                    toLong(row[3]), toLong(row[4]), toLong(row[5]), toLong(row[6]), loadedAt);
+        }
+
+        private static DayAggregate empty(String factoryId, LocalDate date, long loadedAt) {
+            return new DayAggregate(factoryId, date, 0, 0, 0, 0, 0, 0, loadedAt);
+        }
+    }
 }
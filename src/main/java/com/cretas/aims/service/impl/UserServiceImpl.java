@@ -10,15 +10,26 @@ import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.mapper.UserMapper;
 import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.StreamingExportService;
 import com.cretas.aims.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +47,16 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final StreamingExportService streamingExportService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 批量写入每批条数（与 hibernate.jdbc.batch_size 一致）
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
 
     @Override
     @Transactional
@@ -255,22 +276,66 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public List<UserDTO> batchImportUsers(String factoryId, List<CreateUserRequest> requests) {
-        return requests.stream()
-                .map(request -> {
-                    try {
-                        return createUser(factoryId, request);
-                    } catch (Exception e) {
-                        log.error("导入用户失败: {}", e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(user -> user != null)
-                .collect(Collectors.toList());
+        // 一次查询找出已存在的用户名，避免逐条 existsByUsername 触发 flush 打断批量写入
+        Set<String> takenUsernames = new HashSet<>(userRepository.findExistingUsernames(
+                requests.stream().map(CreateUserRequest::getUsername).collect(Collectors.toList())));
+
+        List<UserDTO> imported = new ArrayList<>(requests.size());
+        List<User> chunk = new ArrayList<>(batchSize);
+        for (CreateUserRequest request : requests) {
+            if (!takenUsernames.add(request.getUsername())) {
+                log.error("导入用户失败: 用户名已存在, username={}", request.getUsername());
+                continue;
+            }
+            try {
+                User user = userMapper.toEntity(request, factoryId);
+                user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
+                chunk.add(user);
+            } catch (Exception e) {
+                log.error("导入用户失败: {}", e.getMessage());
+                continue;
+            }
+            if (chunk.size() >= batchSize) {
+                imported.addAll(saveUserChunk(chunk));
+            }
+        }
+        imported.addAll(saveUserChunk(chunk));
+
+        log.info("批量导入用户完成: factoryId={}, total={}, success={}", factoryId, requests.size(), imported.size());
+        return imported;
+    }
+
+    /**
+     * 保存一批用户并立即 flush（JDBC 批量写入为一条多行 INSERT），然后清空持久化上下文
+     */
+    private List<UserDTO> saveUserChunk(List<User> chunk) {
+        if (chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<User> saved = userRepository.saveAll(chunk);
+        entityManager.flush();
+        List<UserDTO> dtos = saved.stream().map(userMapper::toDTO).collect(Collectors.toList());
+        entityManager.clear();
+        chunk.clear();
+        return dtos;
     }
 
     @Override
-    public byte[] exportUsers(String factoryId) {
-        // TODO: 实现用户导出功能（Excel格式）
-        throw new UnsupportedOperationException("用户导出功能暂未实现");
+    public void exportUsers(String factoryId, String format, HttpServletResponse response) {
+        log.info("导出用户列表: factoryId={}, format={}", factoryId, format);
+        streamingExportService.export(response, "users", format,
+                Arrays.asList("ID", "用户名", "姓名", "手机号", "部门", "职位", "状态", "月薪", "最近登录", "创建时间"),
+                () -> userRepository.streamByFactoryId(factoryId),
+                user -> Arrays.asList(
+                        user.getId(),
+                        user.getUsername(),
+                        user.getFullName(),
+                        user.getPhone(),
+                        user.getDepartment(),
+                        user.getPosition(),
+                        Boolean.TRUE.equals(user.getIsActive()) ? "启用" : "停用",
+                        user.getMonthlySalary(),
+                        user.getLastLogin(),
+                        user.getCreatedAt()));
     }
 }
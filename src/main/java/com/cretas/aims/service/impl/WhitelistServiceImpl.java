@@ -4,10 +4,14 @@ import com.cretas.aims.dto.WhitelistDTO;
 import com.cretas.aims.dto.common.PageResponse;
 import com.cretas.aims.entity.Whitelist;
 import com.cretas.aims.entity.enums.WhitelistStatus;
+import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.UserRepository;
 import com.cretas.aims.repository.WhitelistRepository;
+import com.cretas.aims.service.StreamingExportService;
+import com.cretas.aims.service.WhitelistImportService;
 import com.cretas.aims.service.WhitelistService;
+import com.cretas.aims.util.CsvExportWriter;
 import com.cretas.aims.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +22,12 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -33,59 +43,23 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class WhitelistServiceImpl implements WhitelistService {
+    private static final List<String> WHITELIST_EXPORT_HEADERS =
+            Arrays.asList("手机号", "姓名", "部门", "职位", "状态", "过期时间", "添加时间");
+    /**
+     * 非文件导出（CSV 字符串放入响应体）的最大行数
+     */
+    private static final int INLINE_EXPORT_MAX_ROWS = 1000;
+
     private final WhitelistRepository whitelistRepository;
     private final UserRepository userRepository;
+    private final WhitelistImportService whitelistImportService;
+    private final StreamingExportService streamingExportService;
 
     @Override
-    @Transactional
     public WhitelistDTO.BatchResult batchAdd(String factoryId, WhitelistDTO.BatchAddRequest request) {
         log.info("批量添加白名单: factoryId={}, count={}", factoryId, request.getEntries().size());
-        WhitelistDTO.BatchResult result = WhitelistDTO.BatchResult.builder()
-                .successCount(0)
-                .failedCount(0)
-                .successPhones(new ArrayList<>())
-                .failedEntries(new ArrayList<>())
-                .build();
-        Integer currentUserId = SecurityUtils.getCurrentUserId();
-        for (WhitelistDTO.WhitelistEntry entry : request.getEntries()) {
-            try {
-                // 检查是否已存在
-                if (whitelistRepository.existsByFactoryIdAndPhoneNumber(factoryId, entry.getPhoneNumber())) {
-                    result.getFailedEntries().add(
-                            WhitelistDTO.BatchResult.FailedEntry.builder()
-                                    .phoneNumber(entry.getPhoneNumber())
-                                    .reason("手机号已存在")
-                                    .build()
-                    );
-                    result.setFailedCount(result.getFailedCount() + 1);
-                    continue;
-                }
-                // 创建白名单记录
-                Whitelist whitelist = Whitelist.builder()
-                        .factoryId(factoryId)
-                        .phoneNumber(entry.getPhoneNumber())
-                        .name(entry.getName())
-                        .position(entry.getPosition())
-                        .department(request.getDepartment())
-                        .status(WhitelistStatus.ACTIVE)
-                        .expiresAt(request.getExpiresAt())
-                        .notes(request.getNotes())
-                        .addedBy(currentUserId)
-                        .build();
-                whitelistRepository.save(whitelist);
-                result.getSuccessPhones().add(entry.getPhoneNumber());
-                result.setSuccessCount(result.getSuccessCount() + 1);
-            } catch (Exception e) {
-                log.error("添加白名单失败: phone={}, error={}", entry.getPhoneNumber(), e.getMessage());
-                result.getFailedEntries().add(
-                        WhitelistDTO.BatchResult.FailedEntry.builder()
-                                .phoneNumber(entry.getPhoneNumber())
-                                .reason("系统错误: " + e.getMessage())
-                                .build()
-                );
-                result.setFailedCount(result.getFailedCount() + 1);
-            }
-        }
+        WhitelistDTO.BatchResult result = whitelistImportService.addEntries(
+                factoryId, request, SecurityUtils.getCurrentUserId());
         log.info("批量添加完成: success={}, failed={}", result.getSuccessCount(), result.getFailedCount());
         return result;
     }
@@ -337,105 +311,68 @@ public class WhitelistServiceImpl implements WhitelistService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public String exportWhitelist(String factoryId, String status) {
         log.info("导出白名单: factoryId={}, status={}", factoryId, status);
-        StringBuilder csv = new StringBuilder();
-        csv.append("手机号,姓名,部门,职位,状态,过期时间,添加时间\n");
-        Pageable pageable = PageRequest.of(0, 1000, Sort.by(Sort.Direction.DESC, "createdAt"));
-        Page<Whitelist> page;
-        if (StringUtils.hasText(status)) {
-            WhitelistStatus whitelistStatus = WhitelistStatus.fromCode(status);
-            page = whitelistRepository.findByFactoryIdAndStatus(factoryId, whitelistStatus, pageable);
-        } else {
-            page = whitelistRepository.findByFactoryId(factoryId, pageable);
-        }
-        for (Whitelist w : page.getContent()) {
-            csv.append(String.format("%s,%s,%s,%s,%s,%s,%s\n",
-                    w.getPhoneNumber(),
-                    w.getName() != null ? w.getName() : "",
-                    w.getDepartment() != null ? w.getDepartment() : "",
-                    w.getPosition() != null ? w.getPosition() : "",
-                    w.getStatus().getDescription(),
-                    w.getExpiresAt() != null ? w.getExpiresAt().toString() : "",
-                    w.getCreatedAt()
-            ));
+        // 结果整体放入响应体，只返回最新的 INLINE_EXPORT_MAX_ROWS 条；全量导出走 exportWhitelistFile
+        Pageable pageable = PageRequest.of(0, INLINE_EXPORT_MAX_ROWS, Sort.by(Sort.Direction.DESC, "createdAt"));
+        WhitelistStatus whitelistStatus = parseStatus(status);
+        Page<Whitelist> page = whitelistStatus != null
+                ? whitelistRepository.findByFactoryIdAndStatus(factoryId, whitelistStatus, pageable)
+                : whitelistRepository.findByFactoryId(factoryId, pageable);
+        StringWriter csv = new StringWriter();
+        try (CsvExportWriter writer = new CsvExportWriter(csv, WHITELIST_EXPORT_HEADERS)) {
+            for (Whitelist w : page.getContent()) {
+                writer.writeRow(toExportRow(w));
+            }
+        } catch (IOException e) {
+            throw new BusinessException("导出白名单失败: " + e.getMessage());
         }
         return csv.toString();
     }
 
     @Override
-    @Transactional
+    public void exportWhitelistFile(String factoryId, String status, String format, HttpServletResponse response) {
+        log.info("导出白名单文件: factoryId={}, status={}, format={}", factoryId, status, format);
+        WhitelistStatus whitelistStatus = parseStatus(status);
+        streamingExportService.export(response, "whitelist", format, WHITELIST_EXPORT_HEADERS,
+                () -> whitelistRepository.streamForExport(factoryId, whitelistStatus),
+                this::toExportRow);
+    }
+
+    private WhitelistStatus parseStatus(String status) {
+        return StringUtils.hasText(status) ? WhitelistStatus.fromCode(status) : null;
+    }
+
+    private List<Object> toExportRow(Whitelist w) {
+        return Arrays.asList(
+                w.getPhoneNumber(),
+                w.getName(),
+                w.getDepartment(),
+                w.getPosition(),
+                w.getStatus().getDescription(),
+                w.getExpiresAt(),
+                w.getCreatedAt());
+    }
+
+    @Override
     public WhitelistDTO.BatchResult importWhitelist(String factoryId, String csvData) {
         log.info("导入白名单: factoryId={}", factoryId);
-        WhitelistDTO.BatchResult result = WhitelistDTO.BatchResult.builder()
-                .successCount(0)
-                .failedCount(0)
-                .successPhones(new ArrayList<>())
-                .failedEntries(new ArrayList<>())
-                .build();
+        try {
+            return whitelistImportService.importCsv(factoryId, new StringReader(csvData), SecurityUtils.getCurrentUserId());
+        } catch (IOException e) {
+            throw new BusinessException("读取导入数据失败: " + e.getMessage());
+        }
+    }
 
-        String[] lines = csvData.split("\n");
-        Integer currentUserId = SecurityUtils.getCurrentUserId();
-
-        // 跳过标题行
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
-
-            String[] fields = line.split(",");
-            if (fields.length < 4) {
-                result.getFailedEntries().add(
-                        WhitelistDTO.BatchResult.FailedEntry.builder()
-                                .phoneNumber(line)
-                                .reason("格式错误")
-                                .build()
-                );
-                result.setFailedCount(result.getFailedCount() + 1);
-                continue;
-            }
+    @Override
+    public WhitelistDTO.ImportProgress submitImportJob(String factoryId, MultipartFile file) {
+        return whitelistImportService.submitImport(factoryId, file, SecurityUtils.getCurrentUserId());
+    }
 
-            String phoneNumber = fields[0].trim();
-            String name = fields[1].trim();
-            String department = fields[2].trim();
-            String position = fields[3].trim();
-
-            try {
-                if (whitelistRepository.existsByFactoryIdAndPhoneNumber(factoryId, phoneNumber)) {
-                    result.getFailedEntries().add(
-                            WhitelistDTO.BatchResult.FailedEntry.builder()
-                                    .phoneNumber(phoneNumber)
-                                    .reason("手机号已存在")
-                                    .build()
-                    );
-                    result.setFailedCount(result.getFailedCount() + 1);
-                    continue;
-                }
-
-                Whitelist whitelist = Whitelist.builder()
-                        .factoryId(factoryId)
-                        .phoneNumber(phoneNumber)
-                        .name(name)
-                        .department(department)
-                        .position(position)
-                        .status(WhitelistStatus.ACTIVE)
-                        .addedBy(currentUserId)
-                        .build();
-                whitelistRepository.save(whitelist);
-                result.getSuccessPhones().add(phoneNumber);
-                result.setSuccessCount(result.getSuccessCount() + 1);
-            } catch (Exception e) {
-                log.error("导入白名单失败: phone={}, error={}", phoneNumber, e.getMessage());
-                result.getFailedEntries().add(
-                        WhitelistDTO.BatchResult.FailedEntry.builder()
-                                .phoneNumber(phoneNumber)
-                                .reason("系统错误: " + e.getMessage())
-                                .build()
-                );
-                result.setFailedCount(result.getFailedCount() + 1);
-            }
-        }
-        log.info("导入完成: success={}, failed={}", result.getSuccessCount(), result.getFailedCount());
-        return result;
+    @Override
+    public WhitelistDTO.ImportProgress getImportProgress(String factoryId, String jobId) {
+        return whitelistImportService.getProgress(factoryId, jobId);
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.cretas.aims.entity.WorkType;
 import com.cretas.aims.exception.BusinessException;
 import com.cretas.aims.exception.ResourceNotFoundException;
 import com.cretas.aims.repository.WorkTypeRepository;
+import com.cretas.aims.service.ReferenceDataCacheService;
 import com.cretas.aims.service.WorkTypeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +33,7 @@ import java.util.stream.Collectors;
 public class WorkTypeServiceImpl implements WorkTypeService {
 
     private final WorkTypeRepository workTypeRepository;
+    private final ReferenceDataCacheService referenceDataCacheService;
 
     @Override
     @Transactional
@@ -86,6 +88,7 @@ public class WorkTypeServiceImpl implements WorkTypeService {
         );
 
         WorkType saved = workTypeRepository.save(workType);
+        referenceDataCacheService.onDataChanged(factoryId);
         return convertToDTO(saved);
     }
 
@@ -106,7 +109,8 @@ public class WorkTypeServiceImpl implements WorkTypeService {
     public List<WorkTypeDTO> getAllActiveWorkTypes(String factoryId) {
         log.debug("Getting all active work types for factory: {}", factoryId);
 
-        List<WorkType> workTypes = workTypeRepository.findByFactoryIdAndIsActiveTrue(factoryId);
+        // 打卡页面高频调用，取自工厂基础数据快照
+        List<WorkType> workTypes = referenceDataCacheService.snapshot(factoryId).getActiveWorkTypes();
         return workTypes.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
@@ -176,6 +180,7 @@ public class WorkTypeServiceImpl implements WorkTypeService {
         }
 
         WorkType saved = workTypeRepository.save(workType);
+        referenceDataCacheService.onDataChanged(factoryId);
         return convertToDTO(saved);
     }
 
@@ -194,6 +199,7 @@ public class WorkTypeServiceImpl implements WorkTypeService {
 
         // TODO: 检查是否有关联的考勤记录
         workTypeRepository.delete(workType);
+        referenceDataCacheService.onDataChanged(factoryId);
     }
 
     @Override
@@ -207,6 +213,7 @@ public class WorkTypeServiceImpl implements WorkTypeService {
 
         workType.setIsActive(!workType.getIsActive());
         WorkType saved = workTypeRepository.save(workType);
+        referenceDataCacheService.onDataChanged(factoryId);
         return convertToDTO(saved);
     }
 
@@ -259,6 +266,7 @@ public class WorkTypeServiceImpl implements WorkTypeService {
             workType.setDisplayOrder(update.getDisplayOrder());
             workTypeRepository.save(workType);
         }
+        referenceDataCacheService.onDataChanged(factoryId);
     }
 
     /**
@@ -0,0 +1,69 @@
+package com.cretas.aims.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * CSV 导出写入器
+ *
+ * - 输出到字节流时写入 UTF-8 BOM，Excel 直接打开中文不乱码
+ * - 含逗号、引号、换行的字段用双引号包裹
+ * - 以 = + - @ 开头的文本前加单引号，防止被表格软件当作公式执行
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public class CsvExportWriter implements TabularWriter {
+
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream out, List<String> headers) throws IOException {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), headers, true);
+    }
+
+    public CsvExportWriter(Writer writer, List<String> headers) throws IOException {
+        this(writer, headers, false);
+    }
+
+    private CsvExportWriter(Writer writer, List<String> headers, boolean withBom) throws IOException {
+        this.writer = writer;
+        if (withBom) {
+            writer.write('\uFEFF');
+        }
+        writeRow(headers);
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+        writer.close();
+    }
+
+    private static String escape(Object value) {
+        String text = TabularWriter.text(value);
+        if (value instanceof CharSequence && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
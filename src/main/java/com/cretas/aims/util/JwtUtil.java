@@ -1,6 +1,7 @@
 package com.cretas.aims.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -8,10 +9,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -35,9 +42,34 @@ public class JwtUtil {
     private Long refreshExpiration; // 默认30天
 
     /**
-     * 生成密钥
+     * 已验证Claims缓存的最大条目数
      */
-    private SecretKey getSigningKey() {
+    @Value("${cretas.jwt.claims-cache-size:10000}")
+    private int claimsCacheSize;
+
+    /**
+     * 已验证Claims缓存的最长保留时间（毫秒），实际过期时间不超过Token自身的过期时间
+     */
+    @Value("${cretas.jwt.claims-cache-ttl:300000}")
+    private long claimsCacheTtl;
+
+    /**
+     * 签名密钥（启动时根据secret计算一次）
+     */
+    private SecretKey signingKey;
+
+    /**
+     * Token解析器（线程安全，可复用）
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * 已验证Claims缓存：Token的SHA-256摘要 -> Claims（LRU，按访问顺序淘汰）
+     */
+    private Map<String, CachedClaims> claimsCache;
+
+    @PostConstruct
+    public void init() {
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         // 确保密钥长度至少为256位（32字节）
         if (keyBytes.length < 32) {
@@ -45,7 +77,22 @@ public class JwtUtil {
             System.arraycopy(keyBytes, 0, newKeyBytes, 0, keyBytes.length);
             keyBytes = newKeyBytes;
         }
-        return Keys.hmacShaKeyFor(keyBytes);
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        final int maxSize = claimsCacheSize;
+        claimsCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedClaims>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * 获取签名密钥
+     */
+    private SecretKey getSigningKey() {
+        return signingKey;
     }
 
     /**
@@ -90,15 +137,38 @@ public class JwtUtil {
      * 验证Token
      */
     public boolean validateToken(String token) {
+        return getValidatedClaims(token) != null;
+    }
+
+    /**
+     * 验证Token并返回Claims（每个Token只做一次签名校验和解析，结果缓存到过期为止）
+     *
+     * @return 验证通过的Claims，Token无效或已过期时返回null
+     */
+    public Claims getValidatedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String cacheKey = hashToken(token);
+        long now = System.currentTimeMillis();
+        CachedClaims cached = claimsCache.get(cacheKey);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.claims;
+            }
+            claimsCache.remove(cacheKey);
+        }
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            long expiresAt = now + claimsCacheTtl;
+            if (claims.getExpiration() != null) {
+                expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+            }
+            claimsCache.put(cacheKey, new CachedClaims(claims, expiresAt));
+            return claims;
         } catch (Exception e) {
             log.error("Token验证失败: {}", e.getMessage());
-            return false;
+            return null;
         }
     }
 
@@ -106,23 +176,20 @@ public class JwtUtil {
      * 从Token中获取Claims
      */
     private Claims getClaimsFromToken(String token) {
-        try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-        } catch (Exception e) {
-            log.error("解析Token失败: {}", e.getMessage());
-            return null;
-        }
+        return getValidatedClaims(token);
     }
 
     /**
      * 从Token中获取用户ID
      */
     public Integer getUserIdFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
+        return getUserId(getClaimsFromToken(token));
+    }
+
+    /**
+     * 从已验证的Claims中获取用户ID
+     */
+    public Integer getUserId(Claims claims) {
         if (claims != null) {
             Object userId = claims.get("userId");
             if (userId != null) {
@@ -249,4 +316,29 @@ public class JwtUtil {
         }
         return null;
     }
+
+    /**
+     * 计算Token的SHA-256摘要作为缓存键（不在内存中保留Token原文）
+     */
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 缓存的Claims及其过期时间
+     */
+    private static class CachedClaims {
+        private final Claims claims;
+        private final long expiresAt;
+
+        CachedClaims(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
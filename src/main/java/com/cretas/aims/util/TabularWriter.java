@@ -0,0 +1,45 @@
+package com.cretas.aims.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 表格导出写入器（逐行写出，不在内存中保留已写出的行）
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public interface TabularWriter extends Closeable {
+
+    DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 写出一行数据（表头在创建写入器时写出）
+     */
+    void writeRow(List<?> values) throws IOException;
+
+    /**
+     * 单元格文本：null 为空串，日期时间统一格式，数字不使用科学计数法
+     */
+    static String text(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).format(DATE_TIME_FORMATTER);
+        }
+        if (value instanceof LocalDate) {
+            return value.toString();
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+}
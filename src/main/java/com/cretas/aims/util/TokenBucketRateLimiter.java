@@ -0,0 +1,57 @@
+package com.cretas.aims.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器（线程安全）
+ *
+ * 以固定速率补充令牌，最多积攒 capacity 个（允许的突发量）。令牌不足时 acquire 预支一个令牌并等待到它补充完成，
+ * 多个等待者按调用顺序依次错开，整体速率不会超过 permitsPerSecond。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param capacity         桶容量（突发量），至少为 1
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int capacity) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond 必须大于0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取一个令牌，必要时阻塞等待
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+            tokens -= 1;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,216 @@
+package com.cretas.aims.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式 XLSX 写入器
+ *
+ * 直接按 OOXML 格式写 zip：工作表逐行写入 zip 条目（字符串使用 inlineStr，不需要共享字符串表），
+ * 内存占用与行数无关。单个工作表写满后自动新建工作表并重复表头；
+ * workbook.xml 等描述文件在结束时按实际工作表数量写出。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+public class XlsxStreamWriter implements TabularWriter {
+
+    /**
+     * 单个工作表最大行数（Excel 上限 1048576，含表头）
+     */
+    private static final int MAX_ROWS_PER_SHEET = 1_048_576;
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final String sheetName;
+    private final List<String> headers;
+    private int sheetCount;
+    private int rowIndex;
+    private boolean finished;
+
+    public XlsxStreamWriter(OutputStream outputStream, String sheetName, List<String> headers) throws IOException {
+        this.zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8);
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        this.sheetName = safeSheetName(sheetName);
+        this.headers = headers;
+        startSheet();
+    }
+
+    @Override
+    public void writeRow(List<?> values) throws IOException {
+        if (rowIndex >= MAX_ROWS_PER_SHEET) {
+            endSheet();
+            startSheet();
+        }
+        rowIndex++;
+        out.write("<row r=\"");
+        out.write(Integer.toString(rowIndex));
+        out.write("\">");
+        for (int i = 0; i < values.size(); i++) {
+            writeCell(columnName(i) + rowIndex, values.get(i));
+        }
+        out.write("</row>");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        endSheet();
+        writeEntry("[Content_Types].xml", contentTypes());
+        writeEntry("_rels/.rels", XML_DECLARATION
+                + "<Relationships xmlns=\"" + NS_PKG_REL + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/workbook.xml", workbook());
+        writeEntry("xl/_rels/workbook.xml.rels", workbookRels());
+        zip.close();
+    }
+
+    // ==================== 工作表 ====================
+
+    private void startSheet() throws IOException {
+        sheetCount++;
+        rowIndex = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        out.write(XML_DECLARATION);
+        out.write("<worksheet xmlns=\"" + NS_MAIN + "\"><sheetData>");
+        writeRow(headers);
+    }
+
+    private void endSheet() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void writeCell(String ref, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number && isFinite((Number) value)) {
+            out.write("<c r=\"" + ref + "\"><v>");
+            out.write(TabularWriter.text(value));
+            out.write("</v></c>");
+        } else if (value instanceof Boolean) {
+            out.write("<c r=\"" + ref + "\" t=\"b\"><v>");
+            out.write((Boolean) value ? "1" : "0");
+            out.write("</v></c>");
+        } else {
+            out.write("<c r=\"" + ref + "\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+            out.write(escapeXml(TabularWriter.text(value)));
+            out.write("</t></is></c>");
+        }
+    }
+
+    // ==================== 描述文件 ====================
+
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder(XML_DECLARATION)
+                .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return xml.append("</Types>").toString();
+    }
+
+    private String workbook() {
+        StringBuilder xml = new StringBuilder(XML_DECLARATION)
+                .append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_REL).append("\"><sheets>");
+        for (int i = 1; i <= sheetCount; i++) {
+            String name = sheetCount == 1 ? sheetName : truncate(sheetName, 27) + "_" + i;
+            xml.append("<sheet name=\"").append(escapeXml(name)).append("\" sheetId=\"").append(i)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRels() {
+        StringBuilder xml = new StringBuilder(XML_DECLARATION)
+                .append("<Relationships xmlns=\"").append(NS_PKG_REL).append("\">");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_REL)
+                    .append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        return xml.append("</Relationships>").toString();
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    // ==================== 工具方法 ====================
+
+    /**
+     * 列序号（从0开始）转列名：0 -> A, 25 -> Z, 26 -> AA
+     */
+    private static String columnName(int index) {
+        StringBuilder name = new StringBuilder();
+        for (int n = index + 1; n > 0; n = (n - 1) / 26) {
+            name.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    private static boolean isFinite(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return Double.isFinite(value.doubleValue());
+        }
+        return true;
+    }
+
+    /**
+     * 转义 XML 特殊字符，并去掉 XML 1.0 不允许的控制字符
+     */
+    private static String escapeXml(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '"': sb.append("&quot;"); break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 工作表名称：最长31个字符，不能包含 \ / ? * [ ] :
+     */
+    private static String safeSheetName(String name) {
+        String safe = name == null || name.trim().isEmpty() ? "Sheet1" : name.replaceAll("[\\\\/?*\\[\\]:]", "_");
+        return truncate(safe, 31);
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text.length() > maxLength ? text.substring(0, maxLength) : text;
+    }
+}
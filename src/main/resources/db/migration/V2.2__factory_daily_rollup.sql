@@ -0,0 +1,51 @@
+-- =====================================================
+-- 工厂每日汇总表迁移脚本
+-- Version: 2.2
+-- Date: 2025-11-20
+-- Description: 按工厂/天预聚合生产、成本、原材料消耗、质检、考勤计数器，
+--              业务提交后增量累加，夜间对账按原始表重算
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS `factory_daily_rollup` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    `factory_id` VARCHAR(50) NOT NULL COMMENT '工厂ID',
+    `rollup_date` DATE NOT NULL COMMENT '汇总日期',
+
+    -- 生产（按完工日期）
+    `completed_batches` INT NOT NULL DEFAULT 0 COMMENT '完工批次数',
+    `output_quantity` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '实际产量',
+    `good_quantity` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '良品数量',
+    `defect_quantity` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '不良数量',
+    `planned_quantity` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '计划产量',
+
+    -- 成本（按完工日期）
+    `material_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '原材料成本',
+    `labor_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '人工成本',
+    `equipment_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '设备成本',
+    `other_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '其他成本',
+    `total_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '总成本',
+
+    -- 原材料消耗（按消耗日期）
+    `consumed_quantity` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '原材料消耗量',
+    `consumed_cost` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '原材料消耗成本',
+
+    -- 质检（按检验日期）
+    `inspection_count` INT NOT NULL DEFAULT 0 COMMENT '质检次数',
+    `inspection_pass_count` INT NOT NULL DEFAULT 0 COMMENT '质检合格次数',
+    `sample_size` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '抽样总数',
+    `sample_pass_count` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '抽样合格数',
+
+    -- 考勤（按打卡日期，下班打卡后计入）
+    `attendance_count` INT NOT NULL DEFAULT 0 COMMENT '出勤人次',
+    `late_count` INT NOT NULL DEFAULT 0 COMMENT '迟到人次',
+    `early_leave_count` INT NOT NULL DEFAULT 0 COMMENT '早退人次',
+    `work_minutes` BIGINT NOT NULL DEFAULT 0 COMMENT '工作分钟数',
+    `overtime_minutes` BIGINT NOT NULL DEFAULT 0 COMMENT '加班分钟数',
+
+    `reconciled_at` DATETIME COMMENT '最近一次对账时间',
+    `updated_at` DATETIME COMMENT '更新时间',
+
+    -- 唯一约束：每个工厂每天只有一行（增量 upsert 依赖此约束）
+    UNIQUE KEY `uk_rollup_factory_date` (`factory_id`, `rollup_date`),
+    INDEX `idx_rollup_date` (`rollup_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='工厂每日汇总表';
@@ -0,0 +1,49 @@
+-- =====================================================
+-- 号段ID生成表迁移脚本
+-- Version: 2.3
+-- Date: 2025-11-20
+-- Description: 高频写入实体由 IDENTITY 改为 id_generator 表号段分配（每次取50个），
+--              使 Hibernate 能够进行 JDBC 批量插入；IDENTITY 会禁用批量插入。
+--
+-- 注意：
+-- 1. 必须在新版本应用启动前执行，号段起始值取各表当前 MAX(id)+1
+-- 2. 各表 id 列保留 AUTO_INCREMENT，直接执行的 SQL 插入仍然可用，
+--    但之后需要重新执行本脚本，把号段推进到 MAX(id)+1 之后
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS `id_generator` (
+    `gen_name` VARCHAR(64) NOT NULL PRIMARY KEY COMMENT '号段名称（表名）',
+    `gen_value` BIGINT NOT NULL COMMENT '下一号段起始值'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='号段ID生成表';
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'users', COALESCE(MAX(`id`), 0) + 1 FROM `users`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'whitelist', COALESCE(MAX(`id`), 0) + 1 FROM `whitelist`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'material_batches', COALESCE(MAX(`id`), 0) + 1 FROM `material_batches`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'material_batch_adjustments', COALESCE(MAX(`id`), 0) + 1 FROM `material_batch_adjustments`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'material_consumptions', COALESCE(MAX(`id`), 0) + 1 FROM `material_consumptions`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'time_clock_records', COALESCE(MAX(`id`), 0) + 1 FROM `time_clock_records`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'system_logs', COALESCE(MAX(`id`), 0) + 1 FROM `system_logs`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'ai_audit_logs', COALESCE(MAX(`id`), 0) + 1 FROM `ai_audit_logs`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
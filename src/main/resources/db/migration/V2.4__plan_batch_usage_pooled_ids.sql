@@ -0,0 +1,11 @@
+-- =====================================================
+-- 生产计划批次使用记录号段ID迁移脚本
+-- Version: 2.4
+-- Date: 2025-11-20
+-- Description: production_plan_batch_usage 改为 id_generator 号段分配，
+--              多批次分配时使用记录可以 JDBC 批量插入（id_generator 表见 V2.3）
+-- =====================================================
+
+INSERT INTO `id_generator` (`gen_name`, `gen_value`)
+SELECT 'production_plan_batch_usage', COALESCE(MAX(`id`), 0) + 1 FROM `production_plan_batch_usage`
+ON DUPLICATE KEY UPDATE `gen_value` = GREATEST(`gen_value`, VALUES(`gen_value`));
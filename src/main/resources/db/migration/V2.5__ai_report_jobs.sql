@@ -0,0 +1,24 @@
+-- =====================================================
+-- AI定时报告生成任务表迁移脚本
+-- Version: 2.5
+-- Date: 2025-11-20
+-- Description: 记录每个工厂每个报告周期的周报/月报生成状态，
+--              定时任务并行生成、失败重试，再次运行同一周期时只处理未成功的工厂
+-- =====================================================
+
+CREATE TABLE IF NOT EXISTS `ai_report_jobs` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    `factory_id` VARCHAR(50) NOT NULL COMMENT '工厂ID',
+    `report_type` VARCHAR(20) NOT NULL COMMENT '报告类型：weekly/monthly',
+    `period_start` DATE NOT NULL COMMENT '报告周期开始日期',
+    `period_end` DATE NOT NULL COMMENT '报告周期结束日期',
+    `status` VARCHAR(20) NOT NULL COMMENT '状态：PENDING/RUNNING/SUCCESS/FAILED',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+    `last_error` VARCHAR(500) NULL COMMENT '最近一次失败原因',
+    `started_at` DATETIME NULL COMMENT '最近一次开始时间',
+    `finished_at` DATETIME NULL COMMENT '完成时间',
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` DATETIME NULL COMMENT '更新时间',
+    UNIQUE KEY `uk_report_job_period` (`report_type`, `period_start`, `factory_id`),
+    KEY `idx_report_job_status` (`status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='AI定时报告生成任务';
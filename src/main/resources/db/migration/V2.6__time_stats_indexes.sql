@@ -0,0 +1,13 @@
+-- =====================================================
+-- 时间统计聚合索引迁移脚本
+-- Version: 2.6
+-- Date: 2025-11-20
+-- Description: 时间统计按工厂+日期范围做 GROUP BY 聚合，
+--              覆盖索引让年度统计只扫描索引，不回表读取考勤记录
+-- =====================================================
+
+CREATE INDEX `idx_clock_factory_date_stats` ON `time_clock_records`
+    (`factory_id`, `clock_date`, `user_id`, `attendance_status`, `work_duration_minutes`, `overtime_minutes`);
+
+CREATE INDEX `idx_worksession_factory_start` ON `employee_work_sessions`
+    (`factory_id`, `start_time`);
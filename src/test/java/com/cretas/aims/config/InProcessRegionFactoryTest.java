@@ -0,0 +1,163 @@
+package com.cretas.aims.config;
+
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * InProcessRegionFactory 测试：两个节点经模拟的 Redis 频道互发失效消息，忽略本节点消息，查询结果区域不广播
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class InProcessRegionFactoryTest {
+
+    private static final String CHANNEL = "cretas:hibernate:invalidate";
+    private static final String ENTITY_REGION = "com.cretas.aims.entity.ProductType";
+    private static final String QUERY_REGION = "default-query-results-region";
+    private static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    private final List<InProcessRegionFactory> nodes = new CopyOnWriteArrayList<>();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean redisDown = new AtomicBoolean();
+    private InProcessRegionFactory nodeA;
+    private InProcessRegionFactory nodeB;
+
+    @BeforeEach
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        doAnswer(inv -> {
+            if (redisDown.get()) {
+                throw new RedisConnectionFailureException("redis down");
+            }
+            String body = inv.getArgument(1);
+            sent.add(body);
+            for (InProcessRegionFactory node : nodes) {
+                node.onMessage(message(body), null);
+            }
+            return 1L;
+        }).when(redisTemplate).convertAndSend(eq(CHANNEL), anyString());
+
+        nodeA = new InProcessRegionFactory(redisTemplate, CHANNEL, 100, 60_000L);
+        nodeB = new InProcessRegionFactory(redisTemplate, CHANNEL, 100, 60_000L);
+        nodes.add(nodeA);
+        nodes.add(nodeB);
+    }
+
+    @Test
+    void entityEvictionOnOneNodeRemovesOtherNodesCopy() {
+        StorageAccess a = entityRegion(nodeA);
+        StorageAccess b = entityRegion(nodeB);
+        a.putIntoCache(1, "v1", null);
+        b.putIntoCache(1, "v1", null);
+        b.putIntoCache(2, "v2", null);
+
+        a.evictData(1);
+
+        assertThat(b.getFromCache(1, null)).isNull();
+        assertThat(b.getFromCache(2, null)).isEqualTo("v2");
+        // 本节点发出的消息被忽略，只有对方节点计数
+        assertThat(regionStats(nodeA, ENTITY_REGION)).containsEntry("remoteInvalidations", 0L);
+        assertThat(regionStats(nodeB, ENTITY_REGION)).containsEntry("remoteInvalidations", 1L);
+
+        a.evictData();
+        assertThat(b.getFromCache(2, null)).isNull();
+        // 消息体：nodeId \n 区域名 \n 编码后的键
+        assertThat(sent).extracting(body -> body.substring(body.indexOf('\n') + 1))
+                .containsExactly(ENTITY_REGION + "\nI1", ENTITY_REGION + "\nC");
+    }
+
+    @Test
+    void timestampWritesReachOtherNodes() {
+        StorageAccess a = nodeA.createTimestampsRegionStorageAccess(TIMESTAMPS_REGION, null);
+        StorageAccess b = nodeB.createTimestampsRegionStorageAccess(TIMESTAMPS_REGION, null);
+
+        a.putIntoCache("product_types", 1700000000000L, null);
+
+        assertThat(b.getFromCache("product_types", null)).isEqualTo(1700000000000L);
+    }
+
+    @Test
+    void queryResultsRegionDoesNotBroadcast() {
+        StorageAccess a = nodeA.createQueryResultsRegionStorageAccess(QUERY_REGION, null);
+        StorageAccess b = nodeB.createQueryResultsRegionStorageAccess(QUERY_REGION, null);
+        a.putIntoCache("query", "rows", null);
+        b.putIntoCache("query", "rows", null);
+
+        a.evictData("query");
+        a.evictData();
+
+        assertThat(sent).isEmpty();
+        assertThat(b.getFromCache("query", null)).isEqualTo("rows");
+    }
+
+    @Test
+    void malformedOrUnknownMessagesAreIgnored() {
+        StorageAccess b = entityRegion(nodeB);
+        b.putIntoCache(1, "v1", null);
+
+        nodeB.onMessage(message("other-node\n" + ENTITY_REGION), null);
+        nodeB.onMessage(message("other-node\nunknown-region\nC"), null);
+
+        assertThat(b.getFromCache(1, null)).isEqualTo("v1");
+        nodeB.onMessage(message("other-node\n" + ENTITY_REGION + "\nI1"), null);
+        assertThat(b.getFromCache(1, null)).isNull();
+    }
+
+    @Test
+    void publishFailureKeepsLocalEviction() {
+        StorageAccess a = entityRegion(nodeA);
+        StorageAccess b = entityRegion(nodeB);
+        a.putIntoCache(1, "v1", null);
+        b.putIntoCache(1, "v1", null);
+        redisDown.set(true);
+
+        a.evictData(1);
+
+        assertThat(a.getFromCache(1, null)).isNull();
+        // 其他节点的副本最多保留 ttl
+        assertThat(b.getFromCache(1, null)).isEqualTo("v1");
+    }
+
+    @Test
+    void statsAreKeyedByRegion() {
+        entityRegion(nodeA).putIntoCache(1, "v1", null);
+        nodeA.createQueryResultsRegionStorageAccess(QUERY_REGION, null);
+
+        assertThat(nodeA.getStats()).containsOnlyKeys(ENTITY_REGION, QUERY_REGION);
+        assertThat(regionStats(nodeA, ENTITY_REGION)).containsEntry("size", 1).containsEntry("puts", 1L);
+    }
+
+    private static StorageAccess entityRegion(InProcessRegionFactory node) {
+        DomainDataRegionConfig config = mock(DomainDataRegionConfig.class);
+        when(config.getRegionName()).thenReturn(ENTITY_REGION);
+        return node.createDomainDataStorageAccess(config, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> regionStats(InProcessRegionFactory node, String region) {
+        return (Map<String, Object>) node.getStats().get(region);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package com.cretas.aims.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InProcessRegionStorage 测试：按访问顺序淘汰、存活时间、失效消息编码、时间戳区域广播写入、应用远端消息
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class InProcessRegionStorageTest {
+
+    private static final String REGION = "com.cretas.aims.entity.ProductType";
+
+    /**
+     * 广播出去的消息体
+     */
+    private final List<String> published = new CopyOnWriteArrayList<>();
+
+    @Test
+    void evictsLeastRecentlyAccessedEntryWhenFull() {
+        InProcessRegionStorage storage = storage(2, 0, false);
+        storage.putIntoCache(1, "a", null);
+        storage.putIntoCache(2, "b", null);
+        // 访问 1 后，2 成为最久未访问的条目
+        storage.getFromCache(1, null);
+        storage.putIntoCache(3, "c", null);
+
+        assertThat(storage.getFromCache(1, null)).isEqualTo("a");
+        assertThat(storage.getFromCache(2, null)).isNull();
+        assertThat(storage.getFromCache(3, null)).isEqualTo("c");
+        assertThat(storage.getStats()).containsEntry("size", 2).containsEntry("evictions", 1L)
+                .containsEntry("puts", 3L).containsEntry("hits", 3L).containsEntry("misses", 1L)
+                .containsEntry("hitRate", 75.0);
+    }
+
+    @Test
+    void expiredEntriesAreDroppedOnRead() throws Exception {
+        InProcessRegionStorage storage = storage(0, 50L, false);
+        storage.putIntoCache(1, "a", null);
+        assertThat(storage.contains(1)).isTrue();
+
+        Thread.sleep(80);
+
+        assertThat(storage.getFromCache(1, null)).isNull();
+        assertThat(storage.contains(1)).isFalse();
+        assertThat(storage.getStats()).containsEntry("size", 0).containsEntry("evictions", 1L);
+    }
+
+    @Test
+    void evictionsAreBroadcastWithTypedKeys() {
+        InProcessRegionStorage storage = storage(0, 0, false);
+        storage.putIntoCache(5, "int", null);
+        storage.putIntoCache(7L, "long", null);
+        storage.putIntoCache("code", "string", null);
+
+        storage.evictData(5);
+        storage.evictData(7L);
+        storage.evictData("code");
+        // 不支持的键类型在其他节点上清空整个区域
+        storage.evictData(new Object());
+        storage.evictData();
+
+        assertThat(published).containsExactly("I5", "L7", "Scode", "C", "C");
+        assertThat(storage.getStats()).containsEntry("size", 0).containsEntry("removals", 4L);
+    }
+
+    @Test
+    void onlyTimestampRegionsBroadcastPuts() {
+        InProcessRegionStorage timestamps = storage(0, 0, true);
+        InProcessRegionStorage entities = storage(0, 0, false);
+
+        timestamps.putIntoCache("product_types", 1700000000000L, null);
+        entities.putIntoCache(1, "a", null);
+
+        assertThat(published).containsExactly("T1700000000000:product_types");
+    }
+
+    @Test
+    void remoteMessagesChangeOnlyLocalCopy() {
+        InProcessRegionStorage storage = storage(0, 0, false);
+        storage.putIntoCache(5, "int", null);
+        storage.putIntoCache(5L, "long", null);
+        storage.putIntoCache("5", "string", null);
+
+        storage.applyRemote("L5");
+        assertThat(storage.getFromCache(5L, null)).isNull();
+        assertThat(storage.getFromCache(5, null)).isEqualTo("int");
+
+        storage.applyRemote("I5");
+        assertThat(storage.getFromCache(5, null)).isNull();
+        assertThat(storage.getFromCache("5", null)).isEqualTo("string");
+
+        storage.applyRemote("T1700000000000:product_types");
+        assertThat(storage.getFromCache("product_types", null)).isEqualTo(1700000000000L);
+
+        storage.applyRemote("C");
+        storage.applyRemote("");
+        assertThat(storage.getStats()).containsEntry("size", 0).containsEntry("remoteInvalidations", 4L);
+        // 应用远端消息不再广播
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void concurrentAccessStaysWithinBound() throws Exception {
+        InProcessRegionStorage storage = storage(100, 0, false);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    int key = thread * 1000 + i;
+                    storage.putIntoCache(key, key, null);
+                    storage.getFromCache(key - 1, null);
+                    if (i % 10 == 0) {
+                        storage.evictData(key);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat((int) storage.getStats().get("size")).isLessThanOrEqualTo(100);
+        assertThat(storage.getStats()).containsEntry("puts", 8000L).containsEntry("removals", 800L);
+        assertThat(published).hasSize(800);
+    }
+
+    private InProcessRegionStorage storage(int maxEntries, long ttlMs, boolean broadcastPuts) {
+        return new InProcessRegionStorage(REGION, maxEntries, ttlMs, broadcastPuts,
+                (region, body) -> published.add(body));
+    }
+}
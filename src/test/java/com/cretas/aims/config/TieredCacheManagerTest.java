@@ -0,0 +1,200 @@
+package com.cretas.aims.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * TieredCache / TieredCacheManager 测试：两个节点共用同一个 L2，失效消息经模拟的 Redis 频道同步投递
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class TieredCacheManagerTest {
+
+    private static final String CHANNEL = "cache:invalidation";
+    private static final String CACHE = "dashboard";
+
+    private final List<TieredCacheManager> nodes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean redisDown = new AtomicBoolean();
+    private CacheManager sharedL2;
+    private TieredCacheManager nodeA;
+    private TieredCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        sharedL2 = new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new FailingCache(name, redisDown);
+            }
+        };
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        doAnswer(inv -> {
+            byte[] body = inv.<String>getArgument(1).getBytes(StandardCharsets.UTF_8);
+            for (TieredCacheManager node : nodes) {
+                node.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body), null);
+            }
+            return 1L;
+        }).when(redisTemplate).convertAndSend(eq(CHANNEL), anyString());
+
+        nodeA = new TieredCacheManager(sharedL2, redisTemplate, CHANNEL, 100, 60_000L);
+        nodeB = new TieredCacheManager(sharedL2, redisTemplate, CHANNEL, 100, 60_000L);
+        nodes.add(nodeA);
+        nodes.add(nodeB);
+    }
+
+    @Test
+    void readFallsThroughToL2AndFillsL1() {
+        nodeA.getCache(CACHE).put("F001", "v1");
+
+        assertThat(nodeB.getCache(CACHE).get("F001").get()).isEqualTo("v1");
+        assertThat(nodeB.getCache(CACHE).get("F001").get()).isEqualTo("v1");
+
+        assertThat(stats(nodeB)).containsEntry("l2Hits", 1L).containsEntry("l1Hits", 1L);
+    }
+
+    @Test
+    void writeOnOneNodeInvalidatesOtherNodesL1() {
+        Cache a = nodeA.getCache(CACHE);
+        Cache b = nodeB.getCache(CACHE);
+        a.put("F001", "v1");
+        assertThat(b.get("F001").get()).isEqualTo("v1");
+
+        a.put("F001", "v2");
+        assertThat(b.get("F001").get()).isEqualTo("v2");
+
+        a.evict("F001");
+        assertThat(b.get("F001")).isNull();
+
+        a.put("F002", "x");
+        b.get("F002");
+        a.clear();
+        assertThat(b.get("F002")).isNull();
+
+        // 本节点发出的消息被忽略，只有对方节点计数
+        assertThat(stats(nodeA)).containsEntry("remoteInvalidations", 0L);
+        assertThat(stats(nodeB)).containsEntry("remoteInvalidations", 5L);
+    }
+
+    @Test
+    void redisFailureFallsBackToL1() {
+        Cache a = nodeA.getCache(CACHE);
+        a.put("F001", "v1");
+        redisDown.set(true);
+
+        assertThat(a.get("F001").get()).isEqualTo("v1");
+        a.put("F002", "v2");
+        assertThat(a.get("F002").get()).isEqualTo("v2");
+        assertThat(nodeB.getCache(CACHE).get("F002")).isNull();
+        assertThat((long) stats(nodeA).get("l2Errors")).isGreaterThan(0L);
+    }
+
+    @Test
+    void concurrentLoadsOnOneNodeCallLoaderOnce() throws Exception {
+        Cache a = nodeA.getCache(CACHE);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return a.get("F001", () -> {
+                    loads.incrementAndGet();
+                    Thread.sleep(50);
+                    return "loaded";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<Object> future : futures) {
+            assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo("loaded");
+        }
+        executor.shutdown();
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void l1IsBoundedAndExpires() throws Exception {
+        TieredCacheManager small = new TieredCacheManager(sharedL2, mock(StringRedisTemplate.class), CHANNEL, 2, 50L);
+        Cache cache = small.getCache(CACHE);
+        cache.put("k1", 1);
+        cache.put("k2", 2);
+        cache.put("k3", 3);
+        assertThat(stats(small)).containsEntry("l1Size", 2).containsEntry("evictions", 1L);
+
+        Thread.sleep(80);
+        cache.get("k3");
+        // L1 已过期，从 L2 读回
+        assertThat(stats(small)).containsEntry("l2Hits", 1L).containsEntry("l1Hits", 0L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(TieredCacheManager node) {
+        return (Map<String, Object>) node.getStats().get(CACHE);
+    }
+
+    /**
+     * Redis 不可用时抛出连接异常的 L2
+     */
+    private static final class FailingCache extends ConcurrentMapCache {
+        private final AtomicBoolean down;
+
+        private FailingCache(String name, AtomicBoolean down) {
+            super(name);
+            this.down = down;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            check();
+            return super.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            check();
+            super.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            check();
+            super.evict(key);
+        }
+
+        private void check() {
+            if (down.get()) {
+                throw new RedisConnectionFailureException("redis down");
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.cretas.aims.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AIAnalysisService 流式分析测试：AI 服务有/无流式接口两种情况
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class AIAnalysisServiceTest {
+
+    private AIChatStubServer stub;
+    private AIServiceClient client;
+
+    private AIAnalysisService start(boolean streaming) throws Exception {
+        stub = new AIChatStubServer(40, streaming);
+        stub.start();
+        client = AIServiceClientTest.newClient(stub.getBaseUrl(), 5_000, 4);
+        return new AIAnalysisService(client);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void streamingServiceDeliversIncrementalDeltas() throws Exception {
+        AIAnalysisService service = start(true);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        Map<String, Object> result = service.streamCostAnalysis("F001", 1L, Map.of(), "s-1", "分析成本", deltas::add)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result).containsEntry("success", true).containsEntry("sessionId", "s-1");
+        assertThat(deltas).hasSizeGreaterThan(1);
+        assertThat(String.join("", deltas)).isEqualTo(result.get("aiAnalysis"));
+    }
+
+    @Test
+    void missingStreamEndpointFallsBackToChatAsSingleDelta() throws Exception {
+        AIAnalysisService service = start(false);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        Map<String, Object> first = service.streamCostAnalysis("F001", 1L, Map.of(), "s-2", "分析成本", deltas::add)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(first).containsEntry("success", true).containsEntry("sessionId", "s-2");
+        assertThat(deltas).containsExactly((String) first.get("aiAnalysis"));
+        // 一次 404 探测 + 一次 /api/ai/chat
+        assertThat(stub.getRequestCount()).isEqualTo(2);
+
+        Map<String, Object> second = service.streamCostAnalysis("F001", 1L, Map.of(), "s-2", "再分析", delta -> { })
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(second).containsEntry("success", true);
+        // 之后直接调用 /api/ai/chat，不再探测流式接口
+        assertThat(stub.getRequestCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,222 @@
+package com.cretas.aims.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试用 AI 服务桩
+ *
+ * 在本机随机端口启动一个轻量 HTTP 服务，模拟 Python AI 服务的
+ * /api/ai/chat、/api/ai/session/{id} 和 / 接口，按固定延迟返回固定格式结果。
+ * streaming 为 true 时额外提供 /api/ai/chat/stream（SSE）；为 false 时与当前 Python 服务一致，该路径返回 404。
+ * 延迟通过定时任务完成响应，不占用处理线程。
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@Slf4j
+public class AIChatStubServer {
+
+    /**
+     * 流式响应的 delta 事件数
+     */
+    private static final int STREAM_CHUNKS = 8;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 模拟的 AI 响应延迟（毫秒）
+     */
+    private final long latencyMs;
+
+    /**
+     * 是否提供 /api/ai/chat/stream
+     */
+    private final boolean streaming;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private HttpServer server;
+    private ScheduledExecutorService responder;
+
+    public AIChatStubServer(long latencyMs, boolean streaming) {
+        this.latencyMs = latencyMs;
+        this.streaming = streaming;
+    }
+
+    public void start() throws IOException {
+        responder = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ai-stub-responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "ai-stub-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/api/ai/chat", this::handleChat);
+        if (streaming) {
+            server.createContext("/api/ai/chat/stream", this::handleChatStream);
+        }
+        server.createContext("/api/ai/session/", exchange ->
+                respond(exchange, 0, Map.of("messages", List.of())));
+        server.createContext("/", exchange ->
+                respond(exchange, 0, Map.of("service", "cretas-ai-stub", "status", "ok")));
+        server.start();
+        log.info("AI服务桩已启动: port={}, latency={}ms", getPort(), latencyMs);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (responder != null) {
+            responder.shutdownNow();
+        }
+        log.info("AI服务桩已停止: 共处理 {} 个请求", requestCount.get());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleChat(HttpExchange exchange) throws IOException {
+        if (!"/api/ai/chat".equals(exchange.getRequestURI().getPath())) {
+            requestCount.incrementAndGet();
+            // 先读完请求体再返回，否则 HttpServer 可能关闭连接，客户端复用该连接的下一个请求会失败
+            drain(exchange);
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        Map<String, Object> request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = objectMapper.readValue(in, Map.class);
+        }
+        Object sessionId = request.get("session_id");
+        String message = String.valueOf(request.get("message"));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", true);
+        body.put("aiAnalysis", "【模拟分析】共收到 " + message.length() + " 个字符的成本数据。");
+        body.put("sessionId", sessionId != null ? sessionId : "stub-" + UUID.randomUUID());
+        body.put("messageCount", 1);
+        respond(exchange, latencyMs, body);
+    }
+
+    /**
+     * 流式响应：总延迟 latencyMs 平均分配到 STREAM_CHUNKS 个 delta 事件，最后发送 done 事件
+     */
+    @SuppressWarnings("unchecked")
+    private void handleChatStream(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        Map<String, Object> request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = objectMapper.readValue(in, Map.class);
+        }
+        requestCount.incrementAndGet();
+        Object sessionId = request.get("session_id");
+        String text = "【模拟分析】共收到 " + String.valueOf(request.get("message")).length() + " 个字符的成本数据。"
+                + "原料成本占比偏高，建议复核供应商报价并优化投料计划。";
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int chunkLength = (text.length() + STREAM_CHUNKS - 1) / STREAM_CHUNKS;
+        Map<String, Object> done = new HashMap<>();
+        done.put("done", true);
+        done.put("sessionId", sessionId != null ? sessionId : "stub-" + UUID.randomUUID());
+        done.put("messageCount", 1);
+        streamChunk(exchange, out, text, 0, chunkLength, done);
+    }
+
+    private void streamChunk(HttpExchange exchange, OutputStream out, String text, int offset, int chunkLength,
+                             Map<String, Object> done) {
+        responder.schedule(() -> {
+            try {
+                if (offset < text.length()) {
+                    String delta = text.substring(offset, Math.min(text.length(), offset + chunkLength));
+                    writeEvent(out, Map.of("delta", delta));
+                    streamChunk(exchange, out, text, offset + chunkLength, chunkLength, done);
+                } else {
+                    writeEvent(out, done);
+                    out.close();
+                    exchange.close();
+                }
+            } catch (IOException e) {
+                log.debug("AI服务桩流式响应失败: {}", e.getMessage());
+                exchange.close();
+            }
+        }, Math.max(1, latencyMs / STREAM_CHUNKS), TimeUnit.MILLISECONDS);
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+    }
+
+    private void writeEvent(OutputStream out, Map<String, Object> event) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void respond(HttpExchange exchange, long delayMs, Map<String, Object> body) throws IOException {
+        requestCount.incrementAndGet();
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        Runnable send = () -> {
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (IOException e) {
+                log.debug("AI服务桩响应失败: {}", e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        };
+        if (delayMs > 0) {
+            responder.schedule(send, delayMs, TimeUnit.MILLISECONDS);
+        } else {
+            send.run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.MobileDTO;
+import com.cretas.aims.entity.AIQuotaUsage;
+import com.cretas.aims.repository.AIQuotaUsageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AIQuotaService 测试（H2，MySQL 兼容模式）：并发预占不超过上限、退还只生效一次、并发首次访问只创建一条记录
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:quota;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AIQuotaService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AIQuotaServiceTest {
+
+    private static final String FACTORY_ID = "F001";
+    private static final int QUOTA_LIMIT = 10;
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 5;
+
+    @Autowired
+    private AIQuotaService quotaService;
+    @Autowired
+    private AIQuotaUsageRepository quotaUsageRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        // 不准备工厂数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        quotaUsageRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void concurrentReservationsNeverExceedLimit() throws Exception {
+        quotaService.updateQuotaLimit(FACTORY_ID, QUOTA_LIMIT);
+
+        int succeeded = runConcurrently(() -> {
+            int granted = 0;
+            for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                try {
+                    quotaService.reserve(FACTORY_ID, 1);
+                    granted++;
+                } catch (AIEnterpriseService.QuotaExceededException e) {
+                    // 配额已用完
+                }
+            }
+            return granted;
+        });
+
+        assertThat(succeeded).isEqualTo(QUOTA_LIMIT);
+        assertThat(currentWeek().getUsedCount()).isEqualTo(QUOTA_LIMIT);
+        MobileDTO.AIQuotaInfo info = quotaService.getQuotaInfo(FACTORY_ID);
+        assertThat(info.getRemaining()).isZero();
+        assertThat(info.getExceeded()).isTrue();
+    }
+
+    @Test
+    void refundReturnsQuotaOnlyOnce() {
+        quotaService.updateQuotaLimit(FACTORY_ID, 5);
+        AIQuotaService.Reservation reservation = quotaService.reserve(FACTORY_ID, 3);
+        quotaService.reserve(FACTORY_ID, 2);
+        assertThatThrownBy(() -> quotaService.reserve(FACTORY_ID, 1))
+                .isInstanceOf(AIEnterpriseService.QuotaExceededException.class);
+
+        quotaService.refund(reservation);
+        quotaService.refund(reservation);
+
+        assertThat(currentWeek().getUsedCount()).isEqualTo(2);
+        assertThat(quotaService.getQuotaInfo(FACTORY_ID).getRemaining()).isEqualTo(3);
+        quotaService.reserve(FACTORY_ID, 3);
+        assertThat(currentWeek().getUsedCount()).isEqualTo(5);
+    }
+
+    @Test
+    void concurrentFirstReservationsCreateOneWeekRow() throws Exception {
+        int succeeded = runConcurrently(() -> {
+            quotaService.reserve(FACTORY_ID, 1);
+            return 1;
+        });
+
+        assertThat(succeeded).isEqualTo(THREADS);
+        assertThat(quotaUsageRepository.findByFactoryIdOrderByWeekStartDesc(FACTORY_ID)).hasSize(1);
+        assertThat(currentWeek().getUsedCount()).isEqualTo(THREADS);
+    }
+
+    private int runConcurrently(Callable<Integer> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get(30, TimeUnit.SECONDS);
+        }
+        return total;
+    }
+
+    private AIQuotaUsage currentWeek() {
+        return quotaUsageRepository.findByFactoryIdAndWeekStart(FACTORY_ID, LocalDate.now().with(DayOfWeek.MONDAY))
+                .orElseThrow(IllegalStateException::new);
+    }
+}
@@ -0,0 +1,253 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.AIReportJob;
+import com.cretas.aims.entity.enums.ReportJobStatus;
+import com.cretas.aims.exception.BusinessException;
+import com.cretas.aims.repository.AIReportJobRepository;
+import com.cretas.aims.repository.FactoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * AIReportGenerationService / AIReportScheduler 补生成测试（H2，MySQL 兼容模式）：
+ * 并发上限、只补未成功的工厂、按状态统计进度、失败重试、重叠运行时每个工厂只生成一次、只重新领取超时的生成中任务
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reportjobs;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "cretas.ai.report.workers=3",
+        "cretas.ai.report.rate-per-second=1000",
+        "cretas.ai.report.burst=100",
+        "cretas.ai.report.max-attempts=3",
+        "cretas.ai.report.backoff=1",
+        "cretas.ai.report.stale-after=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AIReportGenerationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AIReportGenerationServiceTest {
+
+    private static final int WORKERS = 3;
+    private static final LocalDate WEEK_START = LocalDate.of(2025, 11, 10);
+    private static final LocalDate WEEK_END = LocalDate.of(2025, 11, 16);
+
+    @Autowired
+    private AIReportGenerationService service;
+    @Autowired
+    private AIReportJobRepository reportJobRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private AIEnterpriseService aiEnterpriseService;
+    @MockBean
+    private FactoryRepository factoryRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        // 不准备工厂数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        reportJobRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void generatesAllFactoriesWithinWorkerLimit() {
+        when(factoryRepository.findActiveFactoryIds()).thenReturn(factoryIds(10));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(inv -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return null;
+        }).when(aiEnterpriseService).generateWeeklyReport(anyString(), eq(WEEK_START), eq(WEEK_END));
+
+        Map<String, Object> summary = service.generateForAllFactories(
+                AIReportGenerationService.REPORT_WEEKLY, WEEK_START, WEEK_END);
+
+        assertThat(summary).containsEntry("total", 10).containsEntry("success", 10).containsEntry("failed", 0);
+        assertThat(maxRunning.get()).isGreaterThan(1).isLessThanOrEqualTo(WORKERS);
+        assertThat(reportJobRepository.findAll()).hasSize(10)
+                .allSatisfy(job -> assertThat(job.getStatus()).isEqualTo(ReportJobStatus.SUCCESS));
+    }
+
+    @Test
+    void resumeOnlyRunsFactoriesThatHaveNotSucceeded() {
+        when(factoryRepository.findActiveFactoryIds()).thenReturn(Arrays.asList("F1", "F2", "F3"));
+        reportJobRepository.save(job("F1", ReportJobStatus.SUCCESS, null));
+        reportJobRepository.save(job("F2", ReportJobStatus.FAILED, null));
+
+        AIReportScheduler scheduler = scheduler();
+        assertThat(scheduler.getReportProgress(AIReportGenerationService.REPORT_WEEKLY, WEEK_START))
+                .containsEntry("total", 2L).containsEntry("success", 1L).containsEntry("failed", 1L);
+
+        Map<String, Object> submitted = scheduler.resumeReports(
+                AIReportGenerationService.REPORT_WEEKLY, WEEK_START, WEEK_END);
+
+        assertThat(submitted).containsEntry("reportType", AIReportGenerationService.REPORT_WEEKLY)
+                .containsEntry("periodStart", WEEK_START);
+        verify(aiEnterpriseService, never()).generateWeeklyReport(eq("F1"), any(), any());
+        verify(aiEnterpriseService).generateWeeklyReport("F2", WEEK_START, WEEK_END);
+        verify(aiEnterpriseService).generateWeeklyReport("F3", WEEK_START, WEEK_END);
+        assertThat(scheduler.getReportProgress(AIReportGenerationService.REPORT_WEEKLY, WEEK_START))
+                .containsEntry("total", 3L).containsEntry("success", 3L)
+                .containsEntry("failed", 0L).containsEntry("running", 0L).containsEntry("pending", 0L);
+    }
+
+    @Test
+    void failedAttemptIsRetriedUntilSuccess() {
+        when(factoryRepository.findActiveFactoryIds()).thenReturn(Collections.singletonList("F1"));
+        Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        doAnswer(inv -> {
+            if (calls.computeIfAbsent(inv.getArgument(0), k -> new AtomicInteger()).incrementAndGet() == 1) {
+                throw new IllegalStateException("AI服务超时");
+            }
+            return null;
+        }).when(aiEnterpriseService).generateMonthlyReport(anyString(), any(), any());
+
+        Map<String, Object> summary = service.generateForAllFactories(
+                AIReportGenerationService.REPORT_MONTHLY, WEEK_START, WEEK_END);
+
+        assertThat(summary).containsEntry("success", 1).containsEntry("failed", 0);
+        assertThat(calls.get("F1").get()).isEqualTo(2);
+        assertThat(reportJobRepository.findAll()).singleElement()
+                .satisfies(job -> assertThat(job.getAttempts()).isEqualTo(2));
+    }
+
+    @Test
+    void overlappingRunsGenerateEachFactoryOnce() throws Exception {
+        List<String> factoryIds = factoryIds(6);
+        when(factoryRepository.findActiveFactoryIds()).thenReturn(factoryIds);
+        doAnswer(inv -> {
+            Thread.sleep(50);
+            return null;
+        }).when(aiEnterpriseService).generateWeeklyReport(anyString(), eq(WEEK_START), eq(WEEK_END));
+
+        // 定时任务与手动补生成同时运行同一周期
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<Map<String, Object>> run = () -> {
+            start.await();
+            return service.generateForAllFactories(AIReportGenerationService.REPORT_WEEKLY, WEEK_START, WEEK_END);
+        };
+        Future<Map<String, Object>> first = executor.submit(run);
+        Future<Map<String, Object>> second = executor.submit(run);
+        start.countDown();
+        Map<String, Object> a = first.get(30, TimeUnit.SECONDS);
+        Map<String, Object> b = second.get(30, TimeUnit.SECONDS);
+
+        for (String factoryId : factoryIds) {
+            verify(aiEnterpriseService, times(1)).generateWeeklyReport(factoryId, WEEK_START, WEEK_END);
+        }
+        assertThat((int) a.get("success") + (int) b.get("success")).isEqualTo(6);
+        assertThat(reportJobRepository.findAll()).hasSize(6)
+                .allSatisfy(job -> assertThat(job.getAttempts()).isEqualTo(1));
+    }
+
+    @Test
+    void runningJobIsReclaimedOnlyAfterStaleTimeout() {
+        when(factoryRepository.findActiveFactoryIds()).thenReturn(Arrays.asList("F1", "F2"));
+        // F1 正由其他运行生成；F2 的运行两小时前中断
+        reportJobRepository.save(job("F1", ReportJobStatus.RUNNING, LocalDateTime.now().minusMinutes(10)));
+        reportJobRepository.save(job("F2", ReportJobStatus.RUNNING, LocalDateTime.now().minusHours(2)));
+
+        Map<String, Object> summary = service.generateForAllFactories(
+                AIReportGenerationService.REPORT_WEEKLY, WEEK_START, WEEK_END);
+
+        assertThat(summary).containsEntry("inProgress", 1).containsEntry("success", 1);
+        verify(aiEnterpriseService, never()).generateWeeklyReport(eq("F1"), any(), any());
+        verify(aiEnterpriseService).generateWeeklyReport("F2", WEEK_START, WEEK_END);
+    }
+
+    @Test
+    void resumeRejectsUnknownReportType() {
+        assertThatThrownBy(() -> scheduler().resumeReports("daily", WEEK_START, WEEK_END))
+                .isInstanceOf(BusinessException.class);
+        verifyNoInteractions(factoryRepository);
+    }
+
+    private AIReportScheduler scheduler() {
+        AIReportScheduler scheduler = new AIReportScheduler();
+        ReflectionTestUtils.setField(scheduler, "reportGenerationService", service);
+        // 补生成在调用线程中直接执行
+        ReflectionTestUtils.setField(scheduler, "taskExecutor", (Executor) Runnable::run);
+        return scheduler;
+    }
+
+    private static List<String> factoryIds(int count) {
+        List<String> factoryIds = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            factoryIds.add("F" + i);
+        }
+        return factoryIds;
+    }
+
+    private static AIReportJob job(String factoryId, ReportJobStatus status, LocalDateTime startedAt) {
+        return AIReportJob.builder()
+                .factoryId(factoryId)
+                .reportType(AIReportGenerationService.REPORT_WEEKLY)
+                .periodStart(WEEK_START)
+                .periodEnd(WEEK_END)
+                .status(status)
+                .attempts(1)
+                .startedAt(startedAt)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.exception.BusinessException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AIServiceClient 测试（对接 AIChatStubServer）：正常响应、读取超时、在途上限、SSE 流式解析
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class AIServiceClientTest {
+
+    private AIChatStubServer stub;
+    private AIServiceClient client;
+
+    private void start(long latencyMs, long readTimeoutMs, int maxConcurrent) throws Exception {
+        stub = new AIChatStubServer(latencyMs, true);
+        stub.start();
+        client = newClient(stub.getBaseUrl(), readTimeoutMs, maxConcurrent);
+    }
+
+    /**
+     * 创建指向 baseUrl 的客户端（流式整体超时 10 秒）
+     */
+    static AIServiceClient newClient(String baseUrl, long readTimeoutMs, int maxConcurrent) {
+        AIServiceClient client = new AIServiceClient(new ObjectMapper());
+        ReflectionTestUtils.setField(client, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", readTimeoutMs);
+        ReflectionTestUtils.setField(client, "streamTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(client, "maxConcurrent", maxConcurrent);
+        client.init();
+        return client;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void postReturnsParsedBody() throws Exception {
+        start(10, 5_000, 4);
+
+        Map<String, Object> body = client.post("/api/ai/chat", Map.of("message", "成本数据", "session_id", "s-1"));
+
+        assertThat(body).containsEntry("success", true).containsEntry("sessionId", "s-1");
+        assertThat(body.get("aiAnalysis").toString()).contains("模拟分析");
+    }
+
+    @Test
+    void slowServiceFailsWithTimeoutAfterReadTimeout() throws Exception {
+        start(2_000, 200, 4);
+        long startTime = System.nanoTime();
+
+        assertThatThrownBy(() -> client.post("/api/ai/chat", Map.of("message", "x")))
+                .isInstanceOfSatisfying(BusinessException.class, e -> assertThat(e.getCode()).isEqualTo(504));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)).isLessThan(1_500);
+    }
+
+    @Test
+    void requestsBeyondMaxConcurrentFailFast() throws Exception {
+        start(500, 5_000, 2);
+
+        CompletableFuture<Map<String, Object>> first = client.postAsync("/api/ai/chat", Map.of("message", "1"));
+        CompletableFuture<Map<String, Object>> second = client.postAsync("/api/ai/chat", Map.of("message", "2"));
+        CompletableFuture<Map<String, Object>> third = client.postAsync("/api/ai/chat", Map.of("message", "3"));
+
+        assertThat(third).isCompletedExceptionally();
+        assertThatThrownBy(third::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(BusinessException.class);
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsEntry("success", true);
+        assertThat(second.get(5, TimeUnit.SECONDS)).containsEntry("success", true);
+        // 许可释放后可以继续请求
+        assertThat(client.post("/api/ai/chat", Map.of("message", "4"))).containsEntry("success", true);
+    }
+
+    @Test
+    void streamDeliversDeltasThenDone() throws Exception {
+        start(80, 5_000, 4);
+        List<Map<String, Object>> events = new CopyOnWriteArrayList<>();
+
+        client.postStream("/api/ai/chat/stream", Map.of("message", "成本数据", "session_id", "s-2"), events::add)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(events).hasSizeGreaterThan(1);
+        assertThat(events.subList(0, events.size() - 1)).allSatisfy(event -> assertThat(event).containsKey("delta"));
+        assertThat(events.get(events.size() - 1)).containsEntry("done", true).containsEntry("sessionId", "s-2");
+    }
+
+    @Test
+    void missingStreamEndpointFailsWithNotSupported() throws Exception {
+        stub = new AIChatStubServer(10, false);
+        stub.start();
+        client = newClient(stub.getBaseUrl(), 5_000, 4);
+
+        assertThatThrownBy(() -> client.postStream("/api/ai/chat/stream", Map.of("message", "x"), event -> { })
+                .get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BusinessException.class)
+                .satisfies(e -> assertThat(((BusinessException) e.getCause()).getCode())
+                        .isEqualTo(AIServiceClient.STREAM_NOT_SUPPORTED));
+    }
+}
@@ -0,0 +1,248 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.AIAuditLog;
+import com.cretas.aims.entity.SystemLog;
+import com.cretas.aims.repository.AIAuditLogRepository;
+import com.cretas.aims.repository.SystemLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * AsyncLogSink 测试：并发提交不丢不重、按批写入、队列满时的两种策略、批量失败逐条重试、关闭时写完队列
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class AsyncLogSinkTest {
+
+    private static final int FLUSH_SIZE = 50;
+
+    private SystemLogRepository systemLogRepository;
+    private AIAuditLogRepository auditLogRepository;
+    private AsyncLogSink sink;
+    private ExecutorService executor;
+
+    /**
+     * 写入的记录（按写入顺序）与每批条数
+     */
+    private final List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        systemLogRepository = mock(SystemLogRepository.class);
+        auditLogRepository = mock(AIAuditLogRepository.class);
+        when(systemLogRepository.saveAll(anyList())).thenAnswer(inv -> recordBatch(inv.getArgument(0)));
+        when(auditLogRepository.saveAll(anyList())).thenAnswer(inv -> recordBatch(inv.getArgument(0)));
+        when(systemLogRepository.save(any(SystemLog.class))).thenAnswer(inv -> record(inv.getArgument(0)));
+        when(auditLogRepository.save(any(AIAuditLog.class))).thenAnswer(inv -> record(inv.getArgument(0)));
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (sink != null) {
+            sink.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentSubmitsAreWrittenOnceInBatches() throws Exception {
+        sink = newSink(100_000, 20L, "drop");
+        int threads = 8;
+        int perThread = 500;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    if (i % 2 == 0) {
+                        sink.submit(systemLog("t" + thread + "-" + i));
+                    } else {
+                        sink.submit(auditLog("t" + thread + "-" + i));
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        sink.shutdown();
+
+        assertThat(written).hasSize(threads * perThread).doesNotHaveDuplicates();
+        assertThat(batchSizes).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(FLUSH_SIZE));
+        assertThat(batchSizes.size()).isLessThan(threads * perThread / 2);
+        assertThat(sink.getStats()).containsEntry("written", (long) threads * perThread)
+                .containsEntry("dropped", 0L)
+                .containsEntry("queueSize", 0);
+    }
+
+    @Test
+    void fullQueueDropsWhenOverflowIsDrop() throws Exception {
+        CountDownLatch release = blockFirstBatch();
+        sink = newSink(10, 10L, "drop");
+
+        sink.submit(systemLog("first"));
+        awaitQueueEmpty();
+        for (int i = 0; i < 15; i++) {
+            sink.submit(systemLog("queued-" + i));
+        }
+
+        assertThat(sink.getStats()).containsEntry("queueSize", 10).containsEntry("dropped", 5L);
+        release.countDown();
+        sink.shutdown();
+        assertThat(written).hasSize(11);
+    }
+
+    @Test
+    void fullQueueWritesOnCallerThreadWhenOverflowIsCallerRuns() throws Exception {
+        CountDownLatch release = blockFirstBatch();
+        sink = newSink(10, 10L, "caller-runs");
+
+        sink.submit(systemLog("first"));
+        awaitQueueEmpty();
+        for (int i = 0; i < 15; i++) {
+            sink.submit(systemLog("queued-" + i));
+        }
+
+        // 超出容量的 5 条已由调用线程同步写入
+        assertThat(written).hasSize(5);
+        assertThat(sink.getStats()).containsEntry("callerRuns", 5L).containsEntry("dropped", 0L);
+        release.countDown();
+        sink.shutdown();
+        assertThat(written).hasSize(16);
+    }
+
+    @Test
+    void failedBatchIsRetriedRecordByRecord() {
+        when(systemLogRepository.saveAll(anyList())).thenThrow(new IllegalStateException("batch insert failed"));
+        when(systemLogRepository.save(any(SystemLog.class))).thenAnswer(inv -> {
+            SystemLog systemLog = inv.getArgument(0);
+            if ("bad".equals(systemLog.getMessage())) {
+                throw new IllegalStateException("data too long");
+            }
+            return record(systemLog);
+        });
+        sink = newSink(1000, 60_000L, "drop");
+
+        sink.submit(systemLog("a"));
+        sink.submit(systemLog("bad"));
+        sink.submit(systemLog("b"));
+        sink.shutdown();
+
+        assertThat(written).hasSize(2);
+        assertThat(sink.getStats()).containsEntry("written", 2L).containsEntry("failed", 1L);
+    }
+
+    @Test
+    void shutdownDrainsQueuedLogs() {
+        sink = newSink(1000, 60_000L, "drop");
+        for (int i = 0; i < 30; i++) {
+            sink.submit(auditLog("pending-" + i));
+        }
+        assertThat(written).isEmpty();
+
+        sink.shutdown();
+
+        assertThat(written).hasSize(30);
+        assertThat(sink.getStats()).containsEntry("queueSize", 0);
+    }
+
+    private AsyncLogSink newSink(int capacity, long flushIntervalMs, String overflow) {
+        AsyncLogSink logSink = new AsyncLogSink(systemLogRepository, auditLogRepository, new NoOpTransactionManager());
+        ReflectionTestUtils.setField(logSink, "capacity", capacity);
+        ReflectionTestUtils.setField(logSink, "flushSize", FLUSH_SIZE);
+        ReflectionTestUtils.setField(logSink, "flushIntervalMs", flushIntervalMs);
+        ReflectionTestUtils.setField(logSink, "overflow", overflow);
+        ReflectionTestUtils.setField(logSink, "shutdownTimeoutMs", 5_000L);
+        logSink.start();
+        return logSink;
+    }
+
+    /**
+     * 写入线程的第一批阻塞到返回的闩被释放，调用线程的同步写入不受影响
+     */
+    private CountDownLatch blockFirstBatch() {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(systemLogRepository.saveAll(anyList())).thenAnswer(inv -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return recordBatch(inv.getArgument(0));
+        });
+        return release;
+    }
+
+    private void awaitQueueEmpty() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((int) sink.getStats().get("queueSize") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // 留出时间让写入线程进入被阻塞的 saveAll
+        Thread.sleep(50);
+    }
+
+    private List<Object> recordBatch(List<?> batch) {
+        batchSizes.add(batch.size());
+        written.addAll(batch);
+        return new ArrayList<>(batch);
+    }
+
+    private Object record(Object log) {
+        written.add(log);
+        return log;
+    }
+
+    private static SystemLog systemLog(String message) {
+        SystemLog systemLog = new SystemLog();
+        systemLog.setMessage(message);
+        return systemLog;
+    }
+
+    private static AIAuditLog auditLog(String question) {
+        AIAuditLog auditLog = new AIAuditLog();
+        auditLog.setQuestion(question);
+        return auditLog;
+    }
+
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
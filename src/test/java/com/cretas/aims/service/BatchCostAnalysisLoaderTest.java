@@ -0,0 +1,73 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.MaterialBatch;
+import com.cretas.aims.entity.MaterialConsumption;
+import com.cretas.aims.entity.ProductionBatch;
+import com.cretas.aims.repository.EquipmentRepository;
+import com.cretas.aims.repository.EquipmentUsageRepository;
+import com.cretas.aims.repository.MaterialConsumptionRepository;
+import com.cretas.aims.repository.ProductionPlanRepository;
+import com.cretas.aims.repository.QualityInspectionRepository;
+import com.cretas.aims.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * BatchCostAnalysisLoader 测试：单个批次数据异常只跳过该批次
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class BatchCostAnalysisLoaderTest {
+
+    @Test
+    void brokenBatchIsSkippedWithoutFailingOthers() {
+        MaterialConsumptionRepository consumptionRepository = mock(MaterialConsumptionRepository.class);
+        BatchCostAnalysisLoader loader = new BatchCostAnalysisLoader(
+                mock(ProductionPlanRepository.class), consumptionRepository,
+                mock(EquipmentUsageRepository.class), mock(EquipmentRepository.class),
+                mock(QualityInspectionRepository.class), mock(UserRepository.class));
+
+        MaterialBatch priced = new MaterialBatch();
+        priced.setBatchNumber("MB-1");
+        priced.setUnitPrice(new BigDecimal("2.50"));
+        MaterialBatch unpriced = new MaterialBatch();
+        unpriced.setBatchNumber("MB-2");
+        when(consumptionRepository.findWithMaterialByProductionBatchIdIn(anyCollection())).thenReturn(Arrays.asList(
+                consumption(1L, priced, "4"),
+                consumption(2L, unpriced, "3"),
+                consumption(3L, priced, "2")));
+
+        Map<Long, Map<String, Object>> result = loader.load("F001",
+                Arrays.asList(batch(1L), batch(2L), batch(3L)));
+
+        assertThat(result).containsOnlyKeys(1L, 3L);
+        assertThat((BigDecimal) result.get(1L).get("totalMaterialCost")).isEqualByComparingTo("10.00");
+        assertThat((BigDecimal) result.get(3L).get("totalMaterialCost")).isEqualByComparingTo("5.00");
+    }
+
+    private static ProductionBatch batch(Long id) {
+        ProductionBatch batch = new ProductionBatch();
+        batch.setId(id);
+        batch.setFactoryId("F001");
+        batch.setBatchNumber("PB-" + id);
+        return batch;
+    }
+
+    private static MaterialConsumption consumption(Long productionBatchId, MaterialBatch materialBatch, String quantity) {
+        MaterialConsumption consumption = new MaterialConsumption();
+        consumption.setProductionBatchId(productionBatchId);
+        consumption.setBatch(materialBatch);
+        consumption.setQuantity(new BigDecimal(quantity));
+        return consumption;
+    }
+}
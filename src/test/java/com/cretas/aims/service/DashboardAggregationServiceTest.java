@@ -0,0 +1,86 @@
+package com.cretas.aims.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DashboardAggregationService 测试：超时降级、超时取消、按工厂统计耗时
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class DashboardAggregationServiceTest {
+
+    private ExecutorService executor;
+    private DashboardAggregationService service;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        service = new DashboardAggregationService();
+        ReflectionTestUtils.setField(service, "dashboardExecutor", executor);
+        ReflectionTestUtils.setField(service, "sectionTimeoutMillis", 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void timedOutSectionIsDegradedAndInterrupted() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<String> degraded = new CopyOnWriteArrayList<>();
+
+        String result = service.submit("F001", "slow", () -> {
+            try {
+                Thread.sleep(10_000);
+                return "late";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return "interrupted";
+            }
+        }, () -> "fallback", degraded).get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo("fallback");
+        assertThat(degraded).containsExactly("slow");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void failedSectionUsesFallback() throws Exception {
+        List<String> degraded = new CopyOnWriteArrayList<>();
+
+        Integer result = service.<Integer>submit("F001", "broken", () -> {
+            throw new IllegalStateException("boom");
+        }, () -> -1, degraded).get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo(-1);
+        assertThat(degraded).containsExactly("broken");
+    }
+
+    @Test
+    void latencyStatsAreKeptPerFactory() throws Exception {
+        service.submit("F001", "production", () -> 1, () -> 0, null).get(5, TimeUnit.SECONDS);
+        service.submit("F002", "inventory", () -> 2, () -> 0, null).get(5, TimeUnit.SECONDS);
+
+        Map<String, Map<String, Object>> f1 = service.getSectionLatencyStats("F001");
+        assertThat(f1).containsOnlyKeys("production");
+        assertThat(f1.get("production").get("count")).isEqualTo(1L);
+        assertThat(service.getSectionLatencyStats("F002")).containsOnlyKeys("inventory");
+        assertThat(service.getSectionLatencyStats("F404")).isEmpty();
+    }
+}
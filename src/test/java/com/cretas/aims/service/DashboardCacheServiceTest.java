@@ -0,0 +1,312 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.report.DashboardStatisticsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * DashboardCacheService 测试：旧值有最长返回时间、降级结果不缓存但会记为旧值、共享版本变化时不写缓存、变更合并重算
+ *
+ * 后台重算由测试手动执行，旧值的存活时间由可控时钟推进，结果与执行快慢无关
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class DashboardCacheServiceTest {
+
+    private static final String FACTORY_ID = "F001";
+    private static final long MAX_STALE_AGE_MS = 60_000L;
+
+    /**
+     * 模拟 Redis 中的共享版本号
+     */
+    private final Map<String, AtomicLong> redisCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ManualClock clock = new ManualClock();
+    private final ManualExecutor refreshPool = new ManualExecutor();
+
+    private ConcurrentMapCacheManager cacheManager;
+    private ValueOperations<String, String> valueOperations;
+    private DashboardCacheService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(inv -> {
+            AtomicLong counter = redisCounters.get(inv.<String>getArgument(0));
+            return counter == null ? null : String.valueOf(counter.get());
+        });
+        when(valueOperations.increment(anyString())).thenAnswer(inv ->
+                redisCounters.computeIfAbsent(inv.getArgument(0), key -> new AtomicLong()).incrementAndGet());
+
+        SingleFlightService singleFlightService = new SingleFlightService(redisTemplate);
+        ReflectionTestUtils.setField(singleFlightService, "waitTimeoutMs", 10_000L);
+
+        cacheManager = new ConcurrentMapCacheManager();
+        service = new DashboardCacheService(cacheManager, singleFlightService, redisTemplate);
+        ReflectionTestUtils.setField(service, "refreshWorkers", 1);
+        ReflectionTestUtils.setField(service, "maxStaleAgeMs", MAX_STALE_AGE_MS);
+        service.init();
+        ((ExecutorService) ReflectionTestUtils.getField(service, "refreshPool")).shutdownNow();
+        ReflectionTestUtils.setField(service, "refreshPool", refreshPool);
+        ReflectionTestUtils.setField(service, "clock", clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void staleValueIsServedOnlyUpToMaxAge() {
+        service.registerLoader(factoryId -> counted(clean()));
+        DashboardStatisticsDTO first = service.get(FACTORY_ID);
+
+        service.onDataChanged(FACTORY_ID);
+        clock.advance(MAX_STALE_AGE_MS);
+        assertThat(service.get(FACTORY_ID)).isSameAs(first);
+        assertThat(service.getStats()).containsEntry("staleServed", 1L);
+
+        // 后台重算尚未执行，旧值已超龄
+        clock.advance(1);
+        DashboardStatisticsDTO fresh = service.get(FACTORY_ID);
+
+        assertThat(fresh).isNotSameAs(first);
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(service.getStats()).containsEntry("staleServed", 1L).containsEntry("staleExpired", 1L);
+    }
+
+    @Test
+    void degradedResultIsNotCachedButReplacesExpiredCleanValue() {
+        service.registerLoader(factoryId -> counted(loads.get() == 0 ? clean() : degraded()));
+        DashboardStatisticsDTO first = service.get(FACTORY_ID);
+        assertThat(cache().get(FACTORY_ID)).isNotNull();
+
+        // 缓存过期，重算一直降级
+        cache().evict(FACTORY_ID);
+        clock.advance(MAX_STALE_AGE_MS + 1);
+        DashboardStatisticsDTO degraded = service.get(FACTORY_ID);
+
+        assertThat(degraded).isNotSameAs(first);
+        assertThat(degraded.getDegradedSections()).containsExactly("finance");
+        assertThat(cache().get(FACTORY_ID)).isNull();
+        // 降级结果已替换超龄的完整结果，之后的请求不再返回很久以前的数据
+        assertThat(service.get(FACTORY_ID)).isSameAs(degraded);
+        assertThat(service.getStats()).containsEntry("degradedResults", 1L).containsEntry("staleServed", 1L);
+
+        refreshPool.runAll();
+        assertThat(service.getStats()).containsEntry("degradedResults", 2L);
+        assertThat(cache().get(FACTORY_ID)).isNull();
+    }
+
+    @Test
+    void degradedResultDoesNotReplaceRecentCleanValue() {
+        service.registerLoader(factoryId -> counted(loads.get() == 0 ? clean() : degraded()));
+        DashboardStatisticsDTO first = service.get(FACTORY_ID);
+
+        service.onDataChanged(FACTORY_ID);
+        refreshPool.runAll();
+
+        assertThat(service.getStats()).containsEntry("degradedResults", 1L);
+        assertThat(service.get(FACTORY_ID)).isSameAs(first);
+    }
+
+    @Test
+    void changeOnAnotherNodeDuringComputeSkipsCacheWrite() {
+        service.registerLoader(factoryId -> {
+            if (loads.get() == 0) {
+                // 其他节点在本次计算期间提交了变更
+                redisCounters.computeIfAbsent("dashboard:version:" + factoryId, key -> new AtomicLong())
+                        .incrementAndGet();
+            }
+            return counted(clean());
+        });
+
+        DashboardStatisticsDTO result = service.get(FACTORY_ID);
+
+        assertThat(result).isNotNull();
+        assertThat(cache().get(FACTORY_ID)).isNull();
+        assertThat(service.getStats()).containsEntry("skippedWrites", 1L);
+    }
+
+    @Test
+    void unreachableRedisFallsBackToLocalVersion() {
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("redis down"));
+        when(valueOperations.increment(anyString())).thenThrow(new RedisConnectionFailureException("redis down"));
+        service.registerLoader(factoryId -> counted(clean()));
+
+        service.get(FACTORY_ID);
+        assertThat(cache().get(FACTORY_ID)).isNotNull();
+
+        service.onDataChanged(FACTORY_ID);
+        assertThat(cache().get(FACTORY_ID)).isNull();
+        refreshPool.runAll();
+        assertThat(cache().get(FACTORY_ID)).isNotNull();
+        assertThat(service.getStats()).containsEntry("changeEvents", 1L);
+    }
+
+    @Test
+    void burstOfChangesIsCoalescedIntoOneRecompute() {
+        service.registerLoader(factoryId -> counted(clean()));
+        service.get(FACTORY_ID);
+
+        for (int i = 0; i < 20; i++) {
+            service.onDataChanged(FACTORY_ID);
+        }
+        refreshPool.runAll();
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(service.getStats()).containsEntry("changeEvents", 20L)
+                .containsEntry("coalescedRefreshes", 19L)
+                .containsEntry("refreshing", 0);
+        assertThat(cache().get(FACTORY_ID)).isNotNull();
+    }
+
+    @Test
+    void changeDuringRefreshTriggersOneMoreRecompute() {
+        service.registerLoader(factoryId -> {
+            if (loads.get() == 1) {
+                // 后台重算期间又有提交
+                service.onDataChanged(factoryId);
+            }
+            return counted(clean());
+        });
+        service.get(FACTORY_ID);
+
+        service.onDataChanged(FACTORY_ID);
+        refreshPool.runAll();
+
+        assertThat(loads.get()).isEqualTo(3);
+        assertThat(service.getStats()).containsEntry("skippedWrites", 1L).containsEntry("coalescedRefreshes", 1L);
+        assertThat(cache().get(FACTORY_ID)).isNotNull();
+    }
+
+    private DashboardStatisticsDTO counted(DashboardStatisticsDTO result) {
+        loads.incrementAndGet();
+        return result;
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(DashboardCacheService.CACHE_NAME);
+    }
+
+    private static DashboardStatisticsDTO clean() {
+        return DashboardStatisticsDTO.builder().degradedSections(Collections.emptyList()).build();
+    }
+
+    private static DashboardStatisticsDTO degraded() {
+        return DashboardStatisticsDTO.builder().degradedSections(Collections.singletonList("finance")).build();
+    }
+
+    /**
+     * 手动推进的时钟
+     */
+    private static final class ManualClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        void advance(long ms) {
+            millis.addAndGet(ms);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    /**
+     * 任务先排队，由测试线程调用 runAll 执行（包括执行期间新提交的任务）
+     */
+    private static final class ManualExecutor extends AbstractExecutorService {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean shutdown;
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
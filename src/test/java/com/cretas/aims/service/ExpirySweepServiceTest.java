@@ -0,0 +1,180 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.SystemLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ExpirySweepService 测试（H2，MySQL 兼容模式）：块边界、主键游标、每块一次提交、按工厂通知仪表盘并记录审计日志
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class ExpirySweepServiceTest {
+
+    private static final int CHUNK_SIZE = 3;
+    private static final LocalDate TODAY = LocalDate.of(2025, 11, 20);
+
+    private final List<ExpirySweepService.ExpiredRecordsEvent> events = new ArrayList<>();
+
+    private JdbcTemplate jdbcTemplate;
+    private CountingTransactionManager transactionManager;
+    private DashboardCacheService dashboardCacheService;
+    private AsyncLogSink asyncLogSink;
+    private ExpirySweepService service;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:sweep;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sweep_items (id BIGINT PRIMARY KEY, factory_id VARCHAR(50), " +
+                "status VARCHAR(20), expire_date DATE, note VARCHAR(20))");
+        transactionManager = new CountingTransactionManager(dataSource);
+
+        dashboardCacheService = mock(DashboardCacheService.class);
+        asyncLogSink = mock(AsyncLogSink.class);
+        ExpiredRecordsListener listener = new ExpiredRecordsListener(dashboardCacheService, asyncLogSink);
+
+        service = new ExpirySweepService(jdbcTemplate, transactionManager, event -> {
+            ExpirySweepService.ExpiredRecordsEvent expired = (ExpirySweepService.ExpiredRecordsEvent) event;
+            events.add(expired);
+            listener.onExpiredRecords(expired);
+        });
+        ReflectionTestUtils.setField(service, "chunkSize", CHUNK_SIZE);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE sweep_items");
+    }
+
+    @Test
+    void chunkSizePlusOneRowsAreSweptInTwoChunks() {
+        // 4 条过期记录（chunkSize + 1），中间夹着未过期的记录
+        insert(1, "F001", TODAY.minusDays(3));
+        insert(2, "F002", TODAY.minusDays(2));
+        insert(3, "F001", TODAY.plusDays(1));
+        insert(4, "F001", TODAY.minusDays(1));
+        insert(5, "F002", TODAY.plusDays(5));
+        insert(6, "F002", TODAY.minusDays(1));
+
+        int swept = service.sweep(expirySpec());
+
+        assertThat(swept).isEqualTo(4);
+        assertThat(events).extracting(ExpirySweepService.ExpiredRecordsEvent::getIds)
+                .containsExactly(Arrays.asList(1L, 2L, 4L), Collections.singletonList(6L));
+        // 最后一块不足 chunkSize 时不再查询，每块一次提交
+        assertThat(transactionManager.commits.get()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM sweep_items WHERE status = 'EXPIRED' ORDER BY id",
+                Long.class)).containsExactly(1L, 2L, 4L, 6L);
+        assertThat(events.get(0).getIdsByFactory()).containsEntry("F001", Arrays.asList(1L, 4L))
+                .containsEntry("F002", Collections.singletonList(2L));
+    }
+
+    @Test
+    void cursorAdvancesWhenUpdateDoesNotChangeCondition() {
+        for (long id = 1; id <= 7; id++) {
+            insert(id, "F001", TODAY.minusDays(1));
+        }
+
+        // SET 不影响 WHERE 条件，只靠主键游标前进
+        int swept = service.sweep(ExpirySweepService.SweepSpec.builder()
+                .name("note")
+                .table("sweep_items")
+                .assignments("note = 'seen'")
+                .condition("expire_date < ?")
+                .param(TODAY)
+                .build());
+
+        assertThat(swept).isEqualTo(7);
+        assertThat(events).extracting(ExpirySweepService.ExpiredRecordsEvent::getIds)
+                .containsExactly(Arrays.asList(1L, 2L, 3L), Arrays.asList(4L, 5L, 6L), Collections.singletonList(7L));
+        assertThat(transactionManager.commits.get()).isEqualTo(3);
+        // 未设置 factoryColumn，不通知仪表盘也不记审计
+        verify(dashboardCacheService, never()).onDataChanged(any());
+        verify(asyncLogSink, never()).submit(any(SystemLog.class));
+    }
+
+    @Test
+    void exactlyChunkSizeRowsNeedOneEmptyChunk() {
+        for (long id = 1; id <= CHUNK_SIZE; id++) {
+            insert(id, "F001", TODAY.minusDays(1));
+        }
+
+        assertThat(service.sweep(expirySpec())).isEqualTo(CHUNK_SIZE);
+        assertThat(events).hasSize(1);
+        assertThat(transactionManager.commits.get()).isEqualTo(2);
+    }
+
+    @Test
+    void eachFactoryInChunkIsNotifiedAndAudited() {
+        insert(1, "F001", TODAY.minusDays(1));
+        insert(2, "F002", TODAY.minusDays(1));
+        insert(3, "F001", TODAY.minusDays(1));
+        insert(4, "F001", TODAY.minusDays(1));
+
+        service.sweep(expirySpec());
+
+        // 两块都包含 F001
+        verify(dashboardCacheService, times(2)).onDataChanged("F001");
+        verify(dashboardCacheService).onDataChanged("F002");
+        verify(asyncLogSink, times(3)).submit(any(SystemLog.class));
+    }
+
+    private ExpirySweepService.SweepSpec expirySpec() {
+        return ExpirySweepService.SweepSpec.builder()
+                .name("sweep-items-expiry")
+                .table("sweep_items")
+                .assignments("status = 'EXPIRED'")
+                .condition("status = 'AVAILABLE' AND expire_date < ?")
+                .param(TODAY)
+                .factoryColumn("factory_id")
+                .build();
+    }
+
+    private void insert(long id, String factoryId, LocalDate expireDate) {
+        jdbcTemplate.update("INSERT INTO sweep_items (id, factory_id, status, expire_date) VALUES (?, ?, 'AVAILABLE', ?)",
+                id, factoryId, expireDate);
+    }
+
+    /**
+     * 统计提交次数
+     */
+    private static final class CountingTransactionManager extends DataSourceTransactionManager {
+        private final AtomicInteger commits = new AtomicInteger();
+
+        private CountingTransactionManager(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits.incrementAndGet();
+            super.doCommit(status);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.repository.FactoryDailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * FactoryDailyRollupService 测试：历史回填逐日重算、单日失败不中断
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class FactoryDailyRollupServiceTest {
+
+    private FactoryDailyRollupRepository repository;
+    private FactoryDailyRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(FactoryDailyRollupRepository.class);
+        service = new FactoryDailyRollupService(repository, new NoOpTransactionManager());
+        service.init();
+    }
+
+    @Test
+    void backfillReconcilesEveryDayInRange() {
+        int succeeded = service.backfill(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 10));
+
+        assertThat(succeeded).isEqualTo(10);
+        verify(repository, times(10)).resetDay(any(), any());
+        verify(repository).reconcileProduction(eq(LocalDate.of(2025, 1, 1)), any(), any(), any());
+        verify(repository).reconcileProduction(eq(LocalDate.of(2025, 1, 10)), any(), any(), any());
+    }
+
+    @Test
+    void failedDayDoesNotStopBackfill() {
+        doThrow(new IllegalStateException("boom")).when(repository).resetDay(eq(LocalDate.of(2025, 1, 2)), any());
+
+        int succeeded = service.backfill(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 3));
+
+        assertThat(succeeded).isEqualTo(2);
+        verify(repository).reconcileProduction(eq(LocalDate.of(2025, 1, 3)), any(), any(), any());
+    }
+
+    /**
+     * 不连接数据库的事务管理器
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.dto.FactorySettingsDTO;
+import com.cretas.aims.entity.FactorySettings;
+import com.cretas.aims.repository.FactorySettingsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * FactorySettingsSnapshotService 测试（H2，MySQL 兼容模式，连接池只有一个连接）：
+ * 在调用方事务中加载、返回副本、保存后替换快照、乱序的旧保存只删除快照、回滚后不缓存、默认上下班时间与设置默认值一致、
+ * 开启跨节点合并时不等待其他节点的锁
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:settings;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=1000",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({FactorySettingsSnapshotService.class, SingleFlightService.class, ObjectMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FactorySettingsSnapshotServiceTest {
+
+    private static final String FACTORY_ID = "F001";
+
+    @Autowired
+    private FactorySettingsSnapshotService snapshotService;
+    @Autowired
+    private FactorySettingsRepository settingsRepository;
+    @Autowired
+    private SingleFlightService singleFlightService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private StringRedisTemplate redisTemplate;
+
+    private TransactionTemplate transactionTemplate;
+    private long loadsBefore;
+
+    @BeforeEach
+    void setUp() {
+        // 不准备工厂数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        loadsBefore = (long) snapshotService.getStats().get("loads");
+    }
+
+    @AfterEach
+    void tearDown() {
+        settingsRepository.deleteAllInBatch();
+        // 丢弃本测试留下的快照
+        snapshotService.onMessage(new DefaultMessage("settings".getBytes(StandardCharsets.UTF_8),
+                ("other-node\n" + FACTORY_ID).getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    void loadsInsideCallerTransactionWithSingleConnectionPool() throws Exception {
+        settingsRepository.save(settings("{\"startTime\":\"07:30\",\"endTime\":\"16:30\"}"));
+        // 连接池只有一个连接，加载若另开事务会一直等到连接超时
+        CompletableFuture<FactorySettingsSnapshotService.SettingsSnapshot> future = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    settingsRepository.findByFactoryId(FACTORY_ID);
+                    return snapshotService.snapshot(FACTORY_ID);
+                }));
+
+        FactorySettingsSnapshotService.SettingsSnapshot snapshot = future.get(10, TimeUnit.SECONDS);
+
+        assertThat(snapshot.getWorkStartTime()).isEqualTo(LocalTime.of(7, 30));
+        assertThat(snapshot.getWorkEndTime()).isEqualTo(LocalTime.of(16, 30));
+        // 提交后已写入缓存
+        snapshotService.snapshot(FACTORY_ID);
+        assertThat(loads()).isEqualTo(1L);
+    }
+
+    @Test
+    void callersGetIndependentCopies() {
+        settingsRepository.save(settings(null));
+        FactorySettingsDTO first = snapshotService.snapshot(FACTORY_ID).getSettings();
+        first.getAiSettings().setTone("friendly");
+        first.getWorkTimeSettings().setStartTime("12:00");
+        first.setLanguage("en-US");
+
+        FactorySettingsDTO second = snapshotService.snapshot(FACTORY_ID).getSettings();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getAiSettings().getTone()).isEqualTo("professional");
+        assertThat(second.getWorkTimeSettings().getStartTime()).isEqualTo("08:00");
+        assertThat(second.getLanguage()).isEqualTo("zh-CN");
+        assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(8, 0));
+    }
+
+    @Test
+    void defaultWorkTimesMatchSettingsDefaults() {
+        FactorySettingsSnapshotService.SettingsSnapshot absent = snapshotService.snapshot(FACTORY_ID);
+        assertThat(absent.isPresent()).isFalse();
+        assertThat(absent.getWorkStartTime()).isEqualTo(FactorySettingsSnapshotService.DEFAULT_WORK_START_TIME);
+        assertThat(absent.getWorkEndTime()).isEqualTo(FactorySettingsSnapshotService.DEFAULT_WORK_END_TIME);
+
+        transactionTemplate.execute(status -> {
+            snapshotService.onSaved(settingsRepository.save(settings(null)));
+            return null;
+        });
+        FactorySettingsSnapshotService.SettingsSnapshot unconfigured = snapshotService.snapshot(FACTORY_ID);
+        FactorySettingsDTO.WorkTimeSettings shown = unconfigured.getSettings().getWorkTimeSettings();
+        assertThat(unconfigured.getWorkStartTime()).isEqualTo(LocalTime.parse(shown.getStartTime()));
+        assertThat(unconfigured.getWorkEndTime()).isEqualTo(LocalTime.parse(shown.getEndTime()));
+
+        transactionTemplate.execute(status -> {
+            FactorySettings saved = settingsRepository.findByFactoryId(FACTORY_ID)
+                    .orElseThrow(IllegalStateException::new);
+            saved.setWorkTimeSettings("{\"startTime\":\"25:99\",\"endTime\":\"17:00\"}");
+            snapshotService.onSaved(settingsRepository.save(saved));
+            return null;
+        });
+        FactorySettingsSnapshotService.SettingsSnapshot malformed = snapshotService.snapshot(FACTORY_ID);
+        assertThat(malformed.getWorkStartTime()).isEqualTo(FactorySettingsSnapshotService.DEFAULT_WORK_START_TIME);
+        assertThat(malformed.getWorkEndTime()).isEqualTo(LocalTime.of(17, 0));
+    }
+
+    @Test
+    void savedSettingsReplaceSnapshotOnlyAfterCommit() {
+        settingsRepository.save(settings("{\"startTime\":\"08:30\",\"endTime\":\"17:30\"}"));
+        assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(8, 30));
+
+        transactionTemplate.execute(status -> {
+            FactorySettings saved = settingsRepository.findByFactoryId(FACTORY_ID)
+                    .orElseThrow(IllegalStateException::new);
+            saved.setWorkTimeSettings("{\"startTime\":\"06:00\",\"endTime\":\"15:00\"}");
+            snapshotService.onSaved(settingsRepository.save(saved));
+            assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(8, 30));
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(8, 30));
+
+        transactionTemplate.execute(status -> {
+            FactorySettings saved = settingsRepository.findByFactoryId(FACTORY_ID)
+                    .orElseThrow(IllegalStateException::new);
+            saved.setWorkTimeSettings("{\"startTime\":\"06:00\",\"endTime\":\"15:00\"}");
+            snapshotService.onSaved(settingsRepository.save(saved));
+            return null;
+        });
+        assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(6, 0));
+        assertThat(loads()).isEqualTo(1L);
+    }
+
+    @Test
+    void olderSaveArrivingLateOnlyInvalidates() {
+        FactorySettings newer = settingsRepository.save(settings("{\"startTime\":\"07:00\",\"endTime\":\"16:00\"}"));
+        FactorySettings older = settings("{\"startTime\":\"06:00\",\"endTime\":\"15:00\"}");
+        older.setId(newer.getId());
+        older.setUpdatedAt(newer.getUpdatedAt().minusMinutes(1));
+        long staleSwapsBefore = (long) snapshotService.getStats().get("staleSwaps");
+
+        snapshotService.onSaved(newer);
+        // 较早提交的保存回调后执行
+        snapshotService.onSaved(older);
+
+        assertThat((long) snapshotService.getStats().get("staleSwaps") - staleSwapsBefore).isEqualTo(1L);
+        assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(7, 0));
+        assertThat(loads()).isEqualTo(1L);
+    }
+
+    @Test
+    void snapshotLoadedInRolledBackTransactionIsNotCached() {
+        transactionTemplate.execute(status -> {
+            settingsRepository.save(settings("{\"startTime\":\"10:00\",\"endTime\":\"19:00\"}"));
+            assertThat(snapshotService.snapshot(FACTORY_ID).getWorkStartTime()).isEqualTo(LocalTime.of(10, 0));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        FactorySettingsSnapshotService.SettingsSnapshot after = snapshotService.snapshot(FACTORY_ID);
+
+        assertThat(after.isPresent()).isFalse();
+        assertThat(loads()).isEqualTo(2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadDoesNotWaitForLockHeldByOtherNode() throws Exception {
+        settingsRepository.save(settings("{\"startTime\":\"07:00\",\"endTime\":\"16:00\"}"));
+        // 开启跨节点合并，且其他节点持有同一 key 的锁
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        ReflectionTestUtils.setField(singleFlightService, "distributed", true);
+        try {
+            CompletableFuture<FactorySettingsSnapshotService.SettingsSnapshot> future =
+                    CompletableFuture.supplyAsync(() -> snapshotService.snapshot(FACTORY_ID));
+
+            // 快照只在本节点，不等待其他节点（等待会一直持续到 wait-timeout）
+            assertThat(future.get(5, TimeUnit.SECONDS).getWorkStartTime()).isEqualTo(LocalTime.of(7, 0));
+            assertThat(loads()).isEqualTo(1L);
+            verify(ops, never()).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        } finally {
+            ReflectionTestUtils.setField(singleFlightService, "distributed", false);
+        }
+    }
+
+    private long loads() {
+        return (long) snapshotService.getStats().get("loads") - loadsBefore;
+    }
+
+    private static FactorySettings settings(String workTimeSettings) {
+        FactorySettings settings = new FactorySettings();
+        settings.setFactoryId(FACTORY_ID);
+        settings.setWorkTimeSettings(workTimeSettings);
+        return settings;
+    }
+}
@@ -0,0 +1,213 @@
+package com.cretas.aims.service;
+
+import com.cretas.aims.entity.WorkType;
+import com.cretas.aims.repository.WorkTypeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReferenceDataCacheService 测试（H2，MySQL 兼容模式，连接池只有一个连接）：
+ * 在调用方事务中加载不占用第二个连接、读写事务不参与相同请求合并且回滚后快照不进缓存、失效后重新加载、
+ * 快照不持有受管实体
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:refdata;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=1000",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReferenceDataCacheService.class, SingleFlightService.class, ObjectMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReferenceDataCacheServiceTest {
+
+    private static final String FACTORY_ID = "F001";
+
+    @Autowired
+    private ReferenceDataCacheService referenceDataCacheService;
+    @Autowired
+    private SingleFlightService singleFlightService;
+    @Autowired
+    private WorkTypeRepository workTypeRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private StringRedisTemplate redisTemplate;
+
+    private TransactionTemplate transactionTemplate;
+    private WorkType welder;
+    private long loadsBefore;
+    private long hitsBefore;
+
+    @BeforeEach
+    void setUp() {
+        // 不准备工厂数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        welder = workTypeRepository.save(workType("焊工"));
+        referenceDataCacheService.onDataChanged(FACTORY_ID);
+        loadsBefore = stat("loads");
+        hitsBefore = stat("hits");
+    }
+
+    @AfterEach
+    void tearDown() {
+        workTypeRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void loadsInsideCallerTransactionWithSingleConnectionPool() throws Exception {
+        // 连接池只有一个连接，加载若另开事务会一直等到连接超时
+        CompletableFuture<ReferenceDataCacheService.ReferenceSnapshot> future = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    workTypeRepository.findByFactoryId(FACTORY_ID);
+                    return referenceDataCacheService.snapshot(FACTORY_ID);
+                }));
+
+        ReferenceDataCacheService.ReferenceSnapshot snapshot = future.get(10, TimeUnit.SECONDS);
+
+        assertThat(snapshot.getWorkType(welder.getId()).getName()).isEqualTo("焊工");
+        assertThat(stat("loads") - loadsBefore).isEqualTo(1L);
+    }
+
+    @Test
+    void snapshotWithUncommittedChangesIsDiscardedOnRollback() {
+        transactionTemplate.execute(status -> {
+            workTypeRepository.save(workType("叉车工"));
+            ReferenceDataCacheService.ReferenceSnapshot inside = referenceDataCacheService.snapshot(FACTORY_ID);
+            assertThat(inside.getActiveWorkTypes()).extracting(WorkType::getName).contains("叉车工");
+            status.setRollbackOnly();
+            return null;
+        });
+
+        ReferenceDataCacheService.ReferenceSnapshot after = referenceDataCacheService.snapshot(FACTORY_ID);
+
+        assertThat(after.getActiveWorkTypes()).extracting(WorkType::getName).containsExactly("焊工");
+        assertThat(stat("loads") - loadsBefore).isEqualTo(2L);
+    }
+
+    @Test
+    void readWriteTransactionDoesNotJoinOrLeadSharedLoad() throws Exception {
+        // 模拟本节点一个进行中的共享加载
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() ->
+                singleFlightService.executeLocal(SingleFlightService.key("refdata", FACTORY_ID), () -> null, () -> {
+                    entered.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                }));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 读写事务不等待、也不复用共享加载，自行加载并看到本事务的修改
+        CompletableFuture<ReferenceDataCacheService.ReferenceSnapshot> inside = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    workTypeRepository.save(workType("叉车工"));
+                    status.setRollbackOnly();
+                    return referenceDataCacheService.snapshot(FACTORY_ID);
+                }));
+        assertThat(inside.get(5, TimeUnit.SECONDS).getActiveWorkTypes())
+                .extracting(WorkType::getName).containsExactlyInAnyOrder("焊工", "叉车工");
+        assertThat(leader).isNotDone();
+
+        release.countDown();
+        leader.get(5, TimeUnit.SECONDS);
+        assertThat(referenceDataCacheService.snapshot(FACTORY_ID).getActiveWorkTypes())
+                .extracting(WorkType::getName).containsExactly("焊工");
+    }
+
+    @Test
+    void snapshotLoadedInCommittedTransactionIsCached() {
+        transactionTemplate.execute(status -> referenceDataCacheService.snapshot(FACTORY_ID));
+        referenceDataCacheService.snapshot(FACTORY_ID);
+        referenceDataCacheService.snapshot(FACTORY_ID);
+
+        assertThat(stat("loads") - loadsBefore).isEqualTo(1L);
+        assertThat(stat("hits") - hitsBefore).isEqualTo(2L);
+    }
+
+    @Test
+    void invalidationFromAnotherNodeForcesReload() {
+        referenceDataCacheService.snapshot(FACTORY_ID);
+        workTypeRepository.save(workType("包装工"));
+
+        assertThat(referenceDataCacheService.snapshot(FACTORY_ID).getActiveWorkTypes()).hasSize(1);
+        referenceDataCacheService.onMessage(message("other-node\n" + FACTORY_ID), null);
+
+        assertThat(referenceDataCacheService.snapshot(FACTORY_ID).getActiveWorkTypes())
+                .extracting(WorkType::getName).containsExactlyInAnyOrder("焊工", "包装工");
+        assertThat(stat("loads") - loadsBefore).isEqualTo(2L);
+    }
+
+    @Test
+    void snapshotDoesNotShareManagedEntitiesWithCaller() {
+        transactionTemplate.execute(status -> {
+            ReferenceDataCacheService.ReferenceSnapshot snapshot = referenceDataCacheService.snapshot(FACTORY_ID);
+            WorkType managed = workTypeRepository.findById(welder.getId()).orElseThrow(IllegalStateException::new);
+            assertThat(snapshot.getWorkType(welder.getId())).isNotSameAs(managed);
+            managed.setName("焊工（改）");
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(referenceDataCacheService.snapshot(FACTORY_ID).getWorkType(welder.getId()).getName())
+                .isEqualTo("焊工");
+    }
+
+    private long stat(String name) {
+        return (long) referenceDataCacheService.getStats().get(name);
+    }
+
+    private static WorkType workType(String name) {
+        return WorkType.builder()
+                .factoryId(FACTORY_ID)
+                .name(name)
+                .hazardLevel(0)
+                .isActive(true)
+                .isDefault(false)
+                .displayOrder(0)
+                .build();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("refdata".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,171 @@
+package com.cretas.aims.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * SingleFlightService 测试：并发合并、异常共享、recheck 命中、跨节点等待、仅进程内合并不使用 Redis 锁
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class SingleFlightServiceTest {
+
+    private static final int CALLERS = 8;
+
+    private StringRedisTemplate redisTemplate;
+    private SingleFlightService service;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        service = new SingleFlightService(redisTemplate);
+        ReflectionTestUtils.setField(service, "waitTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(service, "lockTtlMs", 5_000L);
+        ReflectionTestUtils.setField(service, "pollIntervalMs", 20L);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> futures = submitAll(() -> service.execute("cost:F001:1", () -> null, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "result";
+        }));
+        // 等待者都已挂在 leader 上后再放行
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void leaderFailureIsSharedAndNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> futures = submitAll(() -> service.execute("cost:F001:2", () -> null, () -> {
+            loads.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("AI服务不可用");
+        }));
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        // 失败不会留下进行中的记录，下一次重新加载
+        assertThat(service.execute("cost:F001:2", () -> null, () -> "retry")).isEqualTo("retry");
+    }
+
+    @Test
+    void recheckHitSkipsLoader() {
+        String result = service.execute("cost:F001:3", () -> "cached", () -> {
+            throw new AssertionError("不应加载");
+        });
+
+        assertThat(result).isEqualTo("cached");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void distributedWaiterPollsForOtherNodesResult() {
+        ReflectionTestUtils.setField(service, "distributed", true);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        // 其他节点持有锁
+        when(ops.setIfAbsent(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        AtomicInteger rechecks = new AtomicInteger();
+        AtomicReference<String> remoteCache = new AtomicReference<>();
+
+        String result = service.execute("cost:F001:4", () -> {
+            // 第一次 recheck 未命中；之后其他节点写入了缓存
+            if (rechecks.incrementAndGet() == 2) {
+                remoteCache.set("from-other-node");
+            }
+            return remoteCache.get();
+        }, () -> {
+            throw new AssertionError("不应加载");
+        });
+
+        assertThat(result).isEqualTo("from-other-node");
+    }
+
+    @Test
+    void localExecutionIgnoresDistributedLock() throws Exception {
+        ReflectionTestUtils.setField(service, "distributed", true);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> futures = submitAll(() -> service.executeLocal("refdata:F001", () -> null, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "snapshot";
+        }));
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("snapshot");
+        }
+        // 进程内仍然合并，且不访问 Redis
+        assertThat(loads.get()).isEqualTo(1);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    private List<Future<String>> submitAll(Callable<String> task) {
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(task));
+        }
+        return futures;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.cretas.aims.service.impl;
+
+import com.cretas.aims.entity.MaterialBatch;
+import com.cretas.aims.entity.ProductionBatch;
+import com.cretas.aims.entity.enums.ProductionBatchStatus;
+import com.cretas.aims.repository.MaterialBatchRepository;
+import com.cretas.aims.repository.MaterialConsumptionRepository;
+import com.cretas.aims.repository.ProductionBatchRepository;
+import com.cretas.aims.service.AIAnalysisService;
+import com.cretas.aims.service.BatchCostAnalysisLoader;
+import com.cretas.aims.service.CacheService;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.InventoryLedgerService;
+import com.cretas.aims.service.ProcessingService;
+import com.cretas.aims.service.SingleFlightService;
+import com.cretas.aims.service.TrendQueryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ProcessingServiceImpl.recordMaterialConsumption 并发测试（H2，MySQL 兼容模式）
+ *
+ * 多线程同时消耗同一组原材料批次：剩余数量不能为负，
+ * 某个批次不足时整个请求回滚，各批次的已用量与消耗记录保持一致
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:consumption;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProcessingServiceImpl.class, InventoryLedgerService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProcessingServiceImplConsumptionTest {
+
+    private static final String FACTORY_ID = "F001";
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 10;
+
+    @Autowired
+    private ProcessingService processingService;
+    @Autowired
+    private MaterialBatchRepository materialBatchRepository;
+    @Autowired
+    private ProductionBatchRepository productionBatchRepository;
+    @Autowired
+    private MaterialConsumptionRepository materialConsumptionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private AIAnalysisService aiAnalysisService;
+    @MockBean
+    private CacheService cacheService;
+    @MockBean
+    private TrendQueryService trendQueryService;
+    @MockBean
+    private FactoryDailyRollupService factoryDailyRollupService;
+    @MockBean
+    private SingleFlightService singleFlightService;
+    @MockBean
+    private BatchCostAnalysisLoader batchCostAnalysisLoader;
+    @MockBean
+    private DashboardCacheService dashboardCacheService;
+
+    private Long productionBatchId;
+    private Integer plentifulBatchId;
+    private Integer scarceBatchId;
+
+    @BeforeEach
+    void setUp() {
+        // 只验证库存逻辑，不准备工厂/用户/原材料类型等关联数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        productionBatchId = productionBatchRepository.save(newProductionBatch()).getId();
+        plentifulBatchId = materialBatchRepository.save(newMaterialBatch("MB-A", "100")).getId();
+        scarceBatchId = materialBatchRepository.save(newMaterialBatch("MB-B", "60")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        materialConsumptionRepository.deleteAllInBatch();
+        materialBatchRepository.deleteAllInBatch();
+        productionBatchRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void concurrentConsumptionNeverOversellsAndRollsBackPartialRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(consumeRepeatedly(start)));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Integer> future : futures) {
+            succeeded += future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        MaterialBatch plentiful = materialBatchRepository.findById(plentifulBatchId).orElseThrow(IllegalStateException::new);
+        MaterialBatch scarce = materialBatchRepository.findById(scarceBatchId).orElseThrow(IllegalStateException::new);
+
+        // 每个请求各消耗 3，scarce 只够 20 次
+        assertThat(succeeded).isEqualTo(20);
+        assertThat(scarce.getUsedQuantity()).isEqualByComparingTo("60");
+        // 失败请求在 plentiful 上的扣减随事务回滚
+        assertThat(plentiful.getUsedQuantity()).isEqualByComparingTo("60");
+        assertThat(plentiful.getReceiptQuantity().subtract(plentiful.getUsedQuantity())).isNotNegative();
+        assertThat(materialConsumptionRepository.count()).isEqualTo(40);
+    }
+
+    private Callable<Integer> consumeRepeatedly(CountDownLatch start) {
+        return () -> {
+            start.await();
+            int succeeded = 0;
+            for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                try {
+                    processingService.recordMaterialConsumption(FACTORY_ID, productionBatchId,
+                            List.of(consumption(scarceBatchId, "3"), consumption(plentifulBatchId, "3")));
+                    succeeded++;
+                } catch (RuntimeException e) {
+                    // 库存不足，整个请求回滚
+                }
+            }
+            return succeeded;
+        };
+    }
+
+    private static Map<String, Object> consumption(Integer materialBatchId, String quantity) {
+        Map<String, Object> consumption = new HashMap<>();
+        consumption.put("materialBatchId", materialBatchId);
+        consumption.put("quantity", quantity);
+        return consumption;
+    }
+
+    private static ProductionBatch newProductionBatch() {
+        ProductionBatch batch = new ProductionBatch();
+        batch.setFactoryId(FACTORY_ID);
+        batch.setBatchNumber("PB-STRESS");
+        batch.setProductTypeId(1);
+        batch.setStatus(ProductionBatchStatus.IN_PROGRESS);
+        batch.setCreatedBy(1);
+        return batch;
+    }
+
+    private static MaterialBatch newMaterialBatch(String batchNumber, String receiptQuantity) {
+        MaterialBatch batch = new MaterialBatch();
+        batch.setFactoryId(FACTORY_ID);
+        batch.setBatchNumber(batchNumber);
+        batch.setMaterialTypeId(1);
+        batch.setReceiptDate(LocalDate.now());
+        batch.setReceiptQuantity(new BigDecimal(receiptQuantity));
+        batch.setQuantityUnit("kg");
+        batch.setUnitPrice(new BigDecimal("2.00"));
+        batch.setCreatedBy(1);
+        return batch;
+    }
+}
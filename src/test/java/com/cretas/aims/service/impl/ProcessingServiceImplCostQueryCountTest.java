@@ -0,0 +1,339 @@
+package com.cretas.aims.service.impl;
+
+import com.cretas.aims.entity.EquipmentUsage;
+import com.cretas.aims.entity.FactoryEquipment;
+import com.cretas.aims.entity.MaterialBatch;
+import com.cretas.aims.entity.MaterialConsumption;
+import com.cretas.aims.entity.ProductionBatch;
+import com.cretas.aims.entity.ProductionPlan;
+import com.cretas.aims.entity.QualityInspection;
+import com.cretas.aims.entity.RawMaterialType;
+import com.cretas.aims.entity.User;
+import com.cretas.aims.entity.enums.ProductionBatchStatus;
+import com.cretas.aims.repository.EquipmentRepository;
+import com.cretas.aims.repository.EquipmentUsageRepository;
+import com.cretas.aims.repository.MaterialBatchRepository;
+import com.cretas.aims.repository.MaterialConsumptionRepository;
+import com.cretas.aims.repository.ProductionBatchRepository;
+import com.cretas.aims.repository.ProductionPlanRepository;
+import com.cretas.aims.repository.QualityInspectionRepository;
+import com.cretas.aims.repository.RawMaterialTypeRepository;
+import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.AIAnalysisService;
+import com.cretas.aims.service.BatchCostAnalysisLoader;
+import com.cretas.aims.service.CacheService;
+import com.cretas.aims.service.DashboardCacheService;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.InventoryLedgerService;
+import com.cretas.aims.service.ProcessingService;
+import com.cretas.aims.service.SingleFlightService;
+import com.cretas.aims.service.TrendQueryService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 批次成本分析的SQL条数回归测试（H2，MySQL 兼容模式）
+ *
+ * 通过 Hibernate Statistics 统计预编译语句条数：时间范围分析和单批次增强分析的查询次数固定，
+ * 与批次数量及每个批次的消耗、设备、质检记录数无关
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY, properties = {
+        "spring.datasource.url=jdbc:h2:mem:costqueries;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProcessingServiceImpl.class, InventoryLedgerService.class, BatchCostAnalysisLoader.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProcessingServiceImplCostQueryCountTest {
+
+    private static final String FACTORY_ID = "F001";
+
+    /**
+     * 批次查询 1 次 + 批量加载最多 6 次
+     */
+    private static final long MAX_STATEMENTS = 7;
+
+    @Autowired
+    private ProcessingService processingService;
+    @Autowired
+    private BatchCostAnalysisLoader batchCostAnalysisLoader;
+    @Autowired
+    private ProductionBatchRepository productionBatchRepository;
+    @Autowired
+    private ProductionPlanRepository productionPlanRepository;
+    @Autowired
+    private MaterialBatchRepository materialBatchRepository;
+    @Autowired
+    private MaterialConsumptionRepository materialConsumptionRepository;
+    @Autowired
+    private EquipmentRepository equipmentRepository;
+    @Autowired
+    private EquipmentUsageRepository equipmentUsageRepository;
+    @Autowired
+    private QualityInspectionRepository qualityInspectionRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RawMaterialTypeRepository rawMaterialTypeRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private AIAnalysisService aiAnalysisService;
+    @MockBean
+    private CacheService cacheService;
+    @MockBean
+    private TrendQueryService trendQueryService;
+    @MockBean
+    private FactoryDailyRollupService factoryDailyRollupService;
+    @MockBean
+    private SingleFlightService singleFlightService;
+    @MockBean
+    private DashboardCacheService dashboardCacheService;
+
+    private Statistics statistics;
+    private Integer materialTypeId;
+    private int seeded;
+
+    @BeforeEach
+    void setUp() {
+        // 只验证查询次数，不准备工厂/产品类型/供应商等关联数据
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        materialTypeId = rawMaterialTypeRepository.save(newMaterialType()).getId();
+        seeded = 0;
+    }
+
+    @AfterEach
+    void tearDown() {
+        materialConsumptionRepository.deleteAllInBatch();
+        materialBatchRepository.deleteAllInBatch();
+        equipmentUsageRepository.deleteAllInBatch();
+        equipmentRepository.deleteAllInBatch();
+        qualityInspectionRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        productionBatchRepository.deleteAllInBatch();
+        productionPlanRepository.deleteAllInBatch();
+        rawMaterialTypeRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void timeRangeAnalysisStatementCountDoesNotGrowWithBatches() {
+        seedBatches(2);
+        long fewBatches = countStatements(() -> assertThat(timeRangeAnalysis()).hasSize(2));
+
+        seedBatches(18);
+        long manyBatches = countStatements(() -> assertThat(timeRangeAnalysis()).hasSize(20));
+
+        assertThat(fewBatches).isLessThanOrEqualTo(MAX_STATEMENTS);
+        assertThat(manyBatches).isEqualTo(fewBatches);
+    }
+
+    @Test
+    void loaderStatementCountIsBoundedForAnyBatchCount() {
+        seedBatches(15);
+        List<ProductionBatch> batches = productionBatchRepository.findAll();
+
+        long statements = countStatements(() -> {
+            Map<Long, Map<String, Object>> result = batchCostAnalysisLoader.load(FACTORY_ID, batches);
+            assertThat(result).hasSize(15);
+            assertThat(result.values()).allSatisfy(analysis -> {
+                assertThat(analysis).containsEntry("materialConsumptionCount", 3);
+                assertThat(analysis).containsEntry("equipmentUsageCount", 2);
+                assertThat(analysis).containsEntry("qualityInspectionCount", 2);
+            });
+        });
+
+        assertThat(statements).isLessThanOrEqualTo(MAX_STATEMENTS - 1);
+    }
+
+    @Test
+    void enhancedAnalysisStatementCountDoesNotGrowWithBatchRecords() {
+        Long smallBatchId = seedBatch(1, 1, 1).getId();
+        Long largeBatchId = seedBatch(12, 2, 10).getId();
+
+        long small = countStatements(() -> assertThat(enhancedImpl().getEnhancedBatchCostAnalysis(FACTORY_ID, smallBatchId))
+                .containsEntry("materialConsumptionCount", 1)
+                .containsEntry("qualityInspectionCount", 1));
+        long large = countStatements(() -> assertThat(enhancedImpl().getEnhancedBatchCostAnalysis(FACTORY_ID, largeBatchId))
+                .containsEntry("materialConsumptionCount", 12)
+                .containsEntry("qualityInspectionCount", 10));
+
+        assertThat(small).isLessThanOrEqualTo(MAX_STATEMENTS);
+        assertThat(large).isEqualTo(small);
+    }
+
+    /**
+     * 增强分析方法不在 ProcessingService 接口上，直接调用目标对象
+     */
+    private ProcessingServiceImpl enhancedImpl() {
+        return AopTestUtils.getTargetObject(processingService);
+    }
+
+    private List<Map<String, Object>> timeRangeAnalysis() {
+        return processingService.getTimeRangeBatchesCostAnalysis(FACTORY_ID,
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1));
+    }
+
+    private long countStatements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * 每个批次：1 个生产计划、3 条原材料消耗（各自的原材料批次）、2 条设备使用、2 条质检（各自的检验员）
+     */
+    private void seedBatches(int count) {
+        for (int i = 0; i < count; i++) {
+            seedBatch(3, 2, 2);
+        }
+    }
+
+    private ProductionBatch seedBatch(int consumptions, int usages, int inspections) {
+        int n = ++seeded;
+        ProductionPlan plan = productionPlanRepository.save(newPlan(n));
+        ProductionBatch batch = productionBatchRepository.save(newProductionBatch(n, plan.getId()));
+        for (int m = 0; m < consumptions; m++) {
+            MaterialBatch material = materialBatchRepository.save(newMaterialBatch("MB-" + n + "-" + m, materialTypeId));
+            materialConsumptionRepository.save(newConsumption(batch.getId(), material.getId()));
+        }
+        for (int e = 0; e < usages; e++) {
+            FactoryEquipment equipment = equipmentRepository.save(newEquipment("EQ-" + n + "-" + e));
+            equipmentUsageRepository.save(EquipmentUsage.builder()
+                    .equipmentId(equipment.getId())
+                    .productionBatchId(batch.getId())
+                    .startTime(LocalDateTime.now().minusHours(3))
+                    .endTime(LocalDateTime.now())
+                    .durationHours(3)
+                    .build());
+        }
+        for (int q = 0; q < inspections; q++) {
+            User inspector = userRepository.save(newUser("inspector-" + n + "-" + q));
+            qualityInspectionRepository.save(QualityInspection.builder()
+                    .factoryId(FACTORY_ID)
+                    .productionBatchId(batch.getId())
+                    .inspectorId(inspector.getId())
+                    .inspectionDate(LocalDate.now())
+                    .sampleSize(new BigDecimal("10"))
+                    .passCount(new BigDecimal("9"))
+                    .failCount(new BigDecimal("1"))
+                    .passRate(new BigDecimal("90.00"))
+                    .build());
+        }
+        return batch;
+    }
+
+    private static ProductionPlan newPlan(int n) {
+        ProductionPlan plan = new ProductionPlan();
+        plan.setFactoryId(FACTORY_ID);
+        plan.setPlanNumber("PP-" + n);
+        plan.setProductTypeId(1);
+        plan.setPlannedQuantity(new BigDecimal("100"));
+        plan.setPlannedDate(LocalDate.now());
+        plan.setCreatedBy(1);
+        return plan;
+    }
+
+    private static ProductionBatch newProductionBatch(int n, Integer planId) {
+        ProductionBatch batch = new ProductionBatch();
+        batch.setFactoryId(FACTORY_ID);
+        batch.setBatchNumber("PB-" + n);
+        batch.setProductTypeId(1);
+        batch.setProductionPlanId(planId);
+        batch.setActualQuantity(new BigDecimal("80"));
+        batch.setStatus(ProductionBatchStatus.COMPLETED);
+        batch.setCreatedBy(1);
+        return batch;
+    }
+
+    private static RawMaterialType newMaterialType() {
+        RawMaterialType type = new RawMaterialType();
+        type.setFactoryId(FACTORY_ID);
+        type.setCode("RM-1");
+        type.setName("带鱼");
+        type.setUnit("kg");
+        type.setIsActive(true);
+        type.setCreatedBy(1);
+        return type;
+    }
+
+    private static MaterialBatch newMaterialBatch(String batchNumber, Integer materialTypeId) {
+        MaterialBatch batch = new MaterialBatch();
+        batch.setFactoryId(FACTORY_ID);
+        batch.setBatchNumber(batchNumber);
+        batch.setMaterialTypeId(materialTypeId);
+        batch.setReceiptDate(LocalDate.now());
+        batch.setReceiptQuantity(new BigDecimal("100"));
+        batch.setQuantityUnit("kg");
+        batch.setUnitPrice(new BigDecimal("2.00"));
+        batch.setCreatedBy(1);
+        return batch;
+    }
+
+    private static MaterialConsumption newConsumption(Long productionBatchId, Integer materialBatchId) {
+        MaterialConsumption consumption = new MaterialConsumption();
+        consumption.setFactoryId(FACTORY_ID);
+        consumption.setProductionBatchId(productionBatchId);
+        consumption.setBatchId(materialBatchId);
+        consumption.setQuantity(new BigDecimal("5"));
+        consumption.setUnitPrice(new BigDecimal("2.00"));
+        consumption.setTotalCost(new BigDecimal("10.00"));
+        consumption.setConsumptionTime(LocalDateTime.now());
+        consumption.setRecordedBy(1);
+        return consumption;
+    }
+
+    private static FactoryEquipment newEquipment(String code) {
+        FactoryEquipment equipment = new FactoryEquipment();
+        equipment.setFactoryId(FACTORY_ID);
+        equipment.setCode(code);
+        equipment.setEquipmentCode(code);
+        equipment.setName("设备" + code);
+        equipment.setCreatedBy(1);
+        return equipment;
+    }
+
+    private static User newUser(String username) {
+        User user = new User();
+        user.setFactoryId(FACTORY_ID);
+        user.setUsername(username);
+        user.setPasswordHash("x");
+        user.setFullName(username);
+        return user;
+    }
+}
@@ -0,0 +1,189 @@
+package com.cretas.aims.service.impl;
+
+import com.cretas.aims.entity.FactorySettings;
+import com.cretas.aims.entity.TimeClockRecord;
+import com.cretas.aims.entity.User;
+import com.cretas.aims.repository.FactorySettingsRepository;
+import com.cretas.aims.repository.TimeClockRecordRepository;
+import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.FactoryDailyRollupService;
+import com.cretas.aims.service.FactorySettingsSnapshotService;
+import com.cretas.aims.service.SingleFlightService;
+import com.cretas.aims.service.StreamingExportService;
+import com.cretas.aims.service.TimeStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TimeClockServiceImpl 测试：部门考勤、上下班打卡按工厂设置快照判定迟到/早退
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class TimeClockServiceImplTest {
+
+    private static final String FACTORY_ID = "F001";
+
+    private static final Integer USER_ID = 7;
+
+    private TimeClockRecordRepository timeClockRecordRepository;
+    private FactorySettingsRepository settingsRepository;
+    private FactorySettingsSnapshotService settingsSnapshotService;
+    private TimeClockServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        timeClockRecordRepository = mock(TimeClockRecordRepository.class);
+        when(timeClockRecordRepository.save(any(TimeClockRecord.class))).thenAnswer(inv -> inv.getArgument(0));
+        UserRepository userRepository = mock(UserRepository.class);
+        User user = new User();
+        user.setId(USER_ID);
+        user.setFactoryId(FACTORY_ID);
+        user.setUsername("worker");
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+
+        settingsRepository = mock(FactorySettingsRepository.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        settingsSnapshotService = new FactorySettingsSnapshotService(settingsRepository,
+                new NoOpTransactionManager(), redisTemplate, new SingleFlightService(redisTemplate),
+                new ObjectMapper());
+        ReflectionTestUtils.setField(settingsSnapshotService, "maxFactories", 10);
+        ReflectionTestUtils.setField(settingsSnapshotService, "maxAgeMs", 60_000L);
+        settingsSnapshotService.init();
+
+        service = new TimeClockServiceImpl(timeClockRecordRepository, userRepository,
+                mock(FactoryDailyRollupService.class), mock(StreamingExportService.class),
+                mock(TimeStatsService.class), settingsSnapshotService);
+    }
+
+    @Test
+    void departmentAttendanceReturnsTheDayRecordsAndCountsThem() {
+        LocalDate date = LocalDate.of(2025, 11, 20);
+        LocalDateTime morning = date.atTime(8, 55);
+        List<TimeClockRecord> records = Arrays.asList(
+                TimeClockRecord.builder().userId(1).clockInTime(morning).clockOutTime(morning.plusHours(9))
+                        .status("CLOCKED_OUT").build(),
+                TimeClockRecord.builder().userId(2).clockInTime(morning).status("ON_BREAK").build(),
+                TimeClockRecord.builder().userId(3).clockInTime(morning).status("WORKING").build());
+        when(timeClockRecordRepository.findByFactoryIdAndDepartmentAndClockDate(FACTORY_ID, "加工部", date))
+                .thenReturn(records);
+
+        Map<String, Object> attendance = service.getDepartmentAttendance(FACTORY_ID, "加工部", date);
+
+        assertThat(attendance.get("records")).isEqualTo(records);
+        assertThat(attendance).containsEntry("totalEmployees", 3)
+                .containsEntry("clockedInCount", 3)
+                .containsEntry("clockedOutCount", 1)
+                .containsEntry("onBreakCount", 1);
+    }
+
+    @Test
+    void clockInUsesConfiguredStartTimeFromSnapshot() {
+        configureWorkTime("00:00", "23:59:59");
+
+        TimeClockRecord first = service.clockIn(FACTORY_ID, USER_ID, "gate", "phone");
+        assertThat(first.getAttendanceStatus()).isEqualTo("LATE");
+
+        configureWorkTime("23:59:59", "23:59:59");
+        saveSettings();
+        TimeClockRecord second = service.clockIn(FACTORY_ID, USER_ID, "gate", "phone");
+        assertThat(second.getAttendanceStatus()).isEqualTo("NORMAL");
+    }
+
+    @Test
+    void clockOutBeforeConfiguredEndTimeIsEarlyLeave() {
+        configureWorkTime("00:00", "23:59:59");
+        TimeClockRecord record = service.clockIn(FACTORY_ID, USER_ID, "gate", "phone");
+        when(timeClockRecordRepository.findByFactoryIdAndUserIdAndClockDate(eq(FACTORY_ID), eq(USER_ID), any()))
+                .thenReturn(Optional.of(record));
+
+        TimeClockRecord out = service.clockOut(FACTORY_ID, USER_ID);
+
+        assertThat(out.getAttendanceStatus()).isEqualTo("LATE_AND_EARLY_LEAVE");
+        assertThat(out.getStatus()).isEqualTo("OFF_WORK");
+    }
+
+    @Test
+    void unconfiguredFactoryUsesSettingsDefaultStartTime() {
+        when(settingsRepository.findByFactoryId(FACTORY_ID)).thenReturn(Optional.empty());
+
+        TimeClockRecord record = service.clockIn(FACTORY_ID, USER_ID, "gate", "phone");
+
+        boolean late = record.getClockInTime().toLocalTime()
+                .isAfter(FactorySettingsSnapshotService.DEFAULT_WORK_START_TIME);
+        assertThat(record.getAttendanceStatus()).isEqualTo(late ? "LATE" : "NORMAL");
+        assertThat(FactorySettingsSnapshotService.DEFAULT_WORK_START_TIME).isEqualTo(LocalTime.of(8, 0));
+    }
+
+    @Test
+    void repeatedClockInsReadSettingsOnce() {
+        configureWorkTime("00:00", "23:59:59");
+
+        for (int i = 0; i < 5; i++) {
+            service.clockIn(FACTORY_ID, USER_ID, "gate", "phone");
+        }
+
+        verify(settingsRepository, times(1)).findByFactoryId(anyString());
+        verify(timeClockRecordRepository, times(5)).findByFactoryIdAndUserIdAndClockDate(
+                eq(FACTORY_ID), anyInt(), any());
+    }
+
+    private void configureWorkTime(String startTime, String endTime) {
+        FactorySettings settings = new FactorySettings();
+        settings.setFactoryId(FACTORY_ID);
+        settings.setWorkTimeSettings("{\"startTime\":\"" + startTime + "\",\"endTime\":\"" + endTime + "\"}");
+        when(settingsRepository.findByFactoryId(FACTORY_ID)).thenReturn(Optional.of(settings));
+    }
+
+    /**
+     * 保存设置后快照被替换
+     */
+    private void saveSettings() {
+        settingsSnapshotService.onSaved(settingsRepository.findByFactoryId(FACTORY_ID)
+                .orElseThrow(IllegalStateException::new));
+    }
+
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
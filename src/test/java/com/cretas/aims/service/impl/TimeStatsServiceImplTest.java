@@ -0,0 +1,152 @@
+package com.cretas.aims.service.impl;
+
+import com.cretas.aims.dto.TimeStatsDTO;
+import com.cretas.aims.repository.BatchWorkSessionRepository;
+import com.cretas.aims.repository.EmployeeWorkSessionRepository;
+import com.cretas.aims.repository.TimeClockRecordRepository;
+import com.cretas.aims.repository.UserRepository;
+import com.cretas.aims.service.ReferenceDataCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TimeStatsServiceImpl 日聚合缓存测试：已结束日期只聚合一次、当天始终实时查询、失效后只补查该日、容量上限
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class TimeStatsServiceImplTest {
+
+    private static final String FACTORY_ID = "F001";
+
+    private TimeClockRecordRepository timeClockRecordRepository;
+    private TimeStatsServiceImpl service;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        timeClockRecordRepository = mock(TimeClockRecordRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.countActiveUsers(FACTORY_ID)).thenReturn(10L);
+        when(timeClockRecordRepository.aggregateByClockDate(anyString(), any(), any())).thenAnswer(inv -> {
+            List<Object[]> rows = new ArrayList<>();
+            LocalDate to = inv.getArgument(2);
+            for (LocalDate date = inv.getArgument(1); !date.isAfter(to); date = date.plusDays(1)) {
+                // 每天 4 次打卡、2 人出勤、共 960 分钟
+                rows.add(new Object[]{date, 4L, 2L, 960L, 60L, 1L, 0L});
+            }
+            return rows;
+        });
+
+        service = new TimeStatsServiceImpl(timeClockRecordRepository, mock(EmployeeWorkSessionRepository.class),
+                mock(BatchWorkSessionRepository.class), userRepository, mock(ReferenceDataCacheService.class));
+        ReflectionTestUtils.setField(service, "cacheSize", 100);
+        ReflectionTestUtils.setField(service, "closedDayTtlMs", 60_000L);
+        service.init();
+    }
+
+    @Test
+    void closedDaysAreAggregatedOnce() {
+        LocalDate from = today.minusDays(7);
+        LocalDate to = today.minusDays(1);
+
+        TimeStatsDTO first = service.getDailyStatsRange(FACTORY_ID, from, to);
+        TimeStatsDTO second = service.getDailyStatsRange(FACTORY_ID, from, to);
+
+        verify(timeClockRecordRepository, times(1)).aggregateByClockDate(FACTORY_ID, from, to);
+        assertThat(second.getTotalClockIns()).isEqualTo(first.getTotalClockIns()).isEqualTo(28L);
+        assertThat(second.getDailyStatsList()).hasSize(7);
+    }
+
+    @Test
+    void todayIsAlwaysQueriedLive() {
+        LocalDate from = today.minusDays(3);
+        service.getDailyStatsRange(FACTORY_ID, from, today);
+        service.getDailyStatsRange(FACTORY_ID, from, today);
+
+        verify(timeClockRecordRepository, times(1)).aggregateByClockDate(FACTORY_ID, from, today);
+        // 第二次只查询当天
+        verify(timeClockRecordRepository, times(1)).aggregateByClockDate(FACTORY_ID, today, today);
+    }
+
+    @Test
+    void recalculateEvictsOnlyThatDay() {
+        LocalDate from = today.minusDays(5);
+        LocalDate to = today.minusDays(1);
+        LocalDate edited = today.minusDays(3);
+        service.getDailyStatsRange(FACTORY_ID, from, to);
+
+        service.recalculateStats(FACTORY_ID, edited);
+        service.getDailyStatsRange(FACTORY_ID, from, to);
+
+        verify(timeClockRecordRepository).aggregateByClockDate(FACTORY_ID, edited, edited);
+        verify(timeClockRecordRepository, times(2)).aggregateByClockDate(eq(FACTORY_ID), any(), any());
+    }
+
+    @Test
+    void cacheIsBoundedByCacheSize() {
+        ReflectionTestUtils.setField(service, "cacheSize", 3);
+        service.init();
+        LocalDate from = today.minusDays(5);
+        LocalDate to = today.minusDays(1);
+
+        service.getDailyStatsRange(FACTORY_ID, from, to);
+        service.getDailyStats(FACTORY_ID, to);
+        verify(timeClockRecordRepository, never()).aggregateByClockDate(FACTORY_ID, to, to);
+
+        // 最早的两天已被淘汰
+        service.getDailyStats(FACTORY_ID, from);
+        verify(timeClockRecordRepository).aggregateByClockDate(FACTORY_ID, from, from);
+    }
+
+    @Test
+    void concurrentReadersSeeConsistentTotals() throws Exception {
+        LocalDate from = today.minusDays(30);
+        LocalDate to = today.minusDays(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int offset = i;
+            Callable<Long> reader = () -> {
+                start.await();
+                long total = 0;
+                for (int n = 0; n < 20; n++) {
+                    if (n % 5 == offset % 5) {
+                        service.recalculateStats(FACTORY_ID, from.plusDays(n));
+                    }
+                    total = service.getDailyStatsRange(FACTORY_ID, from, to).getTotalClockIns();
+                }
+                return total;
+            };
+            futures.add(executor.submit(reader));
+        }
+        start.countDown();
+        for (Future<Long> future : futures) {
+            assertThat(future.get(30, TimeUnit.SECONDS)).isEqualTo(30 * 4L);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,63 @@
+package com.cretas.aims.util;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JwtUtil 测试：已验证 Claims 缓存、缓存不超过 Token 过期时间、篡改 Token 被拒绝
+ *
+ * @author Cretas Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ */
+class JwtUtilTest {
+
+    private static JwtUtil newJwtUtil(long expiration, long claimsCacheTtl) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-key-at-least-32-characters-long");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", expiration);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 100);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheTtl", claimsCacheTtl);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    @Test
+    void validatedClaimsAreCachedPerToken() {
+        JwtUtil jwtUtil = newJwtUtil(3_600_000L, 300_000L);
+        String token = jwtUtil.generateToken(7, "F001", "alice", "ROLE_ADMIN");
+
+        Claims first = jwtUtil.getValidatedClaims(token);
+        Claims second = jwtUtil.getValidatedClaims(token);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isSameAs(first);
+        assertThat(jwtUtil.getUserId(first)).isEqualTo(7);
+        assertThat(jwtUtil.getRoleFromToken(token)).isEqualTo("ROLE_ADMIN");
+    }
+
+    @Test
+    void cachedClaimsDoNotOutliveToken() throws Exception {
+        JwtUtil jwtUtil = newJwtUtil(2_000L, 300_000L);
+        String token = jwtUtil.generateToken(7, "F001", "alice", "ROLE_ADMIN");
+        assertThat(jwtUtil.validateToken(token)).isTrue();
+
+        // exp 精确到秒，等待超过 Token 有效期
+        Thread.sleep(3_000L);
+
+        assertThat(jwtUtil.validateToken(token)).isFalse();
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        JwtUtil jwtUtil = newJwtUtil(3_600_000L, 300_000L);
+        String token = jwtUtil.generateToken(7, "F001", "alice", "ROLE_ADMIN");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThat(jwtUtil.getValidatedClaims(tampered)).isNull();
+    }
+}